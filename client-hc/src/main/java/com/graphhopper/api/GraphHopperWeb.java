@@ -25,12 +25,14 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.ResponsePath;
+import com.graphhopper.http.ProtobufResponse;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.jackson.Jackson;
 import com.graphhopper.jackson.ResponsePathDeserializer;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Parameters;
 import com.graphhopper.util.shapes.GHPoint;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -65,6 +67,7 @@ public class GraphHopperWeb implements GraphHopperAPI {
     private boolean elevation = false;
     private String optimize = "false";
     private boolean postRequest = true;
+    private boolean protobuf = false;
     private int maxUnzippedLength = 1000;
     private final Set<String> ignoreSet;
     private final Set<String> ignoreSetForPost;
@@ -151,6 +154,15 @@ public class GraphHopperWeb implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Requests the route in the binary protobuf format instead of JSON. It is smaller and faster to decode, especially
+     * for long routes with path details. Errors are still returned as JSON.
+     */
+    public GraphHopperWeb setProtobuf(boolean protobuf) {
+        this.protobuf = protobuf;
+        return this;
+    }
+
     /**
      * Enable or disable calculating points for the way. The default is true.
      */
@@ -199,7 +211,13 @@ public class GraphHopperWeb implements GraphHopperAPI {
             ghRequest.getHints().remove("turn_description"); // do not include in request
 
             Request okRequest = postRequest ? createPostRequest(ghRequest) : createGetRequest(ghRequest);
+            if (protobuf)
+                okRequest = okRequest.newBuilder().header("Accept", ProtobufResponse.MEDIA_TYPE + ", application/json;q=0.5").build();
             rspBody = getClientForRequest(ghRequest).newCall(okRequest).execute().body();
+            MediaType contentType = rspBody.contentType();
+            if (protobuf && contentType != null && ProtobufResponse.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype()))
+                return ProtobufResponse.readRoute(rspBody.byteStream(), tmpTurnDescription);
+
             JsonNode json = objectMapper.reader().readTree(rspBody.byteStream());
 
             GHResponse res = new GHResponse();
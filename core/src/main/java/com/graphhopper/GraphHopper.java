@@ -57,6 +57,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.util.Helper.*;
 import static com.graphhopper.util.Parameters.Algorithms.RoundTrip;
@@ -78,6 +81,8 @@ public class GraphHopper implements GraphHopperAPI {
     private GraphHopperStorage ghStorage;
     private EncodingManager encodingManager;
     private int defaultSegmentSize = -1;
+    private int loadThreads = 1;
+    private boolean compressedGeometry = false;
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
@@ -89,6 +94,7 @@ public class GraphHopper implements GraphHopperAPI {
     private double longEdgeSamplingDistance = Double.MAX_VALUE;
     // for routing
     private final RouterConfig routerConfig = new RouterConfig();
+    private ExecutorService viaLegExecutor;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
@@ -483,6 +489,8 @@ public class GraphHopper implements GraphHopperAPI {
         // graph
         setGraphHopperLocation(graphHopperFolder);
         defaultSegmentSize = ghConfig.getInt("graph.dataaccess.segment_size", defaultSegmentSize);
+        loadThreads = ghConfig.getInt("graph.load_threads", loadThreads);
+        compressedGeometry = ghConfig.getBool("graph.compressed_geometry", compressedGeometry);
 
         String graphDATypeStr = ghConfig.getString("graph.dataaccess", "RAM_STORE");
         dataAccessType = DAType.fromString(graphDATypeStr);
@@ -540,6 +548,7 @@ public class GraphHopper implements GraphHopperAPI {
             throw new IllegalArgumentException("Default value for active landmarks " + activeLandmarkCount
                     + " should be less or equal to landmark count of " + lmPreparationHandler.getLandmarks());
         routerConfig.setActiveLandmarkCount(activeLandmarkCount);
+        routerConfig.setViaLegThreads(ghConfig.getInt("routing.via_leg_threads", routerConfig.getViaLegThreads()));
 
         return this;
     }
@@ -600,11 +609,19 @@ public class GraphHopper implements GraphHopperAPI {
             elevationProvider = new SkadiProvider(cacheDirStr);
         }
 
+        String tileStoreDirStr = ghConfig.getString("graph.elevation.tile_store_dir", "");
+        if (!tileStoreDirStr.isEmpty() && elevationProvider != ElevationProvider.NOOP)
+            elevationProvider = new TileStoreElevationProvider(elevationProvider, tileStoreDirStr,
+                    ghConfig.getInt("graph.elevation.tile_store_resolution", 1200));
+
         elevationProvider.setAutoRemoveTemporaryFiles(removeTempElevationFiles);
         elevationProvider.setInterpolate(interpolate);
         if (!baseURL.isEmpty())
             elevationProvider.setBaseURL(baseURL);
         elevationProvider.setDAType(elevationDAType);
+        long tileCacheMB = ghConfig.getLong("graph.elevation.tile_cache_mb", -1);
+        if (tileCacheMB > 0)
+            elevationProvider.setTileCacheSize(tileCacheMB << 20);
         return elevationProvider;
     }
 
@@ -754,6 +771,8 @@ public class GraphHopper implements GraphHopperAPI {
 
         GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
         ghStorage = new GraphHopperStorage(dir, encodingManager, hasElevation(), encodingManager.needsTurnCostsSupport(), defaultSegmentSize);
+        ghStorage.setLoadThreads(loadThreads);
+        ghStorage.setCompressedGeometry(compressedGeometry);
 
         checkProfilesConsistency();
 
@@ -1019,10 +1038,22 @@ public class GraphHopper implements GraphHopperAPI {
                             : lmPreparationHandler.getPreparation(lmp.getProfile()).getLandmarkStorage());
         }
         return new Router(ghStorage, locationIndex, profilesByName, pathBuilderFactory,
-                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks
+                trMap, routerConfig, createWeightingFactory(), chGraphs, landmarks, getViaLegExecutor()
         );
     }
 
+    private synchronized ExecutorService getViaLegExecutor() {
+        if (viaLegExecutor == null && routerConfig.getViaLegThreads() > 1) {
+            AtomicInteger counter = new AtomicInteger();
+            viaLegExecutor = Executors.newFixedThreadPool(routerConfig.getViaLegThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "gh-via-leg-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return viaLegExecutor;
+    }
+
     protected LocationIndex createLocationIndex(Directory dir) {
         LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
         tmpIndex.setResolution(preciseIndexResolution);
@@ -1148,6 +1179,12 @@ public class GraphHopper implements GraphHopperAPI {
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        synchronized (this) {
+            if (viaLegExecutor != null)
+                viaLegExecutor.shutdownNow();
+            viaLegExecutor = null;
+        }
+
         if (ghStorage != null)
             ghStorage.close();
 
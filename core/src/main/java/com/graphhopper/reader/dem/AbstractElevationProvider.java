@@ -18,6 +18,7 @@
 package com.graphhopper.reader.dem;
 
 import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.util.Downloader;
@@ -42,6 +43,8 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
     boolean interpolate = false;
     boolean autoRemoveTemporary = true;
     long sleep = 2000;
+    // the tiles are stored in a map as an array is not quite useful if we want to hold only parts of the world
+    final HeightTileCache<Object> cacheData = new HeightTileCache<>(this::releaseHeights);
 
     protected AbstractElevationProvider(String cacheDirString) {
         File cacheDir = new File(cacheDirString);
@@ -97,7 +100,27 @@ public abstract class AbstractElevationProvider implements ElevationProvider {
     }
 
 
-    protected Directory getDirectory() {
+    @Override
+    public ElevationProvider setTileCacheSize(long maxBytes) {
+        cacheData.setMaxBytes(maxBytes);
+        return this;
+    }
+
+    /**
+     * The directory is not thread safe, so all access of concurrently loaded tiles has to go through this method.
+     */
+    synchronized DataAccess findHeights(String name) {
+        return getDirectory().find(name);
+    }
+
+    /**
+     * Releases the memory of an evicted tile, its backing file is kept so that it can be loaded again.
+     */
+    synchronized void releaseHeights(HeightTile tile) {
+        getDirectory().close(tile.getHeights());
+    }
+
+    protected synchronized Directory getDirectory() {
         if (dir != null)
             return dir;
 
@@ -17,7 +17,6 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Downloader;
@@ -41,8 +40,6 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
     private final int MAX_LAT;
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
-    // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -63,6 +60,7 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
 
     @Override
     public void release() {
+        logger.info(this + " tile cache " + cacheData);
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -87,58 +85,53 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
         if (lat >= MAX_LAT || lat <= MIN_LAT)
             return 0;
 
-        lat = (int) (lat * precision) / precision;
-        lon = (int) (lon * precision) / precision;
-        int intKey = calcIntKey(lat, lon);
-        HeightTile demProvider = cacheData.get(intKey);
-        if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = down(lat);
-            int minLon = down(lon);
+        double roundedLat = (int) (lat * precision) / precision;
+        double roundedLon = (int) (lon * precision) / precision;
+        int intKey = calcIntKey(roundedLat, roundedLon);
+        return cacheData.getEle(intKey, roundedLat, roundedLon, key -> loadTile(intKey, roundedLat, roundedLon));
+    }
 
-            String fileName = getFileName(lat, lon);
-            if (fileName == null)
-                return 0;
+    private HeightTile loadTile(int intKey, double lat, double lon) {
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
 
-            DataAccess heights = getDirectory().find("dem" + intKey);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
-            }
+        int minLat = down(lat);
+        int minLon = down(lon);
 
-            if (!loadExisting) {
-                try {
-                    updateHeightsFromFile(lat, lon, heights);
-                } catch (FileNotFoundException ex) {
-                    demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
-                    demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.setSegmentSize(100).create(10).
-                            flush();
-                    return 0;
-                }
-            }
+        String fileName = getFileName(lat, lon);
+        if (fileName == null)
+            return null;
 
-            int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
-            if (width == 0)
-                width = DEFAULT_WIDTH;
+        DataAccess heights = findHeights("dem" + intKey);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
+        }
 
-            demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
-            demProvider.setInterpolate(interpolate);
-            demProvider.setHeights(heights);
+        if (!loadExisting) {
+            try {
+                updateHeightsFromFile(lat, lon, heights);
+            } catch (FileNotFoundException ex) {
+                HeightTile demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
+                demProvider.setHeights(heights);
+                demProvider.setSeaLevel(true);
+                // use small size on disc and in-memory
+                heights.setSegmentSize(100).create(10).
+                        flush();
+                return demProvider;
+            }
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
+        if (width == 0)
+            width = DEFAULT_WIDTH;
 
-        return demProvider.getHeight(lat, lon);
+        HeightTile demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
+        demProvider.setInterpolate(interpolate);
+        demProvider.setHeights(heights);
+        return demProvider;
     }
 
     private void updateHeightsFromFile(double lat, double lon, DataAccess heights) throws FileNotFoundException {
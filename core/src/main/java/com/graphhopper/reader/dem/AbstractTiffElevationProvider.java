@@ -24,8 +24,6 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -33,7 +31,6 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends AbstractElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -56,6 +53,7 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
 
     @Override
     public void release() {
+        logger.info(this + " tile cache " + cacheData);
         cacheData.clear();
         if (dir != null) {
             // for memory mapped type we remove temporary files
@@ -92,57 +90,53 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
         if (isOutsideSupportedArea(lat, lon))
             return 0;
 
-        lat = (int) (lat * precision) / precision;
-        lon = (int) (lon * precision) / precision;
-        String name = getFileName(lat, lon);
-        HeightTile demProvider = cacheData.get(name);
-        if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = getMinLatForTile(lat);
-            int minLon = getMinLonForTile(lon);
-            // less restrictive against boundary checking
-            demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
-            demProvider.setInterpolate(interpolate);
-
-            cacheData.put(name, demProvider);
-            DataAccess heights = getDirectory().find(name + ".gh");
-            demProvider.setHeights(heights);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load " + name + ", error: " + ex.getMessage());
-            }
+        double roundedLat = (int) (lat * precision) / precision;
+        double roundedLon = (int) (lon * precision) / precision;
+        String name = getFileName(roundedLat, roundedLon);
+        return cacheData.getEle(name, roundedLat, roundedLon, key -> loadTile(name, roundedLat, roundedLon));
+    }
 
-            if (!loadExisting) {
-                String zippedURL = getDownloadURL(lat, lon);
-                File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+    private HeightTile loadTile(String name, double lat, double lon) {
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
 
-                try {
-                    downloadFile(file, zippedURL);
-                } catch (IOException e) {
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.setSegmentSize(100).create(10).
-                            flush();
-                    return 0;
-                }
+        int minLat = getMinLatForTile(lat);
+        int minLon = getMinLonForTile(lon);
+        // less restrictive against boundary checking
+        HeightTile demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
+        demProvider.setInterpolate(interpolate);
 
-                // short == 2 bytes
-                heights.create(2 * WIDTH * HEIGHT);
+        DataAccess heights = findHeights(name + ".gh");
+        demProvider.setHeights(heights);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load " + name + ", error: " + ex.getMessage());
+        }
 
-                Raster raster = generateRasterFromFile(file, name + ".tif");
-                fillDataAccessWithElevationData(raster, heights, WIDTH);
+        if (!loadExisting) {
+            String zippedURL = getDownloadURL(lat, lon);
+            File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
 
-            } // loadExisting
-        }
+            try {
+                downloadFile(file, zippedURL);
+            } catch (IOException e) {
+                demProvider.setSeaLevel(true);
+                // use small size on disc and in-memory
+                heights.setSegmentSize(100).create(10).
+                        flush();
+                return demProvider;
+            }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+            // short == 2 bytes
+            heights.create(2 * WIDTH * HEIGHT);
+
+            Raster raster = generateRasterFromFile(file, name + ".tif");
+            fillDataAccessWithElevationData(raster, heights, WIDTH);
 
-        return demProvider.getHeight(lat, lon);
+        } // loadExisting
+        return demProvider;
     }
 
     abstract Raster generateRasterFromFile(File file, String tifName);
@@ -39,6 +39,11 @@ public interface ElevationProvider {
             return this;
         }
 
+        @Override
+        public ElevationProvider setTileCacheSize(long maxBytes) {
+            return this;
+        }
+
         @Override
         public void release() {
         }
@@ -85,6 +90,12 @@ public interface ElevationProvider {
      */
     boolean getInterpolate();
 
+    /**
+     * Limits the memory of the decoded elevation tiles held by this provider. If the limit is exceeded the least
+     * recently used tiles are released. Unlimited by default.
+     */
+    ElevationProvider setTileCacheSize(long maxBytes);
+
     /**
      * Release resources.
      */
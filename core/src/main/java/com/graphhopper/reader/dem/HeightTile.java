@@ -43,7 +43,10 @@ public class HeightTile {
     private final double lonHigherBound;
     private final double latHigherBound;
     private DataAccess heights;
+    // position of the first sample in heights, non-zero if several tiles share one DataAccess
+    private long heightsOffset;
     private boolean interpolate;
+    private boolean cellCenters;
     private final double MIN_ELEVATION_METERS = -12_000;
     private final double MAX_ELEVATION_METERS = 9_000;
 
@@ -66,6 +69,17 @@ public class HeightTile {
         return this;
     }
 
+    /**
+     * By default the samples are placed on the edges of the tile, i.e. the first and last sample of a row lie on the
+     * borders of the tile like for SRTM. With cell centers every sample stands for the center of a cell of size
+     * 1 / width. This only changes the interpolation, without interpolation the cell containing the point is used
+     * anyway.
+     */
+    public HeightTile setCellCenters(boolean cellCenters) {
+        this.cellCenters = cellCenters;
+        return this;
+    }
+
     public boolean isSeaLevel() {
         return heights.getHeader(0) == 1;
     }
@@ -76,12 +90,21 @@ public class HeightTile {
     }
 
     void setHeights(DataAccess da) {
+        setHeights(da, 0);
+    }
+
+    void setHeights(DataAccess da, long offset) {
         this.heights = da;
+        this.heightsOffset = offset;
+    }
+
+    DataAccess getHeights() {
+        return heights;
     }
 
     private short getHeightSample(int x, int y) {
         // always keep in mind factor 2 because of short value
-        return heights.getShort(2 * (y * width + x));
+        return heights.getShort(heightsOffset + 2 * (y * width + x));
     }
 
     private boolean isValidElevation(double elevation) {
@@ -103,12 +126,19 @@ public class HeightTile {
 
         double elevation;
         if (interpolate) {
-            double x = (width - 1) * deltaLon / horizontalDegree;
-            double y = (height - 1) * (1 - deltaLat / verticalDegree);
+            double x, y;
+            if (cellCenters) {
+                // between the outermost cell centers and the borders of the tile the nearest samples are used
+                x = Math.max(0, Math.min(width - 1, width * deltaLon / horizontalDegree - 0.5));
+                y = Math.max(0, Math.min(height - 1, height * (1 - deltaLat / verticalDegree) - 0.5));
+            } else {
+                x = (width - 1) * deltaLon / horizontalDegree;
+                y = (height - 1) * (1 - deltaLat / verticalDegree);
+            }
             int left = (int) x;
             int top = (int) y;
-            int right = left + 1;
-            int bottom = top + 1;
+            int right = cellCenters ? Math.min(left + 1, width - 1) : left + 1;
+            int bottom = cellCenters ? Math.min(top + 1, height - 1) : top + 1;
 
             double w00 = getHeightSample(left, top);
             double w01 = getHeightSample(left, bottom);
@@ -146,7 +176,7 @@ public class HeightTile {
             int lonSimilar = i % width;
             // no need for width - y as coordinate system for Graphics is already this way
             int latSimilar = i / height;
-            int green = Math.abs(heights.getShort(i * 2));
+            int green = Math.abs(heights.getShort(heightsOffset + i * 2));
             if (green == 0) {
                 g.setColor(new Color(255, 0, 0, 255));
             } else {
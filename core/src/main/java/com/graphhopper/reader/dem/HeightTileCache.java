@@ -0,0 +1,201 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Holds the decoded HeightTiles of an elevation provider. Lookups are safe for concurrent use and the memory of the
+ * loaded tiles can be limited: if the heights of all tiles need more than the configured bytes the least recently
+ * used tiles are evicted. An evicted tile is loaded again if it is needed later.
+ */
+class HeightTileCache<K> {
+    // access ordered, so the first entry is always the least recently used one. Guarded by synchronized (tiles).
+    private final LinkedHashMap<K, HeightTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    // the tiles that are currently loaded, waiting for such a future does not block lookups of other tiles
+    private final Map<K, CompletableFuture<HeightTile>> loading = new ConcurrentHashMap<>();
+    // heights are read under the read lock and tiles are only released under the write lock, so a tile is never
+    // released while in use. Loading a tile happens without any lock.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Consumer<HeightTile> evictionListener;
+    private long maxBytes = Long.MAX_VALUE;
+
+    /**
+     * @param evictionListener is called for every evicted tile and should release its heights
+     */
+    HeightTileCache(Consumer<HeightTile> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    void setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive but was " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param loader creates the tile for the specified key if it is not cached. It is called at most once at a
+     *               time for the same key and can return null if no tile exists, which is not cached.
+     * @return the elevation at the specified point, 0 for sea level tiles or if no tile exists
+     */
+    double getEle(K key, double lat, double lon, Function<K, HeightTile> loader) {
+        boolean loaded = false;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                HeightTile tile;
+                synchronized (tiles) {
+                    tile = tiles.get(key);
+                }
+                if (tile != null) {
+                    if (loaded)
+                        misses.increment();
+                    else
+                        hits.increment();
+                    return tile.isSeaLevel() ? 0 : tile.getHeight(lat, lon);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (load(key, loader) == null) {
+                misses.increment();
+                return 0;
+            }
+            loaded = true;
+            if (bytes.get() > maxBytes)
+                evict();
+            // read the heights under the read lock. In the rare case that the tile was evicted in the meantime
+            // it is loaded again.
+        }
+    }
+
+    private HeightTile load(K key, Function<K, HeightTile> loader) {
+        CompletableFuture<HeightTile> future = new CompletableFuture<>();
+        CompletableFuture<HeightTile> existing = loading.putIfAbsent(key, future);
+        if (existing != null)
+            return join(existing);
+
+        try {
+            HeightTile tile;
+            // another thread could have finished loading this tile since our lookup
+            synchronized (tiles) {
+                tile = tiles.get(key);
+            }
+            if (tile == null) {
+                tile = loader.apply(key);
+                if (tile != null) {
+                    synchronized (tiles) {
+                        tiles.put(key, tile);
+                    }
+                    bytes.addAndGet(getBytes(tile));
+                }
+            }
+            future.complete(tile);
+            return tile;
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            // remove it only after the tile was put into tiles, otherwise it could be loaded twice
+            loading.remove(key, future);
+        }
+    }
+
+    private static HeightTile join(CompletableFuture<HeightTile> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    private void evict() {
+        lock.writeLock().lock();
+        try {
+            synchronized (tiles) {
+                Iterator<HeightTile> iter = tiles.values().iterator();
+                // always keep at least one tile, otherwise a single tile bigger than maxBytes would never be cached
+                while (bytes.get() > maxBytes && tiles.size() > 1) {
+                    HeightTile eldest = iter.next();
+                    iter.remove();
+                    bytes.addAndGet(-getBytes(eldest));
+                    evictions.increment();
+                    evictionListener.accept(eldest);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            synchronized (tiles) {
+                tiles.clear();
+            }
+            bytes.set(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static long getBytes(HeightTile tile) {
+        return tile.getHeights().getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits(), m = getMisses();
+        return "tiles: " + size() + ", MB: " + bytes.get() / (1 << 20) + ", hits: " + h + ", misses: " + m
+                + ", hit rate: " + (h + m == 0 ? 0 : Math.round(1000d * h / (h + m)) / 10d) + "%, evictions: " + getEvictions();
+    }
+}
@@ -76,6 +76,13 @@ public class MultiSourceElevationProvider implements ElevationProvider {
         return this;
     }
 
+    @Override
+    public ElevationProvider setTileCacheSize(long maxBytes) {
+        srtmProvider.setTileCacheSize(maxBytes);
+        globalProvider.setTileCacheSize(maxBytes);
+        return this;
+    }
+
     @Override
     public void setInterpolate(boolean interpolate) {
         srtmProvider.setInterpolate(interpolate);
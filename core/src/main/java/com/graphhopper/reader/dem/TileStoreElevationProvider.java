@@ -0,0 +1,283 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.BitUtil;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An elevation provider that reads already decoded elevation data from a memory mapped store. The store is filled
+ * tile by tile from the source provider the first time a tile is requested and kept on disc. So re-imports of the
+ * same region skip downloading, unzipping and decoding of the source files and read the heights directly.
+ * <p>
+ * The store consists of an index with one entry per 1x1 degree tile and the data area where all tiles with land
+ * are appended. Every tile is sampled with a fixed resolution, so the resolution should match the source provider,
+ * e.g. 1200 samples per degree for SRTM or CGIAR and 3600 for SRTMGL1.
+ */
+public class TileStoreElevationProvider implements ElevationProvider {
+    private static final Logger logger = LoggerFactory.getLogger(TileStoreElevationProvider.class);
+    private static final int MAGIC_INT = 0x454C4531;
+    private static final int LAT_TILES = 180, LON_TILES = 360;
+    // index entries: the tile was not yet converted, contains no data (e.g. sea) or is stored at entry - 1
+    private static final int UNKNOWN = 0, NO_DATA = -1;
+    private static final double precision = 1e7;
+
+    private final ElevationProvider source;
+    private final Directory dir;
+    private final int samplesPerDegree;
+    private final long tileBytes;
+    // lookups read under the read lock, adding a tile changes the data area under the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object convertLock = new Object();
+    private final AtomicReferenceArray<HeightTile> tiles = new AtomicReferenceArray<>(LAT_TILES * LON_TILES);
+    // written only under the write lock, index is assigned last so that a non-null index means data is ready too
+    private volatile DataAccess index;
+    private DataAccess data;
+    private int tileCount;
+    private boolean interpolate;
+
+    /**
+     * @param source           fills the store for all tiles that are not yet converted
+     * @param storeDir         the folder of the store, it is created if it does not exist
+     * @param samplesPerDegree the resolution of every tile
+     */
+    public TileStoreElevationProvider(ElevationProvider source, String storeDir, int samplesPerDegree) {
+        if (samplesPerDegree < 1 || samplesPerDegree > 10_000)
+            throw new IllegalArgumentException("samplesPerDegree must be in [1, 10000] but was " + samplesPerDegree);
+        this.source = source;
+        this.samplesPerDegree = samplesPerDegree;
+        this.tileBytes = 2L * samplesPerDegree * samplesPerDegree;
+        this.dir = new GHDirectory(storeDir, DAType.MMAP);
+        // the source must not interpolate as we sample exactly the positions of its own samples
+        source.setInterpolate(false);
+    }
+
+    private void ensureInitialized() {
+        if (index != null)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            if (index == null)
+                init();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void init() {
+        dir.create();
+        DataAccess newIndex = dir.find("ele_index");
+        data = dir.find("ele_data");
+        if (newIndex.loadExisting()) {
+            if (newIndex.getHeader(0) != MAGIC_INT)
+                throw new IllegalStateException("Incompatible elevation store in " + dir.getLocation());
+            if (newIndex.getHeader(4) != samplesPerDegree)
+                throw new IllegalStateException("Elevation store in " + dir.getLocation() + " was created with "
+                        + newIndex.getHeader(4) + " samples per degree, but " + samplesPerDegree + " were configured");
+            if (!data.loadExisting())
+                throw new IllegalStateException("Cannot load elevation data of store " + dir.getLocation());
+            // the header is only persisted by flush, but the index entries are in the mapped pages and survive an
+            // unclean shutdown, so the tile count is derived from them to never overwrite stored tiles
+            tileCount = 0;
+            for (int i = 0; i < LAT_TILES * LON_TILES; i++) {
+                tileCount = Math.max(tileCount, newIndex.getInt(4L * i));
+            }
+        } else {
+            newIndex.create(4L * LAT_TILES * LON_TILES);
+            newIndex.setHeader(0, MAGIC_INT);
+            newIndex.setHeader(4, samplesPerDegree);
+            data.create(tileBytes);
+            tileCount = 0;
+        }
+        index = newIndex;
+    }
+
+    @Override
+    public double getEle(double lat, double lon) {
+        if (lat >= 90 || lat < -90 || lon >= 180 || lon < -180)
+            return 0;
+
+        lat = (int) (lat * precision) / precision;
+        lon = (int) (lon * precision) / precision;
+        int minLat = (int) Math.floor(lat);
+        int minLon = (int) Math.floor(lon);
+        int tileIndex = (minLat + 90) * LON_TILES + minLon + 180;
+        HeightTile tile = tiles.get(tileIndex);
+        if (tile == null) {
+            int entry = getEntry(tileIndex);
+            if (entry == UNKNOWN)
+                entry = convert(tileIndex, minLat, minLon);
+            if (entry == NO_DATA)
+                return 0;
+
+            tile = new HeightTile(minLat, minLon, samplesPerDegree, samplesPerDegree, precision, 1, 1);
+            // convert samples the centers of the cells
+            tile.setInterpolate(interpolate).setCellCenters(true);
+            tile.setHeights(data, (entry - 1) * tileBytes);
+            tiles.compareAndSet(tileIndex, null, tile);
+        }
+
+        lock.readLock().lock();
+        try {
+            return tile.getHeight(lat, lon);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int getEntry(int tileIndex) {
+        // initialize lazily under the write lock, a read lock cannot be upgraded
+        ensureInitialized();
+        lock.readLock().lock();
+        try {
+            return index.getInt(4L * tileIndex);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Samples the tile from the source provider and adds it to the store.
+     */
+    private int convert(int tileIndex, int minLat, int minLon) {
+        synchronized (convertLock) {
+            int entry = getEntry(tileIndex);
+            if (entry != UNKNOWN)
+                return entry;
+
+            StopWatch sw = new StopWatch().start();
+            // same layout as a HeightTile: the first row is the northernmost one
+            BitUtil bitUtil = BitUtil.get(dir.getByteOrder());
+            byte[] bytes = new byte[(int) tileBytes];
+            boolean hasData = false;
+            for (int y = 0; y < samplesPerDegree; y++) {
+                double lat = minLat + (samplesPerDegree - 1 - y + 0.5) / samplesPerDegree;
+                for (int x = 0; x < samplesPerDegree; x++) {
+                    double lon = minLon + (x + 0.5) / samplesPerDegree;
+                    double ele = source.getEle(lat, lon);
+                    short val = Double.isNaN(ele) ? Short.MIN_VALUE : (short) Math.round(ele);
+                    if (val != 0)
+                        hasData = true;
+                    bitUtil.fromShort(bytes, val, 2 * (y * samplesPerDegree + x));
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (hasData) {
+                    long pointer = tileCount * tileBytes;
+                    data.ensureCapacity(pointer + tileBytes);
+                    if (data.getSegmentSize() < 2 * samplesPerDegree)
+                        throw new IllegalStateException("Segment size of elevation store too small " + data.getSegmentSize());
+                    byte[] row = new byte[2 * samplesPerDegree];
+                    for (int y = 0; y < samplesPerDegree; y++) {
+                        System.arraycopy(bytes, y * row.length, row, 0, row.length);
+                        data.setBytes(pointer + (long) y * row.length, row, row.length);
+                    }
+                    tileCount++;
+                    entry = tileCount;
+                } else {
+                    entry = NO_DATA;
+                }
+                index.setInt(4L * tileIndex, entry);
+                // informational only, see init
+                index.setHeader(8, tileCount);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("added tile " + minLat + "," + minLon + " to elevation store" + (hasData ? "" : " without data")
+                    + ", tiles: " + tileCount + ", took: " + sw.stop().getSeconds() + "s");
+            return entry;
+        }
+    }
+
+    @Override
+    public ElevationProvider setBaseURL(String baseURL) {
+        source.setBaseURL(baseURL);
+        return this;
+    }
+
+    /**
+     * Sets the type of the temporary files of the source provider. The store itself is always memory mapped.
+     */
+    @Override
+    public ElevationProvider setDAType(DAType daType) {
+        source.setDAType(daType);
+        return this;
+    }
+
+    @Override
+    public ElevationProvider setTileCacheSize(long maxBytes) {
+        source.setTileCacheSize(maxBytes);
+        return this;
+    }
+
+    @Override
+    public void setInterpolate(boolean interpolate) {
+        this.interpolate = interpolate;
+    }
+
+    @Override
+    public boolean getInterpolate() {
+        return interpolate;
+    }
+
+    @Override
+    public void release() {
+        source.release();
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                index.flush();
+                data.flush();
+                dir.close();
+                index = null;
+                data = null;
+            }
+            for (int i = 0; i < tiles.length(); i++) {
+                tiles.set(i, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The store is never removed, this only specifies whether the temporary files of the source provider are
+     * removed.
+     */
+    @Override
+    public void setAutoRemoveTemporaryFiles(boolean autoRemoveTemporary) {
+        source.setAutoRemoveTemporaryFiles(autoRemoveTemporary);
+    }
+
+    @Override
+    public String toString() {
+        return "tile_store(" + source + ")";
+    }
+}
@@ -61,8 +61,16 @@ public class FlexiblePathCalculator implements PathCalculator {
         // this compatible with edge-based routing we would have to use edge keys instead of edge ids. either way a
         // better approach seems to be making the weighting (or the algorithm for that matter) aware of the unfavored
         // edges directly without changing the graph
-        for (IntCursor c : edgeRestrictions.getUnfavoredEdges())
-            queryGraph.unfavorVirtualEdge(c.value);
+        // the unfavored status is stored in the query graph that all legs share, which is why via routing calculates
+        // the legs of a request with headings one after the other. legs without unfavored edges may be calculated
+        // concurrently, so for them the query graph must not be touched at all
+        boolean unfavored = !edgeRestrictions.getUnfavoredEdges().isEmpty();
+        if (unfavored) {
+            for (IntCursor c : edgeRestrictions.getUnfavoredEdges())
+                queryGraph.unfavorVirtualEdge(c.value);
+        } else {
+            assert queryGraph.getUnfavoredVirtualEdges().isEmpty() : "unfavored edges left over from a previous path";
+        }
 
         List<Path> paths;
         if (edgeRestrictions.getSourceOutEdge() != ANY_EDGE || edgeRestrictions.getTargetInEdge() != ANY_EDGE) {
@@ -76,7 +84,8 @@ public class FlexiblePathCalculator implements PathCalculator {
         // reset all direction enforcements in queryGraph to avoid influencing next path
         // todo: is this correct? aren't we taking a second look at these edges later when we calc times or
         // instructions etc.?
-        queryGraph.clearUnfavoredStatus();
+        if (unfavored)
+            queryGraph.clearUnfavoredStatus();
 
         if (paths.isEmpty())
             throw new IllegalStateException("Path list was empty for " + from + " -> " + to);
@@ -56,6 +56,8 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
     private final EnumEncodedValue<RoadAccess> roadAccessEnc;
     private final EnumEncodedValue<Toll> tollEnc;
     private final DecimalEncodedValue maxSpeedEnc;
+    // reused for every edge as the geometry is copied into the instructions
+    private final PointList wayGeo;
 
     /*
      * We need three points to make directions
@@ -112,6 +114,7 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
         this.roadEnvEnc = evLookup.getEnumEncodedValue(RoadEnvironment.KEY, RoadEnvironment.class);
         this.roadAccessEnc = evLookup.getEnumEncodedValue(RoadAccess.KEY, RoadAccess.class);
         this.nodeAccess = graph.getNodeAccess();
+        this.wayGeo = new PointList(10, nodeAccess.is3D());
         this.tr = tr;
         this.ways = ways;
         prevNode = -1;
@@ -138,6 +141,16 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
 
     @Override
     public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+        wayGeo.clear();
+        edge.fetchWayGeometry(FetchMode.ALL, wayGeo);
+        next(edge, wayGeo);
+    }
+
+    /**
+     * Same as {@link #next(EdgeIteratorState, int, int)}, for callers that already fetched the geometry of the edge
+     * with {@link FetchMode#ALL}.
+     */
+    public void next(EdgeIteratorState edge, PointList wayGeo) {
         // baseNode is the current node and adjNode is the next
         int adjNode = edge.getAdjNode();
         int baseNode = edge.getBaseNode();
@@ -151,7 +164,6 @@ public class InstructionsFromEdges implements Path.EdgeVisitor {
         double adjLon = nodeAccess.getLongitude(adjNode);
         double latitude, longitude;
 
-        PointList wayGeo = edge.fetchWayGeometry(FetchMode.ALL);
         boolean isRoundabout = edge.get(roundaboutEnc);
 
         if (wayGeo.getSize() <= 2) {
@@ -45,6 +45,8 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 import static com.graphhopper.routing.weighting.Weighting.INFINITE_U_TURN_COSTS;
 import static com.graphhopper.util.DistanceCalcEarth.DIST_EARTH;
@@ -67,11 +69,24 @@ public class Router {
     private final Map<String, LandmarkStorage> landmarks;
     private final boolean chEnabled;
     private final boolean lmEnabled;
+    private final ExecutorService viaLegExecutor;
 
     public Router(GraphHopperStorage ghStorage, LocationIndex locationIndex,
                   Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
                   TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
                   Map<String, CHGraph> chGraphs, Map<String, LandmarkStorage> landmarks) {
+        this(ghStorage, locationIndex, profilesByName, pathDetailsBuilderFactory, translationMap, routerConfig,
+                weightingFactory, chGraphs, landmarks, null);
+    }
+
+    /**
+     * @param viaLegExecutor the executor used to calculate the legs of via routes at the same time, see
+     *                       {@link RouterConfig#setViaLegThreads(int)}, or null
+     */
+    public Router(GraphHopperStorage ghStorage, LocationIndex locationIndex,
+                  Map<String, Profile> profilesByName, PathDetailsBuilderFactory pathDetailsBuilderFactory,
+                  TranslationMap translationMap, RouterConfig routerConfig, WeightingFactory weightingFactory,
+                  Map<String, CHGraph> chGraphs, Map<String, LandmarkStorage> landmarks, ExecutorService viaLegExecutor) {
         this.ghStorage = ghStorage;
         this.encodingManager = ghStorage.getEncodingManager();
         this.locationIndex = locationIndex;
@@ -89,6 +104,7 @@ public class Router {
         // CHGraphs that were not built yet (and possibly no CH profiles were configured).
         this.chEnabled = !chGraphs.isEmpty();
         this.lmEnabled = !landmarks.isEmpty();
+        this.viaLegExecutor = viaLegExecutor;
     }
 
     public GHResponse route(GHRequest request) {
@@ -212,8 +228,9 @@ public class Router {
         // (base) query graph used to resolve headings, curbsides etc. this is not necessarily the same thing as
         // the (possibly implementation specific) query graph used by PathCalculator
         QueryGraph queryGraph = QueryGraph.create(ghStorage, qResults);
-        PathCalculator pathCalculator = createPathCalculator(queryGraph, profile, algoOpts, disableCH, disableLM);
-        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, qResults, weighting.getFlagEncoder().getAccessEnc(), pathCalculator, request.getCurbsides(), forceCurbsides, request.getHeadings(), passThrough);
+        Supplier<PathCalculator> pathCalculators = createPathCalculators(queryGraph, profile, algoOpts, disableCH, disableLM);
+        ViaRouting.Result result = ViaRouting.calcPaths(request.getPoints(), queryGraph, qResults, weighting.getFlagEncoder().getAccessEnc(),
+                pathCalculators, viaLegExecutor, request.getCurbsides(), forceCurbsides, request.getHeadings(), passThrough);
 
         if (request.getPoints().size() != result.paths.size() + 1)
             throw new RuntimeException("There should be exactly one more point than paths. points:" + request.getPoints().size() + ", paths:" + result.paths.size());
@@ -248,26 +265,40 @@ public class Router {
     }
 
     private PathCalculator createPathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableCH, boolean disableLM) {
+        return createPathCalculators(queryGraph, profile, algoOpts, disableCH, disableLM).get();
+    }
+
+    /**
+     * The PathCalculators keep the statistics of their last calculation, so every leg that is calculated concurrently
+     * needs its own. The algorithm factories are shared and the errors for missing preparations are thrown here.
+     */
+    private Supplier<PathCalculator> createPathCalculators(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableCH, boolean disableLM) {
         if (chEnabled && !disableCH) {
             PMap opts = new PMap(algoOpts.getHints());
             opts.putObject(ALGORITHM, algoOpts.getAlgorithm());
             opts.putObject(MAX_VISITED_NODES, algoOpts.getMaxVisitedNodes());
-            return createCHPathCalculator(queryGraph, profile, opts);
+            CHRoutingAlgorithmFactory algoFactory = createCHRoutingAlgorithmFactory(queryGraph, profile);
+            return () -> new CHPathCalculator(algoFactory, opts);
         } else {
-            return createFlexiblePathCalculator(queryGraph, profile, algoOpts, disableLM);
+            RoutingAlgorithmFactory algoFactory = createRoutingAlgorithmFactory(profile, disableLM);
+            return () -> new FlexiblePathCalculator(queryGraph, algoFactory, algoOpts);
         }
     }
 
-    private PathCalculator createCHPathCalculator(QueryGraph queryGraph, Profile profile, PMap opts) {
+    private CHRoutingAlgorithmFactory createCHRoutingAlgorithmFactory(QueryGraph queryGraph, Profile profile) {
         RoutingCHGraph chGraph = chGraphs.get(profile.getName());
         if (chGraph == null)
             throw new IllegalArgumentException("Cannot find CH preparation for the requested profile: '" + profile.getName() + "'" +
                     "\nYou can try disabling CH using " + Parameters.CH.DISABLE + "=true" +
                     "\navailable CH profiles: " + chGraphs.keySet());
-        return new CHPathCalculator(new CHRoutingAlgorithmFactory(chGraph, queryGraph), opts);
+        return new CHRoutingAlgorithmFactory(chGraph, queryGraph);
     }
 
     private FlexiblePathCalculator createFlexiblePathCalculator(QueryGraph queryGraph, Profile profile, AlgorithmOptions algoOpts, boolean disableLM) {
+        return new FlexiblePathCalculator(queryGraph, createRoutingAlgorithmFactory(profile, disableLM), algoOpts);
+    }
+
+    private RoutingAlgorithmFactory createRoutingAlgorithmFactory(Profile profile, boolean disableLM) {
         RoutingAlgorithmFactory algorithmFactory;
         // for now do not allow mixing CH&LM #1082,#1889
         if (lmEnabled && !disableLM) {
@@ -280,7 +311,7 @@ public class Router {
         } else {
             algorithmFactory = new RoutingAlgorithmFactorySimple();
         }
-        return new FlexiblePathCalculator(queryGraph, algorithmFactory, algoOpts);
+        return algorithmFactory;
     }
 
     private PathMerger createPathMerger(GHRequest request, Weighting weighting, Graph graph) {
@@ -297,7 +328,8 @@ public class Router {
                 setDouglasPeucker(peucker).
                 setEnableInstructions(enableInstructions).
                 setPathDetailsBuilders(pathDetailsBuilderFactory, request.getPathDetails()).
-                setSimplifyResponse(routerConfig.isSimplifyResponse() && wayPointMaxDistance > 0);
+                setSimplifyResponse(routerConfig.isSimplifyResponse() && wayPointMaxDistance > 0).
+                setExecutor(viaLegExecutor);
 
         if (!request.getHeadings().isEmpty())
             pathMerger.setFavoredHeading(request.getHeadings().get(0));
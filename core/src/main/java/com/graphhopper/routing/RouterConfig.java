@@ -31,6 +31,7 @@ public class RouterConfig {
     private boolean simplifyResponse = true;
     private double elevationWayPointMaxDistance = Double.MAX_VALUE;
     private int activeLandmarkCount = 8;
+    private int viaLegThreads = 1;
 
     public int getMaxVisitedNodes() {
         return maxVisitedNodes;
@@ -114,4 +115,17 @@ public class RouterConfig {
     public void setElevationWayPointMaxDistance(double elevationWayPointMaxDistance) {
         this.elevationWayPointMaxDistance = elevationWayPointMaxDistance;
     }
+
+    public int getViaLegThreads() {
+        return viaLegThreads;
+    }
+
+    /**
+     * This method sets the number of threads that calculate the legs of via routes and their instructions, points
+     * and path details at the same time. With a single thread (the default) everything is done in the request thread.
+     * The threads are shared by all requests.
+     */
+    public void setViaLegThreads(int viaLegThreads) {
+        this.viaLegThreads = viaLegThreads;
+    }
 }
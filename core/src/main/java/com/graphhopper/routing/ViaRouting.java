@@ -33,6 +33,10 @@ import com.graphhopper.util.shapes.GHPoint;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import static com.graphhopper.util.EdgeIterator.ANY_EDGE;
 import static com.graphhopper.util.EdgeIterator.NO_EDGE;
@@ -97,6 +101,16 @@ public class ViaRouting {
     }
 
     public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<QueryResult> queryResults, BooleanEncodedValue accessEnc, PathCalculator pathCalculator, List<String> curbsides, boolean forceCurbsides, List<Double> headings, boolean passThrough) {
+        return calcPaths(points, queryGraph, queryResults, accessEnc, () -> pathCalculator, null, curbsides, forceCurbsides, headings, passThrough);
+    }
+
+    /**
+     * Same as above, but calculates the legs at the same time if an executor is given and the legs are independent of
+     * each other. This is the case unless headings or pass_through are used: the unfavored edges are stored in the
+     * QueryGraph and pass_through needs the last edge of the previous leg. Every leg calculated on the executor gets
+     * its own PathCalculator from pathCalculators.
+     */
+    public static Result calcPaths(List<GHPoint> points, QueryGraph queryGraph, List<QueryResult> queryResults, BooleanEncodedValue accessEnc, Supplier<PathCalculator> pathCalculators, ExecutorService executor, List<String> curbsides, boolean forceCurbsides, List<Double> headings, boolean passThrough) {
         if (!curbsides.isEmpty() && curbsides.size() != points.size())
             throw new IllegalArgumentException("If you pass " + CURBSIDE + ", you need to pass exactly one curbside for every point, empty curbsides will be ignored");
         if (!curbsides.isEmpty() && !headings.isEmpty())
@@ -104,18 +118,40 @@ public class ViaRouting {
 
         final int legs = queryResults.size() - 1;
         Result result = new Result(legs);
-        for (int leg = 0; leg < legs; ++leg) {
-            QueryResult fromQResult = queryResults.get(leg);
-            QueryResult toQResult = queryResults.get(leg + 1);
-
-            // enforce headings
-            // at via-nodes and the target node the heading parameter is interpreted as the direction we want
-            // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
-            // all for these points (unless using pass through). see this forum discussion:
-            // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
-            double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
-            double toHeading = (queryResults.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
+        if (executor != null && legs > 1 && !passThrough && headings.stream().allMatch(h -> Double.isNaN(h))) {
+            List<Future<Leg>> futures = new ArrayList<>(legs);
+            try {
+                for (int leg = 0; leg < legs; ++leg) {
+                    // the restrictions are resolved here to throw the errors of the first invalid leg
+                    EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, queryResults, accessEnc, curbsides, forceCurbsides, headings, NO_EDGE, passThrough, leg);
+                    // the path calculators only leave the shared query graph untouched if there are no unfavored edges
+                    assert edgeRestrictions.getUnfavoredEdges().isEmpty();
+                    QueryResult fromQResult = queryResults.get(leg);
+                    QueryResult toQResult = queryResults.get(leg + 1);
+                    futures.add(executor.submit(() -> calcLeg(pathCalculators.get(), fromQResult, toQResult, edgeRestrictions)));
+                }
+                for (Future<Leg> future : futures) {
+                    addLeg(result, future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                if (ex.getCause() instanceof Error)
+                    throw (Error) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                for (Future<Leg> future : futures) {
+                    future.cancel(true);
+                }
+            }
+            return result;
+        }
 
+        PathCalculator pathCalculator = pathCalculators.get();
+        for (int leg = 0; leg < legs; ++leg) {
             // enforce pass-through
             int incomingEdge = NO_EDGE;
             if (leg != 0) {
@@ -125,38 +161,73 @@ public class ViaRouting {
                     incomingEdge = prevRoute.getFinalEdge().getEdge();
             }
 
-            // enforce curbsides
-            final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
-            final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
+            EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, queryResults, accessEnc, curbsides, forceCurbsides, headings, incomingEdge, passThrough, leg);
+            addLeg(result, calcLeg(pathCalculator, queryResults.get(leg), queryResults.get(leg + 1), edgeRestrictions));
+        }
+
+        return result;
+    }
 
-            EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromQResult, toQResult,
-                    fromHeading, toHeading, incomingEdge, passThrough,
-                    fromCurbside, toCurbside, accessEnc);
+    private static EdgeRestrictions buildEdgeRestrictions(QueryGraph queryGraph, List<QueryResult> queryResults, BooleanEncodedValue accessEnc, List<String> curbsides, boolean forceCurbsides, List<Double> headings, int incomingEdge, boolean passThrough, int leg) {
+        QueryResult fromQResult = queryResults.get(leg);
+        QueryResult toQResult = queryResults.get(leg + 1);
 
-            edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, forceCurbsides));
-            edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, forceCurbsides));
+        // enforce headings
+        // at via-nodes and the target node the heading parameter is interpreted as the direction we want
+        // to enforce for arriving (not starting) at this node. the starting direction is not enforced at
+        // all for these points (unless using pass through). see this forum discussion:
+        // https://discuss.graphhopper.com/t/meaning-of-heading-parameter-for-via-routing/5643/6
+        double fromHeading = (leg == 0 && !headings.isEmpty()) ? headings.get(0) : Double.NaN;
+        double toHeading = (queryResults.size() == headings.size() && !Double.isNaN(headings.get(leg + 1))) ? headings.get(leg + 1) : Double.NaN;
 
-            // calculate paths
-            List<Path> paths = pathCalculator.calcPaths(fromQResult.getClosestNode(), toQResult.getClosestNode(), edgeRestrictions);
-            result.debug += pathCalculator.getDebugString();
+        // enforce curbsides
+        final String fromCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg);
+        final String toCurbside = curbsides.isEmpty() ? CURBSIDE_ANY : curbsides.get(leg + 1);
 
-            // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
-            // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
-            // a good method to decide how to combine the different legs
-            for (int i = 0; i < paths.size(); i++) {
-                Path path = paths.get(i);
-                if (path.getTime() < 0)
-                    throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
+        EdgeRestrictions edgeRestrictions = buildEdgeRestrictions(queryGraph, fromQResult, toQResult,
+                fromHeading, toHeading, incomingEdge, passThrough,
+                fromCurbside, toCurbside, accessEnc);
 
-                result.paths.add(path);
-                result.debug += ", " + path.getDebugInfo();
-            }
+        edgeRestrictions.setSourceOutEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getSourceOutEdge(), leg, forceCurbsides));
+        edgeRestrictions.setTargetInEdge(ignoreThrowOrAcceptImpossibleCurbsides(curbsides, edgeRestrictions.getTargetInEdge(), leg + 1, forceCurbsides));
+        return edgeRestrictions;
+    }
+
+    private static Leg calcLeg(PathCalculator pathCalculator, QueryResult fromQResult, QueryResult toQResult, EdgeRestrictions edgeRestrictions) {
+        // calculate paths
+        List<Path> paths = pathCalculator.calcPaths(fromQResult.getClosestNode(), toQResult.getClosestNode(), edgeRestrictions);
+        return new Leg(paths, pathCalculator.getDebugString(), pathCalculator.getVisitedNodes());
+    }
 
-            result.visitedNodes += pathCalculator.getVisitedNodes();
-            result.debug += "visited nodes sum: " + result.visitedNodes;
+    private static void addLeg(Result result, Leg leg) {
+        result.debug += leg.debug;
+
+        // for alternative routing we get multiple paths and add all of them (which is ok, because we do not allow
+        // via-points for alternatives at the moment). otherwise we would have to return a list<list<path>> and find
+        // a good method to decide how to combine the different legs
+        for (int i = 0; i < leg.paths.size(); i++) {
+            Path path = leg.paths.get(i);
+            if (path.getTime() < 0)
+                throw new RuntimeException("Time was negative " + path.getTime() + " for index " + i);
+
+            result.paths.add(path);
+            result.debug += ", " + path.getDebugInfo();
         }
 
-        return result;
+        result.visitedNodes += leg.visitedNodes;
+        result.debug += "visited nodes sum: " + result.visitedNodes;
+    }
+
+    private static class Leg {
+        final List<Path> paths;
+        final String debug;
+        final int visitedNodes;
+
+        Leg(List<Path> paths, String debug, int visitedNodes) {
+            this.paths = paths;
+            this.debug = debug;
+            this.visitedNodes = visitedNodes;
+        }
     }
 
     public static class Result {
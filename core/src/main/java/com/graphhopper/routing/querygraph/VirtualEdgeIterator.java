@@ -86,6 +86,11 @@ class VirtualEdgeIterator implements EdgeIterator {
         return getCurrentEdge().fetchWayGeometry(mode);
     }
 
+    @Override
+    public void fetchWayGeometry(FetchMode mode, PointList pointList) {
+        getCurrentEdge().fetchWayGeometry(mode, pointList);
+    }
+
     @Override
     public EdgeIteratorState setWayGeometry(PointList list) {
         return getCurrentEdge().setWayGeometry(list);
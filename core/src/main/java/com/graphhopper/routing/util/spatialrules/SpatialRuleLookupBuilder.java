@@ -38,6 +38,20 @@ public class SpatialRuleLookupBuilder {
      */
     public static SpatialRuleLookup buildIndex(List<JsonFeatureCollection> jsonFeatureCollections, String jsonIdField,
                                                SpatialRuleFactory spatialRuleFactory, Envelope maxBBox) {
+        return buildIndex(jsonFeatureCollections, jsonIdField, spatialRuleFactory, maxBBox, 0);
+    }
+
+    /**
+     * Same as {@link #buildIndex(List, String, SpatialRuleFactory, Envelope)} but creates a
+     * {@link SpatialRuleLookupGrid} if gridCellsPerDegree is positive. The grid is faster for lookups, but needs
+     * more memory and time to build, e.g. 13MB for the whole world with 10 cells per degree.
+     *
+     * @param gridCellsPerDegree the resolution of the grid or 0 to create a {@link SpatialRuleLookupJTS}
+     */
+    public static SpatialRuleLookup buildIndex(List<JsonFeatureCollection> jsonFeatureCollections, String jsonIdField,
+                                               SpatialRuleFactory spatialRuleFactory, Envelope maxBBox, int gridCellsPerDegree) {
+        if (gridCellsPerDegree < 0)
+            throw new IllegalArgumentException("gridCellsPerDegree cannot be negative but was " + gridCellsPerDegree);
         Envelope envelope = new Envelope();
         List<SpatialRule> spatialRules = new ArrayList<>();
         Map<String, JsonFeature> featureMap = new HashMap<>();
@@ -73,7 +87,9 @@ public class SpatialRuleLookupBuilder {
         if (calculatedBounds.isNull())
             return SpatialRuleLookup.EMPTY;
 
-        SpatialRuleLookup spatialRuleLookup = new SpatialRuleLookupJTS(spatialRules, calculatedBounds);
+        SpatialRuleLookup spatialRuleLookup = gridCellsPerDegree > 0
+                ? new SpatialRuleLookupGrid(spatialRules, calculatedBounds, gridCellsPerDegree)
+                : new SpatialRuleLookupJTS(spatialRules, calculatedBounds);
         logger.info("Created the SpatialRuleLookup with the following rules: {}", Arrays.toString(spatialRules.toArray()));
         return spatialRuleLookup;
     }
@@ -0,0 +1,164 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util.spatialrules;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.*;
+
+/**
+ * A SpatialRuleLookup that precomputes the applicable rules for a raster over the bounds. Cells that are completely
+ * inside or outside of every border are answered with a single array lookup. Only for cells that are crossed by a
+ * border the lookup falls back to the exact point in polygon tests of {@link SpatialRuleLookupJTS}.
+ */
+public class SpatialRuleLookupGrid implements SpatialRuleLookup {
+    private static final GeometryFactory FAC = new GeometryFactory();
+    private static final PreparedGeometryFactory PREP_GEOM_FACTORY = new PreparedGeometryFactory();
+    private static final short BORDER = -1;
+
+    private final SpatialRuleLookupJTS fallback;
+    private final Envelope bounds;
+    private final double cellsPerDegree;
+    private final int columns, rows;
+    // the index into ruleSets or BORDER
+    private final short[] cells;
+    private final List<SpatialRuleSet> ruleSets = new ArrayList<>();
+    private final Map<List<SpatialRule>, Short> ruleSetIndex = new HashMap<>();
+    private final STRtree borderIndex = new STRtree();
+
+    /**
+     * @param cellsPerDegree the resolution of the raster, a finer raster means less cells that contain a border
+     */
+    public SpatialRuleLookupGrid(List<SpatialRule> spatialRules, Envelope maxBounds, int cellsPerDegree) {
+        if (cellsPerDegree < 1)
+            throw new IllegalArgumentException("cellsPerDegree must be positive but was " + cellsPerDegree);
+        this.fallback = new SpatialRuleLookupJTS(spatialRules, maxBounds);
+        this.bounds = maxBounds;
+        this.cellsPerDegree = cellsPerDegree;
+        this.columns = Math.max(1, (int) Math.ceil(maxBounds.getWidth() * cellsPerDegree));
+        this.rows = Math.max(1, (int) Math.ceil(maxBounds.getHeight() * cellsPerDegree));
+        if ((long) columns * rows > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many cells for bounds " + maxBounds + " and " + cellsPerDegree + " cells per degree");
+        this.cells = new short[columns * rows];
+
+        Set<Polygon> borders = new HashSet<>();
+        for (SpatialRule rule : fallback.getRules()) {
+            for (Polygon border : rule.getBorders()) {
+                if (maxBounds.intersects(border.getEnvelopeInternal()) && borders.add(border))
+                    borderIndex.insert(border.getEnvelopeInternal(), PREP_GEOM_FACTORY.create(border));
+            }
+        }
+        borderIndex.build();
+        fill(0, 0, columns, rows);
+    }
+
+    /**
+     * Classifies the cells in [x0, x1) x [y0, y1) at once if no border crosses them and otherwise splits them
+     * into four parts, so that the exact tests are only done along the borders.
+     */
+    private void fill(int x0, int y0, int x1, int y1) {
+        Envelope envelope = new Envelope(bounds.getMinX() + x0 / cellsPerDegree, bounds.getMinX() + x1 / cellsPerDegree,
+                bounds.getMinY() + y0 / cellsPerDegree, bounds.getMinY() + y1 / cellsPerDegree);
+        short value;
+        if (isCrossedByBorder(envelope)) {
+            if (x1 - x0 > 1 || y1 - y0 > 1) {
+                int xMid = (x0 + x1 + 1) / 2, yMid = (y0 + y1 + 1) / 2;
+                fill(x0, y0, xMid, yMid);
+                if (xMid < x1)
+                    fill(xMid, y0, x1, yMid);
+                if (yMid < y1) {
+                    fill(x0, yMid, xMid, y1);
+                    if (xMid < x1)
+                        fill(xMid, yMid, x1, y1);
+                }
+                return;
+            }
+            value = BORDER;
+        } else {
+            value = getRuleSetIndex(fallback.lookupRules(envelope.centre().y, envelope.centre().x));
+        }
+
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(cells, y * columns + x0, y * columns + x1, value);
+        }
+    }
+
+    private boolean isCrossedByBorder(Envelope envelope) {
+        Geometry cell = FAC.toGeometry(envelope);
+        @SuppressWarnings("unchecked")
+        List<PreparedGeometry> candidates = borderIndex.query(envelope);
+        for (PreparedGeometry border : candidates) {
+            if (!border.containsProperly(cell) && border.intersects(cell))
+                return true;
+        }
+        return false;
+    }
+
+    private short getRuleSetIndex(SpatialRuleSet ruleSet) {
+        Short index = ruleSetIndex.get(ruleSet.getRules());
+        if (index == null) {
+            if (ruleSets.size() >= Short.MAX_VALUE)
+                throw new IllegalStateException("Too many different rule combinations " + ruleSets.size());
+            index = (short) ruleSets.size();
+            ruleSets.add(ruleSet);
+            ruleSetIndex.put(ruleSet.getRules(), index);
+        }
+        return index;
+    }
+
+    @Override
+    public SpatialRuleSet lookupRules(double lat, double lon) {
+        if (!bounds.covers(lon, lat))
+            return SpatialRuleSet.EMPTY;
+
+        int x = Math.min(columns - 1, (int) ((lon - bounds.getMinX()) * cellsPerDegree));
+        int y = Math.min(rows - 1, (int) ((lat - bounds.getMinY()) * cellsPerDegree));
+        short value = cells[y * columns + x];
+        if (value == BORDER)
+            return fallback.lookupRules(lat, lon);
+        return ruleSets.get(value);
+    }
+
+    /**
+     * @return the share of cells that need the exact point in polygon test
+     */
+    public double getBorderCellRatio() {
+        int count = 0;
+        for (short value : cells) {
+            if (value == BORDER)
+                count++;
+        }
+        return (double) count / cells.length;
+    }
+
+    @Override
+    public List<SpatialRule> getRules() {
+        return fallback.getRules();
+    }
+
+    @Override
+    public Envelope getBounds() {
+        return bounds;
+    }
+}
@@ -71,13 +71,22 @@ public class SpatialRuleLookupHelper {
     }
 
     public static void buildAndInjectCountrySpatialRules(GraphHopper graphHopper, Envelope maxBounds, List<JsonFeatureCollection> jsonFeatureCollections) {
+        buildAndInjectCountrySpatialRules(graphHopper, maxBounds, jsonFeatureCollections, 0);
+    }
+
+    /**
+     * @param gridCellsPerDegree if positive the rules are looked up in a grid with this resolution, see
+     *                           {@link SpatialRuleLookupGrid}
+     */
+    public static void buildAndInjectCountrySpatialRules(GraphHopper graphHopper, Envelope maxBounds, List<JsonFeatureCollection> jsonFeatureCollections,
+                                                         int gridCellsPerDegree) {
         List<String> subset = new ArrayList<>();
         for (Country c : Country.values()) {
             if (c != Country.DEFAULT)
                 subset.add(c.toString());
         }
         final SpatialRuleLookup index = SpatialRuleLookupBuilder.buildIndex(reorder(jsonFeatureCollections, subset),
-                JSON_ID_FIELD, new CountriesSpatialRuleFactory(), maxBounds);
+                JSON_ID_FIELD, new CountriesSpatialRuleFactory(), maxBounds, gridCellsPerDegree);
         logger.info("Set spatial rule lookup with {} rules", index.getRules().size());
         final TagParserFactory oldTPF = graphHopper.getTagParserFactory();
         graphHopper.setTagParserFactory(new TagParserFactory() {
@@ -34,6 +34,7 @@ public class StringIndex implements Storable<StringIndex> {
     static final int MAX_UNIQUE_KEYS = (1 << 15);
     // Store string value as byte array and store the length into 1 byte
     private static final int MAX_LENGTH = (1 << 8) - 1;
+    private static final int DEFAULT_VALUE_CACHE_SIZE = 1 << 14;
     boolean throwExceptionIfTooLong = false;
     private final DataAccess keys;
     // storage layout per entry:
@@ -50,6 +51,8 @@ public class StringIndex implements Storable<StringIndex> {
     private long bytePointer = START_POINTER;
     private long lastEntryPointer = -1;
     private Map<String, String> lastEntryMap;
+    // street names repeat heavily and are requested for every edge of a route, so avoid decoding them again and again
+    private StringValueCache valueCache = new StringValueCache(DEFAULT_VALUE_CACHE_SIZE);
 
     public StringIndex(Directory dir) {
         this(dir, 1000);
@@ -107,6 +110,24 @@ public class StringIndex implements Storable<StringIndex> {
         return false;
     }
 
+    /**
+     * Specifies how many decoded values are kept in memory to speed up get and getAll. Use 0 to disable the cache.
+     */
+    public StringIndex setValueCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Value cache size cannot be negative: " + size);
+        valueCache = size == 0 ? null : new StringValueCache(size);
+        return this;
+    }
+
+    public long getValueCacheHits() {
+        return valueCache == null ? 0 : valueCache.getHits();
+    }
+
+    public long getValueCacheMisses() {
+        return valueCache == null ? 0 : valueCache.getMisses();
+    }
+
     Set<String> getKeys() {
         return keysInMem.keySet();
     }
@@ -228,18 +249,27 @@ public class StringIndex implements Storable<StringIndex> {
 
     private int putIntoMap(Map<String, String> map, long tmpPointer, int currentKeyIndex) {
         int valueLength = vals.getByte(tmpPointer) & 0xFF;
-        tmpPointer++;
-        String valueStr;
-        if (valueLength == 0) {
-            valueStr = "";
-        } else {
-            byte[] valueBytes = new byte[valueLength];
-            vals.getBytes(tmpPointer, valueBytes, valueBytes.length);
-            valueStr = new String(valueBytes, Helper.UTF_CS);
+        map.put(keyList.get(currentKeyIndex), valueLength == 0 ? "" : readValue(tmpPointer, valueLength));
+        return valueLength;
+    }
+
+    /**
+     * @param valuePointer points to the length byte of a non-empty value
+     */
+    private String readValue(long valuePointer, int valueLength) {
+        StringValueCache cache = valueCache;
+        if (cache != null) {
+            String value = cache.get(valuePointer);
+            if (value != null)
+                return value;
         }
 
-        map.put(keyList.get(currentKeyIndex), valueStr);
-        return valueLength;
+        byte[] valueBytes = new byte[valueLength];
+        vals.getBytes(valuePointer + 1, valueBytes, valueBytes.length);
+        String value = new String(valueBytes, Helper.UTF_CS);
+        if (cache != null)
+            cache.put(valuePointer, value);
+        return value;
     }
 
     public String get(final long entryPointer, String key) {
@@ -276,13 +306,15 @@ public class StringIndex implements Storable<StringIndex> {
                 if (valueLength == 0)
                     return "";
 
-                tmpPointer++;
-                byte[] valueBytes = new byte[valueLength];
-                vals.getBytes(tmpPointer, valueBytes, valueBytes.length);
-                return new String(valueBytes, Helper.UTF_CS);
+                return readValue(tmpPointer, valueLength);
+            }
+            if (currentKeyIndex < 0) {
+                // skip the delta of the duplicate marker
+                tmpPointer += 4;
+            } else {
+                int valueLength = vals.getByte(tmpPointer) & 0xFF;
+                tmpPointer += 1 + valueLength;
             }
-            int valueLength = vals.getByte(tmpPointer) & 0xFF;
-            tmpPointer += 1 + valueLength;
         }
 
         // value for specified key does not existing for the specified pointer
@@ -346,5 +378,7 @@ public class StringIndex implements Storable<StringIndex> {
     public void copyTo(StringIndex stringIndex) {
         keys.copyTo(stringIndex.keys);
         vals.copyTo(stringIndex.vals);
+        if (stringIndex.valueCache != null)
+            stringIndex.valueCache.clear();
     }
 }
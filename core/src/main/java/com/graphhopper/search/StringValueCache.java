@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.search;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the decoded values of a StringIndex keyed by the pointer of the stored value bytes. Entries whose value is
+ * stored as duplicate marker point to the same value bytes and so share the same String instance. Note that this is
+ * no dictionary: StringIndex only detects duplicates among the values it added recently and stores values of up to 3
+ * bytes always again, so equal values at different pointers are decoded and cached separately.
+ * <p>
+ * The cache is direct mapped: every pointer has exactly one slot and a newer value simply replaces the older one.
+ * This keeps the memory bounded and lookups lock free, which makes it safe for concurrent use.
+ */
+class StringValueCache {
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param size the maximum number of cached values, rounded up to the next power of two
+     */
+    StringValueCache(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be positive but was " + size);
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size)
+            capacity <<= 1;
+        entries = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the value stored at the specified pointer or null if it is not cached
+     */
+    String get(long pointer) {
+        Entry entry = entries.get(slot(pointer));
+        if (entry != null && entry.pointer == pointer) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(long pointer, String value) {
+        entries.set(slot(pointer), new Entry(pointer, value));
+    }
+
+    void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    private int slot(long pointer) {
+        // pointers of neighbouring values differ only by a few bytes, so spread them over all slots
+        long h = pointer * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    int getCapacity() {
+        return entries.length();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits(), m = getMisses();
+        return "capacity: " + getCapacity() + ", hits: " + h + ", misses: " + m
+                + ", hit rate: " + (h + m == 0 ? 0 : Math.round(1000d * h / (h + m)) / 10d) + "%";
+    }
+
+    private static class Entry {
+        final long pointer;
+        final String value;
+
+        Entry(long pointer, String value) {
+            this.pointer = pointer;
+            this.value = value;
+        }
+    }
+}
@@ -92,6 +92,11 @@ class BaseGraph implements Graph {
     private int nodeCount;
     private int edgeEntryIndex, nodeEntryIndex;
     private long maxGeoRef;
+    // if true the pillar nodes are stored as zigzag varint deltas instead of fixed-width ints
+    private boolean compressedGeometry = false;
+    // the graph is read by many threads at the same time, so every thread decodes the compressed pillar nodes into
+    // its own buffers
+    private final ThreadLocal<GeometryBuffers> geometryBuffers = ThreadLocal.withInitial(GeometryBuffers::new);
     private boolean frozen = false;
 
     public BaseGraph(Directory dir, final EncodingManager encodingManager, boolean withElevation,
@@ -220,15 +225,31 @@ class BaseGraph implements Graph {
 
     protected int loadWayGeometryHeader() {
         maxGeoRef = bitUtil.combineIntsToLong(wayGeometry.getHeader(0), wayGeometry.getHeader(4));
+        // the stored graph decides about the encoding, not the configuration
+        compressedGeometry = wayGeometry.getHeader(2 * 4) == 1;
         return 1;
     }
 
     protected int setWayGeometryHeader() {
         wayGeometry.setHeader(0, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(4, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(2 * 4, compressedGeometry ? 1 : 0);
         return 1;
     }
 
+    /**
+     * Stores the pillar nodes of new graphs as deltas to the previous point, which needs considerably less space
+     * than the default encoding with fixed-width ints. This has no effect for graphs that are loaded from disc.
+     */
+    void setCompressedGeometry(boolean compressedGeometry) {
+        checkNotInitialized();
+        this.compressedGeometry = compressedGeometry;
+    }
+
+    boolean isCompressedGeometry() {
+        return compressedGeometry;
+    }
+
     void initStorage() {
         edgeEntryIndex = 0;
         nodeEntryIndex = 0;
@@ -476,26 +497,39 @@ class BaseGraph implements Graph {
         return maxGeoRef;
     }
 
-    void loadExisting(String dim) {
-        if (!nodes.loadExisting())
-            throw new IllegalStateException("Cannot load nodes. corrupt file or directory? " + dir);
-
+    /**
+     * Submits the loading of all storages of this graph to the specified loader. Call {@link #loadHeaders()} after
+     * the loader finished.
+     */
+    void loadExisting(String dim, StorableLoader loader) {
         if (!dim.equalsIgnoreCase("" + nodeAccess.getDimension()))
             throw new IllegalStateException("Configured dimension (" + nodeAccess.getDimension() + ") is not equal "
                     + "to dimension of loaded graph (" + dim + ")");
 
-        if (!edges.loadExisting())
-            throw new IllegalStateException("Cannot load edges. corrupt file or directory? " + dir);
-
-        if (!wayGeometry.loadExisting())
-            throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
-
-        if (!stringIndex.loadExisting())
-            throw new IllegalStateException("Cannot load name index. corrupt file or directory? " + dir);
-
-        if (supportsTurnCosts() && !turnCostStorage.loadExisting())
-            throw new IllegalStateException("Cannot load turn cost storage. corrupt file or directory? " + dir);
+        loader.submit(() -> {
+            if (!nodes.loadExisting())
+                throw new IllegalStateException("Cannot load nodes. corrupt file or directory? " + dir);
+        });
+        loader.submit(() -> {
+            if (!edges.loadExisting())
+                throw new IllegalStateException("Cannot load edges. corrupt file or directory? " + dir);
+        });
+        loader.submit(() -> {
+            if (!wayGeometry.loadExisting())
+                throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
+        });
+        loader.submit(() -> {
+            if (!stringIndex.loadExisting())
+                throw new IllegalStateException("Cannot load name index. corrupt file or directory? " + dir);
+        });
+        if (supportsTurnCosts())
+            loader.submit(() -> {
+                if (!turnCostStorage.loadExisting())
+                    throw new IllegalStateException("Cannot load turn cost storage. corrupt file or directory? " + dir);
+            });
+    }
 
+    void loadHeaders() {
         // first define header indices of this storage
         initStorage();
 
@@ -697,6 +731,10 @@ class BaseGraph implements Graph {
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
             long existingGeoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+            if (compressedGeometry) {
+                setCompressedWayGeometry(pillarNodes, edgePointer, reverse, existingGeoRef);
+                return;
+            }
 
             int len = pillarNodes.getSize();
             int dim = nodeAccess.getDimension();
@@ -726,6 +764,103 @@ class BaseGraph implements Graph {
         edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
     }
 
+    private void setCompressedWayGeometry(PointList pillarNodes, long edgePointer, boolean reverse, long existingGeoRef) {
+        byte[] wayGeometryBytes = createCompressedWayGeometryBytes(pillarNodes, reverse);
+        long geoRef = -1;
+        if (existingGeoRef > 0) {
+            long pos = existingGeoRef * 4L;
+            int count = getVarInt(wayGeometry, pos);
+            pos += getVarIntLength(count);
+            int dataLength = getVarInt(wayGeometry, pos);
+            if (wayGeometryBytes.length <= getVarIntLength(count) + getVarIntLength(dataLength) + dataLength)
+                geoRef = existingGeoRef;
+        }
+        if (geoRef < 0)
+            // the geo ref counts ints, so round up to the next int
+            geoRef = nextGeoRef((wayGeometryBytes.length + 3) / 4 - 1);
+
+        long geoRefPosition = geoRef * 4;
+        ensureGeometry(geoRefPosition, wayGeometryBytes.length);
+        wayGeometry.setBytes(geoRefPosition, wayGeometryBytes, wayGeometryBytes.length);
+        edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
+    }
+
+    /**
+     * Creates the compressed form of the pillar nodes: the number of points and the number of the following bytes
+     * as varints and then for every point the zigzag encoded varint delta of lat, lon (and ele) to the previous point.
+     */
+    private byte[] createCompressedWayGeometryBytes(PointList pillarNodes, boolean reverse) {
+        int len = pillarNodes.getSize();
+        int dim = nodeAccess.getDimension();
+        if (reverse)
+            pillarNodes.reverse();
+
+        // a varint of an int needs at most 5 bytes
+        byte[] data = new byte[len * dim * 5];
+        int dataLength = 0;
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        boolean is3D = nodeAccess.is3D();
+        for (int i = 0; i < len; i++) {
+            int lat = Helper.degreeToInt(pillarNodes.getLatitude(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLongitude(i));
+            // overflows of the deltas are fine as the decoding overflows in the same way
+            dataLength = setVarInt(data, dataLength, zigzag(lat - prevLat));
+            dataLength = setVarInt(data, dataLength, zigzag(lon - prevLon));
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = Helper.eleToInt(pillarNodes.getElevation(i));
+                dataLength = setVarInt(data, dataLength, zigzag(ele - prevEle));
+                prevEle = ele;
+            }
+        }
+
+        byte[] bytes = new byte[getVarIntLength(len) + getVarIntLength(dataLength) + dataLength];
+        int offset = setVarInt(bytes, 0, len);
+        offset = setVarInt(bytes, offset, dataLength);
+        System.arraycopy(data, 0, bytes, offset, dataLength);
+        return bytes;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the offset after the written varint
+     */
+    private static int setVarInt(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int getVarInt(DataAccess da, long bytePos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = da.getByte(bytePos++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static int getVarIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
     private byte[] createWayGeometryBytes(PointList pillarNodes, boolean reverse) {
         int len = pillarNodes.getSize();
         int dim = nodeAccess.getDimension();
@@ -762,47 +897,133 @@ class BaseGraph implements Graph {
         }
         long geoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
         int count = 0;
-        byte[] bytes = null;
-        if (geoRef > 0) {
-            geoRef *= 4L;
-            count = wayGeometry.getInt(geoRef);
-
-            geoRef += 4L;
-            bytes = new byte[count * nodeAccess.getDimension() * 4];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        } else if (mode == FetchMode.PILLAR_ONLY)
+        if (geoRef > 0)
+            count = compressedGeometry ? getVarInt(wayGeometry, geoRef * 4L) : wayGeometry.getInt(geoRef * 4L);
+        if (count == 0 && mode == FetchMode.PILLAR_ONLY)
             return PointList.EMPTY;
 
         PointList pillarNodes = new PointList(getPointListLength(count, mode), nodeAccess.is3D());
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-                pillarNodes.add(nodeAccess, adjNode);
-        } else if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
+        fetchWayGeometry_(edgePointer, reverse, mode, baseNode, adjNode, pillarNodes);
+        return pillarNodes;
+    }
+
+    /**
+     * Same as fetchWayGeometry_ but appends the points to the specified list instead of creating a new one. The
+     * pillar nodes are read directly from the DataAccess, so no temporary arrays are needed.
+     */
+    private void fetchWayGeometry_(long edgePointer, boolean reverse, FetchMode mode, int baseNode, int adjNode, PointList pillarNodes) {
+        if (mode == FetchMode.TOWER_ONLY) {
+            pillarNodes.add(nodeAccess, baseNode);
+            pillarNodes.add(nodeAccess, adjNode);
+            return;
+        }
+        long geoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+        if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
             pillarNodes.add(nodeAccess, baseNode);
 
-        int index = 0;
+        if (geoRef > 0) {
+            if (compressedGeometry)
+                addCompressedPillarNodes(geoRef * 4L, reverse, pillarNodes);
+            else
+                addPillarNodes(geoRef * 4L, reverse, pillarNodes);
+        }
+
+        if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
+            pillarNodes.add(nodeAccess, adjNode);
+    }
+
+    private void addPillarNodes(long geoRefPosition, boolean reverse, PointList pillarNodes) {
+        int count = wayGeometry.getInt(geoRefPosition);
+        long geoRef = geoRefPosition + 4L;
+
+        // the pillar nodes are stored in the direction of the edge, so read them backwards if reverse
+        int dim = nodeAccess.getDimension();
         for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
-                index += 4;
-            } else {
+            long pointer = geoRef + 4L * dim * (reverse ? count - 1 - i : i);
+            double lat = Helper.intToDegree(wayGeometry.getInt(pointer));
+            double lon = Helper.intToDegree(wayGeometry.getInt(pointer + 4));
+            if (nodeAccess.is3D())
+                pillarNodes.add(lat, lon, Helper.intToEle(wayGeometry.getInt(pointer + 8)));
+            else
                 pillarNodes.add(lat, lon);
+        }
+    }
+
+    private void addCompressedPillarNodes(long geoRefPosition, boolean reverse, PointList pillarNodes) {
+        int count = getVarInt(wayGeometry, geoRefPosition);
+        geoRefPosition += getVarIntLength(count);
+        int dataLength = getVarInt(wayGeometry, geoRefPosition);
+        geoRefPosition += getVarIntLength(dataLength);
+        GeometryBuffers buffers = geometryBuffers.get();
+        buffers.read(wayGeometry, geoRefPosition, dataLength);
+
+        boolean is3D = nodeAccess.is3D();
+        if (!reverse) {
+            int lat = 0, lon = 0, ele = 0;
+            for (int i = 0; i < count; i++) {
+                lat += buffers.nextDelta();
+                lon += buffers.nextDelta();
+                if (is3D) {
+                    ele += buffers.nextDelta();
+                    pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+                } else {
+                    pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+                }
             }
+            return;
         }
 
-        if (reverse) {
-            if (mode == FetchMode.ALL || mode == FetchMode.BASE_AND_PILLAR)
-                pillarNodes.add(nodeAccess, baseNode);
+        // the varints can only be read forward, so decode all values before adding them backwards
+        int dim = nodeAccess.getDimension();
+        int[] values = buffers.values(count * dim);
+        for (int i = 0; i < count * dim; i++) {
+            values[i] = buffers.nextDelta() + (i < dim ? 0 : values[i - dim]);
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            int index = dim * i;
+            double lat = Helper.intToDegree(values[index]);
+            double lon = Helper.intToDegree(values[index + 1]);
+            if (is3D)
+                pillarNodes.add(lat, lon, Helper.intToEle(values[index + 2]));
+            else
+                pillarNodes.add(lat, lon);
+        }
+    }
 
-            pillarNodes.reverse();
-        } else if (mode == FetchMode.ALL || mode == FetchMode.PILLAR_AND_ADJ)
-            pillarNodes.add(nodeAccess, adjNode);
+    /**
+     * The buffers of one thread to decode compressed pillar nodes. They only grow, so decoding the geometry of an edge
+     * usually allocates nothing.
+     */
+    private static class GeometryBuffers {
+        private byte[] data = new byte[64];
+        private int offset;
+        private int[] values = new int[48];
 
-        return pillarNodes;
+        void read(DataAccess da, long bytePos, int length) {
+            if (data.length < length)
+                data = new byte[Math.max(length, data.length * 2)];
+            da.getBytes(bytePos, data, length);
+            offset = 0;
+        }
+
+        /**
+         * @return the next zigzag varint of the data read before
+         */
+        int nextDelta() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return unzigzag(value);
+            }
+        }
+
+        int[] values(int length) {
+            if (values.length < length)
+                values = new int[Math.max(length, values.length * 2)];
+            return values;
+        }
     }
 
     static int getPointListLength(int pillarNodes, FetchMode mode) {
@@ -1154,6 +1375,11 @@ class BaseGraph implements Graph {
             return baseGraph.fetchWayGeometry_(edgePointer, reverse, mode, getBaseNode(), getAdjNode());
         }
 
+        @Override
+        public void fetchWayGeometry(FetchMode mode, PointList pointList) {
+            baseGraph.fetchWayGeometry_(edgePointer, reverse, mode, getBaseNode(), getAdjNode(), pointList);
+        }
+
         @Override
         public int getEdge() {
             return edgeId;
@@ -789,6 +789,12 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph> {
             return edgeIterable.fetchWayGeometry(mode);
         }
 
+        @Override
+        public final void fetchWayGeometry(FetchMode mode, PointList pointList) {
+            checkShortcut(false, "fetchWayGeometry");
+            edgeIterable.fetchWayGeometry(mode, pointList);
+        }
+
         @Override
         public final EdgeIteratorState setWayGeometry(PointList list) {
             checkShortcut(false, "setWayGeometry");
@@ -52,6 +52,17 @@ public interface Directory {
      */
     void remove(DataAccess da);
 
+    /**
+     * Releases the resources of the specified object but keeps its backing file. A later call of find creates a
+     * new object for the same name which can be loaded again.
+     * <p>
+     * The default implementation only closes the object. Implementations that keep their objects by name should
+     * override it and forget the object as well, so that find does not return the closed one.
+     */
+    default void close(DataAccess da) {
+        da.close();
+    }
+
     /**
      * @return the default type of a newly created DataAccess object
      */
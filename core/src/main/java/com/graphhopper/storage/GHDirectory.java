@@ -36,6 +36,8 @@ public class GHDirectory implements Directory {
     private final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
     protected Map<String, DataAccess> map = new HashMap<>();
     protected Map<String, DAType> types = new HashMap<>();
+    // closed objects whose backing files still exist, required to remove them in clear
+    private final Map<String, DataAccess> closed = new HashMap<>();
 
     public GHDirectory(String _location, DAType defaultType) {
         this.defaultType = defaultType;
@@ -102,6 +104,7 @@ public class GHDirectory implements Directory {
             throw new IllegalArgumentException("DAType not supported " + type);
         }
 
+        closed.remove(name);
         map.put(name, da);
         return da;
     }
@@ -121,6 +124,10 @@ public class GHDirectory implements Directory {
             removeBackingFile(da, da.getName());
         }
         map.clear();
+        for (DataAccess da : closed.values()) {
+            removeBackingFile(da, da.getName());
+        }
+        closed.clear();
     }
 
     @Override
@@ -133,6 +140,16 @@ public class GHDirectory implements Directory {
         removeBackingFile(da, da.getName());
     }
 
+    @Override
+    public void close(DataAccess da) {
+        DataAccess old = map.remove(da.getName());
+        if (old == null)
+            throw new IllegalStateException("Couldn't close DataAccess: " + da.getName());
+
+        da.close();
+        closed.put(da.getName(), da);
+    }
+
     private void removeBackingFile(DataAccess da, String name) {
         if (da.getType().isStoring())
             removeDir(new File(location + name));
@@ -41,6 +41,7 @@ public class GraphBuilder {
     private boolean turnCosts;
     private long bytes = 100;
     private int segmentSize = -1;
+    private boolean compressedGeometry;
     private List<String> chConfigStrings = new ArrayList<>();
     private List<CHConfig> chConfigs = new ArrayList<>();
 
@@ -117,6 +118,11 @@ public class GraphBuilder {
         return this;
     }
 
+    public GraphBuilder setCompressedGeometry(boolean compressedGeometry) {
+        this.compressedGeometry = compressedGeometry;
+        return this;
+    }
+
     /**
      * Default graph is a {@link GraphHopperStorage} with an in memory directory and disabled storing on flush.
      * Afterwards you'll need to call {@link GraphHopperStorage#create} to have a usable object. Better use
@@ -124,6 +130,7 @@ public class GraphBuilder {
      */
     public GraphHopperStorage build() {
         GraphHopperStorage ghStorage = new GraphHopperStorage(dir, encodingManager, elevation, turnCosts, segmentSize);
+        ghStorage.setCompressedGeometry(compressedGeometry);
         addCHProfilesFromStrings(ghStorage.getTurnCostStorage());
         ghStorage.addCHGraphs(chConfigs);
         return ghStorage;
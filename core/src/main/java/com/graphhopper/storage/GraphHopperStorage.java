@@ -48,6 +48,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
     // same flush order etc
     private final Collection<CHGraphImpl> chGraphs;
     private final int segmentSize;
+    private int loadThreads = 1;
 
     public GraphHopperStorage(Directory dir, EncodingManager encodingManager, boolean withElevation) {
         this(dir, encodingManager, withElevation, false);
@@ -84,6 +85,29 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         chGraphs = new ArrayList<>();
     }
 
+    /**
+     * Sets the number of threads used to read the graph and CH storages in {@link #loadExisting()}. Default is 1.
+     */
+    public GraphHopperStorage setLoadThreads(int loadThreads) {
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("loadThreads must be positive but was " + loadThreads);
+        this.loadThreads = loadThreads;
+        return this;
+    }
+
+    /**
+     * Stores the pillar nodes as zigzag varint deltas which needs considerably less space than the default encoding.
+     * Must be called before {@link #create(long)}, a graph loaded from disc always uses the encoding it was created with.
+     */
+    public GraphHopperStorage setCompressedGeometry(boolean compressedGeometry) {
+        baseGraph.setCompressedGeometry(compressedGeometry);
+        return this;
+    }
+
+    public boolean isCompressedGeometry() {
+        return baseGraph.isCompressedGeometry();
+    }
+
     /**
      * Adds a {@link CHGraph} for the given {@link CHConfig}. You need to call this method before calling {@link #create(long)}
      * or {@link #loadExisting()}.
@@ -251,15 +275,18 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
                 throw new IllegalStateException("Configured graph.byte_order (" + dir.getByteOrder() + ") is not equal to loaded " + byteOrder + "");
 
             String dim = properties.get("graph.dimension");
-            baseGraph.loadExisting(dim);
-
             checkIfConfiguredAndLoadedWeightingsCompatible();
 
+            StorableLoader loader = new StorableLoader(loadThreads);
+            baseGraph.loadExisting(dim, loader);
             for (CHGraphImpl cg : chGraphs) {
-                if (!cg.loadExisting())
-                    throw new IllegalStateException("Cannot load " + cg);
+                loader.submit(() -> {
+                    if (!cg.loadExisting())
+                        throw new IllegalStateException("Cannot load " + cg);
+                });
             }
-
+            loader.await();
+            baseGraph.loadHeaders();
             return true;
         }
         return false;
@@ -20,7 +20,9 @@ package com.graphhopper.storage;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -131,19 +133,21 @@ public class RAMDataAccess extends AbstractDataAccess {
                 if (byteCount < 0)
                     return false;
 
-                raFile.seek(HEADER_OFFSET);
-                // raFile.readInt() <- too slow                
+                // raFile.readInt() <- too slow, read whole segments through the channel instead
                 int segmentCount = (int) (byteCount / segmentSizeInBytes);
                 if (byteCount % segmentSizeInBytes != 0)
                     segmentCount++;
 
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
                 segments = new byte[segmentCount][];
                 for (int s = 0; s < segmentCount; s++) {
                     byte[] bytes = new byte[segmentSizeInBytes];
-                    int read = raFile.read(bytes);
+                    int read = readFully(channel, ByteBuffer.wrap(bytes), position);
                     if (read <= 0)
                         throw new IllegalStateException("segment " + s + " is empty? " + toString());
 
+                    position += read;
                     segments[s] = bytes;
                 }
                 return true;
@@ -155,6 +159,20 @@ public class RAMDataAccess extends AbstractDataAccess {
         }
     }
 
+    /**
+     * Reads from the specified position until the buffer is full or the end of the file is reached.
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + read);
+            if (count < 0)
+                break;
+            read += count;
+        }
+        return read;
+    }
+
     @Override
     public void flush() {
         if (closed)
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads independent storages from disc at the same time, e.g. the nodes, edges and geometry of the BaseGraph and
+ * the shortcuts of every CHGraph. Loading them one after another leaves fast disks mostly idle, which makes the
+ * startup slow especially for RAM_STORE and many profiles. With a single thread all storages are loaded directly in
+ * the calling thread.
+ */
+class StorableLoader {
+    private final ExecutorService executor;
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    StorableLoader(int threads) {
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    void submit(Runnable loadTask) {
+        if (executor == null)
+            loadTask.run();
+        else
+            futures.add(executor.submit(loadTask));
+    }
+
+    /**
+     * Waits until all submitted storages are loaded and rethrows the first failure.
+     */
+    void await() {
+        if (executor == null)
+            return;
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
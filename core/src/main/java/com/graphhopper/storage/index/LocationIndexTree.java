@@ -848,6 +848,7 @@ public class LocationIndexTree implements LocationIndex {
 
         void prepare() {
             final EdgeIterator allIter = graph.getAllEdges();
+            final PointList points = new PointList(10, nodeAccess.is3D());
             try {
                 while (allIter.next()) {
                     int nodeA = allIter.getBaseNode();
@@ -856,7 +857,8 @@ public class LocationIndexTree implements LocationIndex {
                     double lon1 = nodeAccess.getLongitude(nodeA);
                     double lat2;
                     double lon2;
-                    PointList points = allIter.fetchWayGeometry(FetchMode.PILLAR_ONLY);
+                    points.clear();
+                    allIter.fetchWayGeometry(FetchMode.PILLAR_ONLY, points);
                     int len = points.getSize();
                     for (int i = 0; i < len; i++) {
                         lat2 = points.getLatitude(i);
@@ -1022,6 +1024,8 @@ public class LocationIndexTree implements LocationIndex {
         double currLat;
         double currLon;
         int currNode;
+        // reused for every checked edge
+        private final PointList pointList = new PointList(10, nodeAccess.is3D());
 
         public XFirstSearchCheck(double queryLat, double queryLon, GHBitSet checkBitset, EdgeFilter edgeFilter) {
             this.queryLat = queryLat;
@@ -1070,7 +1074,8 @@ public class LocationIndexTree implements LocationIndex {
             double tmpLat = currLat;
             double tmpLon = currLon;
             double tmpNormedDist;
-            PointList pointList = currEdge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ);
+            pointList.clear();
+            currEdge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ, pointList);
             int len = pointList.getSize();
             for (int pointIndex = 0; pointIndex < len; pointIndex++) {
                 double wayLat = pointList.getLatitude(pointIndex);
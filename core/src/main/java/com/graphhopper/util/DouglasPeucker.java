@@ -17,6 +17,8 @@
  */
 package com.graphhopper.util;
 
+import java.util.Arrays;
+
 /**
  * Simplifies a list of 2D points which are not too far away.
  * http://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm
@@ -28,6 +30,8 @@ package com.graphhopper.util;
  */
 public class DouglasPeucker {
     private double normedMaxDist;
+    // the squared maximum distance in degrees, used for the plane projection of the approximation
+    private double squaredMaxDistDegree;
     private double elevationMaxDistance;
     private double maxDistance;
     private DistanceCalc calc;
@@ -54,6 +58,8 @@ public class DouglasPeucker {
      */
     public DouglasPeucker setMaxDistance(double dist) {
         this.normedMaxDist = calc.calcNormalizedDist(dist);
+        double distDegree = Math.toDegrees(dist / DistanceCalcEarth.R);
+        this.squaredMaxDistDegree = distDegree * distDegree;
         this.maxDistance = dist;
         return this;
     }
@@ -93,75 +99,172 @@ public class DouglasPeucker {
      * @return The number of removed points
      */
     public int simplify(PointList points, int fromIndex, int lastIndex, boolean compress) {
+        return simplify(points, new int[]{fromIndex, lastIndex}, compress);
+    }
+
+    /**
+     * Simplifies the consecutive intervals [indices[0], indices[1]], [indices[1], indices[2]], ... of the
+     * <code>points</code> in one pass, i.e. the coordinates are read only once. All specified indices are kept.
+     *
+     * @param indices  sorted indices of the points that separate the intervals
+     * @param compress see {@link #simplify(PointList, int, int, boolean)}
+     * @return The number of removed points
+     */
+    public int simplify(PointList points, int[] indices, boolean compress) {
+        if (indices.length < 2)
+            return 0;
+
+        Coordinates coords = new Coordinates(points, indices[0], indices[indices.length - 1],
+                points.is3D() && elevationMaxDistance < Double.MAX_VALUE);
         int removed = 0;
-        int size = lastIndex - fromIndex;
-        if (approx) {
-            int delta = 500;
-            int segments = size / delta + 1;
-            int start = fromIndex;
-            for (int i = 0; i < segments; i++) {
-                // start of next is end of last segment, except for the last
-                removed += subSimplify(points, start, Math.min(lastIndex, start + delta));
-                start += delta;
+        for (int i = 1; i < indices.length; i++) {
+            int fromIndex = indices[i - 1], lastIndex = indices[i];
+            if (approx) {
+                int delta = 500;
+                int segments = (lastIndex - fromIndex) / delta + 1;
+                int start = fromIndex;
+                for (int s = 0; s < segments; s++) {
+                    // start of next is end of last segment, except for the last
+                    removed += subSimplify(coords, start, Math.min(lastIndex, start + delta));
+                    start += delta;
+                }
+            } else {
+                removed += subSimplify(coords, fromIndex, lastIndex);
             }
-        } else {
-            removed = subSimplify(points, fromIndex, lastIndex);
         }
 
-        if (removed > 0 && compress)
-            removeNaN(points);
-
+        if (removed > 0) {
+            for (int i = indices[0]; i <= indices[indices.length - 1]; i++) {
+                if (Double.isNaN(coords.lat(i)))
+                    points.set(i, Double.NaN, Double.NaN, Double.NaN);
+            }
+            if (compress)
+                removeNaN(points);
+        }
         return removed;
     }
 
-    // keep the points of fromIndex and lastIndex
-    int subSimplify(PointList points, int fromIndex, int lastIndex) {
-        if (lastIndex - fromIndex < 2) {
-            return 0;
+    // keep the points of fromIndex and lastIndex. Instead of recursing into the two parts of an interval they are
+    // pushed to a stack, which avoids deep call stacks for long paths
+    private int subSimplify(Coordinates coords, int fromIndex, int lastIndex) {
+        int counter = 0;
+        int[] stack = coords.stack;
+        int size = 0;
+        stack[size++] = fromIndex;
+        stack[size++] = lastIndex;
+        while (size > 0) {
+            lastIndex = stack[--size];
+            fromIndex = stack[--size];
+            if (lastIndex - fromIndex < 2)
+                continue;
+
+            int indexWithMaxDist = coords.hasEle
+                    ? findMaxDist3D(coords, fromIndex, lastIndex)
+                    : approx ? findMaxDistPlane(coords, fromIndex, lastIndex) : findMaxDist(coords, fromIndex, lastIndex);
+            if (indexWithMaxDist < 0) {
+                throw new IllegalStateException("maximum not found in [" + fromIndex + "," + lastIndex + "]");
+            }
+
+            if (coords.maxDist < (approx && !coords.hasEle ? squaredMaxDistDegree : normedMaxDist)) {
+                for (int i = fromIndex + 1; i < lastIndex; i++) {
+                    coords.setNaN(i);
+                    counter++;
+                }
+            } else {
+                if (size + 4 > stack.length)
+                    coords.stack = stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[size++] = fromIndex;
+                stack[size++] = indexWithMaxDist;
+                stack[size++] = indexWithMaxDist;
+                stack[size++] = lastIndex;
+            }
         }
+        return counter;
+    }
+
+    /**
+     * Same as DistancePlaneProjection.calcNormalizedEdgeDistance but with the shrink factor and the segment
+     * calculated only once per interval and with the squared distances in degree, which avoids the conversions.
+     */
+    private int findMaxDistPlane(Coordinates coords, int fromIndex, int lastIndex) {
         int indexWithMaxDist = -1;
         double maxDist = -1;
-        double elevationFactor = maxDistance / elevationMaxDistance;
-        double firstLat = points.getLatitude(fromIndex);
-        double firstLon = points.getLongitude(fromIndex);
-        double firstEle = points.getElevation(fromIndex);
-        double lastLat = points.getLatitude(lastIndex);
-        double lastLon = points.getLongitude(lastIndex);
-        double lastEle = points.getElevation(lastIndex);
-        for (int i = fromIndex + 1; i < lastIndex; i++) {
-            double lat = points.getLatitude(i);
-            if (Double.isNaN(lat)) {
+        double firstLat = coords.lat(fromIndex);
+        double lastLat = coords.lat(lastIndex);
+        double shrinkFactor = Math.cos(Math.toRadians((firstLat + lastLat) / 2));
+        double firstLon = coords.lon(fromIndex) * shrinkFactor;
+        double deltaLat = lastLat - firstLat;
+        double deltaLon = coords.lon(lastIndex) * shrinkFactor - firstLon;
+        double norm = deltaLat * deltaLat + deltaLon * deltaLon;
+        // for a closed ring use the distance to the first point
+        double invNorm = norm == 0 ? 0 : 1 / norm;
+        double[] lats = coords.lats, lons = coords.lons;
+        for (int i = fromIndex + 1 - coords.offset, last = lastIndex - coords.offset; i < last; i++) {
+            double lat = lats[i];
+            if (Double.isNaN(lat))
                 continue;
+
+            double rLat = lat - firstLat;
+            double rLon = lons[i] * shrinkFactor - firstLon;
+            double factor = (rLon * deltaLon + rLat * deltaLat) * invNorm;
+            double dLat = factor * deltaLat - rLat;
+            double dLon = factor * deltaLon - rLon;
+            double dist = dLat * dLat + dLon * dLon;
+            if (maxDist < dist) {
+                indexWithMaxDist = i + coords.offset;
+                maxDist = dist;
             }
-            double lon = points.getLongitude(i);
-            double ele = points.getElevation(i);
-            double dist = (points.is3D() && elevationMaxDistance < Double.MAX_VALUE && !Double.isNaN(firstEle) && !Double.isNaN(lastEle) && !Double.isNaN(ele))
-                    ? calc.calcNormalizedEdgeDistance3D(
-                            lat, lon, ele * elevationFactor,
-                            firstLat, firstLon, firstEle * elevationFactor,
-                            lastLat, lastLon, lastEle * elevationFactor)
-                    : calc.calcNormalizedEdgeDistance(lat, lon, firstLat, firstLon, lastLat, lastLon);
+        }
+        coords.maxDist = maxDist;
+        return indexWithMaxDist;
+    }
+
+    private int findMaxDist(Coordinates coords, int fromIndex, int lastIndex) {
+        int indexWithMaxDist = -1;
+        double maxDist = -1;
+        double firstLat = coords.lat(fromIndex), firstLon = coords.lon(fromIndex);
+        double lastLat = coords.lat(lastIndex), lastLon = coords.lon(lastIndex);
+        for (int i = fromIndex + 1; i < lastIndex; i++) {
+            double lat = coords.lat(i);
+            if (Double.isNaN(lat))
+                continue;
+
+            double dist = calc.calcNormalizedEdgeDistance(lat, coords.lon(i), firstLat, firstLon, lastLat, lastLon);
             if (maxDist < dist) {
                 indexWithMaxDist = i;
                 maxDist = dist;
             }
         }
+        coords.maxDist = maxDist;
+        return indexWithMaxDist;
+    }
 
-        if (indexWithMaxDist < 0) {
-            throw new IllegalStateException("maximum not found in [" + fromIndex + "," + lastIndex + "]");
-        }
+    private int findMaxDist3D(Coordinates coords, int fromIndex, int lastIndex) {
+        int indexWithMaxDist = -1;
+        double maxDist = -1;
+        double elevationFactor = maxDistance / elevationMaxDistance;
+        double firstLat = coords.lat(fromIndex), firstLon = coords.lon(fromIndex), firstEle = coords.ele(fromIndex);
+        double lastLat = coords.lat(lastIndex), lastLon = coords.lon(lastIndex), lastEle = coords.ele(lastIndex);
+        for (int i = fromIndex + 1; i < lastIndex; i++) {
+            double lat = coords.lat(i);
+            if (Double.isNaN(lat))
+                continue;
 
-        int counter = 0;
-        if (maxDist < normedMaxDist) {
-            for (int i = fromIndex + 1; i < lastIndex; i++) {
-                points.set(i, Double.NaN, Double.NaN, Double.NaN);
-                counter++;
+            double lon = coords.lon(i);
+            double ele = coords.ele(i);
+            double dist = (!Double.isNaN(firstEle) && !Double.isNaN(lastEle) && !Double.isNaN(ele))
+                    ? calc.calcNormalizedEdgeDistance3D(
+                    lat, lon, ele * elevationFactor,
+                    firstLat, firstLon, firstEle * elevationFactor,
+                    lastLat, lastLon, lastEle * elevationFactor)
+                    : calc.calcNormalizedEdgeDistance(lat, lon, firstLat, firstLon, lastLat, lastLon);
+            if (maxDist < dist) {
+                indexWithMaxDist = i;
+                maxDist = dist;
             }
-        } else {
-            counter = subSimplify(points, fromIndex, indexWithMaxDist);
-            counter += subSimplify(points, indexWithMaxDist, lastIndex);
         }
-        return counter;
+        coords.maxDist = maxDist;
+        return indexWithMaxDist;
     }
 
     /**
@@ -178,4 +281,48 @@ public class DouglasPeucker {
         pointList.trimToSize(curr);
     }
 
+    /**
+     * The coordinates of the simplified part of a PointList copied into primitive arrays, so that the inner loops
+     * neither do bounds checks of the PointList nor need to jump between the lat and lon arrays of every point.
+     */
+    private static class Coordinates {
+        final int offset;
+        final double[] lats;
+        final double[] lons;
+        final double[] eles;
+        final boolean hasEle;
+        int[] stack = new int[64];
+        double maxDist;
+
+        Coordinates(PointList points, int fromIndex, int lastIndex, boolean hasEle) {
+            this.offset = fromIndex;
+            this.hasEle = hasEle;
+            int size = lastIndex - fromIndex + 1;
+            lats = new double[size];
+            lons = new double[size];
+            eles = hasEle ? new double[size] : null;
+            for (int i = 0; i < size; i++) {
+                lats[i] = points.getLatitude(fromIndex + i);
+                lons[i] = points.getLongitude(fromIndex + i);
+                if (hasEle)
+                    eles[i] = points.getElevation(fromIndex + i);
+            }
+        }
+
+        double lat(int index) {
+            return lats[index - offset];
+        }
+
+        double lon(int index) {
+            return lons[index - offset];
+        }
+
+        double ele(int index) {
+            return eles[index - offset];
+        }
+
+        void setNaN(int index) {
+            lats[index - offset] = Double.NaN;
+        }
+    }
 }
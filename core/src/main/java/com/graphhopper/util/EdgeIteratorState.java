@@ -111,6 +111,15 @@ public interface EdgeIteratorState {
      */
     PointList fetchWayGeometry(FetchMode mode);
 
+    /**
+     * Same as {@link #fetchWayGeometry(FetchMode)} but appends the nodes to the specified list. This avoids creating a
+     * new list per edge when the geometry of many edges is collected, e.g. for the points of a path. Implementations
+     * should override this default, which still creates the list.
+     */
+    default void fetchWayGeometry(FetchMode mode, PointList pointList) {
+        pointList.add(fetchWayGeometry(mode));
+    }
+
     /**
      * @param list is a sorted collection of coordinates between the base node and the current adjacent node. Specify
      *             the list without the adjacent and base node. This method can be called multiple times, but if the
@@ -20,11 +20,28 @@ package com.graphhopper.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Calls {@link #doCalc(boolean, int)} a number of times and records the time of every call. Optionally the CPU time
+ * and the allocated bytes of the calling thread are recorded per call as well, see {@link #setMeasureResources(boolean)},
+ * and the calls can be distributed over several threads to measure the throughput, see {@link #setThreads(int)}.
+ *
  * @author Peter Karich
  */
 public abstract class MiniPerfTest {
@@ -35,37 +52,151 @@ public abstract class MiniPerfTest {
     
     protected Logger logger = LoggerFactory.getLogger(getClass());
     private int counts = 100;
+    private int threads = 1;
+    private boolean measureResources;
     private long fullTime = 0;
     private long max;
     private long min = Long.MAX_VALUE;
     private int dummySum;
+    // per call measurements, cpu times and allocated bytes stay null if they are not measured
+    private long[] times;
+    private long[] cpuTimes;
+    private long[] allocatedBytes;
 
     public MiniPerfTest start() {
         int warmupCount = Math.max(1, counts / 3);
         for (int i = 0; i < warmupCount; i++) {
             dummySum += doCalc(true, i);
         }
+        times = new long[counts];
+        ThreadMXBean threadBean = measureResources ? ManagementFactory.getThreadMXBean() : null;
+        cpuTimes = threadBean != null && threadBean.isCurrentThreadCpuTimeSupported() ? new long[counts] : null;
+        MethodHandle allocatedBytesHandle = measureResources ? getAllocatedBytesHandle(threadBean) : null;
+        allocatedBytes = allocatedBytesHandle != null ? new long[counts] : null;
         long startFull = System.nanoTime();
-        for (int i = 0; i < counts; i++) {
-            long start = System.nanoTime();
-            dummySum += doCalc(false, i);
-            long time = System.nanoTime() - start;
+        if (threads <= 1) {
+            for (int i = 0; i < counts; i++) {
+                dummySum += measure(i, threadBean, allocatedBytesHandle);
+            }
+        } else {
+            dummySum += measureConcurrently(threadBean, allocatedBytesHandle);
+        }
+        fullTime = System.nanoTime() - startFull;
+        for (long time : times) {
             if (time < min)
                 min = time;
 
             if (time > max)
                 max = time;
         }
-        fullTime = System.nanoTime() - startFull;
         logger.info("dummySum:" + dummySum);
         return this;
     }
 
+    private int measure(int run, ThreadMXBean threadBean, MethodHandle allocatedBytesHandle) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedStart = allocatedBytesHandle != null ? getAllocatedBytes(allocatedBytesHandle, threadBean, threadId) : 0;
+        long cpuStart = cpuTimes != null ? threadBean.getCurrentThreadCpuTime() : 0;
+        long start = System.nanoTime();
+        int result = doCalc(false, run);
+        times[run] = System.nanoTime() - start;
+        if (cpuTimes != null)
+            cpuTimes[run] = threadBean.getCurrentThreadCpuTime() - cpuStart;
+        if (allocatedBytesHandle != null)
+            allocatedBytes[run] = getAllocatedBytes(allocatedBytesHandle, threadBean, threadId) - allocatedStart;
+        return result;
+    }
+
+    private int measureConcurrently(ThreadMXBean threadBean, MethodHandle allocatedBytesHandle) {
+        AtomicInteger nextRun = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(executorService.submit(() -> {
+                    int sum = 0;
+                    for (int run = nextRun.getAndIncrement(); run < counts; run = nextRun.getAndIncrement()) {
+                        sum += measure(run, threadBean, allocatedBytesHandle);
+                    }
+                    return sum;
+                }));
+            }
+            int sum = 0;
+            for (Future<Integer> future : futures) {
+                sum += future.get();
+            }
+            return sum;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * The allocated bytes per thread are only available through the com.sun.management extension of the
+     * ThreadMXBean, which not every JVM has. So it is looked up reflectively and the returned handle, or null if it is
+     * not available, has the type (ThreadMXBean, long)long to be invoked without boxing.
+     */
+    private static MethodHandle getAllocatedBytesHandle(ThreadMXBean threadBean) {
+        try {
+            Class<?> allocationBeanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (!allocationBeanClass.isInstance(threadBean))
+                return null;
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle supported = lookup.findVirtual(allocationBeanClass, "isThreadAllocatedMemorySupported", MethodType.methodType(boolean.class));
+            MethodHandle enabled = lookup.findVirtual(allocationBeanClass, "isThreadAllocatedMemoryEnabled", MethodType.methodType(boolean.class));
+            if (!(boolean) supported.invoke(threadBean) || !(boolean) enabled.invoke(threadBean))
+                return null;
+            return lookup.findVirtual(allocationBeanClass, "getThreadAllocatedBytes", MethodType.methodType(long.class, long.class))
+                    .asType(MethodType.methodType(long.class, ThreadMXBean.class, long.class));
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    private static long getAllocatedBytes(MethodHandle allocatedBytesHandle, ThreadMXBean threadBean, long threadId) {
+        try {
+            return (long) allocatedBytesHandle.invokeExact(threadBean, threadId);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("Cannot read the allocated bytes of thread " + threadId, ex);
+        }
+    }
+
     public MiniPerfTest setIterations(int counts) {
         this.counts = counts;
         return this;
     }
 
+    /**
+     * Distributes the calls (not the warmup) over the specified number of threads. In this case doCalc has to be
+     * thread-safe and {@link #getThroughput()} shows how the calls scale with the number of threads. Note that
+     * {@link #getSum()} and {@link #getMean()} then refer to the wall time of all calls, i.e. the mean is the wall
+     * time per call and not the time a single call took, see {@link #getPercentile(double)} for that.
+     */
+    public MiniPerfTest setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1 but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Enables recording the CPU time and the allocated bytes of every call. This costs roughly a microsecond per call
+     * and should not be used for calls that are much faster than that.
+     */
+    public MiniPerfTest setMeasureResources(boolean measureResources) {
+        this.measureResources = measureResources;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     /**
      * @return minimum time of every call, in ms
      */
@@ -93,6 +224,85 @@ public abstract class MiniPerfTest {
     public double getMean() {
         return getSum() / counts;
     }
+
+    /**
+     * @param percentile the percentile between 0 and 100
+     * @return the time in ms which was not exceeded by the specified percentage of calls
+     */
+    public double getPercentile(double percentile) {
+        return percentile(times, percentile) / NS_PER_MS;
+    }
+
+    /**
+     * @return the number of calls per second over all threads
+     */
+    public double getThroughput() {
+        return counts * NS_PER_S / fullTime;
+    }
+
+    /**
+     * @return true if the CPU time of every call was recorded
+     */
+    public boolean isCpuTimeMeasured() {
+        return cpuTimes != null;
+    }
+
+    /**
+     * @return mean CPU time of the calling thread per call, in ms
+     */
+    public double getCpuTimeMean() {
+        return mean(cpuTimes) / NS_PER_MS;
+    }
+
+    /**
+     * @return the CPU time in ms which was not exceeded by the specified percentage of calls
+     */
+    public double getCpuTimePercentile(double percentile) {
+        return percentile(cpuTimes, percentile) / NS_PER_MS;
+    }
+
+    /**
+     * @return true if the allocated bytes of every call were recorded
+     */
+    public boolean isAllocationMeasured() {
+        return allocatedBytes != null;
+    }
+
+    /**
+     * @return mean number of bytes allocated by the calling thread per call
+     */
+    public double getAllocatedBytesMean() {
+        return mean(allocatedBytes);
+    }
+
+    /**
+     * @return the number of allocated bytes which was not exceeded by the specified percentage of calls
+     */
+    public long getAllocatedBytesPercentile(double percentile) {
+        return percentile(allocatedBytes, percentile);
+    }
+
+    private static double mean(long[] values) {
+        if (values == null || values.length == 0)
+            return -1;
+        double sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static long percentile(long[] values, double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in [0, 100] but was " + percentile);
+        if (values == null || values.length == 0)
+            return -1;
+        long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        // nearest rank
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
     
     private String formatDuration(double durationNs) {
         double divisor;
@@ -112,7 +322,16 @@ public abstract class MiniPerfTest {
 
     public String getReport() {
         double meanNs = ((double) fullTime) / counts;
-        return "sum:" + formatDuration(fullTime) + ", time/call:" + formatDuration(meanNs);
+        String report = "sum:" + formatDuration(fullTime) + ", time/call:" + formatDuration(meanNs);
+        if (times != null && times.length > 0)
+            report += ", p99:" + formatDuration(percentile(times, 99));
+        if (cpuTimes != null)
+            report += ", cpu/call:" + formatDuration(mean(cpuTimes));
+        if (allocatedBytes != null)
+            report += ", allocated/call:" + nf(mean(allocatedBytes) / 1024) + "kB";
+        if (threads > 1)
+            report += ", threads:" + threads + ", calls/s:" + nf(getThroughput());
+        return report;
     }
 
     public int getDummySum() {
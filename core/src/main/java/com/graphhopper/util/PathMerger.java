@@ -23,6 +23,7 @@ import com.graphhopper.routing.Path;
 import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.util.details.PathDetail;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import com.graphhopper.util.details.PathDetailsFromEdges;
 import com.graphhopper.util.exceptions.ConnectionNotFoundException;
@@ -30,6 +31,10 @@ import com.graphhopper.util.exceptions.ConnectionNotFoundException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * This class merges multiple {@link Path} objects into one continuous object that
@@ -38,7 +43,8 @@ import java.util.List;
  * two Path objects.
  * <p>
  * The instructions are generated per Path object and are merged into one continuous InstructionList.
- * The PointList per Path object are merged and optionally simplified.
+ * The PointList per Path object are merged and optionally simplified. With an executor the instructions, points and
+ * path details of the Path objects are calculated at the same time.
  *
  * @author Peter Karich
  * @author ratrun
@@ -56,6 +62,7 @@ public class PathMerger {
     private PathDetailsBuilderFactory pathBuilderFactory;
     private List<String> requestedPathDetails = Collections.emptyList();
     private double favoredHeading = Double.NaN;
+    private ExecutorService executor;
 
     public PathMerger(Graph graph, Weighting weighting) {
         this.graph = graph;
@@ -88,6 +95,15 @@ public class PathMerger {
         return this;
     }
 
+    /**
+     * Sets the executor used to process the paths of via routes in parallel, or null to process them in the calling
+     * thread.
+     */
+    public PathMerger setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
     public ResponsePath doWork(PointList waypoints, List<Path> paths, EncodedValueLookup evLookup, Translation tr) {
         ResponsePath responsePath = new ResponsePath();
         int origPoints = 0;
@@ -99,47 +115,66 @@ public class PathMerger {
         InstructionList fullInstructions = new InstructionList(tr);
         PointList fullPoints = PointList.EMPTY;
         List<String> description = new ArrayList<>();
-        for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++) {
-            Path path = paths.get(pathIndex);
-            if (!path.isFound()) {
-                allFound = false;
-                continue;
+        List<Future<PathParts>> futures = null;
+        if (executor != null && paths.size() > 1) {
+            futures = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                futures.add(path.isFound() ? executor.submit(() -> calcParts(path, evLookup, tr, 0)) : null);
             }
-            description.addAll(path.getDescription());
-            fullTimeInMillis += path.getTime();
-            fullDistance += path.getDistance();
-            fullWeight += path.getWeight();
-            if (enableInstructions) {
-                InstructionList il = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
+        }
+        try {
+            for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++) {
+                Path path = paths.get(pathIndex);
+                if (!path.isFound()) {
+                    allFound = false;
+                    continue;
+                }
+                PathParts parts = futures == null ? calcParts(path, evLookup, tr, origPoints) : get(futures.get(pathIndex));
+                description.addAll(path.getDescription());
+                fullTimeInMillis += path.getTime();
+                fullDistance += path.getDistance();
+                fullWeight += path.getWeight();
+                if (enableInstructions) {
+                    InstructionList il = parts.instructions;
+
+                    if (!il.isEmpty()) {
+                        fullInstructions.addAll(il);
+
+                        // for all paths except the last replace the FinishInstruction with a ViaInstruction
+                        if (pathIndex + 1 < paths.size()) {
+                            ViaInstruction newInstr = new ViaInstruction(fullInstructions.get(fullInstructions.size() - 1));
+                            newInstr.setViaCount(pathIndex + 1);
+                            fullInstructions.set(fullInstructions.size() - 1, newInstr);
+                        }
+                    }
 
-                if (!il.isEmpty()) {
-                    fullInstructions.addAll(il);
+                }
+                if (calcPoints || enableInstructions) {
+                    PointList tmpPoints = parts.points;
+                    if (fullPoints.isEmpty())
+                        fullPoints = new PointList(tmpPoints.size(), tmpPoints.is3D());
 
-                    // for all paths except the last replace the FinishInstruction with a ViaInstruction
+                    // Remove duplicated points, see #1138
                     if (pathIndex + 1 < paths.size()) {
-                        ViaInstruction newInstr = new ViaInstruction(fullInstructions.get(fullInstructions.size() - 1));
-                        newInstr.setViaCount(pathIndex + 1);
-                        fullInstructions.set(fullInstructions.size() - 1, newInstr);
+                        tmpPoints.removeLastPoint();
                     }
+
+                    fullPoints.add(tmpPoints);
+                    if (futures != null)
+                        shift(parts.details, origPoints);
+                    responsePath.addPathDetails(parts.details);
+                    origPoints = fullPoints.size();
                 }
 
+                allFound = allFound && path.isFound();
             }
-            if (calcPoints || enableInstructions) {
-                PointList tmpPoints = path.calcPoints();
-                if (fullPoints.isEmpty())
-                    fullPoints = new PointList(tmpPoints.size(), tmpPoints.is3D());
-
-                // Remove duplicated points, see #1138
-                if (pathIndex + 1 < paths.size()) {
-                    tmpPoints.removeLastPoint();
+        } finally {
+            if (futures != null) {
+                for (Future<PathParts> future : futures) {
+                    if (future != null)
+                        future.cancel(true);
                 }
-
-                fullPoints.add(tmpPoints);
-                responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, origPoints));
-                origPoints = fullPoints.size();
             }
-
-            allFound = allFound && path.isFound();
         }
 
         if (!fullPoints.isEmpty()) {
@@ -170,6 +205,96 @@ public class PathMerger {
         return responsePath;
     }
 
+    /**
+     * Calculates the instructions, points and path details of a single path. The intervals of the path details start
+     * at previousIndex. All of them are calculated in a single pass over the edges of the path, so every edge and its
+     * geometry is fetched only once.
+     */
+    private PathParts calcParts(Path path, EncodedValueLookup evLookup, Translation tr, int previousIndex) {
+        PathParts parts = new PathParts();
+        if (path.getSize() == 0) {
+            if (enableInstructions)
+                parts.instructions = InstructionsFromEdges.calcInstructions(path, graph, weighting, evLookup, tr);
+            if (calcPoints || enableInstructions) {
+                parts.points = path.calcPoints();
+                parts.details = PathDetailsFromEdges.calcDetails(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, previousIndex);
+            }
+            return parts;
+        }
+
+        InstructionsFromEdges instructionsFromEdges = null;
+        if (enableInstructions) {
+            parts.instructions = new InstructionList(tr);
+            instructionsFromEdges = new InstructionsFromEdges(graph, weighting, evLookup, tr, parts.instructions);
+        }
+        if (!calcPoints && !enableInstructions)
+            return parts;
+
+        final InstructionsFromEdges instructions = instructionsFromEdges;
+        final PathDetailsFromEdges details = PathDetailsFromEdges.create(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, previousIndex);
+        final PointList points = new PointList(path.getSize() + 1, graph.getNodeAccess().is3D());
+        // reused for every edge, the visitors copy the points they need
+        final PointList wayGeo = new PointList(10, graph.getNodeAccess().is3D());
+        path.forEveryEdge(new Path.EdgeVisitor() {
+            @Override
+            public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+                wayGeo.clear();
+                edge.fetchWayGeometry(FetchMode.ALL, wayGeo);
+                // the base node was already added with the previous edge
+                for (int j = index == 0 ? 0 : 1; j < wayGeo.size(); j++) {
+                    points.add(wayGeo, j);
+                }
+                if (instructions != null)
+                    instructions.next(edge, wayGeo);
+                if (details != null)
+                    details.next(edge, wayGeo);
+            }
+
+            @Override
+            public void finish() {
+                if (instructions != null)
+                    instructions.finish();
+                if (details != null)
+                    details.finish();
+            }
+        });
+        parts.points = points;
+        parts.details = details == null ? Collections.<String, List<PathDetail>>emptyMap() : details.build();
+        return parts;
+    }
+
+    private static PathParts get(Future<PathParts> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            if (ex.getCause() instanceof Error)
+                throw (Error) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private static void shift(Map<String, List<PathDetail>> details, int offset) {
+        if (offset == 0)
+            return;
+        for (List<PathDetail> list : details.values()) {
+            for (PathDetail detail : list) {
+                detail.setFirst(detail.getFirst() + offset);
+                detail.setLast(detail.getLast() + offset);
+            }
+        }
+    }
+
+    private static class PathParts {
+        InstructionList instructions;
+        PointList points;
+        Map<String, List<PathDetail>> details;
+    }
+
     /**
      * This method iterates over all instructions and uses the available context to improve the instructions.
      * If the requests contains a heading, this method can transform the first continue to a u-turn if the heading
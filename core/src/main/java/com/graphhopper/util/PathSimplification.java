@@ -51,16 +51,6 @@ public class PathSimplification {
     private final List<Partition> partitions;
     private final DouglasPeucker douglasPeucker;
 
-    // temporary variables used when traversing the different partitions
-    private final int numPartitions;
-    private final int[] currIntervalIndex;
-    private final int[] currIntervalStart;
-    private final int[] currIntervalEnd;
-    private final boolean[] partitionFinished;
-    // keep track of how many points were removed by Douglas-Peucker in the current and previous intervals
-    private final int[] removedPointsInCurrInterval;
-    private final int[] removedPointsInPrevIntervals;
-
     /**
      * Convenience method used to obtain the partitions from a calculated path with details and instructions
      */
@@ -138,13 +128,6 @@ public class PathSimplification {
         this.pointList = pointList;
         this.partitions = partitions;
         this.douglasPeucker = douglasPeucker;
-        numPartitions = this.partitions.size();
-        currIntervalIndex = new int[numPartitions];
-        currIntervalStart = new int[numPartitions];
-        currIntervalEnd = new int[numPartitions];
-        partitionFinished = new boolean[numPartitions];
-        removedPointsInCurrInterval = new int[numPartitions];
-        removedPointsInPrevIntervals = new int[numPartitions];
     }
 
     private void simplify() {
@@ -162,57 +145,60 @@ public class PathSimplification {
 
         // Douglas-Peucker never removes the first/last point of a given interval, so as long as we only run it
         // on each interval we can be sure that the interval boundaries will remain in the point list.
-        // Whenever we remove points from an interval we have to update the interval indices of all partitions.
-        // For example if an interval goes from point 4 to 9 and we remove points 5 and 7 we have to update the interval
-        // to [4,7].
-        // The basic idea to do this is as follows: We iterate through the point list and whenever we hit an interval
-        // end (q) in one of the partitions we run Douglas-Peucker for the interval [p,q], where p is the point where the
-        // last interval ended. We keep track of the number of removed points in the current and previous intervals
-        // to be able to calculate the updated indices.
-
-        // prepare for the first interval in each partition
-        int intervalStart = 0;
-        for (int i = 0; i < numPartitions; i++) {
-            currIntervalEnd[i] = this.partitions.get(i).getIntervalLength(currIntervalIndex[i]);
-        }
-
-        // iterate the point list and simplify and update the intervals on the go
-        for (int p = 0; p < pointList.size(); p++) {
-            int removed = 0;
-            // first we check if we hit the end of an interval for one of the partitions and run Douglas-Peucker if we do
-            for (int s = 0; s < numPartitions; s++) {
-                if (partitionFinished[s]) {
-                    continue;
-                }
-                if (p == currIntervalEnd[s]) {
-                    // This is important for performance: we must not compress the point list after each call to
-                    // simplify, otherwise a lot of data is copied, especially for long routes (e.g. many via nodes),
-                    // see #1764. Note that since the point list does not get compressed here yet we have to keep track
-                    // of the total number of removed points to calculate the new interval boundaries later
-                    final boolean compress = false;
-                    removed = douglasPeucker.simplify(pointList, intervalStart, currIntervalEnd[s], compress);
-                    intervalStart = p;
-                    break;
+        // The intervals we have to simplify are separated by the ends of the intervals of all partitions, e.g.
+        // for the partitions [0,3][3,5] and [0,2][2,5] we simplify [0,2][2,3][3,5]. All of them are simplified in
+        // one pass and the point list is not compressed before we know the updated indices of all partitions.
+        final int lastIndex = pointList.size() - 1;
+        boolean[] isIntervalEnd = new boolean[pointList.size()];
+        isIntervalEnd[0] = true;
+        isIntervalEnd[lastIndex] = true;
+        int intervalEnds = 2;
+        for (int s = 0; s < partitions.size(); s++) {
+            Partition partition = partitions.get(s);
+            int end = 0;
+            for (int i = 0; i < partition.size(); i++) {
+                end += partition.getIntervalLength(i);
+                if (end > lastIndex)
+                    throw new IllegalStateException("Intervals are inconsistent: " + end + " vs. " + lastIndex + " for intervals with index: " + s);
+                if (!isIntervalEnd[end]) {
+                    isIntervalEnd[end] = true;
+                    intervalEnds++;
                 }
             }
+        }
+        int[] indices = new int[intervalEnds];
+        for (int p = 0, i = 0; p <= lastIndex; p++) {
+            if (isIntervalEnd[p])
+                indices[i++] = p;
+        }
 
-            // now we have (possibly) removed some points we need to update the current intervals in all partitions
-            for (int s = 0; s < numPartitions; s++) {
-                if (partitionFinished[s]) {
-                    continue;
-                }
-                removedPointsInCurrInterval[s] += removed;
-                // if the current interval of this partition ends at p, we update the interval boundaries. there is
-                // just a special catch: there can be multiple consecutive intervals that end with p, because there
-                // are intervals with a single point, for example p=3 and a partition=[0,3][3,3][3,3]
-                boolean nextIntervalHasOnlyOnePoint;
-                do {
-                    if (p == currIntervalEnd[s]) {
-                        nextIntervalHasOnlyOnePoint = updateInterval(p, s);
-                    } else {
-                        break;
-                    }
-                } while (nextIntervalHasOnlyOnePoint);
+        // This is important for performance: we must not compress the point list before all intervals are
+        // simplified, otherwise a lot of data is copied, especially for long routes (e.g. many via nodes), see #1764
+        final boolean compress = false;
+        int removed = douglasPeucker.simplify(pointList, indices, compress);
+
+        // the new index of every interval end is the number of the kept points before it
+        int[] newIndices = new int[pointList.size()];
+        if (removed > 0) {
+            for (int p = 1; p <= lastIndex; p++) {
+                newIndices[p] = newIndices[p - 1] + (Double.isNaN(pointList.getLatitude(p - 1)) ? 0 : 1);
+            }
+        } else {
+            for (int p = 0; p <= lastIndex; p++) {
+                newIndices[p] = p;
+            }
+        }
+        for (Partition partition : partitions) {
+            // the interval lengths must be read before they are updated
+            int[] lengths = new int[partition.size()];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = partition.getIntervalLength(i);
+            }
+            int start = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                int end = start + lengths[i];
+                partition.setInterval(i, newIndices[start], newIndices[end]);
+                start = end;
             }
         }
 
@@ -226,37 +212,6 @@ public class PathSimplification {
         assertConsistencyOfIntervals();
     }
 
-    /**
-     * @param p point index
-     * @param s partition index
-     */
-    private boolean updateInterval(int p, int s) {
-        boolean nextIntervalHasOnlyOnePoint = false;
-        // update interval boundaries
-        final int updatedStart = currIntervalStart[s] - removedPointsInPrevIntervals[s];
-        final int updatedEnd = currIntervalEnd[s] - removedPointsInPrevIntervals[s] - removedPointsInCurrInterval[s];
-        this.partitions.get(s).setInterval(currIntervalIndex[s], updatedStart, updatedEnd);
-
-        // update the removed point counters
-        removedPointsInPrevIntervals[s] += removedPointsInCurrInterval[s];
-        removedPointsInCurrInterval[s] = 0;
-
-        // prepare for the next interval
-        currIntervalIndex[s]++;
-        currIntervalStart[s] = p;
-        if (currIntervalIndex[s] >= this.partitions.get(s).size()) {
-            partitionFinished[s] = true;
-        } else {
-            int length = this.partitions.get(s).getIntervalLength(currIntervalIndex[s]);
-            currIntervalEnd[s] += length;
-            // special case at via points etc.
-            if (length == 0) {
-                nextIntervalHasOnlyOnePoint = true;
-            }
-        }
-        return nextIntervalHasOnlyOnePoint;
-    }
-
     private void assertConsistencyOfIntervals() {
         final int expected = pointList.size() - 1;
         for (int i = 0; i < partitions.size(); i++) {
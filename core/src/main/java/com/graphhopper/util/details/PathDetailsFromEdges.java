@@ -22,6 +22,7 @@ import com.graphhopper.routing.ev.EncodedValueLookup;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.PointList;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,16 +59,34 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
      */
     public static Map<String, List<PathDetail>> calcDetails(Path path, EncodedValueLookup evLookup, Weighting weighting,
                                                             List<String> requestedPathDetails, PathDetailsBuilderFactory pathBuilderFactory, int previousIndex) {
-        if (!path.isFound() || requestedPathDetails.isEmpty())
+        PathDetailsFromEdges pathDetailsFromEdges = create(path, evLookup, weighting, requestedPathDetails, pathBuilderFactory, previousIndex);
+        if (pathDetailsFromEdges == null)
             return Collections.emptyMap();
+
+        path.forEveryEdge(pathDetailsFromEdges);
+        return pathDetailsFromEdges.build();
+    }
+
+    /**
+     * Creates the visitor that calculates the PathDetails while the edges of the path are visited, e.g. together with
+     * the instructions. Returns null if there are no PathDetails to calculate.
+     */
+    public static PathDetailsFromEdges create(Path path, EncodedValueLookup evLookup, Weighting weighting,
+                                              List<String> requestedPathDetails, PathDetailsBuilderFactory pathBuilderFactory, int previousIndex) {
+        if (!path.isFound() || requestedPathDetails.isEmpty())
+            return null;
         List<PathDetailsBuilder> pathBuilders = pathBuilderFactory.createPathDetailsBuilders(requestedPathDetails, evLookup, weighting);
         if (pathBuilders.isEmpty())
-            return Collections.emptyMap();
-
-        path.forEveryEdge(new PathDetailsFromEdges(pathBuilders, previousIndex));
+            return null;
+        return new PathDetailsFromEdges(pathBuilders, previousIndex);
+    }
 
-        Map<String, List<PathDetail>> pathDetails = new HashMap<>(pathBuilders.size());
-        for (PathDetailsBuilder builder : pathBuilders) {
+    /**
+     * @return the PathDetails of the visited edges
+     */
+    public Map<String, List<PathDetail>> build() {
+        Map<String, List<PathDetail>> pathDetails = new HashMap<>(calculators.size());
+        for (PathDetailsBuilder builder : calculators) {
             Map.Entry<String, List<PathDetail>> entry = builder.build();
             List<PathDetail> existing = pathDetails.put(entry.getKey(), entry.getValue());
             if (existing != null)
@@ -79,13 +98,25 @@ public class PathDetailsFromEdges implements Path.EdgeVisitor {
 
     @Override
     public void next(EdgeIteratorState edge, int index, int prevEdgeId) {
+        next(edge, edge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ).size());
+    }
+
+    /**
+     * Same as {@link #next(EdgeIteratorState, int, int)}, for callers that already fetched the geometry of the edge
+     * with {@link FetchMode#ALL}.
+     */
+    public void next(EdgeIteratorState edge, PointList wayGeo) {
+        next(edge, wayGeo.size() - 1);
+    }
+
+    private void next(EdgeIteratorState edge, int points) {
         for (PathDetailsBuilder calc : calculators) {
             if (calc.isEdgeDifferentToLastEdge(edge)) {
                 calc.endInterval(lastIndex);
                 calc.startInterval(lastIndex);
             }
         }
-        lastIndex += edge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ).size();
+        lastIndex += points;
     }
 
     @Override
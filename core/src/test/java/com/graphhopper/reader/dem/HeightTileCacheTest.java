@@ -0,0 +1,152 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeightTileCacheTest {
+    private final RAMDirectory dir = new RAMDirectory();
+
+    private HeightTile createTile(int minLat, short ele) {
+        int width = 10;
+        HeightTile tile = new HeightTile(minLat, 0, width, width, 1e7, 1, 1);
+        DataAccess heights = dir.find("tile" + minLat);
+        heights.setSegmentSize(128).create(2 * width * width);
+        for (int i = 0; i < width * width; i++) {
+            heights.setShort(2 * i, ele);
+        }
+        tile.setHeights(heights);
+        return tile;
+    }
+
+    @Test
+    public void testEviction() {
+        List<HeightTile> evicted = new ArrayList<>();
+        AtomicInteger loads = new AtomicInteger();
+        HeightTileCache<Integer> cache = new HeightTileCache<>(evicted::add);
+        // space for two tiles of 256 bytes
+        cache.setMaxBytes(600);
+
+        assertEquals(10, cache.getEle(0, 0.5, 0.5, key -> {
+            loads.incrementAndGet();
+            return createTile(key, (short) 10);
+        }), 1e-6);
+        assertEquals(20, cache.getEle(1, 1.5, 0.5, key -> {
+            loads.incrementAndGet();
+            return createTile(key, (short) 20);
+        }), 1e-6);
+        assertEquals(10, cache.getEle(0, 0.5, 0.5, key -> createTile(key, (short) -1)), 1e-6);
+        assertEquals(2, loads.get());
+        assertEquals(0, evicted.size());
+
+        // tile 1 is the least recently used one
+        assertEquals(30, cache.getEle(2, 2.5, 0.5, key -> createTile(key, (short) 30)), 1e-6);
+        assertEquals(1, evicted.size());
+        assertEquals("1,0", evicted.get(0).toString());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+
+        // missing tiles are not cached
+        assertEquals(0, cache.getEle(3, 3.5, 0.5, key -> null), 1e-6);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        HeightTileCache<Integer> cache = new HeightTileCache<>(tile -> dir.close(tile.getHeights()));
+        cache.setMaxBytes(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    int key = i % 6;
+                    double ele = cache.getEle(key, key + 0.5, 0.5, k -> {
+                        loads.incrementAndGet();
+                        synchronized (dir) {
+                            return createTile(k, (short) (k * 10));
+                        }
+                    });
+                    assertEquals(key * 10, ele, 1e-6);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(4000, cache.getHits() + cache.getMisses());
+        assertEquals(loads.get(), cache.getEvictions() + cache.size());
+    }
+
+    @Test
+    public void testSlowLoadDoesNotBlockOtherTiles() throws Exception {
+        List<HeightTile> evicted = new ArrayList<>();
+        HeightTileCache<Integer> cache = new HeightTileCache<>(evicted::add);
+        // space for two tiles of 256 bytes
+        cache.setMaxBytes(600);
+        assertEquals(10, cache.getEle(0, 0.5, 0.5, key -> createTile(key, (short) 10)), 1e-6);
+
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Double> slowLookup = executor.submit(() -> cache.getEle(1, 1.5, 0.5, key -> {
+            loadStarted.countDown();
+            try {
+                finishLoad.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            synchronized (dir) {
+                return createTile(key, (short) 20);
+            }
+        }));
+        loadStarted.await();
+
+        // while tile 1 is loading other tiles can be read, loaded and evicted
+        assertEquals(10, cache.getEle(0, 0.5, 0.5, key -> createTile(key, (short) -1)), 1e-6);
+        assertEquals(30, cache.getEle(2, 2.5, 0.5, key -> createTile(key, (short) 30)), 1e-6);
+        assertEquals(40, cache.getEle(3, 3.5, 0.5, key -> createTile(key, (short) 40)), 1e-6);
+        assertEquals(1, evicted.size());
+        assertEquals("0,0", evicted.get(0).toString());
+
+        finishLoad.countDown();
+        assertEquals(20, slowLookup.get(10, TimeUnit.SECONDS), 1e-6);
+        executor.shutdown();
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictions());
+        assertEquals("2,0", evicted.get(1).toString());
+    }
+}
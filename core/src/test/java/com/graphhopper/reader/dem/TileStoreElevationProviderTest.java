@@ -0,0 +1,209 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TileStoreElevationProviderTest {
+    private final String dir = "./target/tmp/ele-store";
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testConvertAndReload() {
+        CountingProvider source = new CountingProvider();
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(source, dir, 10);
+        assertEquals(49 * 10 + 3, provider.getEle(49.35, 11.32), 1e-5);
+        assertEquals(49 * 10 + 9, provider.getEle(49.95, 11.99), 1e-5);
+        assertEquals(-5 * 10 + 2, provider.getEle(-4.75, 11.3), 1e-5);
+        // sea tile without data
+        assertEquals(0, provider.getEle(0.5, 0.5), 1e-5);
+        assertEquals(0, provider.getEle(0.6, 0.6), 1e-5);
+        assertEquals(3 * 100, source.calls.get());
+        provider.release();
+
+        source = new CountingProvider();
+        provider = new TileStoreElevationProvider(source, dir, 10);
+        assertEquals(49 * 10 + 3, provider.getEle(49.35, 11.32), 1e-5);
+        assertEquals(-5 * 10 + 2, provider.getEle(-4.75, 11.3), 1e-5);
+        assertEquals(0, provider.getEle(0.5, 0.5), 1e-5);
+        // everything is read from the store
+        assertEquals(0, source.calls.get());
+        provider.release();
+    }
+
+    @Test
+    public void testStaleTileCount() {
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(new CountingProvider(), dir, 10);
+        assertEquals(49 * 10 + 3, provider.getEle(49.35, 11.32), 1e-5);
+        assertEquals(-5 * 10 + 2, provider.getEle(-4.75, 11.3), 1e-5);
+        provider.release();
+
+        // the header of the index is not persisted after an unclean shutdown
+        GHDirectory ghDir = new GHDirectory(dir, DAType.MMAP);
+        DataAccess index = ghDir.find("ele_index");
+        assertTrue(index.loadExisting());
+        index.setHeader(8, 1);
+        index.flush();
+        ghDir.close();
+
+        provider = new TileStoreElevationProvider(new CountingProvider(), dir, 10);
+        assertEquals(20 * 10 + 1, provider.getEle(20.15, 30.5), 1e-5);
+        // the new tile did not overwrite the stored ones
+        assertEquals(49 * 10 + 3, provider.getEle(49.35, 11.32), 1e-5);
+        assertEquals(-5 * 10 + 2, provider.getEle(-4.75, 11.3), 1e-5);
+        provider.release();
+    }
+
+    @Test
+    public void testDifferentResolution() {
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(new CountingProvider(), dir, 10);
+        provider.getEle(49.35, 11.32);
+        provider.release();
+
+        try {
+            new TileStoreElevationProvider(new CountingProvider(), dir, 20).getEle(49.35, 11.32);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("10 samples per degree"));
+        }
+    }
+
+    @Test
+    public void testConcurrentFirstCalls() throws Exception {
+        CountingProvider source = new CountingProvider();
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(source, dir, 10);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Double>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return provider.getEle(49.35, 11.32);
+            }));
+        }
+        // all threads initialize the store at the same time
+        start.countDown();
+        for (Future<Double> future : futures) {
+            assertEquals(49 * 10 + 3, future.get(), 1e-5);
+        }
+        executor.shutdown();
+        // the tile was converted only once
+        assertEquals(100, source.calls.get());
+        provider.release();
+    }
+
+    @Test
+    public void testInterpolatedHeightsMatchSource() {
+        // a plane is reproduced exactly by bilinear interpolation, and it is integer at the cell centers
+        CountingProvider source = new CountingProvider() {
+            @Override
+            public double getEle(double lat, double lon) {
+                return 1000 * (lat - 49) + 100 * (lon - 11);
+            }
+        };
+        TileStoreElevationProvider provider = new TileStoreElevationProvider(source, dir, 10);
+        provider.setInterpolate(true);
+        // between the centers of the outermost cells, the samples of cell 0 are at 0.05 and 0.15
+        for (double dLat = 0.05; dLat <= 0.95; dLat += 0.0625) {
+            for (double dLon = 0.05; dLon <= 0.95; dLon += 0.0375) {
+                double lat = 49 + dLat, lon = 11 + dLon;
+                assertEquals(lat + "," + lon, source.getEle(lat, lon), provider.getEle(lat, lon), 1e-3);
+            }
+        }
+        assertEquals(50 + 5, provider.getEle(49.05, 11.05), 1e-3);
+        // towards the borders the nearest sample is used
+        assertEquals(50 + 5, provider.getEle(49.01, 11.01), 1e-3);
+        assertEquals(950 + 95, provider.getEle(49.99, 11.99), 1e-3);
+        provider.release();
+    }
+
+    /**
+     * Returns the latitude with one decimal as elevation, i.e. every row of a tile with 10 samples per degree has a
+     * different height. There is no data in the tile at 0,0.
+     */
+    private static class CountingProvider implements ElevationProvider {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public double getEle(double lat, double lon) {
+            calls.incrementAndGet();
+            if (lat >= 0 && lat < 1 && lon >= 0 && lon < 1)
+                return 0;
+            return Math.floor(lat * 10);
+        }
+
+        @Override
+        public ElevationProvider setBaseURL(String baseURL) {
+            return this;
+        }
+
+        @Override
+        public ElevationProvider setDAType(DAType daType) {
+            return this;
+        }
+
+        @Override
+        public ElevationProvider setTileCacheSize(long maxBytes) {
+            return this;
+        }
+
+        @Override
+        public void setInterpolate(boolean interpolate) {
+        }
+
+        @Override
+        public boolean getInterpolate() {
+            return false;
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void setAutoRemoveTemporaryFiles(boolean autoRemoveTemporary) {
+        }
+    }
+}
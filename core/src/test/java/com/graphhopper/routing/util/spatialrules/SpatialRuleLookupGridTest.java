@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util.spatialrules;
+
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.json.geo.JsonFeatureCollection;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpatialRuleLookupGridTest {
+    private static final GeometryFactory FAC = new GeometryFactory();
+
+    @Test
+    public void testSameAsJTS() throws IOException {
+        SpatialRuleLookup tmp = SpatialRuleLookupBuilder.buildIndex(Collections.singletonList(
+                Jackson.newObjectMapper().readValue(new FileReader("../core/files/spatialrules/countries.geo.json"), JsonFeatureCollection.class)),
+                "ISO_A3", new CountriesSpatialRuleFactory(), new Envelope(0, 30, 40, 60));
+        List<SpatialRule> rules = tmp.getRules();
+        SpatialRuleLookupJTS jts = new SpatialRuleLookupJTS(rules, tmp.getBounds());
+        SpatialRuleLookupGrid grid = new SpatialRuleLookupGrid(rules, tmp.getBounds(), 10);
+        assertEquals(rules, grid.getRules());
+        assertTrue("ratio " + grid.getBorderCellRatio(), grid.getBorderCellRatio() < 0.5);
+
+        Random rand = new Random(0);
+        for (int i = 0; i < 10_000; i++) {
+            double lat = 39 + rand.nextDouble() * 22;
+            double lon = -1 + rand.nextDouble() * 32;
+            SpatialRuleSet expected = jts.lookupRules(lat, lon);
+            SpatialRuleSet actual = grid.lookupRules(lat, lon);
+            assertEquals(lat + "," + lon, expected.getRules(), actual.getRules());
+            assertEquals(lat + "," + lon, expected.getSpatialId(), actual.getSpatialId());
+        }
+    }
+
+    @Test
+    public void testBuilderUsesGridOnlyIfRequested() throws IOException {
+        List<JsonFeatureCollection> collections = Collections.singletonList(
+                Jackson.newObjectMapper().readValue(new FileReader("../core/files/spatialrules/countries.geo.json"), JsonFeatureCollection.class));
+        Envelope bounds = new Envelope(0, 30, 40, 60);
+        assertTrue(SpatialRuleLookupBuilder.buildIndex(collections, "ISO_A3", new CountriesSpatialRuleFactory(), bounds)
+                instanceof SpatialRuleLookupJTS);
+        assertTrue(SpatialRuleLookupBuilder.buildIndex(collections, "ISO_A3", new CountriesSpatialRuleFactory(), bounds, 0)
+                instanceof SpatialRuleLookupJTS);
+        assertTrue(SpatialRuleLookupBuilder.buildIndex(collections, "ISO_A3", new CountriesSpatialRuleFactory(), bounds, 10)
+                instanceof SpatialRuleLookupGrid);
+    }
+
+    @Test
+    public void testOverlappingRules() {
+        Polygon big = createSquare(0, 0, 4);
+        Polygon small = createSquare(1, 1, 1);
+        SpatialRule bigRule = createRule("big", 0, big);
+        SpatialRule smallRule = createRule("small", 1, small);
+        List<SpatialRule> rules = new ArrayList<>();
+        rules.add(bigRule);
+        rules.add(smallRule);
+        SpatialRuleLookupGrid grid = new SpatialRuleLookupGrid(rules, new Envelope(0, 4, 0, 4), 2);
+
+        assertEquals(Collections.singletonList(bigRule), grid.lookupRules(3.5, 3.5).getRules());
+        assertEquals(1, grid.lookupRules(3.5, 3.5).getSpatialId());
+        List<SpatialRule> both = grid.lookupRules(1.5, 1.5).getRules();
+        assertEquals(2, both.size());
+        assertSame(smallRule, both.get(1));
+        assertEquals(2, grid.lookupRules(1.5, 1.5).getSpatialId());
+        assertEquals(SpatialRuleSet.EMPTY, grid.lookupRules(5, 5));
+    }
+
+    private static Polygon createSquare(double minLon, double minLat, double size) {
+        return FAC.createPolygon(new Coordinate[]{new Coordinate(minLon, minLat), new Coordinate(minLon + size, minLat),
+                new Coordinate(minLon + size, minLat + size), new Coordinate(minLon, minLat + size), new Coordinate(minLon, minLat)});
+    }
+
+    private static SpatialRule createRule(final String id, final int priority, Polygon border) {
+        return new AbstractSpatialRule(border) {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+        };
+    }
+}
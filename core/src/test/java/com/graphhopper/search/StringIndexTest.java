@@ -223,6 +223,45 @@ public class StringIndexTest {
         assertNull(index.get(pointerB, ""));
     }
 
+    @Test
+    public void testGetValueAfterDuplicateMarker() {
+        StringIndex index = create().setValueCacheSize(0);
+        long aPointer = index.add(createMap("name", "Avenue de la Costa", "ref", "D6007"));
+        long bPointer = index.add(createMap("name", "Avenue de la Costa", "ref", "D6098", "int_ref", "E74"));
+
+        // the name of b is stored as duplicate marker with a 4 byte delta, which must not be read as a value length
+        assertEquals("D6098", index.get(bPointer, "ref"));
+        assertEquals("E74", index.get(bPointer, "int_ref"));
+        assertNull(index.get(bPointer, "other"));
+        assertEquals("Avenue de la Costa", index.get(bPointer, "name"));
+        assertEquals("D6007", index.get(aPointer, "ref"));
+    }
+
+    @Test
+    public void testValueCache() {
+        StringIndex index = create();
+        long aPointer = index.add(createMap("name", "Avenue de la Costa", "ref", "D6007"));
+        long bPointer = index.add(createMap("name", "Avenue de la Costa", "ref", "D6098"));
+
+        String name = index.get(aPointer, "name");
+        assertEquals("Avenue de la Costa", name);
+        assertEquals(0, index.getValueCacheHits());
+        assertEquals(1, index.getValueCacheMisses());
+        // the value of the previous entry is still in the small cache of add and so it is stored as duplicate marker,
+        // which points to the same value bytes and shares the decoded instance
+        assertSame(name, index.get(bPointer, "name"));
+        assertSame(name, index.getAll(aPointer).get("name"));
+        assertEquals(2, index.getValueCacheHits());
+        assertEquals("D6098", index.get(bPointer, "ref"));
+        assertEquals("D6098", index.get(bPointer, "ref"));
+        assertEquals(3, index.getValueCacheHits());
+
+        index.setValueCacheSize(0);
+        assertEquals("Avenue de la Costa", index.get(bPointer, "name"));
+        assertEquals("D6007", index.getAll(aPointer).get("ref"));
+        assertEquals(0, index.getValueCacheHits());
+    }
+
     @Test
     @Repeat(times = 100)
     public void testRandom() {
@@ -28,6 +28,7 @@ import org.junit.Test;
 
 import java.io.Closeable;
 import java.io.File;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -645,6 +646,30 @@ public abstract class AbstractGraphStorageTester {
         assertFalse(iter.next());
     }
 
+    @Test
+    public void testAppendPillarNodes() {
+        graph = createGHStorage();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0.01, 0.01);
+        na.setNode(4, 0.4, 0.4);
+        na.setNode(10, 0.99, 0.99);
+        graph.edge(0, 4).setDistance(100).setWayGeometry(Helper.createPointList(1, 1, 1, 2, 1, 3));
+        graph.edge(4, 10).setDistance(100);
+
+        PointList list = Helper.createPointList(5, 5);
+        EdgeIteratorState edge = GHUtility.getEdge(graph, 0, 4);
+        edge.fetchWayGeometry(FetchMode.PILLAR_AND_ADJ, list);
+        assertPList(Helper.createPointList(5, 5, 1, 1, 1, 2, 1, 3, 0.4, 0.4), list);
+
+        for (FetchMode mode : FetchMode.values()) {
+            for (EdgeIteratorState e : Arrays.asList(edge, GHUtility.getEdge(graph, 4, 0), GHUtility.getEdge(graph, 4, 10), GHUtility.getEdge(graph, 10, 4))) {
+                list.clear();
+                e.fetchWayGeometry(mode, list);
+                assertPList(e.fetchWayGeometry(mode), list);
+            }
+        }
+    }
+
     @Test
     public void testFootMix() {
         graph = createGHStorage();
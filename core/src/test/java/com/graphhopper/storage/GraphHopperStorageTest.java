@@ -102,6 +102,32 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester {
         checkGraph(graph);
     }
 
+    @Test
+    public void testLoadConcurrently() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true, defaultSize / 2).create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+        EdgeIteratorState iter2 = graph.edge(0, 1, 100, true);
+        iter2.setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0));
+        EdgeIteratorState iter1 = graph.edge(0, 2, 200, true);
+        iter1.setWayGeometry(Helper.createPointList3D(3.5, 4.5, 0, 5, 6, 0));
+        graph.edge(9, 10, 200, true);
+        graph.edge(9, 11, 200, true);
+        graph.edge(1, 2, 120, false);
+        iter1.setName("named street1");
+        graph.flush();
+        graph.close();
+
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true, defaultSize / 2).setLoadThreads(4);
+        assertTrue(graph.loadExisting());
+        assertEquals(12, graph.getNodes());
+        assertEquals(5, graph.getEdges());
+        checkGraph(graph);
+        assertEquals("named street1", graph.getEdgeIteratorState(iter1.getEdge(), iter1.getAdjNode()).getName());
+    }
+
     @Test
     public void testSave_and_Freeze() throws IOException {
         graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true).create(defaultSize);
@@ -0,0 +1,110 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.FetchMode;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs all storage tests with the compressed pillar node encoding.
+ */
+public class GraphHopperStorageWithCompressedGeometryTest extends GraphHopperStorageTest {
+    @Override
+    protected GraphHopperStorage newGHStorage(Directory dir, boolean enabled3D, int segmentSize) {
+        return GraphBuilder.start(encodingManager).setDir(dir).set3D(enabled3D).setSegmentSize(segmentSize)
+                .setCompressedGeometry(true).build();
+    }
+
+    @Test
+    public void testCompressedGeometry() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true).create(defaultSize);
+        assertTrue(graph.isCompressedGeometry());
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50.0, 10.0, 100);
+        na.setNode(1, 50.1, 10.1, 120);
+        // includes big jumps to check that overflowing deltas are decoded correctly
+        PointList pillars = Helper.createPointList3D(50.01, 10.01, 101, 50.011, 10.012, 99.5, -89.9, -179.9, -1000, 89.9, 179.9, 8000, 50.05, 10.05, 110);
+        EdgeIteratorState edge = graph.edge(0, 1).setDistance(100).setWayGeometry(pillars);
+        assertEquals(pillars, edge.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        PointList reversed = pillars.clone(true);
+        assertEquals(reversed, graph.getEdgeIteratorState(edge.getEdge(), 0).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+
+        // shorter geometry reuses the existing space, longer geometry is appended
+        long geoRef = ((BaseGraph) graph.getBaseGraph()).getMaxGeoRef();
+        edge.setWayGeometry(Helper.createPointList3D(50.02, 10.02, 100));
+        assertEquals(geoRef, ((BaseGraph) graph.getBaseGraph()).getMaxGeoRef());
+        assertEquals(Helper.createPointList3D(50.0, 10.0, 100, 50.02, 10.02, 100, 50.1, 10.1, 120), edge.fetchWayGeometry(FetchMode.ALL));
+        edge.setWayGeometry(pillars);
+        assertTrue(((BaseGraph) graph.getBaseGraph()).getMaxGeoRef() > geoRef);
+        graph.flush();
+        graph.close();
+
+        // the encoding is read from the stored graph
+        graph = GraphBuilder.start(encodingManager).setDir(new RAMDirectory(defaultGraphLoc, true)).set3D(true).build();
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isCompressedGeometry());
+        assertEquals(reversed, graph.getEdgeIteratorState(0, 0).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+
+    @Test
+    public void testCompressedGeometryIsSmaller() {
+        GraphHopperStorage compressed = newGHStorage(new RAMDirectory(), false, -1).create(defaultSize);
+        GraphHopperStorage uncompressed = super.newGHStorage(new RAMDirectory(), false, -1).create(defaultSize);
+        for (GraphHopperStorage storage : new GraphHopperStorage[]{compressed, uncompressed}) {
+            storage.getNodeAccess().setNode(0, 50.0, 10.0);
+            storage.getNodeAccess().setNode(1, 50.1, 10.1);
+            PointList pillars = new PointList(100, false);
+            for (int i = 0; i < 100; i++) {
+                pillars.add(50.0 + i * 0.001, 10.0 + i * 0.0005);
+            }
+            storage.edge(0, 1).setDistance(100).setWayGeometry(pillars);
+            assertEquals(pillars, storage.getEdgeIteratorState(0, 1).fetchWayGeometry(FetchMode.PILLAR_ONLY));
+        }
+        long compressedSize = ((BaseGraph) compressed.getBaseGraph()).getMaxGeoRef() - 4;
+        long uncompressedSize = ((BaseGraph) uncompressed.getBaseGraph()).getMaxGeoRef() - 4;
+        assertTrue(compressedSize + " vs. " + uncompressedSize, compressedSize * 1.5 < uncompressedSize);
+    }
+
+    @Override
+    @Test
+    public void testDontGrowOnUpdate() {
+        graph = createGHStorage(defaultGraphLoc, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+
+        EdgeIteratorState iter2 = graph.edge(0, 1, 100, true);
+        final BaseGraph baseGraph = (BaseGraph) graph.getBaseGraph();
+        assertEquals(4, baseGraph.getMaxGeoRef());
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7, 7, 8, 9));
+        long maxGeoRef = baseGraph.getMaxGeoRef();
+        assertTrue(maxGeoRef > 4);
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3, 3, 4, 5, 5, 6, 7));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        iter2.setWayGeometry(Helper.createPointList3D(1, 2, 3));
+        assertEquals(maxGeoRef, baseGraph.getMaxGeoRef());
+        iter2.setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0, 4, 5, 6, 7, 8, 9, 10, 11, 12));
+        assertTrue(baseGraph.getMaxGeoRef() > maxGeoRef);
+        assertEquals(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0, 4, 5, 6, 7, 8, 9, 10, 11, 12), iter2.fetchWayGeometry(FetchMode.PILLAR_ONLY));
+    }
+}
@@ -202,4 +202,34 @@ public class DouglasPeuckerTest {
         new DouglasPeucker().setMaxDistance(1).setElevationMaxDistance(1).simplify(pointList);
         assertEquals("(0.0,0.0), (0.03,0.0), (0.0,0.0)", pointList.toString());
     }
+
+    @Test
+    public void testSimplifyIntervalsInOnePass() {
+        PointList pointList = new PointList();
+        pointList.parse2DJSON(points1);
+        PointList expected = pointList.clone(false);
+        DouglasPeucker dp = new DouglasPeucker().setMaxDistance(.5);
+        int[] indices = {0, 5, 6, 17, 31};
+        int removed = 0;
+        for (int i = 1; i < indices.length; i++) {
+            removed += dp.simplify(expected, indices[i - 1], indices[i], false);
+        }
+        DouglasPeucker.removeNaN(expected);
+
+        assertEquals(removed, dp.simplify(pointList, indices, true));
+        assertEquals(expected, pointList);
+    }
+
+    @Test
+    public void testSimplifyLongPath() {
+        // a zigzag with increasing spacing where every point has to be kept, which splits the intervals very unevenly
+        DouglasPeucker dp = new DouglasPeucker().setMaxDistance(1);
+        dp.setApproximation(false);
+        PointList pointList = new PointList(20_000, false);
+        for (int i = 0; i < 20_000; i++) {
+            pointList.add(i * 0.001 * i / 20_000, i % 2 * 0.001);
+        }
+        assertEquals(0, dp.simplify(pointList));
+        assertEquals(20_000, pointList.size());
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MiniPerfTestTest {
+
+    @Test
+    public void testPercentilesAndAllocations() {
+        MiniPerfTest perf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                // the allocation grows with the run, so the percentiles have to grow as well
+                return new long[1000 * (run + 1)].length;
+            }
+        }.setIterations(100).setMeasureResources(true).start();
+
+        assertTrue(perf.getPercentile(50) <= perf.getPercentile(99));
+        assertTrue(perf.getPercentile(99) <= perf.getMax());
+        assertEquals(perf.getMin(), perf.getPercentile(0), 1e-9);
+        // the extension is looked up reflectively, but must be found where it exists
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+            assertTrue(perf.isAllocationMeasured());
+        if (perf.isAllocationMeasured()) {
+            assertTrue(perf.getAllocatedBytesPercentile(50) >= 50 * 8000);
+            assertTrue(perf.getAllocatedBytesPercentile(50) < perf.getAllocatedBytesPercentile(99));
+            assertTrue(perf.getAllocatedBytesPercentile(100) >= 100 * 8000);
+        }
+        if (perf.isCpuTimeMeasured())
+            assertTrue(perf.getCpuTimeMean() >= 0);
+    }
+
+    @Test
+    public void testResourcesAreNotMeasuredByDefault() {
+        MiniPerfTest perf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                return run;
+            }
+        }.setIterations(10).start();
+        assertFalse(perf.isCpuTimeMeasured());
+        assertFalse(perf.isAllocationMeasured());
+    }
+
+    @Test
+    public void testThreads() {
+        AtomicInteger calls = new AtomicInteger();
+        MiniPerfTest perf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                calls.incrementAndGet();
+                return 1;
+            }
+        }.setIterations(300).setThreads(4).setMeasureResources(true).start();
+        // 100 warmup calls and 300 measured calls
+        assertEquals(400, calls.get());
+        assertEquals(400, perf.getDummySum());
+        assertTrue(perf.getThroughput() > 0);
+        assertEquals(4, perf.getThreads());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testExceptionInThread() {
+        new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                if (!warmup && run == 42)
+                    throw new IllegalStateException("failed");
+                return 1;
+            }
+        }.setIterations(100).setThreads(2).start();
+    }
+}
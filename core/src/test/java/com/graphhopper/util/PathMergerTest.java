@@ -0,0 +1,146 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import com.graphhopper.ResponsePath;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.InstructionsFromEdges;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.ev.BooleanEncodedValue;
+import com.graphhopper.routing.ev.DecimalEncodedValue;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.details.PathDetail;
+import com.graphhopper.util.details.PathDetailsBuilderFactory;
+import com.graphhopper.util.details.PathDetailsFromEdges;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.graphhopper.util.Parameters.Details.*;
+import static org.junit.Assert.assertEquals;
+
+public class PathMergerTest {
+    private final FlagEncoder encoder = new CarFlagEncoder();
+    private final EncodingManager carManager = EncodingManager.create(encoder);
+    private final Translation tr = TranslationMapTest.SINGLETON.getWithFallBack(Locale.US);
+    private final List<String> requestedDetails = Arrays.asList(STREET_NAME, AVERAGE_SPEED, EDGE_ID, DISTANCE);
+
+    @Test
+    public void testViaRouteSameAsSeparatePasses() {
+        Graph graph = createGraph();
+        Weighting weighting = new FastestWeighting(encoder);
+        List<Path> paths = Arrays.asList(
+                new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(0, 2),
+                new Dijkstra(graph, weighting, TraversalMode.NODE_BASED).calcPath(2, 4));
+        PointList waypoints = new PointList();
+        for (int node : new int[]{0, 2, 4}) {
+            waypoints.add(graph.getNodeAccess(), node);
+        }
+
+        ResponsePath expected = calcSeparately(graph, weighting, paths);
+        assertEquals(10, expected.getPoints().size());
+        assertSame(expected, createMerger(graph, weighting).doWork(waypoints, paths, carManager, tr));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertSame(expected, createMerger(graph, weighting).setExecutor(executor).doWork(waypoints, paths, carManager, tr));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private PathMerger createMerger(Graph graph, Weighting weighting) {
+        return new PathMerger(graph, weighting).
+                setSimplifyResponse(false).
+                setEnableInstructions(true).
+                setPathDetailsBuilders(new PathDetailsBuilderFactory(), requestedDetails);
+    }
+
+    /**
+     * Merges the paths the way PathMerger did it before it visited the edges only once: the instructions, the points
+     * and the path details are calculated in separate passes over the edges.
+     */
+    private ResponsePath calcSeparately(Graph graph, Weighting weighting, List<Path> paths) {
+        ResponsePath responsePath = new ResponsePath();
+        InstructionList instructions = new InstructionList(tr);
+        PointList points = new PointList();
+        for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++) {
+            Path path = paths.get(pathIndex);
+            instructions.addAll(InstructionsFromEdges.calcInstructions(path, graph, weighting, carManager, tr));
+            if (pathIndex + 1 < paths.size()) {
+                ViaInstruction via = new ViaInstruction(instructions.get(instructions.size() - 1));
+                via.setViaCount(pathIndex + 1);
+                instructions.set(instructions.size() - 1, via);
+            }
+            responsePath.addPathDetails(PathDetailsFromEdges.calcDetails(path, carManager, weighting, requestedDetails, new PathDetailsBuilderFactory(), points.size()));
+            PointList pathPoints = path.calcPoints();
+            if (pathIndex + 1 < paths.size())
+                pathPoints.removeLastPoint();
+            points.add(pathPoints);
+        }
+        responsePath.setInstructions(instructions);
+        return responsePath.setPoints(points);
+    }
+
+    private static void assertSame(ResponsePath expected, ResponsePath actual) {
+        assertEquals(expected.getPoints(), actual.getPoints());
+        assertEquals(expected.getInstructions().size(), actual.getInstructions().size());
+        for (int i = 0; i < expected.getInstructions().size(); i++) {
+            Instruction expectedInstruction = expected.getInstructions().get(i);
+            Instruction actualInstruction = actual.getInstructions().get(i);
+            assertEquals(expectedInstruction.getClass(), actualInstruction.getClass());
+            assertEquals(expectedInstruction.toString(), actualInstruction.toString());
+            assertEquals(expectedInstruction.getPoints(), actualInstruction.getPoints());
+            assertEquals(expectedInstruction.getExtraInfoJSON(), actualInstruction.getExtraInfoJSON());
+        }
+        assertEquals(expected.getPathDetails().keySet(), actual.getPathDetails().keySet());
+        for (Map.Entry<String, List<PathDetail>> entry : expected.getPathDetails().entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue().toString(), actual.getPathDetails().get(entry.getKey()).toString());
+        }
+    }
+
+    private Graph createGraph() {
+        BooleanEncodedValue accessEnc = encoder.getAccessEnc();
+        DecimalEncodedValue speedEnc = encoder.getAverageSpeedEnc();
+        Graph graph = new GraphBuilder(carManager).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 51.00, 10.00);
+        na.setNode(1, 51.00, 10.01);
+        na.setNode(2, 51.01, 10.01);
+        na.setNode(3, 51.01, 10.02);
+        na.setNode(4, 51.02, 10.02);
+        graph.edge(0, 1).setDistance(720).setName("first").set(accessEnc, true).setReverse(accessEnc, true).set(speedEnc, 50).
+                setWayGeometry(Helper.createPointList(51.001, 10.005));
+        graph.edge(1, 2).setDistance(1120).setName("second").set(accessEnc, true).setReverse(accessEnc, true).set(speedEnc, 30).
+                setWayGeometry(Helper.createPointList(51.004, 10.011, 51.007, 10.009));
+        graph.edge(2, 3).setDistance(700).setName("second").set(accessEnc, true).setReverse(accessEnc, true).set(speedEnc, 70);
+        graph.edge(3, 4).setDistance(1150).setName("third").set(accessEnc, true).setReverse(accessEnc, true).set(speedEnc, 50).
+                setWayGeometry(Helper.createPointList(51.013, 10.021, 51.017, 10.019));
+        return graph;
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2015, Conveyal
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ *  Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.conveyal.gtfs;
+
+import com.conveyal.gtfs.model.*;
+import com.graphhopper.gtfs.Codecs.StreamCodec;
+import com.graphhopper.gtfs.StringTable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Binary encodings of the GTFS entities, which replace their Java serialization into MapDB. Only the fields of
+ * the entities are written, not the line of the source file they were loaded from.
+ */
+public final class EntityCodecs {
+
+    private EntityCodecs() {
+    }
+
+    public static final StreamCodec<Agency> AGENCY = new StreamCodec<Agency>() {
+        @Override
+        protected void write(DataOutputStream out, Agency a) throws IOException {
+            writeString(out, a.agency_id);
+            writeString(out, a.agency_name);
+            writeUrl(out, a.agency_url);
+            writeString(out, a.agency_timezone);
+            writeString(out, a.agency_lang);
+            writeString(out, a.agency_phone);
+            writeUrl(out, a.agency_fare_url);
+            writeUrl(out, a.agency_branding_url);
+            writeString(out, a.feed_id);
+        }
+
+        @Override
+        protected Agency read(DataInputStream in) throws IOException {
+            Agency a = new Agency();
+            a.agency_id = readString(in);
+            a.agency_name = readString(in);
+            a.agency_url = readUrl(in);
+            a.agency_timezone = readString(in);
+            a.agency_lang = readString(in);
+            a.agency_phone = readString(in);
+            a.agency_fare_url = readUrl(in);
+            a.agency_branding_url = readUrl(in);
+            a.feed_id = readString(in);
+            return a;
+        }
+    };
+
+    public static final StreamCodec<FeedInfo> FEED_INFO = new StreamCodec<FeedInfo>() {
+        @Override
+        protected void write(DataOutputStream out, FeedInfo fi) throws IOException {
+            writeString(out, fi.feed_id);
+            writeString(out, fi.feed_publisher_name);
+            writeUrl(out, fi.feed_publisher_url);
+            writeString(out, fi.feed_lang);
+            writeDate(out, fi.feed_start_date);
+            writeDate(out, fi.feed_end_date);
+            writeString(out, fi.feed_version);
+        }
+
+        @Override
+        protected FeedInfo read(DataInputStream in) throws IOException {
+            FeedInfo fi = new FeedInfo();
+            fi.feed_id = readString(in);
+            fi.feed_publisher_name = readString(in);
+            fi.feed_publisher_url = readUrl(in);
+            fi.feed_lang = readString(in);
+            fi.feed_start_date = readDate(in);
+            fi.feed_end_date = readDate(in);
+            fi.feed_version = readString(in);
+            return fi;
+        }
+    };
+
+    public static final StreamCodec<Route> ROUTE = new StreamCodec<Route>() {
+        @Override
+        protected void write(DataOutputStream out, Route r) throws IOException {
+            writeString(out, r.route_id);
+            writeString(out, r.agency_id);
+            writeString(out, r.route_short_name);
+            writeString(out, r.route_long_name);
+            writeString(out, r.route_desc);
+            out.writeInt(r.route_type);
+            writeUrl(out, r.route_url);
+            writeString(out, r.route_color);
+            writeString(out, r.route_text_color);
+            writeUrl(out, r.route_branding_url);
+            writeString(out, r.feed_id);
+        }
+
+        @Override
+        protected Route read(DataInputStream in) throws IOException {
+            Route r = new Route();
+            r.route_id = readString(in);
+            r.agency_id = readString(in);
+            r.route_short_name = readString(in);
+            r.route_long_name = readString(in);
+            r.route_desc = readString(in);
+            r.route_type = in.readInt();
+            r.route_url = readUrl(in);
+            r.route_color = readString(in);
+            r.route_text_color = readString(in);
+            r.route_branding_url = readUrl(in);
+            r.feed_id = readString(in);
+            return r;
+        }
+    };
+
+    public static final StreamCodec<Stop> STOP = new StreamCodec<Stop>() {
+        @Override
+        protected void write(DataOutputStream out, Stop s) throws IOException {
+            writeString(out, s.stop_id);
+            writeString(out, s.stop_code);
+            writeString(out, s.stop_name);
+            writeString(out, s.stop_desc);
+            out.writeDouble(s.stop_lat);
+            out.writeDouble(s.stop_lon);
+            writeString(out, s.zone_id);
+            writeUrl(out, s.stop_url);
+            out.writeInt(s.location_type);
+            writeString(out, s.parent_station);
+            writeString(out, s.stop_timezone);
+            writeString(out, s.wheelchair_boarding);
+            writeString(out, s.feed_id);
+        }
+
+        @Override
+        protected Stop read(DataInputStream in) throws IOException {
+            Stop s = new Stop();
+            s.stop_id = readString(in);
+            s.stop_code = readString(in);
+            s.stop_name = readString(in);
+            s.stop_desc = readString(in);
+            s.stop_lat = in.readDouble();
+            s.stop_lon = in.readDouble();
+            s.zone_id = readString(in);
+            s.stop_url = readUrl(in);
+            s.location_type = in.readInt();
+            s.parent_station = readString(in);
+            s.stop_timezone = readString(in);
+            s.wheelchair_boarding = readString(in);
+            s.feed_id = readString(in);
+            return s;
+        }
+    };
+
+    public static final StreamCodec<Trip> TRIP = new StreamCodec<Trip>() {
+        @Override
+        protected void write(DataOutputStream out, Trip t) throws IOException {
+            writeString(out, t.route_id);
+            writeString(out, t.service_id);
+            writeString(out, t.trip_id);
+            writeString(out, t.trip_headsign);
+            writeString(out, t.trip_short_name);
+            out.writeInt(t.direction_id);
+            writeString(out, t.block_id);
+            writeString(out, t.shape_id);
+            out.writeInt(t.bikes_allowed);
+            out.writeInt(t.wheelchair_accessible);
+            writeString(out, t.feed_id);
+        }
+
+        @Override
+        protected Trip read(DataInputStream in) throws IOException {
+            Trip t = new Trip();
+            t.route_id = readString(in);
+            t.service_id = readString(in);
+            t.trip_id = readString(in);
+            t.trip_headsign = readString(in);
+            t.trip_short_name = readString(in);
+            t.direction_id = in.readInt();
+            t.block_id = readString(in);
+            t.shape_id = readString(in);
+            t.bikes_allowed = in.readInt();
+            t.wheelchair_accessible = in.readInt();
+            t.feed_id = readString(in);
+            return t;
+        }
+    };
+
+    public static final StreamCodec<Transfer> TRANSFER = new StreamCodec<Transfer>() {
+        @Override
+        protected void write(DataOutputStream out, Transfer t) throws IOException {
+            writeString(out, t.from_stop_id);
+            writeString(out, t.to_stop_id);
+            out.writeInt(t.transfer_type);
+            out.writeInt(t.min_transfer_time);
+            writeString(out, t.from_route_id);
+            writeString(out, t.to_route_id);
+            writeString(out, t.from_trip_id);
+            writeString(out, t.to_trip_id);
+        }
+
+        @Override
+        protected Transfer read(DataInputStream in) throws IOException {
+            Transfer t = new Transfer();
+            t.from_stop_id = readString(in);
+            t.to_stop_id = readString(in);
+            t.transfer_type = in.readInt();
+            t.min_transfer_time = in.readInt();
+            t.from_route_id = readString(in);
+            t.to_route_id = readString(in);
+            t.from_trip_id = readString(in);
+            t.to_trip_id = readString(in);
+            return t;
+        }
+    };
+
+    public static final StreamCodec<Fare> FARE = new StreamCodec<Fare>() {
+        @Override
+        protected void write(DataOutputStream out, Fare f) throws IOException {
+            writeString(out, f.fare_id);
+            FareAttribute fa = f.fare_attribute;
+            out.writeBoolean(fa != null);
+            if (fa != null) {
+                writeString(out, fa.fare_id);
+                out.writeDouble(fa.price);
+                writeString(out, fa.currency_type);
+                out.writeInt(fa.payment_method);
+                out.writeInt(fa.transfers);
+                out.writeInt(fa.transfer_duration);
+                writeString(out, fa.feed_id);
+            }
+            out.writeInt(f.fare_rules.size());
+            for (FareRule fr : f.fare_rules) {
+                writeString(out, fr.fare_id);
+                writeString(out, fr.route_id);
+                writeString(out, fr.origin_id);
+                writeString(out, fr.destination_id);
+                writeString(out, fr.contains_id);
+            }
+        }
+
+        @Override
+        protected Fare read(DataInputStream in) throws IOException {
+            Fare f = new Fare(readString(in));
+            if (in.readBoolean()) {
+                FareAttribute fa = new FareAttribute();
+                fa.fare_id = readString(in);
+                fa.price = in.readDouble();
+                fa.currency_type = readString(in);
+                fa.payment_method = in.readInt();
+                fa.transfers = in.readInt();
+                fa.transfer_duration = in.readInt();
+                fa.feed_id = readString(in);
+                f.fare_attribute = fa;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                FareRule fr = new FareRule();
+                fr.fare_id = readString(in);
+                fr.route_id = readString(in);
+                fr.origin_id = readString(in);
+                fr.destination_id = readString(in);
+                fr.contains_id = readString(in);
+                f.fare_rules.add(fr);
+            }
+            return f;
+        }
+    };
+
+    public static final StreamCodec<Service> SERVICE = new StreamCodec<Service>() {
+        @Override
+        protected void write(DataOutputStream out, Service s) throws IOException {
+            writeString(out, s.service_id);
+            Calendar c = s.calendar;
+            out.writeBoolean(c != null);
+            if (c != null) {
+                out.writeInt(c.monday);
+                out.writeInt(c.tuesday);
+                out.writeInt(c.wednesday);
+                out.writeInt(c.thursday);
+                out.writeInt(c.friday);
+                out.writeInt(c.saturday);
+                out.writeInt(c.sunday);
+                out.writeInt(c.start_date);
+                out.writeInt(c.end_date);
+                writeString(out, c.feed_id);
+                writeString(out, c.service_id);
+            }
+            out.writeInt(s.calendar_dates.size());
+            for (CalendarDate cd : s.calendar_dates.values()) {
+                writeString(out, cd.service_id);
+                writeDate(out, cd.date);
+                out.writeInt(cd.exception_type);
+            }
+        }
+
+        @Override
+        protected Service read(DataInputStream in) throws IOException {
+            Service s = new Service(readString(in));
+            if (in.readBoolean()) {
+                Calendar c = new Calendar();
+                c.monday = in.readInt();
+                c.tuesday = in.readInt();
+                c.wednesday = in.readInt();
+                c.thursday = in.readInt();
+                c.friday = in.readInt();
+                c.saturday = in.readInt();
+                c.sunday = in.readInt();
+                c.start_date = in.readInt();
+                c.end_date = in.readInt();
+                c.feed_id = readString(in);
+                c.service_id = readString(in);
+                s.calendar = c;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                CalendarDate cd = new CalendarDate();
+                cd.service_id = readString(in);
+                cd.date = readDate(in);
+                cd.exception_type = in.readInt();
+                s.calendar_dates.put(cd.date, cd);
+            }
+            return s;
+        }
+    };
+
+    /**
+     * The frequencies of one trip.
+     */
+    public static final StreamCodec<Frequency[]> FREQUENCIES = new StreamCodec<Frequency[]>() {
+        @Override
+        protected void write(DataOutputStream out, Frequency[] frequencies) throws IOException {
+            out.writeInt(frequencies.length);
+            for (Frequency f : frequencies) {
+                writeString(out, f.trip_id);
+                out.writeInt(f.start_time);
+                out.writeInt(f.end_time);
+                out.writeInt(f.headway_secs);
+                out.writeInt(f.exact_times);
+            }
+        }
+
+        @Override
+        protected Frequency[] read(DataInputStream in) throws IOException {
+            Frequency[] frequencies = new Frequency[in.readInt()];
+            for (int i = 0; i < frequencies.length; i++) {
+                Frequency f = new Frequency();
+                f.trip_id = readString(in);
+                f.start_time = in.readInt();
+                f.end_time = in.readInt();
+                f.headway_secs = in.readInt();
+                f.exact_times = in.readInt();
+                frequencies[i] = f;
+            }
+            return frequencies;
+        }
+    };
+
+    /**
+     * The points of one shape. The shape id is written once.
+     */
+    public static final StreamCodec<ShapePoint[]> SHAPE_POINTS = new StreamCodec<ShapePoint[]>() {
+        @Override
+        protected void write(DataOutputStream out, ShapePoint[] points) throws IOException {
+            out.writeInt(points.length);
+            if (points.length > 0)
+                writeString(out, points[0].shape_id);
+            for (ShapePoint p : points) {
+                out.writeDouble(p.shape_pt_lat);
+                out.writeDouble(p.shape_pt_lon);
+                out.writeInt(p.shape_pt_sequence);
+                out.writeDouble(p.shape_dist_traveled);
+            }
+        }
+
+        @Override
+        protected ShapePoint[] read(DataInputStream in) throws IOException {
+            ShapePoint[] points = new ShapePoint[in.readInt()];
+            String shapeId = points.length > 0 ? readString(in) : null;
+            for (int i = 0; i < points.length; i++) {
+                points[i] = new ShapePoint(shapeId, in.readDouble(), in.readDouble(), in.readInt(), in.readDouble());
+            }
+            return points;
+        }
+    };
+
+    /**
+     * The stop times of one trip. The trip id is written once, and the stop ids and headsigns, which repeat a lot,
+     * go to the given string table.
+     */
+    public static StreamCodec<StopTime[]> stopTimes(StringTable strings) {
+        return new StreamCodec<StopTime[]>() {
+            @Override
+            protected void write(DataOutputStream out, StopTime[] stopTimes) throws IOException {
+                out.writeInt(stopTimes.length);
+                if (stopTimes.length > 0)
+                    writeString(out, stopTimes[0].trip_id);
+                for (StopTime st : stopTimes) {
+                    out.writeInt(st.arrival_time);
+                    out.writeInt(st.departure_time);
+                    out.writeInt(strings.add(st.stop_id));
+                    out.writeInt(st.stop_sequence);
+                    out.writeInt(strings.add(st.stop_headsign));
+                    out.writeInt(st.pickup_type);
+                    out.writeInt(st.drop_off_type);
+                    out.writeDouble(st.shape_dist_traveled);
+                    out.writeInt(st.timepoint);
+                }
+            }
+
+            @Override
+            protected StopTime[] read(DataInputStream in) throws IOException {
+                StopTime[] stopTimes = new StopTime[in.readInt()];
+                String tripId = stopTimes.length > 0 ? readString(in) : null;
+                for (int i = 0; i < stopTimes.length; i++) {
+                    StopTime st = new StopTime();
+                    st.trip_id = tripId;
+                    st.arrival_time = in.readInt();
+                    st.departure_time = in.readInt();
+                    st.stop_id = strings.get(in.readInt());
+                    st.stop_sequence = in.readInt();
+                    st.stop_headsign = strings.get(in.readInt());
+                    st.pickup_type = in.readInt();
+                    st.drop_off_type = in.readInt();
+                    st.shape_dist_traveled = in.readDouble();
+                    st.timepoint = in.readInt();
+                    stopTimes[i] = st;
+                }
+                return stopTimes;
+            }
+        };
+    }
+}
@@ -35,29 +35,28 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateList;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
-import org.mapdb.BTreeMap;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-import org.mapdb.Fun;
-import org.mapdb.Fun.Tuple2;
+import com.graphhopper.gtfs.BytesKeyMap;
+import com.graphhopper.gtfs.Codecs;
+import com.graphhopper.gtfs.StringTable;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.RAMDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 /**
  * All entities must be from a single feed namespace.
- * Composed of several GTFSTables.
+ * Composed of several GTFSTables, which are stored in DataAccess objects of the given Directory, like the graph.
  */
 public class GTFSFeed implements Cloneable, Closeable {
 
@@ -65,36 +64,46 @@ public class GTFSFeed implements Cloneable, Closeable {
 
     public static final double METERS_PER_DEGREE_LATITUDE = 111111.111;
 
-    private DB db;
+    private static final String FEED_ID = "feed_id";
+    private static final String CHECKSUM = "checksum";
+
+    // the agencies, routes, trips and stops are looked up for every leg or stop of a route, so their decoded
+    // entities are cached
+    private static final int VALUE_CACHE_SIZE = 1 << 12;
 
     public String feedId = null;
 
+    private final BytesKeyMap<String, String> metadata;
+    // all tables, so they can be created, loaded, flushed and closed together
+    private final List<BytesKeyMap<String, ?>> tables = new ArrayList<>();
+    private final StringTable stopTimeStrings;
+
     public final Map<String, Agency> agency;
     public final Map<String, FeedInfo> feedInfo;
-    // This is how you do a multimap in mapdb: https://github.com/jankotek/MapDB/blob/release-1.0/src/test/java/examples/MultiMap.java
-    public final NavigableSet<Tuple2<String, Frequency>> frequencies;
+    /* Map from trip_id to the frequencies of the trip, ordered by start_time */
+    public final Map<String, Frequency[]> frequencies;
     public final Map<String, Route> routes;
     public final Map<String, Stop> stops;
     public final Map<String, Transfer> transfers;
-    public final BTreeMap<String, Trip> trips;
+    public final Map<String, Trip> trips;
 
     /** CRC32 of the GTFS file this was loaded from */
     public long checksum;
 
-    /* Map from 2-tuples of (shape_id, shape_pt_sequence) to shape points */
-    public final ConcurrentNavigableMap<Tuple2<String, Integer>, ShapePoint> shape_points;
+    /* Map from shape_id to the shape points, ordered by shape_pt_sequence */
+    public final Map<String, ShapePoint[]> shape_points;
 
-    /* Map from 2-tuples of (trip_id, stop_sequence) to stoptimes. */
-    public final BTreeMap<Tuple2, StopTime> stop_times;
+    /* Map from trip_id to the stop times of the trip, ordered by stop_sequence. */
+    public final Map<String, StopTime[]> stop_times;
 
     /* A fare is a fare_attribute and all fare_rules that reference that fare_attribute. */
     public final Map<String, Fare> fares;
 
     /* A service is a calendar entry and all calendar_dates that modify that calendar entry. */
-    public final BTreeMap<String, Service> services;
+    public final Map<String, Service> services;
 
     /* A place to accumulate errors while the feed is loaded. Tolerate as many errors as possible and keep on loading. */
-    public final NavigableSet<GTFSError> errors;
+    public final NavigableSet<GTFSError> errors = new ConcurrentSkipListSet<>();
 
     /* Create geometry factory to produce LineString geometries. */
     private GeometryFactory gf = new GeometryFactory();
@@ -124,8 +133,6 @@ public class GTFSFeed implements Cloneable, Closeable {
         // of the zip file, so that's not a problem.
         checksum = zip.stream().mapToLong(ZipEntry::getCrc).reduce((l1, l2) -> l1 ^ l2).getAsLong();
 
-        db.getAtomicLong("checksum").set(checksum);
-
         new FeedInfo.Loader(this).loadTable(zip);
         // maybe we should just point to the feed object itself instead of its ID, and null out its stoptimes map after loading
         if (fid != null) {
@@ -140,37 +147,63 @@ public class GTFSFeed implements Cloneable, Closeable {
             LOG.info("Feed ID is '{}'.", feedId);
         }
 
-        db.getAtomicString("feed_id").set(feedId);
+        // Tables which do not reference each other are loaded concurrently, each into its own table.
+        // The references which are checked while loading still only point to tables that are complete by then.
+        // Shapes are referenced by nothing, and are usually the second largest table, so they run alongside everything.
+        loadInParallel(
+                () -> new ShapePoint.Loader(this).loadTable(zip),
+                () -> {
+                    loadInParallel(
+                            () -> {
+                                new Agency.Loader(this).loadTable(zip);
+                                if (agency.isEmpty()) {
+                                    errors.add(new GeneralError("agency", 0, "agency_id", "Need at least one agency."));
+                                }
+                                new Route.Loader(this).loadTable(zip);
+                            },
+                            () -> {
+                                // calendars and calendar dates are joined into services. This means a lot of manipulating service objects as
+                                // they are loaded; since stored values are immutable, load them in memory then copy them to the table once
+                                // we're done loading them
+                                Map<String, Service> serviceTable = new HashMap<>();
+                                new Calendar.Loader(this, serviceTable).loadTable(zip);
+                                new CalendarDate.Loader(this, serviceTable).loadTable(zip);
+                                this.services.putAll(serviceTable);
+                            },
+                            () -> {
+                                // Same deal
+                                Map<String, Fare> fares = new HashMap<>();
+                                new FareAttribute.Loader(this, fares).loadTable(zip);
+                                new FareRule.Loader(this, fares).loadTable(zip);
+                                this.fares.putAll(fares);
+                            },
+                            () -> new Stop.Loader(this).loadTable(zip));
+                    // Transfers are checked against trips that are not loaded yet, like they always have been
+                    new Transfer.Loader(this).loadTable(zip);
+                    new Trip.Loader(this).loadTable(zip);
+                    loadInParallel(
+                            () -> new Frequency.Loader(this).loadTable(zip),
+                            () -> new StopTime.Loader(this).loadTable(zip)); // comment out this line for quick testing using NL feed
+                });
+        loaded = true;
+    }
 
-        new Agency.Loader(this).loadTable(zip);
-        if (agency.isEmpty()) {
-            errors.add(new GeneralError("agency", 0, "agency_id", "Need at least one agency."));
-        }
+    private interface TableLoading {
+        void load() throws IOException;
+    }
 
-        // calendars and calendar dates are joined into services. This means a lot of manipulating service objects as
-        // they are loaded; since mapdb keys/values are immutable, load them in memory then copy them to MapDB once
-        // we're done loading them
-        Map<String, Service> serviceTable = new HashMap<>();
-        new Calendar.Loader(this, serviceTable).loadTable(zip);
-        new CalendarDate.Loader(this, serviceTable).loadTable(zip);
-        this.services.putAll(serviceTable);
-        serviceTable = null; // free memory
-
-        // Same deal
-        Map<String, Fare> fares = new HashMap<>();
-        new FareAttribute.Loader(this, fares).loadTable(zip);
-        new FareRule.Loader(this, fares).loadTable(zip);
-        this.fares.putAll(fares);
-        fares = null; // free memory
-
-        new Route.Loader(this).loadTable(zip);
-        new ShapePoint.Loader(this).loadTable(zip);
-        new Stop.Loader(this).loadTable(zip);
-        new Transfer.Loader(this).loadTable(zip);
-        new Trip.Loader(this).loadTable(zip);
-        new Frequency.Loader(this).loadTable(zip);
-        new StopTime.Loader(this).loadTable(zip); // comment out this line for quick testing using NL feed
-        loaded = true;
+    private static void loadInParallel(TableLoading... loadings) throws IOException {
+        try {
+            Arrays.stream(loadings).parallel().forEach(loading -> {
+                try {
+                    loading.load();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     public void loadFromFileAndLogErrors(ZipFile zip) throws IOException {
@@ -190,15 +223,26 @@ public class GTFSFeed implements Cloneable, Closeable {
 
     /**
      * For the given trip ID, fetch all the stop times in order of increasing stop_sequence.
-     * This is an efficient iteration over a tree map.
+     * They are stored together, so this is a single lookup.
      */
     public Iterable<StopTime> getOrderedStopTimesForTrip (String trip_id) {
-        Map<Fun.Tuple2, StopTime> tripStopTimes =
-                stop_times.subMap(
-                        Fun.t2(trip_id, null),
-                        Fun.t2(trip_id, Fun.HI)
-                );
-        return tripStopTimes.values();
+        StopTime[] tripStopTimes = stop_times.get(trip_id);
+        return tripStopTimes == null ? Collections.emptyList() : Arrays.asList(tripStopTimes);
+    }
+
+    /** @return the stop time of the given trip with the given stop_sequence, or null if there is none */
+    public StopTime getStopTime (String trip_id, int stop_sequence) {
+        StopTime[] tripStopTimes = stop_times.get(trip_id);
+        if (tripStopTimes == null) return null;
+        int low = 0, high = tripStopTimes.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int sequence = tripStopTimes[mid].stop_sequence;
+            if (sequence < stop_sequence) low = mid + 1;
+            else if (sequence > stop_sequence) high = mid - 1;
+            else return tripStopTimes[mid];
+        }
+        return null;
     }
 
     /** Get the shape for the given shape ID */
@@ -212,9 +256,8 @@ public class GTFSFeed implements Cloneable, Closeable {
      */
     public Iterable<StopTime> getInterpolatedStopTimesForTrip (String trip_id) throws FirstAndLastStopsDoNotHaveTimes {
         // clone stop times so as not to modify base GTFS structures
-        StopTime[] stopTimes = StreamSupport.stream(getOrderedStopTimesForTrip(trip_id).spliterator(), false)
-                .map(st -> st.clone())
-                .toArray(i -> new StopTime[i]);
+        // they are decoded for every call, so they are not shared with anybody
+        StopTime[] stopTimes = stop_times.getOrDefault(trip_id, new StopTime[0]);
 
         // avoid having to make sure that the array has length below.
         if (stopTimes.length == 0) return Collections.emptyList();
@@ -300,11 +343,8 @@ public class GTFSFeed implements Cloneable, Closeable {
     }
 
     public Collection<Frequency> getFrequencies (String trip_id) {
-        // IntelliJ tells me all these casts are unnecessary, and that's also my feeling, but the code won't compile
-        // without them
-        return (List<Frequency>) frequencies.subSet(new Fun.Tuple2(trip_id, null), new Fun.Tuple2(trip_id, Fun.HI)).stream()
-                .map(t2 -> ((Tuple2<String, Frequency>) t2).b)
-                .collect(Collectors.toList());
+        Frequency[] tripFrequencies = frequencies.get(trip_id);
+        return tripFrequencies == null ? Collections.emptyList() : Arrays.asList(tripFrequencies);
     }
 
     public LineString getStraightLineForStops(String trip_id) {
@@ -373,8 +413,19 @@ public class GTFSFeed implements Cloneable, Closeable {
         }
     }
 
+    /** Writes the tables to their files, if the directory stores them. */
+    public void flush () {
+        if (feedId != null) metadata.put(FEED_ID, feedId);
+        metadata.put(CHECKSUM, Long.toString(checksum));
+        metadata.flush();
+        tables.forEach(BytesKeyMap::flush);
+        stopTimeStrings.flush();
+    }
+
     public void close () {
-        db.close();
+        metadata.close();
+        tables.forEach(BytesKeyMap::close);
+        stopTimeStrings.close();
     }
 
     /** Thrown when we cannot interpolate stop times because the first or last stops do not have times */
@@ -382,55 +433,60 @@ public class GTFSFeed implements Cloneable, Closeable {
         /** do nothing */
     }
 
-    /** Create a GTFS feed in a temp file */
+    /** Create a GTFS feed in memory */
     public GTFSFeed () {
-        // calls to this must be first operation in constructor - why, Java?
-        this(DBMaker.newTempFileDB()
-                .transactionDisable()
-                .mmapFileEnable()
-                .asyncWriteEnable()
-                .deleteFilesAfterClose()
-                .compressionEnable()
-                // .cacheSize(1024 * 1024) this bloats memory consumption
-                .make()); // TODO db.close();
+        this(new RAMDirectory(), "gtfs");
+        create();
     }
 
-    /** Create a GTFS feed connected to a particular DB, which will be created if it does not exist. */
-    public GTFSFeed(File file) {
-        this(constructDB(file));
+    /**
+     * Create a GTFS feed whose tables are stored in the given directory, with the given name as prefix. Call
+     * {@link #create} or {@link #loadExisting} before using it.
+     */
+    public GTFSFeed (Directory dir, String name) {
+        metadata = new BytesKeyMap<>(dir, name + "_metadata", Codecs.STRING, Codecs.STRING);
+        stopTimeStrings = new StringTable(dir, name + "_stop_time_strings");
+
+        agency = table(dir, name + "_agency", EntityCodecs.AGENCY).setValueCacheSize(VALUE_CACHE_SIZE);
+        feedInfo = table(dir, name + "_feed_info", EntityCodecs.FEED_INFO);
+        routes = table(dir, name + "_routes", EntityCodecs.ROUTE).setValueCacheSize(VALUE_CACHE_SIZE);
+        trips = table(dir, name + "_trips", EntityCodecs.TRIP).setValueCacheSize(VALUE_CACHE_SIZE);
+        stop_times = table(dir, name + "_stop_times", EntityCodecs.stopTimes(stopTimeStrings));
+        frequencies = table(dir, name + "_frequencies", EntityCodecs.FREQUENCIES);
+        transfers = table(dir, name + "_transfers", EntityCodecs.TRANSFER);
+        stops = table(dir, name + "_stops", EntityCodecs.STOP).setValueCacheSize(VALUE_CACHE_SIZE);
+        fares = table(dir, name + "_fares", EntityCodecs.FARE);
+        services = table(dir, name + "_services", EntityCodecs.SERVICE);
+        shape_points = table(dir, name + "_shape_points", EntityCodecs.SHAPE_POINTS);
     }
 
-    private static DB constructDB(File file) {
-        DBMaker<?> dbMaker = DBMaker.newFileDB(file)
-                .transactionDisable()
-                .mmapFileEnable()
-                .asyncWriteEnable()
-                .compressionEnable();
-        if (file.exists()) {
-            dbMaker.readOnly();
-        }
-        return dbMaker.make();
+    private <V> BytesKeyMap<String, V> table(Directory dir, String name, BytesKeyMap.Codec<V> codec) {
+        BytesKeyMap<String, V> table = new BytesKeyMap<>(dir, name, Codecs.STRING, codec);
+        tables.add(table);
+        return table;
+    }
+
+    public GTFSFeed create () {
+        metadata.create(1000);
+        tables.forEach(table -> table.create(1000));
+        stopTimeStrings.create(1000);
+        return this;
     }
 
-    private GTFSFeed (DB db) {
-        this.db = db;
-
-        agency = db.getTreeMap("agency");
-        feedInfo = db.getTreeMap("feed_info");
-        routes = db.getTreeMap("routes");
-        trips = db.getTreeMap("trips");
-        stop_times = db.getTreeMap("stop_times");
-        frequencies = db.getTreeSet("frequencies");
-        transfers = db.getTreeMap("transfers");
-        stops = db.getTreeMap("stops");
-        fares = db.getTreeMap("fares");
-        services = db.getTreeMap("services");
-        shape_points = db.getTreeMap("shape_points");
-
-        feedId = db.getAtomicString("feed_id").get();
-        checksum = db.getAtomicLong("checksum").get();
-
-        errors = db.getTreeSet("errors");
+    /** @return false if the feed was not stored in the directory before */
+    public boolean loadExisting () {
+        if (!metadata.loadExisting())
+            return false;
+        for (BytesKeyMap<String, ?> table : tables) {
+            if (!table.loadExisting())
+                throw new IllegalStateException("The GTFS feed is incomplete, please re-import");
+        }
+        if (!stopTimeStrings.loadExisting())
+            throw new IllegalStateException("The GTFS feed is incomplete, please re-import");
+        feedId = metadata.get(FEED_ID);
+        checksum = Long.parseLong(metadata.get(CHECKSUM));
+        loaded = true;
+        return true;
     }
 
     public LocalDate getStartDate() {
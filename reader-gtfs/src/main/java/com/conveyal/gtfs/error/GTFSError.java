@@ -75,7 +75,7 @@ public abstract class GTFSError implements Comparable<GTFSError>, Serializable {
         return sb.toString();
     }
 
-    /** must be comparable to put into mapdb */
+    /** must be comparable to put into the sorted set of errors */
     public int compareTo (GTFSError o) {
         if (this.file == null && o.file != null) return -1;
         else if (this.file != null && o.file == null) return 1;
@@ -41,7 +41,7 @@ public class ReferentialIntegrityError extends GTFSError implements Serializable
         this.badReference = badReference;
     }
 
-    /** must be comparable to put into mapdb */
+    /** must be comparable to put into the sorted set of errors */
     @Override
     public int compareTo (GTFSError o) {
         int compare = super.compareTo(o);
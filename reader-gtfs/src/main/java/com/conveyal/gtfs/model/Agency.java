@@ -70,7 +70,7 @@ public class Agency extends Entity {
             a.feed = feed;
             a.feed_id = feed.feedId;
 
-            // TODO clooge due to not being able to have null keys in mapdb
+            // TODO clooge due to not being able to have null keys in the feed tables
             if (a.agency_id == null) a.agency_id = "NONE";
 
             feed.agency.put(a.agency_id, a);
@@ -37,6 +37,8 @@ import java.nio.charset.Charset;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -279,6 +281,36 @@ public abstract class Entity implements Serializable {
                 }
                 loadOneRow(); // Call subclass method to produce an entity from the current row.
             }
+            endTable();
+        }
+
+        /** Called after the last row was loaded, for loaders that do not store every row right away. */
+        protected void endTable() throws IOException {
+        }
+
+        /**
+         * Stores the rows which were collected for one key, e.g. the stop times of a trip, as one array sorted by
+         * sequence number. Tables are usually grouped by that key. If the key was seen before, the rows are merged,
+         * and a row replaces an earlier one with the same sequence number.
+         */
+        protected <T> void putGroup(Map<String, T[]> table, String key, List<T> rows, ToIntFunction<T> sequence, IntFunction<T[]> newArray) {
+            if (key == null || rows.isEmpty())
+                return;
+            List<T> all = new ArrayList<>();
+            T[] existing = table.get(key);
+            if (existing != null)
+                all.addAll(Arrays.asList(existing));
+            all.addAll(rows);
+            // stable, so the last row with a sequence number comes last
+            all.sort(Comparator.comparingInt(sequence));
+            List<T> group = new ArrayList<>(all.size());
+            for (T row : all) {
+                if (!group.isEmpty() && sequence.applyAsInt(group.get(group.size() - 1)) == sequence.applyAsInt(row))
+                    group.set(group.size() - 1, row);
+                else
+                    group.add(row);
+            }
+            table.put(key, group.toArray(newArray.apply(0)));
         }
 
     }
@@ -27,10 +27,11 @@
 package com.conveyal.gtfs.model;
 
 import com.conveyal.gtfs.GTFSFeed;
-import org.mapdb.Fun;
-
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 
 import static com.conveyal.gtfs.model.Entity.Writer.convertToGtfsTime;
 
@@ -62,7 +63,7 @@ public class Frequency extends Entity implements Comparable<Frequency> {
     public int headway_secs;
     public int exact_times;
 
-    /** must have a comparator since they go in a navigable set that is serialized */
+    /** the frequencies of a trip are ordered by start time */
     @Override
     public int compareTo(Frequency o) {
         return this.start_time - o.start_time;
@@ -70,6 +71,10 @@ public class Frequency extends Entity implements Comparable<Frequency> {
 
     public static class Loader extends Entity.Loader<Frequency> {
 
+        // the frequencies of the trip that is being read, which are stored together
+        private String tripId;
+        private final List<Frequency> frequencies = new ArrayList<>();
+
         public Loader(GTFSFeed feed) {
             super(feed, "frequencies");
         }
@@ -90,7 +95,21 @@ public class Frequency extends Entity implements Comparable<Frequency> {
             f.headway_secs = getIntField("headway_secs", true, 1, 24 * 60 * 60);
             f.exact_times = getIntField("exact_times", false, 0, 1);
             f.feed = feed;
-            feed.frequencies.add(Fun.t2(f.trip_id, f));
+            if (!Objects.equals(tripId, f.trip_id)) {
+                putTrip();
+                tripId = f.trip_id;
+            }
+            frequencies.add(f);
+        }
+
+        @Override
+        protected void endTable() {
+            putTrip();
+        }
+
+        private void putTrip() {
+            putGroup(feed.frequencies, tripId, frequencies, f -> f.start_time, Frequency[]::new);
+            frequencies.clear();
         }
     }
 
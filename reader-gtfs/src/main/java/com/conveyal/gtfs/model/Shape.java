@@ -30,12 +30,10 @@ import com.conveyal.gtfs.GTFSFeed;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
-import org.mapdb.Fun;
-
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Represents a collection of GTFS shape points. Never saved in MapDB but constructed on the fly.
+ * Represents a collection of GTFS shape points. Never stored but constructed on the fly.
  */
 public class Shape {
     public static GeometryFactory geometryFactory = new GeometryFactory();
@@ -46,13 +44,12 @@ public class Shape {
     public double[] shape_dist_traveled;
 
     public Shape (GTFSFeed feed, String shape_id) {
-        Map<Fun.Tuple2<String, Integer>, ShapePoint> points =
-                feed.shape_points.subMap(new Fun.Tuple2(shape_id, null), new Fun.Tuple2(shape_id, Fun.HI));
+        ShapePoint[] points = feed.shape_points.getOrDefault(shape_id, new ShapePoint[0]);
 
-        Coordinate[] coords = points.values().stream()
+        Coordinate[] coords = Arrays.stream(points)
                 .map(point -> new Coordinate(point.shape_pt_lon, point.shape_pt_lat))
                 .toArray(i -> new Coordinate[i]);
         geometry = geometryFactory.createLineString(coords);
-        shape_dist_traveled = points.values().stream().mapToDouble(point -> point.shape_dist_traveled).toArray();
+        shape_dist_traveled = Arrays.stream(points).mapToDouble(point -> point.shape_dist_traveled).toArray();
     }
 }
@@ -27,9 +27,10 @@
 package com.conveyal.gtfs.model;
 
 import com.conveyal.gtfs.GTFSFeed;
-import org.mapdb.Fun.Tuple2;
-
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 public class ShapePoint extends Entity {
 
@@ -40,7 +41,7 @@ public class ShapePoint extends Entity {
     public final int    shape_pt_sequence;
     public final double shape_dist_traveled;
 
-    // Similar to stoptime, we have to have a constructor, because fields are final so as to be immutable for storage in MapDB.
+    // Similar to stoptime, we have to have a constructor, because fields are final so as to be immutable for storage.
     public ShapePoint(String shape_id, double shape_pt_lat, double shape_pt_lon, int shape_pt_sequence, double shape_dist_traveled) {
         this.shape_id = shape_id;
         this.shape_pt_lat = shape_pt_lat;
@@ -51,6 +52,10 @@ public class ShapePoint extends Entity {
 
     public static class Loader extends Entity.Loader<ShapePoint> {
 
+        // the points of the shape that is being read, which are stored together
+        private String shapeId;
+        private final List<ShapePoint> points = new ArrayList<>();
+
         public Loader(GTFSFeed feed) {
             super(feed, "shapes");
         }
@@ -70,8 +75,22 @@ public class ShapePoint extends Entity {
 
             ShapePoint s = new ShapePoint(shape_id, shape_pt_lat, shape_pt_lon, shape_pt_sequence, shape_dist_traveled);
             s.sourceFileLine = row + 1; // offset line number by 1 to account for 0-based row index
-            s.feed = null; // since we're putting this into MapDB, we don't want circular serialization
-            feed.shape_points.put(new Tuple2<String, Integer>(s.shape_id, s.shape_pt_sequence), s);
+            s.feed = null;
+            if (!Objects.equals(shapeId, s.shape_id)) {
+                putShape();
+                shapeId = s.shape_id;
+            }
+            points.add(s);
+        }
+
+        @Override
+        protected void endTable() {
+            putShape();
+        }
+
+        private void putShape() {
+            putGroup(feed.shape_points, shapeId, points, p -> p.shape_pt_sequence, ShapePoint[]::new);
+            points.clear();
         }
     }
 
@@ -27,19 +27,20 @@
 package com.conveyal.gtfs.model;
 
 import com.conveyal.gtfs.GTFSFeed;
-import org.mapdb.Fun;
-
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Represents a GTFS StopTime. Note that once created and saved in a feed, stop times are by convention immutable
- * because they are in a MapDB.
+ * because they are stored in an encoded form.
  */
 public class StopTime extends Entity implements Cloneable, Serializable {
 
     private static final long serialVersionUID = -8883780047901081832L;
-    /* StopTime cannot directly reference Trips or Stops because they would be serialized into the MapDB. */
+    /* StopTime cannot directly reference Trips or Stops because they would be stored with it. */
     public String trip_id;
     public int    arrival_time = INT_MISSING;
     public int    departure_time = INT_MISSING;
@@ -53,6 +54,10 @@ public class StopTime extends Entity implements Cloneable, Serializable {
 
     public static class Loader extends Entity.Loader<StopTime> {
 
+        // the stop times of the trip that is being read, which are stored together
+        private String tripId;
+        private final List<StopTime> stopTimes = new ArrayList<>();
+
         public Loader(GTFSFeed feed) {
             super(feed, "stop_times");
         }
@@ -79,16 +84,30 @@ public class StopTime extends Entity implements Cloneable, Serializable {
             st.shape_dist_traveled = getDoubleField("shape_dist_traveled", false, 0D, Double.MAX_VALUE); // FIXME using both 0 and NaN for "missing", define DOUBLE_MISSING
             st.timepoint      = getIntField("timepoint", false, 0, 1, INT_MISSING);
             st.feed           = null; // this could circular-serialize the whole feed
-            feed.stop_times.put(new Fun.Tuple2(st.trip_id, st.stop_sequence), st);
+            if (!Objects.equals(tripId, st.trip_id)) {
+                putTrip();
+                tripId = st.trip_id;
+            }
+            stopTimes.add(st);
 
             /*
               Check referential integrity without storing references. StopTime cannot directly reference Trips or
-              Stops because they would be serialized into the MapDB.
+              Stops because they would be stored with it.
              */
             getRefField("trip_id", true, feed.trips);
             getRefField("stop_id", true, feed.stops);
         }
 
+        @Override
+        protected void endTable() {
+            putTrip();
+        }
+
+        private void putTrip() {
+            putGroup(feed.stop_times, tripId, stopTimes, st -> st.stop_sequence, StopTime[]::new);
+            stopTimes.clear();
+        }
+
     }
 
 
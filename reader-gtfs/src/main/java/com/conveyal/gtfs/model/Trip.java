@@ -77,7 +77,7 @@ public class Trip extends Entity {
 
             /*
               Check referential integrity without storing references. Trip cannot directly reference Services or
-              Routes because they would be serialized into the MapDB.
+              Routes because they would be stored with it.
              */
             // TODO confirm existence of shape ID
             getRefField("service_id", true, feed.services);
@@ -0,0 +1,173 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+/**
+ * Append-only storage of byte arrays in a DataAccess. Every array is prefixed with its length and starts at a
+ * 4 byte aligned position, so the length never straddles two segments and an array is referenced by its
+ * position / 4. Arrays may be bigger than a segment.
+ */
+public class ByteArrayStore {
+
+    private final DataAccess da;
+    private long size;
+
+    public ByteArrayStore(Directory dir, String name) {
+        this.da = dir.find(name);
+    }
+
+    public ByteArrayStore create(long initBytes) {
+        da.create(initBytes);
+        size = 0;
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        size = ((long) da.getHeader(4) << 32) | (da.getHeader(0) & 0xFFFFFFFFL);
+        return true;
+    }
+
+    public void flush() {
+        da.setHeader(0, (int) size);
+        da.setHeader(4, (int) (size >>> 32));
+        da.flush();
+    }
+
+    public void close() {
+        da.close();
+    }
+
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    public String getName() {
+        return da.getName();
+    }
+
+    /**
+     * @return the reference of the stored array, which is never negative
+     */
+    public int add(byte[] bytes) {
+        long pointer = size;
+        if (pointer >>> 2 >= Integer.MAX_VALUE)
+            throw new IllegalStateException(da.getName() + " is full");
+        long end = pointer + 4 + bytes.length;
+        da.ensureCapacity(end);
+        da.setInt(pointer, bytes.length);
+        int segmentSize = da.getSegmentSize();
+        for (int offset = 0; offset < bytes.length; offset += segmentSize) {
+            int length = Math.min(segmentSize, bytes.length - offset);
+            byte[] chunk = offset == 0 && length == bytes.length ? bytes : new byte[length];
+            if (chunk != bytes)
+                System.arraycopy(bytes, offset, chunk, 0, length);
+            da.setBytes(pointer + 4 + offset, chunk, length);
+        }
+        size = (end + 3) & ~3L;
+        return (int) (pointer >>> 2);
+    }
+
+    public byte[] get(int ref) {
+        return get(ref, 0, length(ref));
+    }
+
+    /**
+     * @return the length of the array, which must not have been removed
+     */
+    public int length(int ref) {
+        int length = da.getInt(4L * ref);
+        if (length < 0)
+            throw new IllegalArgumentException("Array " + ref + " of " + da.getName() + " was removed");
+        return length;
+    }
+
+    /**
+     * @return a copy of the specified part of the array
+     */
+    public byte[] get(int ref, int offset, int length) {
+        long pointer = 4L * ref + 4 + offset;
+        byte[] bytes = new byte[length];
+        int segmentSize = da.getSegmentSize();
+        if (length <= segmentSize) {
+            da.getBytes(pointer, bytes, length);
+            return bytes;
+        }
+        byte[] chunk = new byte[segmentSize];
+        for (int chunkOffset = 0; chunkOffset < length; chunkOffset += segmentSize) {
+            int chunkLength = Math.min(segmentSize, length - chunkOffset);
+            da.getBytes(pointer + chunkOffset, chunk, chunkLength);
+            System.arraycopy(chunk, 0, bytes, chunkOffset, chunkLength);
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the big endian int, as written by a ByteBuffer, at the start of the array without copying it.
+     */
+    public int getFirstInt(int ref) {
+        long pointer = 4L * ref + 4;
+        return (da.getByte(pointer) & 0xFF) << 24 | (da.getByte(pointer + 1) & 0xFF) << 16
+                | (da.getByte(pointer + 2) & 0xFF) << 8 | da.getByte(pointer + 3) & 0xFF;
+    }
+
+    /**
+     * Reads a single byte of the array without copying it.
+     */
+    public byte getByte(int ref, int offset) {
+        return da.getByte(4L * ref + 4 + offset);
+    }
+
+    /**
+     * Marks the array as removed. Its space is not reused, but {@link #next} skips it.
+     */
+    public void remove(int ref) {
+        long pointer = 4L * ref;
+        int length = da.getInt(pointer);
+        if (length >= 0)
+            da.setInt(pointer, -length - 1);
+    }
+
+    /**
+     * @param ref the reference of an array or -1 to start at the first one
+     * @return the reference of the next array that was not removed or -1 if there is none
+     */
+    public int next(int ref) {
+        long pointer = ref < 0 ? 0 : 4L * ref;
+        if (ref >= 0)
+            pointer = skip(pointer);
+        while (pointer < size) {
+            if (da.getInt(pointer) >= 0)
+                return (int) (pointer >>> 2);
+            pointer = skip(pointer);
+        }
+        return -1;
+    }
+
+    private long skip(long pointer) {
+        int length = da.getInt(pointer);
+        if (length < 0)
+            length = -length - 1;
+        return (pointer + 4 + length + 3) & ~3L;
+    }
+}
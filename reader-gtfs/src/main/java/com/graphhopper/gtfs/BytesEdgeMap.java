@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.Directory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A map from edge ids to values that are stored as byte arrays in a DataAccess. Many edges share the same value,
+ * e.g. all boardings of a trip, so equal byte arrays are stored only once.
+ */
+class BytesEdgeMap<V> extends AbstractMap<Integer, V> {
+
+    private final IntEdgeMap pointers;
+    private final ByteArrayStore data;
+    private final BytesKeyMap.Codec<V> codec;
+    // avoids storing the same value twice, only filled while writing
+    private final Map<ByteBuffer, Integer> pointerByValue = new HashMap<>();
+
+    BytesEdgeMap(Directory dir, String name, BytesKeyMap.Codec<V> codec) {
+        this.pointers = new IntEdgeMap(dir, name + "_edges");
+        this.data = new ByteArrayStore(dir, name);
+        this.codec = codec;
+    }
+
+    BytesEdgeMap<V> create(long initBytes) {
+        pointers.create(initBytes);
+        data.create(initBytes);
+        pointerByValue.clear();
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!pointers.loadExisting())
+            return false;
+        if (!data.loadExisting())
+            throw new IllegalStateException("Cannot load " + data.getName());
+        return true;
+    }
+
+    void flush() {
+        pointers.flush();
+        data.flush();
+    }
+
+    void close() {
+        pointers.close();
+        data.close();
+    }
+
+    boolean isClosed() {
+        return data.isClosed();
+    }
+
+    private int add(byte[] bytes) {
+        ByteBuffer key = ByteBuffer.wrap(bytes);
+        Integer existing = pointerByValue.get(key);
+        if (existing != null)
+            return existing;
+        int ref = data.add(bytes);
+        pointerByValue.put(key, ref);
+        return ref;
+    }
+
+    private V read(int ref) {
+        return codec.decode(data.get(ref));
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof Integer))
+            return null;
+        int pointer = pointers.getInt((Integer) key);
+        return pointer == Integer.MIN_VALUE ? null : read(pointer);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return pointers.containsKey(key);
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        int old = pointers.setInt(key, add(codec.encode(value)));
+        return old == Integer.MIN_VALUE ? null : read(old);
+    }
+
+    @Override
+    public int size() {
+        return pointers.size();
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                Iterator<Entry<Integer, Integer>> iter = pointers.entrySet().iterator();
+                return new Iterator<Entry<Integer, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, V> next() {
+                        Entry<Integer, Integer> entry = iter.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), read(entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return pointers.size();
+            }
+        };
+    }
+}
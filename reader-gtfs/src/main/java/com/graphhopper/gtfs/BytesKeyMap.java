@@ -0,0 +1,331 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A hash map that is stored in DataAccess objects, like the graph, instead of on the heap. Keys and values are
+ * encoded with a {@link Codec}, and two keys are equal if their encodings are. The slots of the open addressing
+ * table hold the hash and the reference of an entry in a {@link ByteArrayStore}, which holds the encoded key and
+ * value. Replacing a value appends a new entry, so the map is meant to be written once and then read. It is not
+ * thread-safe for writes, but any number of threads can read it when nobody writes.
+ * <p>
+ * Every lookup decodes the value again. For small tables that are read for every route, like the stops, a cache of
+ * decoded values can be enabled with {@link #setValueCacheSize}.
+ * <p>
+ * Entries are iterated in the order in which they were put.
+ */
+public class BytesKeyMap<K, V> extends AbstractMap<K, V> {
+
+    public interface Codec<T> {
+        byte[] encode(T value);
+
+        T decode(byte[] bytes);
+    }
+
+    private static final int SLOT_BYTES = 8;
+    private static final int MIN_SLOTS = 16;
+
+    private final DataAccess slots;
+    private final ByteArrayStore entries;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private int size;
+    private int slotCount;
+    // direct mapped by the hash of the key, a newer entry replaces the older one, null if disabled
+    private AtomicReferenceArray<CachedValue<K, V>> valueCache;
+
+    public BytesKeyMap(Directory dir, String name, Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.slots = dir.find(name + "_slots");
+        this.entries = new ByteArrayStore(dir, name);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    public BytesKeyMap<K, V> create(long initBytes) {
+        slots.create((long) MIN_SLOTS * SLOT_BYTES);
+        entries.create(initBytes);
+        size = 0;
+        slotCount = MIN_SLOTS;
+        clearValueCache();
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!slots.loadExisting())
+            return false;
+        if (!entries.loadExisting())
+            throw new IllegalStateException("Cannot load " + entries.getName());
+        size = slots.getHeader(0);
+        slotCount = slots.getHeader(4);
+        clearValueCache();
+        return true;
+    }
+
+    public void flush() {
+        slots.setHeader(0, size);
+        slots.setHeader(4, slotCount);
+        slots.flush();
+        entries.flush();
+    }
+
+    public void close() {
+        slots.close();
+        entries.close();
+    }
+
+    public boolean isClosed() {
+        return slots.isClosed();
+    }
+
+    /**
+     * Keeps the decoded values of up to the specified number of keys, rounded up to a power of two, so that they are
+     * not decoded again for every lookup. The cached values are shared, so they must not be modified. Use 0 to
+     * disable the cache.
+     */
+    public BytesKeyMap<K, V> setValueCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Value cache size cannot be negative: " + size);
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size)
+            capacity <<= 1;
+        valueCache = size == 0 ? null : new AtomicReferenceArray<>(capacity);
+        return this;
+    }
+
+    private void clearValueCache() {
+        if (valueCache != null)
+            valueCache = new AtomicReferenceArray<>(valueCache.length());
+    }
+
+    private static int cacheSlot(Object key, int capacity) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return the slot of the key or the free slot where it belongs
+     */
+    private long findSlot(byte[] key, int hash) {
+        int mask = slotCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long pointer = (long) slot * SLOT_BYTES;
+            int ref = slots.getInt(pointer + 4) - 1;
+            if (ref < 0 || slots.getInt(pointer) == hash && keyEquals(ref, key))
+                return pointer;
+        }
+    }
+
+    /**
+     * Compares the key with the one of the entry in place, i.e. without copying the entry.
+     */
+    private boolean keyEquals(int ref, byte[] key) {
+        if (entries.getFirstInt(ref) != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++) {
+            if (entries.getByte(ref, 4 + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the reference of the entry for the key or -1 if there is none
+     */
+    int findRef(K key) {
+        byte[] keyBytes = keyCodec.encode(key);
+        return slots.getInt(findSlot(keyBytes, hash(keyBytes)) + 4) - 1;
+    }
+
+    /**
+     * Puts the value like {@link #put} does.
+     *
+     * @return the reference of the new entry
+     */
+    int putRef(K key, V value) {
+        byte[] keyBytes = keyCodec.encode(key);
+        byte[] valueBytes = valueCodec.encode(value);
+        int hash = hash(keyBytes);
+        long pointer = findSlot(keyBytes, hash);
+        int old = slots.getInt(pointer + 4) - 1;
+        byte[] entry = new byte[4 + keyBytes.length + valueBytes.length];
+        ByteBuffer.wrap(entry).putInt(keyBytes.length).put(keyBytes).put(valueBytes);
+        int ref = entries.add(entry);
+        if (valueCache != null)
+            valueCache.set(cacheSlot(key, valueCache.length()), null);
+        if (old >= 0) {
+            entries.remove(old);
+            slots.setInt(pointer + 4, ref + 1);
+            return ref;
+        }
+        slots.setInt(pointer, hash);
+        slots.setInt(pointer + 4, ref + 1);
+        size++;
+        if (size > slotCount / 2)
+            grow();
+        return ref;
+    }
+
+    private void grow() {
+        int[] hashes = new int[size];
+        int[] refs = new int[size];
+        int count = 0;
+        for (long pointer = 0; pointer < (long) slotCount * SLOT_BYTES; pointer += SLOT_BYTES) {
+            int ref = slots.getInt(pointer + 4) - 1;
+            if (ref >= 0) {
+                hashes[count] = slots.getInt(pointer);
+                refs[count++] = ref;
+                slots.setInt(pointer, 0);
+                slots.setInt(pointer + 4, 0);
+            }
+        }
+        if (slotCount > Integer.MAX_VALUE / 2)
+            throw new IllegalStateException(entries.getName() + " is full");
+        slotCount *= 2;
+        slots.ensureCapacity((long) slotCount * SLOT_BYTES);
+        int mask = slotCount - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = hashes[i] & mask;
+            while (slots.getInt((long) slot * SLOT_BYTES + 4) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.setInt((long) slot * SLOT_BYTES, hashes[i]);
+            slots.setInt((long) slot * SLOT_BYTES + 4, refs[i] + 1);
+        }
+    }
+
+    K readKey(int ref) {
+        return readKey(entries.get(ref));
+    }
+
+    private K readKey(byte[] entry) {
+        int keyLength = ByteBuffer.wrap(entry).getInt();
+        return keyCodec.decode(Arrays.copyOfRange(entry, 4, 4 + keyLength));
+    }
+
+    private V readValue(byte[] entry) {
+        int keyLength = ByteBuffer.wrap(entry).getInt();
+        return valueCodec.decode(Arrays.copyOfRange(entry, 4 + keyLength, entry.length));
+    }
+
+    /**
+     * Copies only the value bytes of the entry.
+     */
+    private V readValue(int ref) {
+        int valueOffset = 4 + entries.getFirstInt(ref);
+        return valueCodec.decode(entries.get(ref, valueOffset, entries.length(ref) - valueOffset));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        if (key == null)
+            return null;
+        AtomicReferenceArray<CachedValue<K, V>> cache = valueCache;
+        int cacheSlot = -1;
+        if (cache != null) {
+            cacheSlot = cacheSlot(key, cache.length());
+            CachedValue<K, V> cached = cache.get(cacheSlot);
+            if (cached != null && cached.key.equals(key))
+                return cached.value;
+        }
+        int ref;
+        try {
+            ref = findRef((K) key);
+        } catch (ClassCastException e) {
+            return null;
+        }
+        if (ref < 0)
+            return null;
+        V value = readValue(ref);
+        if (cache != null)
+            cache.set(cacheSlot, new CachedValue<>((K) key, value));
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V old = get(key);
+        putRef(key, value);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    private int ref = entries.next(-1);
+
+                    @Override
+                    public boolean hasNext() {
+                        return ref >= 0;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        byte[] entry = entries.get(ref);
+                        Entry<K, V> result = new SimpleImmutableEntry<>(readKey(entry), readValue(entry));
+                        ref = entries.next(ref);
+                        return result;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static class CachedValue<K, V> {
+        final K key;
+        final V value;
+
+        CachedValue(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
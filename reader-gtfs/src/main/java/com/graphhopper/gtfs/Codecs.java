@@ -0,0 +1,152 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Codecs for the values of {@link BytesKeyMap} and {@link BytesEdgeMap}.
+ */
+public final class Codecs {
+
+    private Codecs() {
+    }
+
+    public static final BytesKeyMap.Codec<String> STRING = new BytesKeyMap.Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final BytesKeyMap.Codec<Integer> INT = new BytesKeyMap.Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    public static final BytesKeyMap.Codec<Boolean> BOOLEAN = new BytesKeyMap.Codec<Boolean>() {
+        @Override
+        public byte[] encode(Boolean value) {
+            return new byte[]{(byte) (value ? 1 : 0)};
+        }
+
+        @Override
+        public Boolean decode(byte[] bytes) {
+            return bytes[0] != 0;
+        }
+    };
+
+    public static final BytesKeyMap.Codec<int[]> INT_ARRAY = new BytesKeyMap.Codec<int[]>() {
+        @Override
+        public byte[] encode(int[] value) {
+            ByteBuffer buffer = ByteBuffer.allocate(4 * value.length);
+            buffer.asIntBuffer().put(value);
+            return buffer.array();
+        }
+
+        @Override
+        public int[] decode(byte[] bytes) {
+            int[] value = new int[bytes.length / 4];
+            ByteBuffer.wrap(bytes).asIntBuffer().get(value);
+            return value;
+        }
+    };
+
+    /**
+     * A codec that writes the value to a DataOutputStream. The helpers write values that may be null.
+     */
+    public static abstract class StreamCodec<T> implements BytesKeyMap.Codec<T> {
+
+        protected abstract void write(DataOutputStream out, T value) throws IOException;
+
+        protected abstract T read(DataInputStream in) throws IOException;
+
+        @Override
+        public final byte[] encode(T value) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                write(out, value);
+                out.flush();
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public final T decode(byte[] bytes) {
+            try {
+                return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        protected static void writeString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null)
+                out.writeUTF(value);
+        }
+
+        protected static String readString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        protected static void writeUrl(DataOutputStream out, URL value) throws IOException {
+            writeString(out, value == null ? null : value.toString());
+        }
+
+        protected static URL readUrl(DataInputStream in) throws IOException {
+            String url = readString(in);
+            try {
+                return url == null ? null : new URL(url);
+            } catch (MalformedURLException e) {
+                throw new IOException(e);
+            }
+        }
+
+        protected static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null)
+                out.writeLong(value.toEpochDay());
+        }
+
+        protected static LocalDate readDate(DataInputStream in) throws IOException {
+            return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Single-criterion, time-dependent Dijkstra over the public transit graph, which only keeps the
+ * earliest arrival time (or the latest departure time, when searching backwards) per node.
+ * <p>
+ * This is what isochrones need: compared to the {@link MultiCriteriaLabelSetting}, it does not
+ * create a Label per relaxed edge and does not keep Pareto sets. The search state is kept in
+ * arrays which are reused for the next search, so instances are meant to be pooled, see {@link Pool}.
+ * An instance must not be used by more than one thread at a time.
+ */
+public final class EarliestArrivalSearch {
+
+    public interface NodeVisitor {
+        /**
+         * @param time the arrival time at the node, in epoch millis. A node can be visited again
+         *             with a better time, in which case the earlier visit should be overridden.
+         */
+        void visit(int node, long time);
+    }
+
+    private final PtEncodedValues flagEncoder;
+    private final Consumer<EdgeIteratorState> relax = this::relax;
+    private MinHeapWithUpdate heap;
+    private long[] times;
+    private int[] searchIds;
+    private int searchId;
+
+    private GraphExplorer explorer;
+    private boolean reverse;
+    private int blockedRouteTypes;
+    private long startTime;
+    private long currentTime;
+    private int visitedNodes;
+
+    public EarliestArrivalSearch(PtEncodedValues flagEncoder) {
+        this.flagEncoder = flagEncoder;
+    }
+
+    /**
+     * A bounded pool of searches. At most capacity idle searches are kept, so the memory it holds
+     * on to does not grow with the peak number of concurrent requests.
+     */
+    public static final class Pool {
+        private final PtEncodedValues flagEncoder;
+        private final BlockingQueue<EarliestArrivalSearch> idle;
+
+        public Pool(PtEncodedValues flagEncoder, int capacity) {
+            this.flagEncoder = flagEncoder;
+            this.idle = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * @return an idle search, or a new one if there is none
+         */
+        public EarliestArrivalSearch acquire() {
+            EarliestArrivalSearch search = idle.poll();
+            return search != null ? search : new EarliestArrivalSearch(flagEncoder);
+        }
+
+        /**
+         * Returns the search to the pool. It is dropped if the pool is full.
+         */
+        public void release(EarliestArrivalSearch search) {
+            idle.offer(search);
+        }
+    }
+
+    /**
+     * Visits every node which can be reached within timeLimitMillis, in order of travel time. The
+     * search stops early after maxVisitedNodes nodes.
+     */
+    public void calcArrivalTimes(GraphExplorer explorer, int nodes, boolean reverse, int from, Instant startTime, int blockedRouteTypes, long timeLimitMillis, int maxVisitedNodes, NodeVisitor visitor) {
+        init(nodes);
+        this.explorer = explorer;
+        this.reverse = reverse;
+        this.blockedRouteTypes = blockedRouteTypes;
+        this.startTime = startTime.toEpochMilli();
+        visitedNodes = 0;
+        setTime(from, this.startTime);
+        heap.push(from, 0);
+        try {
+            while (!heap.isEmpty() && heap.peekValue() <= timeLimitMillis && visitedNodes < maxVisitedNodes) {
+                int node = heap.poll();
+                currentTime = times[node];
+                visitedNodes++;
+                visitor.visit(node, currentTime);
+                explorer.exploreEdgesAround(node, currentTime, relax);
+            }
+        } finally {
+            heap.clear();
+            this.explorer = null;
+        }
+    }
+
+    private void init(int nodes) {
+        if (times == null || times.length < nodes) {
+            heap = new MinHeapWithUpdate(nodes);
+            times = new long[nodes];
+            searchIds = new int[nodes];
+            searchId = 0;
+        }
+        searchId++;
+        if (searchId == Integer.MAX_VALUE) {
+            Arrays.fill(searchIds, 0);
+            searchId = 1;
+        }
+    }
+
+    private void relax(EdgeIteratorState edge) {
+        GtfsStorage.EdgeType edgeType = edge.get(flagEncoder.getTypeEnc());
+        if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT) && (blockedRouteTypes & (1 << edge.get(flagEncoder.getValidityIdEnc()))) != 0)
+            return;
+        if (explorer.isBlocked(edge))
+            return;
+        long nextTime;
+        if (reverse) {
+            nextTime = currentTime - explorer.calcTravelTimeMillis(edge, currentTime);
+        } else {
+            nextTime = currentTime + explorer.calcTravelTimeMillis(edge, currentTime);
+        }
+        int adjNode = edge.getAdjNode();
+        if (searchIds[adjNode] == searchId && !isBetter(nextTime, times[adjNode]))
+            return;
+        setTime(adjNode, nextTime);
+        // Travel times are exact in the times array, the (float) heap key is only used for ordering.
+        // Should rounding ever settle a node too early, it is simply pushed again.
+        float key = (reverse ? -1 : 1) * (nextTime - startTime);
+        if (heap.contains(adjNode)) {
+            heap.update(adjNode, key);
+        } else {
+            heap.push(adjNode, key);
+        }
+    }
+
+    private boolean isBetter(long time, long thanTime) {
+        return reverse ? time > thanTime : time < thanTime;
+    }
+
+    private void setTime(int node, long time) {
+        times[node] = time;
+        searchIds[node] = searchId;
+    }
+
+    int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+}
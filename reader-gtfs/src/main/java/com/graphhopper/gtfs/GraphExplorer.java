@@ -30,15 +30,12 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Spliterators;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 public final class GraphExplorer {
 
+    private final Graph graph;
     private final EdgeExplorer edgeExplorer;
     private final PtEncodedValues flagEncoder;
     private final GtfsStorage gtfsStorage;
@@ -58,6 +55,7 @@ public final class GraphExplorer {
         DefaultEdgeFilter ptOut = DefaultEdgeFilter.outEdges(flagEncoder.getAccessEnc());
         EdgeFilter in = edgeState -> accessEgressIn.accept(edgeState) || ptIn.accept(edgeState);
         EdgeFilter out = edgeState -> accessEgressOut.accept(edgeState) || ptOut.accept(edgeState);
+        this.graph = graph;
         this.edgeExplorer = graph.createEdgeExplorer(reverse ? in : out);
         this.flagEncoder = flagEncoder;
         this.gtfsStorage = gtfsStorage;
@@ -68,50 +66,64 @@ public final class GraphExplorer {
     }
 
     Stream<EdgeIteratorState> exploreEdgesAround(Label label) {
-        return allEdgesAround(label).filter(new EdgeIteratorStatePredicate(label));
+        ArrayList<EdgeIteratorState> edges = new ArrayList<>();
+        exploreEdgesAround(label, edge -> edges.add(edge.detach(false)));
+        return edges.stream();
     }
 
-    private Stream<EdgeIteratorState> allEdgesAround(Label label) {
-        return StreamSupport.stream(new Spliterators.AbstractSpliterator<EdgeIteratorState>(0, 0) {
-            EdgeIterator edgeIterator = edgeExplorer.setBaseNode(label.adjNode);
-
-            @Override
-            public boolean tryAdvance(Consumer<? super EdgeIteratorState> action) {
-                if (edgeIterator.next()) {
-                    GtfsStorage.EdgeType edgeType = edgeIterator.get(flagEncoder.getTypeEnc());
-
-                    // Optimization (around 20% in Swiss network):
-                    // Only use the (single) least-wait-time edge to enter the
-                    // time expanded network. Later departures are reached via
-                    // WAIT edges. Algorithmically not necessary, and does not
-                    // reduce total number of relaxed nodes, but takes stress
-                    // off the priority queue. Additionally, when only walking,
-                    // don't bother finding the enterEdge, because we are not going to enter.
-                    if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
-                        if (walkOnly) {
-                            return false;
-                        } else {
-                            action.accept(findEnterEdge()); // fully consumes edgeIterator
-                            return true;
-                        }
-                    }
+    /**
+     * Same as {@link #exploreEdgesAround(Label)}, but without building a Stream per expansion.
+     * The EdgeIteratorState passed to the action is only valid during the call, and is usually the
+     * shared iterator of this explorer, so it must be detached if it is kept.
+     */
+    void exploreEdgesAround(Label label, Consumer<EdgeIteratorState> action) {
+        exploreEdgesAround(label.adjNode, label.currentTime, action);
+    }
 
-                    action.accept(edgeIterator);
-                    return true;
+    /**
+     * Explores the edges around a node reached at the given time, for searches which do not keep Labels.
+     */
+    void exploreEdgesAround(int node, long currentTime, Consumer<EdgeIteratorState> action) {
+        EdgeIterator edgeIterator = edgeExplorer.setBaseNode(node);
+        while (edgeIterator.next()) {
+            GtfsStorage.EdgeType edgeType = edgeIterator.get(flagEncoder.getTypeEnc());
+
+            // Optimization (around 20% in Swiss network):
+            // Only use the (single) least-wait-time edge to enter the
+            // time expanded network. Later departures are reached via
+            // WAIT edges. Algorithmically not necessary, and does not
+            // reduce total number of relaxed nodes, but takes stress
+            // off the priority queue. Additionally, when only walking,
+            // don't bother finding the enterEdge, because we are not going to enter.
+            if (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK) {
+                if (!walkOnly) {
+                    EdgeIteratorState enterEdge = findEnterEdge(edgeIterator, currentTime); // fully consumes edgeIterator
+                    if (accept(enterEdge, enterEdge.get(flagEncoder.getTypeEnc()), currentTime)) {
+                        action.accept(enterEdge);
+                    }
                 }
-                return false;
+                return;
             }
 
-            private EdgeIteratorState findEnterEdge() {
-                ArrayList<EdgeIteratorState> allEnterEdges = new ArrayList<>();
-                allEnterEdges.add(edgeIterator.detach(false));
-                while (edgeIterator.next()) {
-                    allEnterEdges.add(edgeIterator.detach(false));
-                }
-                return allEnterEdges.stream().min(Comparator.comparingLong(e -> calcTravelTimeMillis(e, label.currentTime))).get();
+            if (accept(edgeIterator, edgeType, currentTime)) {
+                action.accept(edgeIterator);
             }
+        }
+    }
 
-        }, false);
+    private EdgeIteratorState findEnterEdge(EdgeIterator edgeIterator, long currentTime) {
+        int bestEdge = edgeIterator.getEdge();
+        int bestAdjNode = edgeIterator.getAdjNode();
+        long bestTravelTime = calcTravelTimeMillis(edgeIterator, currentTime);
+        while (edgeIterator.next()) {
+            long travelTime = calcTravelTimeMillis(edgeIterator, currentTime);
+            if (travelTime < bestTravelTime) {
+                bestEdge = edgeIterator.getEdge();
+                bestAdjNode = edgeIterator.getAdjNode();
+                bestTravelTime = travelTime;
+            }
+        }
+        return graph.getEdgeIteratorState(bestEdge, bestAdjNode);
     }
 
     long calcTravelTimeMillis(EdgeIteratorState edge, long earliestStartTime) {
@@ -164,8 +176,7 @@ public final class GraphExplorer {
         return Instant.ofEpochMilli(instant).atZone(zoneId).toLocalTime().toNanoOfDay() / 1000000L;
     }
 
-    private boolean isValidOn(EdgeIteratorState edge, long instant) {
-        GtfsStorage.EdgeType edgeType = edge.get(flagEncoder.getTypeEnc());
+    private boolean isValidOn(EdgeIteratorState edge, GtfsStorage.EdgeType edgeType, long instant) {
         if (edgeType == GtfsStorage.EdgeType.BOARD || edgeType == GtfsStorage.EdgeType.ALIGHT) {
             final int validityId = edge.get(flagEncoder.getValidityIdEnc());
             final GtfsStorage.Validity validity = realtimeFeed.getValidity(validityId);
@@ -180,35 +191,23 @@ public final class GraphExplorer {
         return edge.get(flagEncoder.getTransfersEnc());
     }
 
-    private class EdgeIteratorStatePredicate implements Predicate<EdgeIteratorState> {
-        private final Label label;
-        boolean foundEnteredTimeExpandedNetworkEdge;
-
-        EdgeIteratorStatePredicate(Label label) {
-            this.label = label;
-            foundEnteredTimeExpandedNetworkEdge = false;
-        }
-
-        @Override
-        public boolean test(EdgeIteratorState edgeIterator) {
-            final GtfsStorage.EdgeType edgeType = edgeIterator.get(flagEncoder.getTypeEnc());
-            if (edgeType == GtfsStorage.EdgeType.HIGHWAY) {
-                if (reverse) {
-                    return edgeIterator.getReverse(accessEgressWeighting.getFlagEncoder().getAccessEnc());
-                } else {
-                    return edgeIterator.get(accessEgressWeighting.getFlagEncoder().getAccessEnc());
-                }
-            }
-            if (walkOnly && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
-                return false;
-            }
-            if (!(ignoreValidities || isValidOn(edgeIterator, label.currentTime))) {
-                return false;
+    private boolean accept(EdgeIteratorState edgeIterator, GtfsStorage.EdgeType edgeType, long currentTime) {
+        if (edgeType == GtfsStorage.EdgeType.HIGHWAY) {
+            if (reverse) {
+                return edgeIterator.getReverse(accessEgressWeighting.getFlagEncoder().getAccessEnc());
+            } else {
+                return edgeIterator.get(accessEgressWeighting.getFlagEncoder().getAccessEnc());
             }
-            if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
-                return false;
-            }
-            return true;
         }
+        if (walkOnly && edgeType != (reverse ? GtfsStorage.EdgeType.EXIT_PT : GtfsStorage.EdgeType.ENTER_PT)) {
+            return false;
+        }
+        if (!(ignoreValidities || isValidOn(edgeIterator, edgeType, currentTime))) {
+            return false;
+        }
+        if (edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL && !reverse) {
+            return false;
+        }
+        return true;
     }
 }
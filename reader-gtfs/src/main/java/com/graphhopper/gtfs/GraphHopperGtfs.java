@@ -46,18 +46,32 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.zip.ZipFile;
 
 public class GraphHopperGtfs extends GraphHopperOSM {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphHopperGtfs.class);
+    private static final Duration INTER_FEED_TRANSFER_TIME = Duration.ofMinutes(2);
 
     private final GraphHopperConfig ghConfig;
+    private final int maxProfileBuckets;
     private GtfsStorage gtfsStorage;
+    private ExecutorService profileBucketExecutor;
+    private EarliestArrivalSearch.Pool earliestArrivalSearchPool;
 
     public GraphHopperGtfs(GraphHopperConfig ghConfig) {
         this.ghConfig = ghConfig;
+        this.maxProfileBuckets = ghConfig.getInt("gtfs.max_profile_buckets", 4);
+        if (maxProfileBuckets < 1)
+            throw new IllegalArgumentException("gtfs.max_profile_buckets must be positive but was " + maxProfileBuckets);
     }
 
     @Override
@@ -153,15 +167,14 @@ public class GraphHopperGtfs extends GraphHopperOSM {
             GraphHopperStorage graphHopperStorage = getGraphHopperStorage();
             LocationIndex streetNetworkIndex = getLocationIndex();
             try {
-                int idx = 0;
                 List<String> gtfsFiles = ghConfig.has("gtfs.file") ? Arrays.asList(ghConfig.getString("gtfs.file", "").split(",")) : Collections.emptyList();
-                for (String gtfsFile : gtfsFiles) {
+                IntStream.range(0, gtfsFiles.size()).parallel().forEach(idx -> {
                     try {
-                        getGtfsStorage().loadGtfsFromZipFile("gtfs_" + idx++, new ZipFile(gtfsFile));
+                        getGtfsStorage().loadGtfsFromZipFile("gtfs_" + idx, new ZipFile(gtfsFiles.get(idx)));
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
-                }
+                });
 
                 //When set a transfer edge will be created between stops connected to same OSM node. This is to keep previous behavior before
                 //this commit https://github.com/graphhopper/graphhopper/commit/31ae1e1534849099f24e45d53c96340a7c6a5197.
@@ -169,8 +182,10 @@ public class GraphHopperGtfs extends GraphHopperOSM {
                         ghConfig.getBool("gtfs.create_transfers_stops_same_osm_node", false);
 
                 HashMap<String, GtfsReader> readers = new HashMap<>();
+                HashMap<String, Transfers> transfersByFeed = new HashMap<>();
                 getGtfsStorage().getGtfsFeeds().forEach((id, gtfsFeed) -> {
                     Transfers transfers = new Transfers(gtfsFeed);
+                    transfersByFeed.put(id, transfers);
                     GtfsReader gtfsReader = new GtfsReader(id, graphHopperStorage, graphHopperStorage.getEncodingManager(), getGtfsStorage(), streetNetworkIndex, transfers);
                     gtfsReader.setCreateTransferStopsConnectSameOsmNode(createTransferStopsConnectSameOsmNode);
                     gtfsReader.connectStopsToStreetNetwork();
@@ -184,7 +199,15 @@ public class GraphHopperGtfs extends GraphHopperOSM {
                     gtfsReader.buildPtNetwork();
                     readers.put(id, gtfsReader);
                 });
-                insertTransfersBetweenFeeds(readers);
+                // Off by default: when set, walking between nearby stops becomes a transfer, like one from transfers.txt.
+                Duration maxTransferWalkTime = Duration.ofSeconds(ghConfig.getInt("gtfs.max_transfer_walk_seconds", 0));
+                List<Integer> stationNodes = getGtfsStorage().getStationNodes().values().stream().distinct().collect(Collectors.toList());
+                Map<Integer, List<NearbyArrivalPlatform>> nearbyArrivalPlatforms = findNearbyArrivalPlatforms(stationNodes,
+                        maxTransferWalkTime.compareTo(INTER_FEED_TRANSFER_TIME) > 0 ? maxTransferWalkTime : INTER_FEED_TRANSFER_TIME);
+                insertTransfersBetweenFeeds(readers, stationNodes, nearbyArrivalPlatforms);
+                if (!maxTransferWalkTime.isZero()) {
+                    insertWalkTransfers(readers, transfersByFeed, stationNodes, nearbyArrivalPlatforms, maxTransferWalkTime);
+                }
             } catch (Exception e) {
                 throw new RuntimeException("Error while constructing transit network. Is your GTFS file valid? Please check log for possible causes.", e);
             }
@@ -195,16 +218,37 @@ public class GraphHopperGtfs extends GraphHopperOSM {
         }
     }
 
-    private void insertTransfersBetweenFeeds(HashMap<String, GtfsReader> readers) {
-        LOGGER.info("Looking for inter-feed transfers");
+    static class NearbyArrivalPlatform {
+        final int stationNode;
+        final int arrivalPlatformNode;
+        final GtfsStorageI.PlatformDescriptor platformDescriptor;
+        final long walkTime;
+
+        NearbyArrivalPlatform(int stationNode, int arrivalPlatformNode, GtfsStorageI.PlatformDescriptor platformDescriptor, long walkTime) {
+            this.stationNode = stationNode;
+            this.arrivalPlatformNode = arrivalPlatformNode;
+            this.platformDescriptor = platformDescriptor;
+            this.walkTime = walkTime;
+        }
+    }
+
+    /**
+     * For each station, finds the arrival platforms from which it can be reached on foot within maxWalkTime, in
+     * order of walking time. This is one backward one-to-many search per station. The searches only read the
+     * graph, so they run in parallel, and the callers add the resulting edges afterwards.
+     */
+    private Map<Integer, List<NearbyArrivalPlatform>> findNearbyArrivalPlatforms(List<Integer> stationNodes, Duration maxWalkTime) {
+        LOGGER.info("Looking for arrival platforms within {} of {} stations", maxWalkTime, stationNodes.size());
         GraphHopperStorage graphHopperStorage = getGraphHopperStorage();
-        QueryGraph queryGraph = QueryGraph.create(graphHopperStorage, Collections.emptyList());
         FastestWeighting accessEgressWeighting = new FastestWeighting(graphHopperStorage.getEncodingManager().getEncoder("foot"));
         PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(graphHopperStorage.getEncodingManager());
-        final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, ptEncodedValues, getGtfsStorage(), RealtimeFeed.empty(getGtfsStorage()), true, true, 5.0, false);
-        getGtfsStorage().getStationNodes().values().stream().distinct().forEach(stationNode -> {
+        RealtimeFeed realtimeFeed = RealtimeFeed.empty(getGtfsStorage());
+        return stationNodes.parallelStream().collect(Collectors.toMap(stationNode -> stationNode, stationNode -> {
+            QueryGraph queryGraph = QueryGraph.create(graphHopperStorage, Collections.emptyList());
+            final GraphExplorer graphExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, ptEncodedValues, getGtfsStorage(), realtimeFeed, true, true, 5.0, false);
             MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, ptEncodedValues, true, false, false, false, Integer.MAX_VALUE, new ArrayList<>());
-            router.setLimitStreetTime(Duration.ofMinutes(2).toMillis());
+            router.setLimitStreetTime(maxWalkTime.toMillis());
+            List<NearbyArrivalPlatform> result = new ArrayList<>();
             Iterator<Label> iterator = router.calcLabels(stationNode, Instant.ofEpochMilli(0), 0).iterator();
             while (iterator.hasNext()) {
                 Label label = iterator.next();
@@ -212,22 +256,74 @@ public class GraphHopperGtfs extends GraphHopperOSM {
                     EdgeIteratorState edgeIteratorState = graphHopperStorage.getEdgeIteratorState(label.edge, label.adjNode);
                     if (edgeIteratorState.get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.EXIT_PT) {
                         GtfsStorageI.PlatformDescriptor fromPlatformDescriptor = getGtfsStorage().getPlatformDescriptorByEdge().get(label.edge);
-                        DefaultEdgeFilter filter = DefaultEdgeFilter.outEdges(ptEncodedValues.getAccessEnc());
-                        EdgeExplorer edgeExplorer = graphHopperStorage.createEdgeExplorer(filter);
-                        EdgeIterator edgeIterator = edgeExplorer.setBaseNode(stationNode);
-                        while (edgeIterator.next()) {
-                            if (edgeIterator.get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.ENTER_PT) {
-                                GtfsStorageI.PlatformDescriptor toPlatformDescriptor = getGtfsStorage().getPlatformDescriptorByEdge().get(edgeIterator.getEdge());
-                                if (!toPlatformDescriptor.feed_id.equals(fromPlatformDescriptor.feed_id)) {
-                                    GtfsReader toFeedReader = readers.get(toPlatformDescriptor.feed_id);
-                                    toFeedReader.insertTransferEdges(label.adjNode, (int) Duration.ofMinutes(2).getSeconds(), toPlatformDescriptor);
-                                }
+                        result.add(new NearbyArrivalPlatform(label.parent.adjNode, label.adjNode, fromPlatformDescriptor, label.walkTime));
+                    }
+                }
+            }
+            return result;
+        }));
+    }
+
+    private void insertTransfersBetweenFeeds(HashMap<String, GtfsReader> readers, List<Integer> stationNodes, Map<Integer, List<NearbyArrivalPlatform>> nearbyArrivalPlatforms) {
+        LOGGER.info("Looking for inter-feed transfers");
+        GraphHopperStorage graphHopperStorage = getGraphHopperStorage();
+        PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(graphHopperStorage.getEncodingManager());
+        DefaultEdgeFilter filter = DefaultEdgeFilter.outEdges(ptEncodedValues.getAccessEnc());
+        EdgeExplorer edgeExplorer = graphHopperStorage.createEdgeExplorer(filter);
+        for (int stationNode : stationNodes) {
+            for (NearbyArrivalPlatform arrivalPlatform : nearbyArrivalPlatforms.get(stationNode)) {
+                if (arrivalPlatform.walkTime > INTER_FEED_TRANSFER_TIME.toMillis()) {
+                    continue;
+                }
+                GtfsStorageI.PlatformDescriptor fromPlatformDescriptor = arrivalPlatform.platformDescriptor;
+                EdgeIterator edgeIterator = edgeExplorer.setBaseNode(stationNode);
+                while (edgeIterator.next()) {
+                    if (edgeIterator.get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.ENTER_PT) {
+                        GtfsStorageI.PlatformDescriptor toPlatformDescriptor = getGtfsStorage().getPlatformDescriptorByEdge().get(edgeIterator.getEdge());
+                        if (!toPlatformDescriptor.feed_id.equals(fromPlatformDescriptor.feed_id)) {
+                            GtfsReader toFeedReader = readers.get(toPlatformDescriptor.feed_id);
+                            toFeedReader.insertTransferEdges(arrivalPlatform.arrivalPlatformNode, (int) INTER_FEED_TRANSFER_TIME.getSeconds(), toPlatformDescriptor);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walking between nearby stations becomes a transfer with the walking time as its minimum transfer time,
+     * so the router doesn't need to search the street network for it. Stop pairs which have rules in
+     * transfers.txt keep only those, and pairs of feeds already connected by inter-feed transfers are skipped.
+     */
+    private void insertWalkTransfers(HashMap<String, GtfsReader> readers, HashMap<String, Transfers> transfersByFeed, List<Integer> stationNodes, Map<Integer, List<NearbyArrivalPlatform>> nearbyArrivalPlatforms, Duration maxWalkTime) {
+        LOGGER.info("Inserting walking transfers of up to {}", maxWalkTime);
+        GraphHopperStorage graphHopperStorage = getGraphHopperStorage();
+        PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(graphHopperStorage.getEncodingManager());
+        DefaultEdgeFilter filter = DefaultEdgeFilter.outEdges(ptEncodedValues.getAccessEnc());
+        EdgeExplorer edgeExplorer = graphHopperStorage.createEdgeExplorer(filter);
+        for (int stationNode : stationNodes) {
+            for (NearbyArrivalPlatform arrivalPlatform : nearbyArrivalPlatforms.get(stationNode)) {
+                if (arrivalPlatform.stationNode == stationNode || arrivalPlatform.walkTime > maxWalkTime.toMillis()) {
+                    continue;
+                }
+                GtfsStorageI.PlatformDescriptor fromPlatformDescriptor = arrivalPlatform.platformDescriptor;
+                EdgeIterator edgeIterator = edgeExplorer.setBaseNode(stationNode);
+                while (edgeIterator.next()) {
+                    if (edgeIterator.get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.ENTER_PT) {
+                        GtfsStorageI.PlatformDescriptor toPlatformDescriptor = getGtfsStorage().getPlatformDescriptorByEdge().get(edgeIterator.getEdge());
+                        if (toPlatformDescriptor.feed_id.equals(fromPlatformDescriptor.feed_id)) {
+                            if (transfersByFeed.get(toPlatformDescriptor.feed_id).hasTransferRules(fromPlatformDescriptor.stop_id, toPlatformDescriptor.stop_id)) {
+                                continue;
                             }
+                        } else if (arrivalPlatform.walkTime <= INTER_FEED_TRANSFER_TIME.toMillis()) {
+                            continue;
                         }
+                        int walkSeconds = (int) Math.ceil(arrivalPlatform.walkTime / 1000.0);
+                        readers.get(toPlatformDescriptor.feed_id).insertTransferEdges(arrivalPlatform.arrivalPlatformNode, walkSeconds, toPlatformDescriptor);
                     }
                 }
             }
-        });
+        }
     }
 
     private Stream<TransferWithTime> getType0TransferWithTimes(String id, GTFSFeed gtfsFeed) {
@@ -274,12 +370,58 @@ public class GraphHopperGtfs extends GraphHopperOSM {
                 });
     }
 
+    @Override
+    protected void flush() {
+        super.flush();
+        getGtfsStorage().flush();
+    }
+
     @Override
     public void close() {
+        synchronized (this) {
+            if (profileBucketExecutor != null)
+                profileBucketExecutor.shutdownNow();
+            profileBucketExecutor = null;
+        }
         getGtfsStorage().close();
         super.close();
     }
 
+    /**
+     * The largest number of buckets a RAPTOR profile query may be split into, see {@link Request#setProfileBuckets}.
+     */
+    public int getMaxProfileBuckets() {
+        return maxProfileBuckets;
+    }
+
+    /**
+     * The executor shared by all requests which searches the buckets of RAPTOR profile queries. It has
+     * {@link #getMaxProfileBuckets()} threads and a bounded queue. When the queue is full, the request thread searches
+     * the bucket itself, so a busy server degrades to sequential searches instead of queueing up work.
+     */
+    public synchronized ExecutorService getProfileBucketExecutor() {
+        if (profileBucketExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            profileBucketExecutor = new ThreadPoolExecutor(maxProfileBuckets, maxProfileBuckets, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(4 * maxProfileBuckets), runnable -> {
+                Thread thread = new Thread(runnable, "gh-pt-profile-bucket-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return profileBucketExecutor;
+    }
+
+    /**
+     * The searches shared by all isochrone requests. As many idle searches are kept as there are processors.
+     */
+    public synchronized EarliestArrivalSearch.Pool getEarliestArrivalSearchPool() {
+        if (earliestArrivalSearchPool == null) {
+            earliestArrivalSearchPool = new EarliestArrivalSearch.Pool(PtEncodedValues.fromEncodingManager(getEncodingManager()), Runtime.getRuntime().availableProcessors());
+        }
+        return earliestArrivalSearchPool;
+    }
+
     public GtfsStorage getGtfsStorage() {
         return gtfsStorage;
     }
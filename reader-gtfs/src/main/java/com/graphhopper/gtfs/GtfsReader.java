@@ -22,6 +22,7 @@ import com.carrotsearch.hppc.IntArrayList;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.*;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Iterables;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.routing.ev.BooleanEncodedValue;
 import com.graphhopper.routing.ev.IntEncodedValue;
@@ -38,13 +39,13 @@ import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistanceCalcEarth;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
-import org.mapdb.Fun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static com.conveyal.gtfs.model.Entity.Writer.convertToGtfsTime;
@@ -52,6 +53,8 @@ import static java.time.temporal.ChronoUnit.DAYS;
 
 class GtfsReader {
 
+    private static final int TRIP_BLOCKS_PER_BATCH = 10_000;
+
     private LocalDate startDate;
     private LocalDate endDate;
 
@@ -115,24 +118,30 @@ class GtfsReader {
     void connectStopsToStreetNetwork() {
         FlagEncoder footEncoder = ((GraphHopperStorage) graph).getEncodingManager().getEncoder("foot");
         final EdgeFilter filter = DefaultEdgeFilter.allEdges(footEncoder);
-        for (Stop stop : feed.stops.values()) {
-            if (stop.location_type == 0) { // Only stops. Not interested in parent stations for now.
-                QueryResult locationQueryResult = walkNetworkIndex.findClosest(stop.stop_lat, stop.stop_lon, filter);
-                int streetNode;
-                if (!locationQueryResult.isValid()) {
-                    streetNode = i++;
-                    nodeAccess.setNode(streetNode, stop.stop_lat, stop.stop_lon);
-                    EdgeIteratorState edge = graph.edge(streetNode, streetNode);
-                    edge.set(accessEnc, true).setReverse(accessEnc, false);
-                    edge.set(footEncoder.getAccessEnc(), true).setReverse(footEncoder.getAccessEnc(), false);
-                    edge.set(footEncoder.getAverageSpeedEnc(), 5.0);
-                } else {
-                    streetNode = locationQueryResult.getClosestNode();
-                }
-                Integer prev = gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), streetNode);
-                if (prev != null) {
-                    throw new RuntimeException("Duplicate stop id: "+stop.stop_id);
-                }
+        List<Stop> stops = feed.stops.values().stream()
+                .filter(stop -> stop.location_type == 0) // Only stops. Not interested in parent stations for now.
+                .collect(Collectors.toList());
+        // Snapping only reads the street network, so all stops are snapped concurrently before we add anything to the graph.
+        List<QueryResult> locationQueryResults = stops.parallelStream()
+                .map(stop -> walkNetworkIndex.findClosest(stop.stop_lat, stop.stop_lon, filter))
+                .collect(Collectors.toList());
+        for (int stopIndex = 0; stopIndex < stops.size(); stopIndex++) {
+            Stop stop = stops.get(stopIndex);
+            QueryResult locationQueryResult = locationQueryResults.get(stopIndex);
+            int streetNode;
+            if (!locationQueryResult.isValid()) {
+                streetNode = i++;
+                nodeAccess.setNode(streetNode, stop.stop_lat, stop.stop_lon);
+                EdgeIteratorState edge = graph.edge(streetNode, streetNode);
+                edge.set(accessEnc, true).setReverse(accessEnc, false);
+                edge.set(footEncoder.getAccessEnc(), true).setReverse(footEncoder.getAccessEnc(), false);
+                edge.set(footEncoder.getAverageSpeedEnc(), 5.0);
+            } else {
+                streetNode = locationQueryResult.getClosestNode();
+            }
+            Integer prev = gtfsStorage.getStationNodes().put(new GtfsStorage.FeedIdWithStopId(id, stop.stop_id), streetNode);
+            if (prev != null) {
+                throw new RuntimeException("Duplicate stop id: "+stop.stop_id);
             }
         }
     }
@@ -153,37 +162,50 @@ class GtfsReader {
                 blockTrips.put("non-block-trip" + trip.trip_id, trip);
             }
         }
-        blockTrips.asMap().values().forEach(unsortedTrips -> {
-            List<TripWithStopTimes> trips = unsortedTrips.stream()
-                    .map(trip -> {
-                        Service service = feed.services.get(trip.service_id);
-                        BitSet validOnDay = new BitSet((int) DAYS.between(startDate, endDate));
-                        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-                            if (service.activeOn(date)) {
-                                validOnDay.set((int) DAYS.between(startDate, date));
-                            }
-                        }
-                        ArrayList<StopTime> stopTimes = new ArrayList<>();
-                        feed.getInterpolatedStopTimesForTrip(trip.trip_id).forEach(stopTimes::add);
-                        return new TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
-                    })
-                    .sorted(Comparator.comparingInt(trip -> trip.stopTimes.iterator().next().departure_time))
+        // Many trips share a service, and its validity is only ever read, so it is computed once per service.
+        Map<String, BitSet> validOnDayByService = new ConcurrentHashMap<>();
+        // Reading the stop times of the trips only reads the feed, so it is done for a batch of blocks concurrently.
+        // The time expanded network is then added to the graph by this thread alone, in the same order as before.
+        for (List<Collection<Trip>> batch : Iterables.partition(blockTrips.asMap().values(), TRIP_BLOCKS_PER_BATCH)) {
+            List<List<TripWithStopTimes>> blocks = batch.parallelStream()
+                    .map(unsortedTrips -> unsortedTrips.stream()
+                            .map(trip -> {
+                                BitSet validOnDay = validOnDayByService.computeIfAbsent(trip.service_id, serviceId -> {
+                                    Service service = feed.services.get(serviceId);
+                                    BitSet validity = new BitSet((int) DAYS.between(startDate, endDate));
+                                    for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                                        if (service.activeOn(date)) {
+                                            validity.set((int) DAYS.between(startDate, date));
+                                        }
+                                    }
+                                    return validity;
+                                });
+                                ArrayList<StopTime> stopTimes = new ArrayList<>();
+                                feed.getInterpolatedStopTimesForTrip(trip.trip_id).forEach(stopTimes::add);
+                                return new TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+                            })
+                            .sorted(Comparator.comparingInt(trip -> trip.stopTimes.iterator().next().departure_time))
+                            .collect(Collectors.toList()))
                     .collect(Collectors.toList());
-            if (trips.stream().map(trip -> feed.getFrequencies(trip.trip.trip_id)).distinct().count() != 1) {
-                throw new RuntimeException("Found a block with frequency-based trips. Not supported.");
-            }
-            ZoneId zoneId = ZoneId.of(feed.agency.get(feed.routes.get(trips.iterator().next().trip.route_id).agency_id).agency_timezone);
-            Collection<Frequency> frequencies = feed.getFrequencies(trips.iterator().next().trip.trip_id);
-            if (frequencies.isEmpty()) {
-                addTrips(zoneId, trips, 0, false);
-            } else {
-                for (Frequency frequency : frequencies) {
-                    for (int time = frequency.start_time; time < frequency.end_time; time += frequency.headway_secs) {
-                        addTrips(zoneId, trips, time, true);
-                    }
+            blocks.forEach(this::createBlockTrips);
+        }
+    }
+
+    private void createBlockTrips(List<TripWithStopTimes> trips) {
+        if (trips.stream().map(trip -> feed.getFrequencies(trip.trip.trip_id)).distinct().count() != 1) {
+            throw new RuntimeException("Found a block with frequency-based trips. Not supported.");
+        }
+        ZoneId zoneId = ZoneId.of(feed.agency.get(feed.routes.get(trips.iterator().next().trip.route_id).agency_id).agency_timezone);
+        Collection<Frequency> frequencies = feed.getFrequencies(trips.iterator().next().trip.trip_id);
+        if (frequencies.isEmpty()) {
+            addTrips(zoneId, trips, 0, false);
+        } else {
+            for (Frequency frequency : frequencies) {
+                for (int time = frequency.start_time; time < frequency.end_time; time += frequency.headway_secs) {
+                    addTrips(zoneId, trips, time, true);
                 }
             }
-        });
+        }
     }
 
     private void wireUpStops() {
@@ -349,7 +371,7 @@ class GtfsReader {
             }
             boardEdges.add(boardEdge.getEdge());
             gtfsStorage.getStopSequences().put(boardEdge.getEdge(), stopTime.stop_sequence);
-            gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor.toByteArray());
+            gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor);
             boardEdge.set(validityIdEnc, validityId);
             boardEdge.set(ptEncodedValues.getTransfersEnc(), 1);
 
@@ -362,7 +384,7 @@ class GtfsReader {
             }
             alightEdges.add(alightEdge.getEdge());
             gtfsStorage.getStopSequences().put(alightEdge.getEdge(), stopTime.stop_sequence);
-            gtfsStorage.getTripDescriptors().put(alightEdge.getEdge(), tripDescriptor.toByteArray());
+            gtfsStorage.getTripDescriptors().put(alightEdge.getEdge(), tripDescriptor);
             alightEdge.set(validityIdEnc, validityId);
 
             EdgeIteratorState dwellEdge = graph.edge(arrivalNode, departureNode);
@@ -509,7 +531,7 @@ class GtfsReader {
 
     int addDelayedBoardEdge(ZoneId zoneId, GtfsRealtime.TripDescriptor tripDescriptor, int stopSequence, int departureTime, int departureNode, BitSet validOnDay) {
         Trip trip = feed.trips.get(tripDescriptor.getTripId());
-        StopTime stopTime = feed.stop_times.get(new Fun.Tuple2(tripDescriptor.getTripId(), stopSequence));
+        StopTime stopTime = feed.getStopTime(tripDescriptor.getTripId(), stopSequence);
         Stop stop = feed.stops.get(stopTime.stop_id);
         Map<GtfsStorageI.PlatformDescriptor, NavigableMap<Integer, Integer>> departureTimelineNodesByRoute = departureTimelinesByStop.computeIfAbsent(stopTime.stop_id, s -> new HashMap<>());
         NavigableMap<Integer, Integer> departureTimelineNodes = departureTimelineNodesByRoute.computeIfAbsent(GtfsStorageI.PlatformDescriptor.route(id, stopTime.stop_id, trip.route_id), s -> new TreeMap<>());
@@ -534,7 +556,7 @@ class GtfsReader {
         boardEdge.setName(getRouteName(feed, trip));
         setEdgeTypeAndClearDistance(boardEdge, GtfsStorage.EdgeType.BOARD);
         gtfsStorage.getStopSequences().put(boardEdge.getEdge(), stopSequence);
-        gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor.toByteArray());
+        gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor);
         boardEdge.set(validityIdEnc, validityId);
         boardEdge.set(ptEncodedValues.getTransfersEnc(), 1);
         return boardEdge.getEdge();
@@ -619,7 +641,7 @@ class GtfsReader {
                 setEdgeTypeAndClearDistance(boardEdge, GtfsStorage.EdgeType.BOARD);
                 boardEdge.set(validityIdEnc, blockTransferValidityId);
                 gtfsStorage.getStopSequences().put(boardEdge.getEdge(), stopTime.stop_sequence);
-                gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor.toByteArray());
+                gtfsStorage.getTripDescriptors().put(boardEdge.getEdge(), tripDescriptor);
                 accumulatorValidity.andNot(lastTrip.tripWithStopTimes.validOnDay);
             }
         }
@@ -18,20 +18,17 @@
 
 package com.graphhopper.gtfs;
 
+import com.conveyal.gtfs.EntityCodecs;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Fare;
 import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.gtfs.fare.FareIndex;
 import com.graphhopper.storage.Directory;
-import org.mapdb.Bind;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
-import org.mapdb.HTreeMap;
+import com.graphhopper.storage.GraphHopperStorage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.Serializable;
+import java.io.*;
 import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -115,49 +112,159 @@ public class GtfsStorage implements GtfsStorageI {
 
 	private boolean isClosed = false;
 	private Directory dir;
+	private BytesKeyMap<String, Boolean> feedIds;
 	private Set<String> gtfsFeedIds;
 	private Map<String, GTFSFeed> gtfsFeeds = new HashMap<>();
-	private HTreeMap<Validity, Integer> operatingDayPatterns;
-	private Bind.MapWithModificationListener<FeedIdWithTimezone, Integer> timeZones;
-	private Map<Integer, FeedIdWithTimezone> readableTimeZones;
-	private Map<Integer, byte[]> tripDescriptors;
-	private Map<Integer, Integer> stopSequences;
+	private BytesKeyMap<Validity, Integer> operatingDayPatterns;
+	private BytesKeyMap<FeedIdWithTimezone, Integer> timeZones;
+	// the inverse of timeZones, which is what the router reads, is kept on the heap. There are only a few entries.
+	private final Map<Integer, FeedIdWithTimezone> readableTimeZones = new HashMap<>();
+	// writes go through this view, so readableTimeZones stays the inverse of timeZones
+	private final Map<FeedIdWithTimezone, Integer> writableTimeZones = new AbstractMap<FeedIdWithTimezone, Integer>() {
+		@Override
+		public Integer get(Object key) {
+			return timeZones.get(key);
+		}
 
-	private Map<Integer, PlatformDescriptor> platformDescriptorsByEdge;
+		@Override
+		public boolean containsKey(Object key) {
+			return timeZones.containsKey(key);
+		}
 
-	private Map<String, Fare> fares;
-	private Map<String, int[]> boardEdgesForTrip;
-	private Map<String, int[]> leaveEdgesForTrip;
+		@Override
+		public Integer put(FeedIdWithTimezone key, Integer value) {
+			Integer old = timeZones.put(key, value);
+			if (old != null)
+				readableTimeZones.remove(old);
+			readableTimeZones.put(value, key);
+			return old;
+		}
 
-	private Map<FeedIdWithStopId, Integer> stationNodes;
+		@Override
+		public int size() {
+			return timeZones.size();
+		}
+
+		@Override
+		public Set<Entry<FeedIdWithTimezone, Integer>> entrySet() {
+			return timeZones.entrySet();
+		}
+	};
+	// indexed by edge id and stored like the graph, so they are neither deserialized on load nor on every lookup
+	private TripDescriptorEdgeMap tripDescriptors;
+	private IntEdgeMap stopSequences;
+	private BytesEdgeMap<PlatformDescriptor> platformDescriptorsByEdge;
+
+	private BytesKeyMap<String, Fare> fares;
+	private BytesKeyMap<String, int[]> boardEdgesForTrip;
+	private BytesKeyMap<String, int[]> leaveEdgesForTrip;
+
+	private BytesKeyMap<FeedIdWithStopId, Integer> stationNodes;
+
+	private RaptorTimetable raptorTimetable;
+	private FareIndex fareIndex;
 
 	public enum EdgeType {
 		HIGHWAY, ENTER_TIME_EXPANDED_NETWORK, LEAVE_TIME_EXPANDED_NETWORK, ENTER_PT, EXIT_PT, HOP, DWELL, BOARD, ALIGHT, OVERNIGHT, TRANSFER, WAIT, WAIT_ARRIVAL
     }
 
-	private DB data;
+	static final Codecs.StreamCodec<PlatformDescriptor> PLATFORM_DESCRIPTOR_CODEC = new Codecs.StreamCodec<PlatformDescriptor>() {
+		@Override
+		protected void write(DataOutputStream out, PlatformDescriptor value) throws IOException {
+			out.writeUTF(value.feed_id);
+			out.writeUTF(value.stop_id);
+			if (value instanceof RoutePlatform) {
+				out.writeByte(0);
+				out.writeUTF(((RoutePlatform) value).route_id);
+			} else {
+				out.writeByte(1);
+				out.writeInt(((RouteTypePlatform) value).route_type);
+			}
+		}
+
+		@Override
+		protected PlatformDescriptor read(DataInputStream in) throws IOException {
+			String feedId = in.readUTF();
+			String stopId = in.readUTF();
+			return in.readByte() == 0
+					? PlatformDescriptor.route(feedId, stopId, in.readUTF())
+					: PlatformDescriptor.routeType(feedId, stopId, in.readInt());
+		}
+	};
+
+	static final Codecs.StreamCodec<Validity> VALIDITY_CODEC = new Codecs.StreamCodec<Validity>() {
+		@Override
+		protected void write(DataOutputStream out, Validity value) throws IOException {
+			long[] words = value.validity.toLongArray();
+			out.writeInt(words.length);
+			for (long word : words) {
+				out.writeLong(word);
+			}
+			out.writeUTF(value.zoneId.getId());
+			out.writeLong(value.start.toEpochDay());
+		}
+
+		@Override
+		protected Validity read(DataInputStream in) throws IOException {
+			long[] words = new long[in.readInt()];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			return new Validity(BitSet.valueOf(words), ZoneId.of(in.readUTF()), LocalDate.ofEpochDay(in.readLong()));
+		}
+	};
+
+	static final Codecs.StreamCodec<FeedIdWithTimezone> FEED_ID_WITH_TIMEZONE_CODEC = new Codecs.StreamCodec<FeedIdWithTimezone>() {
+		@Override
+		protected void write(DataOutputStream out, FeedIdWithTimezone value) throws IOException {
+			out.writeUTF(value.feedId);
+			out.writeUTF(value.zoneId.getId());
+		}
+
+		@Override
+		protected FeedIdWithTimezone read(DataInputStream in) throws IOException {
+			return new FeedIdWithTimezone(in.readUTF(), ZoneId.of(in.readUTF()));
+		}
+	};
+
+	static final Codecs.StreamCodec<FeedIdWithStopId> FEED_ID_WITH_STOP_ID_CODEC = new Codecs.StreamCodec<FeedIdWithStopId>() {
+		@Override
+		protected void write(DataOutputStream out, FeedIdWithStopId value) throws IOException {
+			out.writeUTF(value.feedId);
+			out.writeUTF(value.stopId);
+		}
+
+		@Override
+		protected FeedIdWithStopId read(DataInputStream in) throws IOException {
+			return new FeedIdWithStopId(in.readUTF(), in.readUTF());
+		}
+	};
 
 	GtfsStorage(Directory dir) {
 		this.dir = dir;
 	}
 
 	boolean loadExisting() {
-		File file = new File(dir.getLocation() + "/transit_schedule");
-		if (!file.exists()) {
+		init();
+		if (!feedIds.loadExisting()) {
+			if (new File(dir.getLocation() + "/transit_schedule").exists()) {
+				throw new IllegalStateException("The transit_schedule in " + dir.getLocation() + " was created with an older version. Please re-import.");
+			}
 			return false;
 		}
-		this.data = DBMaker.newFileDB(file).transactionDisable().mmapFileEnable().readOnly().make();
-		init();
+		if (!operatingDayPatterns.loadExisting() || !timeZones.loadExisting() || !fares.loadExisting()
+				|| !boardEdgesForTrip.loadExisting() || !leaveEdgesForTrip.loadExisting() || !stationNodes.loadExisting()
+				|| !tripDescriptors.loadExisting() || !stopSequences.loadExisting() || !platformDescriptorsByEdge.loadExisting()) {
+			throw new IllegalStateException("The transit data in " + dir.getLocation() + " is incomplete. Please re-import.");
+		}
+		timeZones.forEach((timeZone, id) -> readableTimeZones.put(id, timeZone));
 		for (String gtfsFeedId : this.gtfsFeedIds) {
-			File dbFile = new File(dir.getLocation() + "/" + gtfsFeedId);
-
-			if (!dbFile.exists()) {
-				throw new RuntimeException(String.format("The mapping of the gtfsFeeds in the transit_schedule DB does not reflect the files in %s. "
-								+ "dbFile %s is missing.",
-						dir.getLocation(), dbFile.getName()));
+			GTFSFeed feed = new GTFSFeed(dir, gtfsFeedId);
+			if (!feed.loadExisting()) {
+				throw new RuntimeException(String.format("The mapping of the gtfsFeeds in the transit data does not reflect the files in %s. "
+								+ "Feed %s is missing.",
+						dir.getLocation(), gtfsFeedId));
 			}
-
-			GTFSFeed feed = new GTFSFeed(dbFile);
 			this.gtfsFeeds.put(gtfsFeedId, feed);
 		}
 
@@ -175,46 +282,81 @@ public class GtfsStorage implements GtfsStorageI {
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
-		this.data = DBMaker.newFileDB(file).transactionDisable().mmapFileEnable().asyncWriteEnable().make();
 		init();
+		feedIds.create(1000);
+		operatingDayPatterns.create(1000);
+		timeZones.create(1000);
+		fares.create(1000);
+		boardEdgesForTrip.create(1000);
+		leaveEdgesForTrip.create(1000);
+		stationNodes.create(1000);
+		tripDescriptors.create(1000);
+		stopSequences.create(1000);
+		platformDescriptorsByEdge.create(1000);
 	}
 
     private void init() {
-		this.gtfsFeedIds = data.getHashSet("gtfsFeeds");
-		this.operatingDayPatterns = data.getHashMap("validities");
-		this.timeZones = data.getHashMap("timeZones");
-		Map<Integer, FeedIdWithTimezone> readableTimeZones = new HashMap<>();
-		for (Map.Entry<FeedIdWithTimezone, Integer> entry : this.timeZones.entrySet()) {
-			readableTimeZones.put(entry.getValue(), entry.getKey());
-		}
-		Bind.mapInverse(this.timeZones, readableTimeZones);
-		this.readableTimeZones = Collections.unmodifiableMap(readableTimeZones);
-		this.tripDescriptors = data.getTreeMap("tripDescriptors");
-		this.stopSequences = data.getTreeMap("stopSequences");
-		this.fares = data.getTreeMap("fares");
-		this.boardEdgesForTrip = data.getHashMap("boardEdgesForTrip");
-		this.leaveEdgesForTrip = data.getHashMap("leaveEdgesForTrip");
-		this.stationNodes = data.getHashMap("stationNodes");
-		this.platformDescriptorsByEdge = data.getHashMap("routes");
+		this.feedIds = new BytesKeyMap<>(dir, "pt_feeds", Codecs.STRING, Codecs.BOOLEAN);
+		this.gtfsFeedIds = Collections.newSetFromMap(feedIds);
+		this.operatingDayPatterns = new BytesKeyMap<>(dir, "pt_validities", VALIDITY_CODEC, Codecs.INT);
+		this.timeZones = new BytesKeyMap<>(dir, "pt_time_zones", FEED_ID_WITH_TIMEZONE_CODEC, Codecs.INT);
+		this.tripDescriptors = new TripDescriptorEdgeMap(dir, "pt_trips");
+		this.stopSequences = new IntEdgeMap(dir, "pt_stop_sequences");
+		this.fares = new BytesKeyMap<>(dir, "pt_fares", Codecs.STRING, EntityCodecs.FARE);
+		this.boardEdgesForTrip = new BytesKeyMap<>(dir, "pt_board_edges", Codecs.STRING, Codecs.INT_ARRAY);
+		this.leaveEdgesForTrip = new BytesKeyMap<>(dir, "pt_alight_edges", Codecs.STRING, Codecs.INT_ARRAY);
+		// looked up for the exit stops of every route
+		this.stationNodes = new BytesKeyMap<>(dir, "pt_station_nodes", FEED_ID_WITH_STOP_ID_CODEC, Codecs.INT).setValueCacheSize(1 << 12);
+		this.platformDescriptorsByEdge = new BytesEdgeMap<>(dir, "pt_platform_descriptors", PLATFORM_DESCRIPTOR_CODEC);
 	}
 
+	// Feeds go to their own files, so several of them can be loaded at the same time.
 	void loadGtfsFromZipFile(String id, ZipFile zipFile) {
-		File dbFile = new File(dir.getLocation() + "/" + id);
+		GTFSFeed feed;
+		// the directory is not thread-safe
+		synchronized (this) {
+			feed = new GTFSFeed(dir, id).create();
+		}
 		try {
-			Files.deleteIfExists(dbFile.toPath());
-			GTFSFeed feed = new GTFSFeed(dbFile);
 			feed.loadFromFileAndLogErrors(zipFile);
-			this.gtfsFeeds.put(id, feed);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
-		this.gtfsFeedIds.add(id);
+		synchronized (this) {
+			this.gtfsFeeds.put(id, feed);
+			this.gtfsFeedIds.add(id);
+		}
+	}
+
+	void flush() {
+		feedIds.flush();
+		operatingDayPatterns.flush();
+		timeZones.flush();
+		fares.flush();
+		boardEdgesForTrip.flush();
+		leaveEdgesForTrip.flush();
+		stationNodes.flush();
+		for (GTFSFeed feed : gtfsFeeds.values()) {
+			feed.flush();
+		}
+		tripDescriptors.flush();
+		stopSequences.flush();
+		platformDescriptorsByEdge.flush();
 	}
 
 	public void close() {
 		if (!isClosed) {
 			isClosed = true;
-			data.close();
+			feedIds.close();
+			operatingDayPatterns.close();
+			timeZones.close();
+			fares.close();
+			boardEdgesForTrip.close();
+			leaveEdgesForTrip.close();
+			stationNodes.close();
+			tripDescriptors.close();
+			stopSequences.close();
+			platformDescriptorsByEdge.close();
 			for (GTFSFeed feed : gtfsFeeds.values()) {
 				feed.close();
 			}
@@ -228,16 +370,16 @@ public class GtfsStorage implements GtfsStorageI {
 
     @Override
 	public Map<Integer, FeedIdWithTimezone> getTimeZones() {
-		return readableTimeZones;
+		return Collections.unmodifiableMap(readableTimeZones);
 	}
 
 	@Override
 	public Map<FeedIdWithTimezone, Integer> getWritableTimeZones() {
-		return timeZones;
+		return writableTimeZones;
 	}
 
 	@Override
-	public Map<Integer, byte[]> getTripDescriptors() {
+	public Map<Integer, GtfsRealtime.TripDescriptor> getTripDescriptors() {
 		return tripDescriptors;
 	}
 
@@ -275,6 +417,26 @@ public class GtfsStorage implements GtfsStorageI {
 		return stationNodes;
 	}
 
+	/**
+	 * The timetable for the RAPTOR router. It is built from the graph on first use and then kept, because
+	 * the routers are created per request.
+	 */
+	synchronized RaptorTimetable getRaptorTimetable(GraphHopperStorage graph) {
+		if (raptorTimetable == null) {
+			LOGGER.info("Building RAPTOR timetable");
+			raptorTimetable = new RaptorTimetable(graph, this);
+			LOGGER.info("Built RAPTOR timetable with " + raptorTimetable.patterns.length + " patterns");
+		}
+		return raptorTimetable;
+	}
+
+	synchronized FareIndex getFareIndex() {
+		if (fareIndex == null) {
+			fareIndex = new FareIndex(getFares());
+		}
+		return fareIndex;
+	}
+
 	static String tripKey(GtfsRealtime.TripDescriptor tripDescriptor, boolean isFrequencyBased) {
 		if (isFrequencyBased) {
 			return tripDescriptor.getTripId()+tripDescriptor.getStartTime();
@@ -20,6 +20,7 @@ package com.graphhopper.gtfs;
 
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Fare;
+import com.google.transit.realtime.GtfsRealtime;
 
 import java.io.Serializable;
 import java.util.Map;
@@ -128,7 +129,7 @@ public interface GtfsStorageI {
 
     Map<Integer, GtfsStorage.FeedIdWithTimezone> getTimeZones();
 
-    Map<Integer, byte[]> getTripDescriptors();
+    Map<Integer, GtfsRealtime.TripDescriptor> getTripDescriptors();
 
     Map<Integer, Integer> getStopSequences();
 
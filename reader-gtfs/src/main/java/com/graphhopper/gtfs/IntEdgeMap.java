@@ -0,0 +1,155 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.*;
+
+/**
+ * A map from edge ids to int values that is stored in a DataAccess. So it can be memory mapped and is loaded without
+ * deserializing anything. Unused entries are 0, that is why the values are stored incremented by one.
+ */
+class IntEdgeMap extends AbstractMap<Integer, Integer> {
+    private final DataAccess da;
+    private int size;
+
+    IntEdgeMap(Directory dir, String name) {
+        this.da = dir.find(name);
+    }
+
+    IntEdgeMap create(long initBytes) {
+        da.create(initBytes);
+        size = 0;
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+        size = da.getHeader(0);
+        return true;
+    }
+
+    void flush() {
+        da.setHeader(0, size);
+        da.flush();
+    }
+
+    void close() {
+        da.close();
+    }
+
+    boolean isClosed() {
+        return da.isClosed();
+    }
+
+    /**
+     * @return the value for the specified edge or Integer.MIN_VALUE if there is none
+     */
+    int getInt(int edge) {
+        long pointer = 4L * edge;
+        if (edge < 0 || pointer >= da.getCapacity())
+            return Integer.MIN_VALUE;
+        int value = da.getInt(pointer);
+        return value == 0 ? Integer.MIN_VALUE : value - 1;
+    }
+
+    /**
+     * @return the previous value or Integer.MIN_VALUE if there was none
+     */
+    int setInt(int edge, int value) {
+        if (edge < 0)
+            throw new IllegalArgumentException("edge must not be negative " + edge);
+        if (value == Integer.MAX_VALUE || value == Integer.MIN_VALUE)
+            throw new IllegalArgumentException("value out of range " + value);
+        long pointer = 4L * edge;
+        da.ensureCapacity(pointer + 4);
+        int old = da.getInt(pointer);
+        if (old == 0)
+            size++;
+        da.setInt(pointer, value + 1);
+        return old == 0 ? Integer.MIN_VALUE : old - 1;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof Integer))
+            return null;
+        int value = getInt((Integer) key);
+        return value == Integer.MIN_VALUE ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Integer put(Integer key, Integer value) {
+        int old = setInt(key, value);
+        return old == Integer.MIN_VALUE ? null : old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Integer, Integer>> entrySet() {
+        return new AbstractSet<Entry<Integer, Integer>>() {
+            @Override
+            public Iterator<Entry<Integer, Integer>> iterator() {
+                return new Iterator<Entry<Integer, Integer>>() {
+                    private final int edges = (int) (da.getCapacity() / 4);
+                    private int edge = next(-1);
+
+                    private int next(int edge) {
+                        edge++;
+                        while (edge < edges && da.getInt(4L * edge) == 0) {
+                            edge++;
+                        }
+                        return edge;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return edge < edges;
+                    }
+
+                    @Override
+                    public Entry<Integer, Integer> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        Entry<Integer, Integer> entry = new SimpleImmutableEntry<>(edge, getInt(edge));
+                        edge = next(edge);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -64,6 +64,11 @@ public class Label {
         }
     }
 
+    /**
+     * The value of {@link #departureTime} of labels which have not yet used public transit
+     */
+    public static final long NO_DEPARTURE_TIME = Long.MIN_VALUE;
+
     public final long currentTime;
 
     public final int edge;
@@ -72,7 +77,7 @@ public class Label {
     public final int nTransfers;
 
     public final double walkDistanceOnCurrentLeg;
-    public final Long departureTime;
+    public final long departureTime;
     public final long walkTime;
 
     final long residualDelay;
@@ -80,7 +85,7 @@ public class Label {
 
     public final Label parent;
 
-    Label(long currentTime, int edgeId, int adjNode, int nTransfers, double walkDistance, Long departureTime, long walkTime, long residualDelay, boolean impossible, Label parent) {
+    Label(long currentTime, int edgeId, int adjNode, int nTransfers, double walkDistance, long departureTime, long walkTime, long residualDelay, boolean impossible, Label parent) {
         this.currentTime = currentTime;
         this.edge = edgeId;
         this.adjNode = adjNode;
@@ -93,9 +98,13 @@ public class Label {
         this.parent = parent;
     }
 
+    public boolean hasDepartureTime() {
+        return departureTime != NO_DEPARTURE_TIME;
+    }
+
     @Override
     public String toString() {
-        return adjNode + " " + (departureTime != null ? Instant.ofEpochMilli(departureTime) : "---") + "\t" + nTransfers + "\t" + Instant.ofEpochMilli(currentTime);
+        return adjNode + " " + (hasDepartureTime() ? Instant.ofEpochMilli(departureTime) : "---") + "\t" + nTransfers + "\t" + Instant.ofEpochMilli(currentTime);
     }
 
     static List<Label.Transition> getTransitions(Label _label, boolean arriveBy, PtEncodedValues encoder, Graph queryGraph, RealtimeFeed realtimeFeed) {
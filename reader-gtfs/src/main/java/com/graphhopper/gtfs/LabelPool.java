@@ -0,0 +1,161 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The labels of one {@link MultiCriteriaLabelSetting} search, stored column by column in primitive arrays and
+ * referenced by their index. Most labels are dominated before they are settled, so a {@link Label} object is only
+ * created for the settled ones.
+ * <p>
+ * The labels at a node which are not dominated form the bag of the node, a linked list through {@link #nextInBag}
+ * in the order in which the labels were added.
+ */
+final class LabelPool {
+
+    static final int NO_LABEL = -1;
+
+    long[] currentTime;
+    int[] edge;
+    int[] adjNode;
+    int[] nTransfers;
+    double[] walkDistanceOnCurrentLeg;
+    long[] departureTime;
+    long[] walkTime;
+    long[] residualDelay;
+    boolean[] impossible;
+    int[] parent;
+    // the position in the queue, or -1
+    int[] heapIndex;
+    private int[] nextInBag;
+    private Label[] settled;
+    private final IntIntHashMap firstInBag = new IntIntHashMap();
+    private int size;
+
+    LabelPool(int capacity) {
+        capacity = Math.max(capacity, 16);
+        currentTime = new long[capacity];
+        edge = new int[capacity];
+        adjNode = new int[capacity];
+        nTransfers = new int[capacity];
+        walkDistanceOnCurrentLeg = new double[capacity];
+        departureTime = new long[capacity];
+        walkTime = new long[capacity];
+        residualDelay = new long[capacity];
+        impossible = new boolean[capacity];
+        parent = new int[capacity];
+        heapIndex = new int[capacity];
+        nextInBag = new int[capacity];
+        settled = new Label[capacity];
+    }
+
+    int add(long currentTime, int edge, int adjNode, int nTransfers, double walkDistanceOnCurrentLeg, long departureTime, long walkTime, long residualDelay, boolean impossible, int parent) {
+        if (size == this.currentTime.length)
+            grow();
+        int label = size++;
+        this.currentTime[label] = currentTime;
+        this.edge[label] = edge;
+        this.adjNode[label] = adjNode;
+        this.nTransfers[label] = nTransfers;
+        this.walkDistanceOnCurrentLeg[label] = walkDistanceOnCurrentLeg;
+        this.departureTime[label] = departureTime;
+        this.walkTime[label] = walkTime;
+        this.residualDelay[label] = residualDelay;
+        this.impossible[label] = impossible;
+        this.parent[label] = parent;
+        this.heapIndex[label] = -1;
+        this.nextInBag[label] = NO_LABEL;
+        return label;
+    }
+
+    /**
+     * Frees the slot of the label, which must be the last one added and must neither be in a bag nor be settled.
+     */
+    void discardLast(int label) {
+        assert label == size - 1 && heapIndex[label] == -1 && settled[label] == null;
+        size--;
+    }
+
+    private void grow() {
+        int capacity = currentTime.length + (currentTime.length >> 1);
+        currentTime = Arrays.copyOf(currentTime, capacity);
+        edge = Arrays.copyOf(edge, capacity);
+        adjNode = Arrays.copyOf(adjNode, capacity);
+        nTransfers = Arrays.copyOf(nTransfers, capacity);
+        walkDistanceOnCurrentLeg = Arrays.copyOf(walkDistanceOnCurrentLeg, capacity);
+        departureTime = Arrays.copyOf(departureTime, capacity);
+        walkTime = Arrays.copyOf(walkTime, capacity);
+        residualDelay = Arrays.copyOf(residualDelay, capacity);
+        impossible = Arrays.copyOf(impossible, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        heapIndex = Arrays.copyOf(heapIndex, capacity);
+        nextInBag = Arrays.copyOf(nextInBag, capacity);
+        settled = Arrays.copyOf(settled, capacity);
+    }
+
+    int firstInBag(int node) {
+        return firstInBag.getOrDefault(node, NO_LABEL);
+    }
+
+    int nextInBag(int label) {
+        return nextInBag[label];
+    }
+
+    /**
+     * Appends the label to the bag of its node after the label last, which is the last one of the bag or
+     * {@link #NO_LABEL} if the bag is empty.
+     */
+    void addToBag(int last, int label) {
+        if (last == NO_LABEL)
+            firstInBag.put(adjNode[label], label);
+        else
+            nextInBag[last] = label;
+        nextInBag[label] = NO_LABEL;
+    }
+
+    /**
+     * Removes the label from the bag of its node. The label previous comes directly before it, or is
+     * {@link #NO_LABEL} if the label is the first one.
+     */
+    void removeFromBag(int previous, int label) {
+        if (previous == NO_LABEL) {
+            if (nextInBag[label] == NO_LABEL)
+                firstInBag.remove(adjNode[label]);
+            else
+                firstInBag.put(adjNode[label], nextInBag[label]);
+        } else {
+            nextInBag[previous] = nextInBag[label];
+        }
+        nextInBag[label] = NO_LABEL;
+    }
+
+    /**
+     * @return the Label object of a settled label, which is created on the first call. Its parent must have been
+     * settled before.
+     */
+    Label settle(int label) {
+        if (settled[label] == null) {
+            Label parentLabel = parent[label] == NO_LABEL ? null : settled[parent[label]];
+            settled[label] = new Label(currentTime[label], edge[label], adjNode[label], nTransfers[label], walkDistanceOnCurrentLeg[label], departureTime[label], walkTime[label], residualDelay[label], impossible[label], parentLabel);
+        }
+        return settled[label];
+    }
+}
@@ -17,10 +17,9 @@
  */
 package com.graphhopper.gtfs;
 
-import com.carrotsearch.hppc.IntObjectHashMap;
-import com.carrotsearch.hppc.IntObjectMap;
 import com.graphhopper.routing.ev.IntEncodedValue;
 import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
 
 import java.time.Instant;
 import java.util.*;
@@ -33,6 +32,9 @@ import java.util.stream.StreamSupport;
  * Implements a Multi-Criteria Label Setting (MLS) path finding algorithm
  * with the criteria earliest arrival time and number of transfers.
  * <p>
+ * The labels are kept in a {@link LabelPool} and only become {@link Label} objects when they are settled. The queue
+ * orders them exactly like a {@link PriorityQueue} would, so ties are broken the same way as when the labels were
+ * objects.
  *
  * @author Michael Zilske
  * @author Peter Karich
@@ -44,13 +46,12 @@ public class MultiCriteriaLabelSetting {
         void visit(Label label);
     }
 
-    private final Comparator<Label> queueComparator;
     private final List<Label> targetLabels;
     private long startTime;
     private int blockedRouteTypes;
     private final PtEncodedValues flagEncoder;
-    private final IntObjectMap<List<Label>> fromMap;
-    private final PriorityQueue<Label> fromHeap;
+    private final LabelPool pool = new LabelPool(1 << 10);
+    private final LabelHeap fromHeap = new LabelHeap();
     private final int maxVisitedNodes;
     private final boolean reverse;
     private final boolean ptOnly;
@@ -71,15 +72,6 @@ public class MultiCriteriaLabelSetting {
         this.mindTransfers = mindTransfers;
         this.profileQuery = profileQuery;
         this.targetLabels = solutions;
-
-        queueComparator = Comparator
-                .comparingLong(this::weight)
-                .thenComparingLong(l -> l.nTransfers)
-                .thenComparingLong(l -> l.walkTime)
-                .thenComparingLong(l -> departureTimeCriterion(l) != null ? departureTimeCriterion(l) : 0)
-                .thenComparingLong(l -> l.impossible ? 1 : 0);
-        fromHeap = new PriorityQueue<>(queueComparator);
-        fromMap = new IntObjectHashMap<>();
     }
 
     public Stream<Label> calcLabels(int from, Instant startTime, int blockedRouteTypes) {
@@ -93,9 +85,9 @@ public class MultiCriteriaLabelSetting {
     public void calcLabels(int from, Instant startTime, int blockedRouteTypes, SPTVisitor visitor, Predicate<Label> predicate) {
         this.startTime = startTime.toEpochMilli();
         this.blockedRouteTypes = blockedRouteTypes;
-        Iterator<Label> iterator = StreamSupport.stream(new MultiCriteriaLabelSettingSpliterator(from), false).iterator();
+        MultiCriteriaLabelSettingSpliterator spliterator = new MultiCriteriaLabelSettingSpliterator(from);
         Label l;
-        while (iterator.hasNext() && predicate.test(l = iterator.next())) {
+        while ((l = spliterator.poll()) != null && predicate.test(l)) {
             visitor.visit(l);
         }
     }
@@ -112,101 +104,133 @@ public class MultiCriteriaLabelSetting {
 
     private class MultiCriteriaLabelSettingSpliterator extends Spliterators.AbstractSpliterator<Label> {
 
+        private final Consumer<EdgeIteratorState> relax = this::relax;
+        private int expanding;
+
         MultiCriteriaLabelSettingSpliterator(int from) {
             super(0, 0);
-            Label label = new Label(startTime, EdgeIterator.NO_EDGE, from, 0, 0.0, null, 0, 0, false, null);
-            ArrayList<Label> labels = new ArrayList<>(1);
-            labels.add(label);
-            fromMap.put(from, labels);
+            int label = pool.add(startTime, EdgeIterator.NO_EDGE, from, 0, 0.0, Label.NO_DEPARTURE_TIME, 0, 0, false, LabelPool.NO_LABEL);
+            pool.addToBag(LabelPool.NO_LABEL, label);
             fromHeap.add(label);
         }
 
         @Override
         public boolean tryAdvance(Consumer<? super Label> action) {
-            if (fromHeap.isEmpty()) {
+            Label label = poll();
+            if (label == null) {
                 return false;
             } else {
-                Label label = fromHeap.poll();
                 action.accept(label);
-                final IntEncodedValue validityEnc = flagEncoder.getValidityIdEnc();
-                explorer.exploreEdgesAround(label).forEach(edge -> {
-                    GtfsStorage.EdgeType edgeType = edge.get(flagEncoder.getTypeEnc());
-                    if (edgeType == GtfsStorage.EdgeType.ENTER_PT && reverse && ptOnly) return;
-                    if (edgeType == GtfsStorage.EdgeType.EXIT_PT && !reverse && ptOnly) return;
-                    if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT) && (blockedRouteTypes & (1 << edge.get(validityEnc))) != 0)
-                        return;
-                    long nextTime;
-                    if (reverse) {
-                        nextTime = label.currentTime - explorer.calcTravelTimeMillis(edge, label.currentTime);
-                    } else {
-                        nextTime = label.currentTime + explorer.calcTravelTimeMillis(edge, label.currentTime);
-                    }
-                    int nTransfers = label.nTransfers + explorer.calcNTransfers(edge);
-                    Long firstPtDepartureTime = label.departureTime;
-                    if (!reverse && (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT)) {
-                        if (label.nTransfers == 0) {
-                            firstPtDepartureTime = nextTime - label.walkTime;
-                        }
-                    } else if (reverse && (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL)) {
-                        if (label.nTransfers == 0) {
-                            firstPtDepartureTime = nextTime + label.walkTime;
-                        }
-                    }
-                    double walkDistanceOnCurrentLeg = (!reverse && edgeType == GtfsStorage.EdgeType.BOARD || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT) ? 0 : (label.walkDistanceOnCurrentLeg + edge.getDistance());
-                    long walkTime = label.walkTime + (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT ? ((reverse ? -1 : 1) * (nextTime - label.currentTime)) : 0);
-                    if (walkTime > limitStreetTime)
-                        return;
-                    List<Label> sptEntries = fromMap.get(edge.getAdjNode());
-                    if (sptEntries == null) {
-                        sptEntries = new ArrayList<>(1);
-                        fromMap.put(edge.getAdjNode(), sptEntries);
-                    }
-                    boolean impossible = label.impossible
-                            || explorer.isBlocked(edge)
-                            || (!reverse) && edgeType == GtfsStorage.EdgeType.BOARD && label.residualDelay > 0
-                            || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT && label.residualDelay < explorer.getDelayFromAlightEdge(edge, label.currentTime);
-                    long residualDelay;
-                    if (!reverse) {
-                        if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
-                            residualDelay = Math.max(0, label.residualDelay - explorer.calcTravelTimeMillis(edge, label.currentTime));
-                        } else if (edgeType == GtfsStorage.EdgeType.ALIGHT) {
-                            residualDelay = label.residualDelay + explorer.getDelayFromAlightEdge(edge, label.currentTime);
-                        } else if (edgeType == GtfsStorage.EdgeType.BOARD) {
-                            residualDelay = -explorer.getDelayFromBoardEdge(edge, label.currentTime);
-                        } else {
-                            residualDelay = label.residualDelay;
-                        }
-                    } else {
-                        if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
-                            residualDelay = label.residualDelay + explorer.calcTravelTimeMillis(edge, label.currentTime);
-                        } else {
-                            residualDelay = 0;
-                        }
-                    }
-                    if (!reverse && edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && residualDelay > 0) {
-                        Label newImpossibleLabelForDelayedTrip = new Label(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, true, label);
-                        insertIfNotDominated(sptEntries, newImpossibleLabelForDelayedTrip);
-                        nextTime += residualDelay;
-                        residualDelay = 0;
-                        Label newLabel = new Label(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, impossible, label);
-                        insertIfNotDominated(sptEntries, newLabel);
-                    } else {
-                        Label newLabel = new Label(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, impossible, label);
-                        insertIfNotDominated(sptEntries, newLabel);
-                    }
-                });
                 return true;
             }
         }
 
-        private void insertIfNotDominated(Collection<Label> sptEntries, Label label) {
-            if (isNotDominatedByAnyOf(label, sptEntries)) {
-                if (isNotDominatedByAnyOf(label, targetLabels)) {
-                    removeDominated(label, sptEntries);
-                    sptEntries.add(label);
-                    fromHeap.add(label);
+        Label poll() {
+            if (fromHeap.isEmpty()) {
+                return null;
+            } else {
+                int label = fromHeap.poll();
+                expanding = label;
+                Label settled = pool.settle(label);
+                explorer.exploreEdgesAround(settled.adjNode, settled.currentTime, relax);
+                return settled;
+            }
+        }
+
+        private void relax(EdgeIteratorState edge) {
+            final int label = expanding;
+            final long currentTime = pool.currentTime[label];
+            final int labelTransfers = pool.nTransfers[label];
+            final long labelWalkTime = pool.walkTime[label];
+            final long labelResidualDelay = pool.residualDelay[label];
+            final IntEncodedValue validityEnc = flagEncoder.getValidityIdEnc();
+            GtfsStorage.EdgeType edgeType = edge.get(flagEncoder.getTypeEnc());
+            if (edgeType == GtfsStorage.EdgeType.ENTER_PT && reverse && ptOnly) return;
+            if (edgeType == GtfsStorage.EdgeType.EXIT_PT && !reverse && ptOnly) return;
+            if ((edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT) && (blockedRouteTypes & (1 << edge.get(validityEnc))) != 0)
+                return;
+            long nextTime;
+            if (reverse) {
+                nextTime = currentTime - explorer.calcTravelTimeMillis(edge, currentTime);
+            } else {
+                nextTime = currentTime + explorer.calcTravelTimeMillis(edge, currentTime);
+            }
+            int nTransfers = labelTransfers + explorer.calcNTransfers(edge);
+            long firstPtDepartureTime = pool.departureTime[label];
+            if (!reverse && (edgeType == GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT)) {
+                if (labelTransfers == 0) {
+                    firstPtDepartureTime = nextTime - labelWalkTime;
+                }
+            } else if (reverse && (edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK || edgeType == GtfsStorage.EdgeType.WAIT_ARRIVAL)) {
+                if (labelTransfers == 0) {
+                    firstPtDepartureTime = nextTime + labelWalkTime;
+                }
+            }
+            double walkDistanceOnCurrentLeg = (!reverse && edgeType == GtfsStorage.EdgeType.BOARD || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT) ? 0 : (pool.walkDistanceOnCurrentLeg[label] + edge.getDistance());
+            long walkTime = labelWalkTime + (edgeType == GtfsStorage.EdgeType.HIGHWAY || edgeType == GtfsStorage.EdgeType.ENTER_PT || edgeType == GtfsStorage.EdgeType.EXIT_PT ? ((reverse ? -1 : 1) * (nextTime - currentTime)) : 0);
+            if (walkTime > limitStreetTime)
+                return;
+            boolean impossible = pool.impossible[label]
+                    || explorer.isBlocked(edge)
+                    || (!reverse) && edgeType == GtfsStorage.EdgeType.BOARD && labelResidualDelay > 0
+                    || reverse && edgeType == GtfsStorage.EdgeType.ALIGHT && labelResidualDelay < explorer.getDelayFromAlightEdge(edge, currentTime);
+            long residualDelay;
+            if (!reverse) {
+                if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
+                    residualDelay = Math.max(0, labelResidualDelay - explorer.calcTravelTimeMillis(edge, currentTime));
+                } else if (edgeType == GtfsStorage.EdgeType.ALIGHT) {
+                    residualDelay = labelResidualDelay + explorer.getDelayFromAlightEdge(edge, currentTime);
+                } else if (edgeType == GtfsStorage.EdgeType.BOARD) {
+                    residualDelay = -explorer.getDelayFromBoardEdge(edge, currentTime);
+                } else {
+                    residualDelay = labelResidualDelay;
+                }
+            } else {
+                if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.TRANSFER) {
+                    residualDelay = labelResidualDelay + explorer.calcTravelTimeMillis(edge, currentTime);
+                } else {
+                    residualDelay = 0;
+                }
+            }
+            if (!reverse && edgeType == GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK && residualDelay > 0) {
+                insertIfNotDominated(pool.add(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, true, label));
+                nextTime += residualDelay;
+                residualDelay = 0;
+            }
+            insertIfNotDominated(pool.add(nextTime, edge.getEdge(), edge.getAdjNode(), nTransfers, walkDistanceOnCurrentLeg, firstPtDepartureTime, walkTime, residualDelay, impossible, label));
+        }
+
+        /**
+         * Adds the label, which must be the last one of the pool, to the bag of its node and to the queue, unless it
+         * is dominated. Then its slot in the pool is reused.
+         */
+        private void insertIfNotDominated(int label) {
+            int first = pool.firstInBag(pool.adjNode[label]);
+            for (int other = first; other != LabelPool.NO_LABEL; other = pool.nextInBag(other)) {
+                if (dominates(other, label)) {
+                    pool.discardLast(label);
+                    return;
+                }
+            }
+            for (Label target : targetLabels) {
+                if (dominates(target, label)) {
+                    pool.discardLast(label);
+                    return;
                 }
             }
+            int previous = LabelPool.NO_LABEL;
+            for (int other = first; other != LabelPool.NO_LABEL; ) {
+                int next = pool.nextInBag(other);
+                if (dominates(label, other)) {
+                    fromHeap.remove(other);
+                    pool.removeFromBag(previous, other);
+                } else {
+                    previous = other;
+                }
+                other = next;
+            }
+            pool.addToBag(previous, label);
+            fromHeap.add(label);
         }
     }
 
@@ -220,68 +244,115 @@ public class MultiCriteriaLabelSetting {
     }
 
     void removeDominated(Label me, Collection<Label> sptEntries) {
-        for (Iterator<Label> iterator = sptEntries.iterator(); iterator.hasNext(); ) {
-            Label sptEntry = iterator.next();
-            if (dominates(me, sptEntry)) {
-                fromHeap.remove(sptEntry);
-                iterator.remove();
-            }
-        }
+        sptEntries.removeIf(sptEntry -> dominates(me, sptEntry));
     }
 
     private boolean dominates(Label me, Label they) {
-        if (weight(me) > weight(they))
+        return dominates(me.currentTime, me.nTransfers, me.walkTime, me.departureTime, me.impossible,
+                they.currentTime, they.nTransfers, they.walkTime, they.departureTime, they.impossible);
+    }
+
+    private boolean dominates(Label me, int they) {
+        return dominates(me.currentTime, me.nTransfers, me.walkTime, me.departureTime, me.impossible,
+                pool.currentTime[they], pool.nTransfers[they], pool.walkTime[they], pool.departureTime[they], pool.impossible[they]);
+    }
+
+    private boolean dominates(int me, int they) {
+        return dominates(pool.currentTime[me], pool.nTransfers[me], pool.walkTime[me], pool.departureTime[me], pool.impossible[me],
+                pool.currentTime[they], pool.nTransfers[they], pool.walkTime[they], pool.departureTime[they], pool.impossible[they]);
+    }
+
+    private boolean dominates(long meTime, int meTransfers, long meWalkTime, long meDepartureTime, boolean meImpossible,
+                              long theyTime, int theyTransfers, long theyWalkTime, long theyDepartureTime, boolean theyImpossible) {
+        long meWeight = weight(meTime, meTransfers, meWalkTime);
+        long theyWeight = weight(theyTime, theyTransfers, theyWalkTime);
+        if (meWeight > theyWeight)
             return false;
 
+        boolean departureTimes = meDepartureTime != Label.NO_DEPARTURE_TIME && theyDepartureTime != Label.NO_DEPARTURE_TIME;
         if (profileQuery) {
-            if (me.departureTime != null && they.departureTime != null) {
-                if (departureTimeCriterion(me) > departureTimeCriterion(they))
+            if (departureTimes) {
+                if (departureTimeCriterion(meDepartureTime) > departureTimeCriterion(theyDepartureTime))
                     return false;
             } else {
-                if (travelTimeCriterion(me) > travelTimeCriterion(they))
+                if (travelTimeCriterion(meTime, meWalkTime, meDepartureTime) > travelTimeCriterion(theyTime, theyWalkTime, theyDepartureTime))
                     return false;
             }
         }
 
-        if (mindTransfers && me.nTransfers > they.nTransfers)
+        if (mindTransfers && meTransfers > theyTransfers)
             return false;
-        if (me.impossible && !they.impossible)
+        if (meImpossible && !theyImpossible)
             return false;
 
-        if (weight(me) < weight(they))
+        if (meWeight < theyWeight)
             return true;
         if (profileQuery) {
-            if (me.departureTime != null && they.departureTime != null) {
-                if (departureTimeCriterion(me) < departureTimeCriterion(they))
+            if (departureTimes) {
+                if (departureTimeCriterion(meDepartureTime) < departureTimeCriterion(theyDepartureTime))
                     return true;
             } else {
-                if (travelTimeCriterion(me) < travelTimeCriterion(they))
+                if (travelTimeCriterion(meTime, meWalkTime, meDepartureTime) < travelTimeCriterion(theyTime, theyWalkTime, theyDepartureTime))
                     return true;
             }
         }
-        if (mindTransfers && me.nTransfers < they.nTransfers)
+        if (mindTransfers && meTransfers < theyTransfers)
             return true;
 
-        return queueComparator.compare(me, they) <= 0;
+        return compare(meWeight, meTransfers, meWalkTime, meDepartureTime, meImpossible, theyWeight, theyTransfers, theyWalkTime, theyDepartureTime, theyImpossible) <= 0;
+    }
+
+    /**
+     * The order of the queue: by weight, number of transfers, walk time, departure time and possible before impossible.
+     */
+    private int compare(long aWeight, int aTransfers, long aWalkTime, long aDepartureTime, boolean aImpossible,
+                        long bWeight, int bTransfers, long bWalkTime, long bDepartureTime, boolean bImpossible) {
+        int result = Long.compare(aWeight, bWeight);
+        if (result != 0)
+            return result;
+        result = Long.compare(aTransfers, bTransfers);
+        if (result != 0)
+            return result;
+        result = Long.compare(aWalkTime, bWalkTime);
+        if (result != 0)
+            return result;
+        result = Long.compare(aDepartureTime != Label.NO_DEPARTURE_TIME ? departureTimeCriterion(aDepartureTime) : 0,
+                bDepartureTime != Label.NO_DEPARTURE_TIME ? departureTimeCriterion(bDepartureTime) : 0);
+        if (result != 0)
+            return result;
+        return Long.compare(aImpossible ? 1 : 0, bImpossible ? 1 : 0);
+    }
+
+    private int compare(int a, int b) {
+        return compare(weight(pool.currentTime[a], pool.nTransfers[a], pool.walkTime[a]), pool.nTransfers[a], pool.walkTime[a], pool.departureTime[a], pool.impossible[a],
+                weight(pool.currentTime[b], pool.nTransfers[b], pool.walkTime[b]), pool.nTransfers[b], pool.walkTime[b], pool.departureTime[b], pool.impossible[b]);
     }
 
-    private Long departureTimeCriterion(Label label) {
-        return label.departureTime == null ? null : reverse ? label.departureTime : -label.departureTime;
+    private long departureTimeCriterion(long departureTime) {
+        return reverse ? departureTime : -departureTime;
     }
 
     long weight(Label label) {
-        return timeSinceStartTime(label) + (long) (label.nTransfers * betaTransfers) + (long) (label.walkTime * (betaWalkTime - 1.0));
+        return weight(label.currentTime, label.nTransfers, label.walkTime);
+    }
+
+    private long weight(long currentTime, int nTransfers, long walkTime) {
+        return timeSinceStartTime(currentTime) + (long) (nTransfers * betaTransfers) + (long) (walkTime * (betaWalkTime - 1.0));
     }
 
     long timeSinceStartTime(Label label) {
-        return (reverse ? -1 : 1) * (label.currentTime - startTime);
+        return timeSinceStartTime(label.currentTime);
+    }
+
+    private long timeSinceStartTime(long currentTime) {
+        return (reverse ? -1 : 1) * (currentTime - startTime);
     }
 
-    private long travelTimeCriterion(Label label) {
-        if (label.departureTime == null) {
-            return label.walkTime;
+    private long travelTimeCriterion(long currentTime, long walkTime, long departureTime) {
+        if (departureTime == Label.NO_DEPARTURE_TIME) {
+            return walkTime;
         } else {
-            return (reverse ? -1 : 1) * (label.currentTime - label.departureTime);
+            return (reverse ? -1 : 1) * (currentTime - departureTime);
         }
     }
 
@@ -293,4 +364,79 @@ public class MultiCriteriaLabelSetting {
         return visitedNodes;
     }
 
+    /**
+     * A binary heap of labels in the pool. It sifts like {@link PriorityQueue}, so it polls labels which compare
+     * equal in the same order, but it knows the position of every label, so removing one is not a linear search.
+     */
+    private class LabelHeap {
+        private int[] queue = new int[64];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(int label) {
+            if (size == queue.length)
+                queue = Arrays.copyOf(queue, queue.length + (queue.length >> 1));
+            siftUp(size++, label);
+        }
+
+        int poll() {
+            int result = queue[0];
+            int last = queue[--size];
+            if (size > 0)
+                siftDown(0, last);
+            pool.heapIndex[result] = -1;
+            return result;
+        }
+
+        void remove(int label) {
+            int i = pool.heapIndex[label];
+            if (i < 0)
+                return;
+            pool.heapIndex[label] = -1;
+            int s = --size;
+            if (s != i) {
+                int moved = queue[s];
+                siftDown(i, moved);
+                if (queue[i] == moved)
+                    siftUp(i, moved);
+            }
+        }
+
+        private void siftUp(int k, int label) {
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                int e = queue[parent];
+                if (compare(label, e) >= 0)
+                    break;
+                set(k, e);
+                k = parent;
+            }
+            set(k, label);
+        }
+
+        private void siftDown(int k, int label) {
+            int half = size >>> 1;
+            while (k < half) {
+                int child = (k << 1) + 1;
+                int c = queue[child];
+                int right = child + 1;
+                if (right < size && compare(c, queue[right]) > 0)
+                    c = queue[child = right];
+                if (compare(label, c) <= 0)
+                    break;
+                set(k, c);
+                k = child;
+            }
+            set(k, label);
+        }
+
+        private void set(int k, int label) {
+            queue[k] = label;
+            pool.heapIndex[label] = k;
+        }
+    }
+
 }
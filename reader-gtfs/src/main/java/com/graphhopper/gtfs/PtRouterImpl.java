@@ -18,13 +18,13 @@
 
 package com.graphhopper.gtfs;
 
+import com.carrotsearch.hppc.IntObjectHashMap;
 import com.conveyal.gtfs.GTFSFeed;
 import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.ResponsePath;
 import com.graphhopper.routing.querygraph.QueryGraph;
-import com.graphhopper.routing.querygraph.VirtualEdgeIteratorState;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.weighting.FastestWeighting;
@@ -42,8 +42,10 @@ import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.shapes.GHPoint;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 import static java.util.Comparator.comparingLong;
@@ -58,9 +60,14 @@ public final class PtRouterImpl implements PtRouter {
     private final GtfsStorage gtfsStorage;
     private final RealtimeFeed realtimeFeed;
     private final TripFromLabel tripFromLabel;
+    private final ExecutorService profileBucketExecutor;
 
+    /**
+     * @param profileBucketExecutor searches the buckets of RAPTOR profile queries, see
+     *                              {@link GraphHopperGtfs#getProfileBucketExecutor()}, or null to search them one after another
+     */
     @Inject
-    public PtRouterImpl(TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, PathDetailsBuilderFactory pathDetailsBuilderFactory) {
+    public PtRouterImpl(TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, RealtimeFeed realtimeFeed, PathDetailsBuilderFactory pathDetailsBuilderFactory, @Named("profileBuckets") ExecutorService profileBucketExecutor) {
         this.ptEncodedValues = PtEncodedValues.fromEncodingManager(graphHopperStorage.getEncodingManager());
         this.accessEgressWeighting = new FastestWeighting(graphHopperStorage.getEncodingManager().getEncoder("foot"));
         this.translationMap = translationMap;
@@ -69,10 +76,12 @@ public final class PtRouterImpl implements PtRouter {
         this.gtfsStorage = gtfsStorage;
         this.realtimeFeed = realtimeFeed;
         this.tripFromLabel = new TripFromLabel(this.graphHopperStorage, this.gtfsStorage, this.realtimeFeed, pathDetailsBuilderFactory);
+        this.profileBucketExecutor = profileBucketExecutor;
     }
 
     public static Factory createFactory(TranslationMap translationMap, GraphHopper graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage) {
-        return new Factory(translationMap, graphHopperStorage.getGraphHopperStorage(), locationIndex, gtfsStorage);
+        ExecutorService profileBucketExecutor = graphHopperStorage instanceof GraphHopperGtfs ? ((GraphHopperGtfs) graphHopperStorage).getProfileBucketExecutor() : null;
+        return new Factory(translationMap, graphHopperStorage.getGraphHopperStorage(), locationIndex, gtfsStorage, profileBucketExecutor);
     }
 
     @Override
@@ -86,26 +95,55 @@ public final class PtRouterImpl implements PtRouter {
         private final LocationIndex locationIndex;
         private final GtfsStorage gtfsStorage;
         private final Map<String, Transfers> transfers;
+        private final ExecutorService profileBucketExecutor;
 
-        private Factory(TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage) {
+        private Factory(TranslationMap translationMap, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex, GtfsStorage gtfsStorage, ExecutorService profileBucketExecutor) {
             this.translationMap = translationMap;
             this.graphHopperStorage = graphHopperStorage;
             this.locationIndex = locationIndex;
             this.gtfsStorage = gtfsStorage;
+            this.profileBucketExecutor = profileBucketExecutor;
             this.transfers = new HashMap<>();
             for (Map.Entry<String, GTFSFeed> entry : this.gtfsStorage.getGtfsFeeds().entrySet()) {
                 this.transfers.put(entry.getKey(), new Transfers(entry.getValue()));
             }
         }
 
+        /**
+         * Routes on the given realtime message, which must be about the only GTFS feed.
+         */
         public PtRouter createWith(GtfsRealtime.FeedMessage realtimeFeed) {
-            Map<String, GtfsRealtime.FeedMessage> realtimeFeeds = new HashMap<>();
-            realtimeFeeds.put("gtfs_0", realtimeFeed);
-            return new PtRouterImpl(translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, this.transfers, realtimeFeeds), new PathDetailsBuilderFactory());
+            return createWith(Collections.singletonMap(singleFeedId(), realtimeFeed));
+        }
+
+        public PtRouter createWith(Map<String, GtfsRealtime.FeedMessage> realtimeFeeds) {
+            return createWith(RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, this.transfers, realtimeFeeds));
+        }
+
+        public PtRouter createWith(RealtimeFeed realtimeFeed) {
+            return new PtRouterImpl(translationMap, graphHopperStorage, locationIndex, gtfsStorage, realtimeFeed, new PathDetailsBuilderFactory(), profileBucketExecutor);
+        }
+
+        /**
+         * Applies the given realtime message, which must be about the only GTFS feed.
+         */
+        public RealtimeFeed updateRealtimeFeed(RealtimeFeed realtimeFeed, GtfsRealtime.FeedMessage update) {
+            return updateRealtimeFeed(realtimeFeed, Collections.singletonMap(singleFeedId(), update));
+        }
+
+        public RealtimeFeed updateRealtimeFeed(RealtimeFeed realtimeFeed, Map<String, GtfsRealtime.FeedMessage> updates) {
+            return realtimeFeed.update(graphHopperStorage, this.transfers, updates);
+        }
+
+        private String singleFeedId() {
+            Set<String> feedIds = gtfsStorage.getGtfsFeeds().keySet();
+            if (feedIds.size() != 1)
+                throw new IllegalArgumentException("A realtime message without a feed id needs exactly one GTFS feed, but there are " + feedIds);
+            return feedIds.iterator().next();
         }
 
         public PtRouter createWithoutRealtimeFeed() {
-            return new PtRouterImpl(translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.empty(gtfsStorage), new PathDetailsBuilderFactory());
+            return new PtRouterImpl(translationMap, graphHopperStorage, locationIndex, gtfsStorage, RealtimeFeed.empty(gtfsStorage), new PathDetailsBuilderFactory(), profileBucketExecutor);
         }
     }
 
@@ -125,10 +163,11 @@ public final class PtRouterImpl implements PtRouter {
         private final GHLocation exit;
         private final Translation translation;
         private final List<String> requestedPathDetails;
-        private final List<VirtualEdgeIteratorState> extraEdges = new ArrayList<>(realtimeFeed.getAdditionalEdges());
+        private final boolean raptor;
+        private final int profileBuckets;
 
         private final GHResponse response = new GHResponse();
-        private final Graph graphWithExtraEdges = new WrapperGraph(graphHopperStorage, extraEdges);
+        private final Graph graphWithExtraEdges = realtimeFeed.getGraphWithAdditionalEdges(graphHopperStorage);
         private final long limitStreetTime;
         private QueryGraph queryGraph;
         private int visitedNodes;
@@ -150,6 +189,8 @@ public final class PtRouterImpl implements PtRouter {
             exit = request.getPoints().get(1);
             limitStreetTime = request.getLimitStreetTime() != null ? request.getLimitStreetTime().toMillis() : Long.MAX_VALUE;
             requestedPathDetails = request.getPathDetails();
+            raptor = request.isRaptor() && !arriveBy && realtimeFeed.feedMessages.isEmpty();
+            profileBuckets = request.getProfileBuckets();
         }
 
         GHResponse route() {
@@ -182,7 +223,7 @@ public final class PtRouterImpl implements PtRouter {
                 startNode = allQueryResults.get(0).getClosestNode();
                 destNode = allQueryResults.get(1).getClosestNode();
             }
-            List<List<Label.Transition>> solutions = findPaths(startNode, destNode);
+            List<List<Label.Transition>> solutions = raptor ? findPathsWithRaptor(startNode, destNode) : findPaths(startNode, destNode);
             parseSolutionsAndAddToResponse(solutions, points);
             return response;
         }
@@ -295,10 +336,10 @@ public final class PtRouterImpl implements PtRouter {
                         router.removeDominated(combinedSolution, discoveredSolutions);
                         List<Label> closedSolutions = discoveredSolutions.stream().filter(s -> router.weight(s) < router.weight(label) + smallestStationLabelWeight).collect(Collectors.toList());
                         if (closedSolutions.size() >= limitSolutions) continue;
-                        if (profileQuery && combinedSolution.departureTime != null && (combinedSolution.departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration && closedSolutions.size() > 0 && closedSolutions.get(closedSolutions.size() - 1).departureTime != null && (closedSolutions.get(closedSolutions.size() - 1).departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration)
+                        if (profileQuery && combinedSolution.hasDepartureTime() && (combinedSolution.departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration && closedSolutions.size() > 0 && closedSolutions.get(closedSolutions.size() - 1).hasDepartureTime() && (closedSolutions.get(closedSolutions.size() - 1).departureTime - initialTime.toEpochMilli()) * (arriveBy ? -1L : 1L) > maxProfileDuration)
                             continue;
                         discoveredSolutions.add(combinedSolution);
-                        discoveredSolutions.sort(comparingLong(s -> Optional.ofNullable(s.departureTime).orElse(0L)));
+                        discoveredSolutions.sort(comparingLong(s -> s.hasDepartureTime() ? s.departureTime : 0L));
                         originalSolutions.put(combinedSolution, label);
                         if (label.nTransfers == 0 && reverseLabel.nTransfers == 0) {
                             walkSolution = combinedSolution;
@@ -357,6 +398,87 @@ public final class PtRouterImpl implements PtRouter {
             return paths;
         }
 
+        private List<List<Label.Transition>> findPathsWithRaptor(int startNode, int destNode) {
+            StopWatch stopWatch = new StopWatch().start();
+            RaptorTimetable timetable = gtfsStorage.getRaptorTimetable(graphHopperStorage);
+
+            GraphExplorer accessExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, ptEncodedValues, gtfsStorage, realtimeFeed, false, true, walkSpeedKmH, false);
+            MultiCriteriaLabelSetting accessRouter = new MultiCriteriaLabelSetting(accessExplorer, ptEncodedValues, false, false, false, false, maxVisitedNodesForRequest, new ArrayList<>());
+            accessRouter.setBetaWalkTime(betaWalkTime);
+            accessRouter.setLimitStreetTime(limitStreetTime);
+            IntObjectHashMap<Label> accessLabels = new IntObjectHashMap<>();
+            Label walkLabel = null;
+            for (Iterator<Label> iterator = accessRouter.calcLabels(startNode, initialTime, blockedRouteTypes).iterator(); iterator.hasNext(); ) {
+                Label label = iterator.next();
+                if (label.adjNode == destNode) {
+                    walkLabel = label;
+                    break;
+                } else if (label.edge != -1 && queryGraph.getEdgeIteratorState(label.edge, label.parent.adjNode).get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.ENTER_PT) {
+                    int platform = timetable.getPlatformIndex(label.adjNode);
+                    if (platform != -1 && !accessLabels.containsKey(platform)) {
+                        accessLabels.put(platform, label);
+                    }
+                }
+            }
+            visitedNodes += accessRouter.getVisitedNodes();
+
+            GraphExplorer egressExplorer = new GraphExplorer(queryGraph, accessEgressWeighting, ptEncodedValues, gtfsStorage, realtimeFeed, true, true, walkSpeedKmH, false);
+            MultiCriteriaLabelSetting egressRouter = new MultiCriteriaLabelSetting(egressExplorer, ptEncodedValues, true, false, false, false, maxVisitedNodesForRequest, new ArrayList<>());
+            egressRouter.setBetaWalkTime(betaWalkTime);
+            egressRouter.setLimitStreetTime(limitStreetTime);
+            IntObjectHashMap<Label> egressLabels = new IntObjectHashMap<>();
+            for (Iterator<Label> iterator = egressRouter.calcLabels(destNode, initialTime, blockedRouteTypes).iterator(); iterator.hasNext(); ) {
+                Label label = iterator.next();
+                if (label.adjNode == startNode) {
+                    break;
+                } else if (label.edge != -1 && queryGraph.getEdgeIteratorState(label.edge, label.parent.adjNode).get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.EXIT_PT) {
+                    if (!egressLabels.containsKey(label.adjNode)) {
+                        egressLabels.put(label.adjNode, label);
+                    }
+                }
+            }
+            visitedNodes += egressRouter.getVisitedNodes();
+
+            Raptor router = new Raptor(timetable, graphHopperStorage, Raptor.DEFAULT_MAX_ROUNDS);
+            List<Raptor.Journey> journeys;
+            if (profileQuery) {
+                journeys = router.routeRange(accessLabels, egressLabels, initialTime.toEpochMilli(), walkLabel, maxProfileDuration, ignoreTransfers, profileBuckets, profileBucketExecutor);
+                journeys = journeys.subList(0, Math.min(journeys.size(), walkLabel != null ? limitSolutions - 1 : limitSolutions));
+            } else {
+                journeys = router.route(accessLabels, egressLabels, initialTime.toEpochMilli(), walkLabel);
+                // Journeys come with increasing number of transfers and decreasing arrival time, so keep the fastest ones.
+                int limit = ignoreTransfers ? 1 : limitSolutions;
+                if (walkLabel != null && journeys.size() >= limit) {
+                    walkLabel = null;
+                }
+                journeys = journeys.subList(Math.max(0, journeys.size() - (walkLabel != null ? limit - 1 : limit)), journeys.size());
+            }
+
+            List<List<Label.Transition>> paths = new ArrayList<>();
+            if (walkLabel != null) {
+                paths.add(Label.getTransitions(walkLabel, false, ptEncodedValues, queryGraph, realtimeFeed));
+            }
+            for (Raptor.Journey journey : journeys) {
+                List<Label.Transition> pathToDestinationStop = Label.getTransitions(router.toLabel(journey), false, ptEncodedValues, queryGraph, realtimeFeed);
+                List<Label.Transition> pathFromStation = Label.getTransitions(journey.egressLabel, true, ptEncodedValues, queryGraph, realtimeFeed);
+                long diff = pathToDestinationStop.get(pathToDestinationStop.size() - 1).label.currentTime - pathFromStation.get(0).label.currentTime;
+                List<Label.Transition> patchedPathFromStation = pathFromStation.stream().map(t -> {
+                    return new Label.Transition(new Label(t.label.currentTime + diff, t.label.edge, t.label.adjNode, t.label.nTransfers, t.label.walkDistanceOnCurrentLeg, t.label.departureTime, t.label.walkTime, t.label.residualDelay, t.label.impossible, null), t.edge);
+                }).collect(Collectors.toList());
+                List<Label.Transition> pp = new ArrayList<>(pathToDestinationStop);
+                pp.addAll(patchedPathFromStation.subList(1, pathFromStation.size()));
+                paths.add(pp);
+            }
+
+            response.addDebugInfo("routing:" + stopWatch.stop().getSeconds() + "s");
+            response.getHints().putObject("visited_nodes.sum", visitedNodes);
+            response.getHints().putObject("visited_nodes.average", visitedNodes);
+            if (paths.isEmpty()) {
+                response.addError(new RuntimeException("No route found"));
+            }
+            return paths;
+        }
+
         private boolean profileFinished(MultiCriteriaLabelSetting router, List<Label> discoveredSolutions, Label walkSolution) {
             return discoveredSolutions.size() >= limitSolutions ||
                     (!discoveredSolutions.isEmpty() && router.timeSinceStartTime(discoveredSolutions.get(discoveredSolutions.size() - 1)) > maxProfileDuration) ||
@@ -0,0 +1,470 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.IntObjectMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Round based public transit router (RAPTOR, Delling, Pajor, Werneck 2012) on top of a {@link RaptorTimetable}.
+ * <p>
+ * Instead of settling labels on the time expanded graph, every round scans the patterns which can be boarded at
+ * the departure platforms improved in the previous round, so round k yields the earliest arrivals with k
+ * boardings. The result is the Pareto set of (arrival time, number of boardings).
+ * <p>
+ * Access and egress are done by the caller, who passes in the labels of the walk searches from the origin to the
+ * departure platforms and from the arrival platforms to the destination. Found journeys are converted back to
+ * labels along the edges of the graph, so {@link TripFromLabel} can create responses from them as usual.
+ */
+final class Raptor {
+
+    static final int DEFAULT_MAX_ROUNDS = 10;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    // a week, so weekly services are found from any day
+    private static final int MAX_DAYS_AHEAD = 8;
+
+    private final RaptorTimetable timetable;
+    private final GraphHopperStorage graph;
+    private final PtEncodedValues ptEncodedValues;
+    private final int maxRounds;
+
+    static final class PlatformReach {
+        final long time;
+        final Label accessLabel;
+        final Ride ride;
+        final int transfer;
+
+        PlatformReach(long time, Label accessLabel, Ride ride, int transfer) {
+            this.time = time;
+            this.accessLabel = accessLabel;
+            this.ride = ride;
+            this.transfer = transfer;
+        }
+    }
+
+    static final class Ride {
+        final PlatformReach boardedFrom;
+        final RaptorTimetable.TripTimes trip;
+        final int boardPosition;
+        final long departureTime;
+        final int alightPosition;
+        final long arrivalTime;
+
+        Ride(PlatformReach boardedFrom, RaptorTimetable.TripTimes trip, int boardPosition, long departureTime, int alightPosition, long arrivalTime) {
+            this.boardedFrom = boardedFrom;
+            this.trip = trip;
+            this.boardPosition = boardPosition;
+            this.departureTime = departureTime;
+            this.alightPosition = alightPosition;
+            this.arrivalTime = arrivalTime;
+        }
+    }
+
+    static final class Journey {
+        final Ride lastRide;
+        final Label egressLabel;
+        final long departureTime;
+        final long arrivalTime;
+        final int rounds;
+
+        Journey(Ride lastRide, Label egressLabel, long departureTime, long arrivalTime, int rounds) {
+            this.lastRide = lastRide;
+            this.egressLabel = egressLabel;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+            this.rounds = rounds;
+        }
+    }
+
+    Raptor(RaptorTimetable timetable, GraphHopperStorage graph, int maxRounds) {
+        this.timetable = timetable;
+        this.graph = graph;
+        this.ptEncodedValues = PtEncodedValues.fromEncodingManager(graph.getEncodingManager());
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * @param accessLabels     labels of the forward walk search, by departure platform index
+     * @param egressLabels     labels of the backward walk search from the destination, by platform exit node
+     * @param initialTime      the time at which both walk searches started
+     * @param walkLabel        the label of walking directly to the destination, or null
+     * @return journeys with strictly increasing number of rounds and strictly decreasing arrival times
+     */
+    List<Journey> route(IntObjectMap<Label> accessLabels, IntObjectMap<Label> egressLabels, long initialTime, Label walkLabel) {
+        return new Search(accessLabels, egressLabels, initialTime, walkLabel).run(initialTime);
+    }
+
+    /**
+     * Range query (rRAPTOR): Runs one search for every time at which a trip can be boarded after walking from the
+     * origin, within maxProfileDuration after initialTime, and one for the end of that window. The departures are swept from the latest to the earliest,
+     * keeping the labels of the later searches, as they are still upper bounds for the earlier ones.
+     *
+     * @param ignoreRounds if true, only the Pareto set by (departure, arrival) is returned
+     * @param buckets      if greater than 1, the departures are split into this many buckets of consecutive departures
+     *                     which are swept in parallel, and the results are merged
+     * @param executor     the executor which searches all buckets but the first, which is searched by the calling
+     *                     thread, or null to search all buckets on the calling thread
+     * @return the Pareto set of journeys by (departure, arrival, rounds), ordered by departure time
+     */
+    List<Journey> routeRange(IntObjectMap<Label> accessLabels, IntObjectMap<Label> egressLabels, long initialTime, Label walkLabel, long maxProfileDuration, boolean ignoreRounds, int buckets, ExecutorService executor) {
+        long[] departureTimes = departureTimes(accessLabels, initialTime, maxProfileDuration);
+        int bucketCount = Math.max(1, Math.min(buckets, departureTimes.length));
+        int bucketSize = (departureTimes.length + bucketCount - 1) / bucketCount;
+        List<List<Journey>> journeysByBucket = new ArrayList<>(bucketCount);
+        if (executor == null || bucketCount == 1) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                journeysByBucket.add(searchBucket(accessLabels, egressLabels, initialTime, walkLabel, departureTimes, bucket * bucketSize, (bucket + 1) * bucketSize));
+            }
+        } else {
+            List<Future<List<Journey>>> futures = new ArrayList<>(bucketCount - 1);
+            try {
+                for (int bucket = 1; bucket < bucketCount; bucket++) {
+                    int from = bucket * bucketSize;
+                    futures.add(executor.submit(() -> searchBucket(accessLabels, egressLabels, initialTime, walkLabel, departureTimes, from, from + bucketSize)));
+                }
+                journeysByBucket.add(searchBucket(accessLabels, egressLabels, initialTime, walkLabel, departureTimes, 0, bucketSize));
+                for (Future<List<Journey>> future : futures) {
+                    journeysByBucket.add(future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                if (ex.getCause() instanceof Error)
+                    throw (Error) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            } finally {
+                for (Future<List<Journey>> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        // Searches at different times can find the same journey, which has waited at the origin in the earlier one,
+        // and the buckets don't know of each other. So filter by when the journeys actually leave the origin.
+        List<Journey> candidates = journeysByBucket.stream().flatMap(List::stream)
+                .sorted(Comparator.comparingLong((Journey j) -> -j.departureTime)
+                        .thenComparingLong(j -> j.arrivalTime)
+                        .thenComparingInt(j -> j.rounds))
+                .collect(Collectors.toList());
+        List<Journey> result = new ArrayList<>();
+        long[] bestArrivalByRounds = new long[maxRounds + 1];
+        Arrays.fill(bestArrivalByRounds, Long.MAX_VALUE);
+        for (Journey journey : candidates) {
+            int rounds = ignoreRounds ? 0 : journey.rounds;
+            if (journey.arrivalTime < bestArrivalByRounds[rounds]) {
+                result.add(journey);
+                for (int k = rounds; k <= maxRounds; k++) {
+                    bestArrivalByRounds[k] = Math.min(bestArrivalByRounds[k], journey.arrivalTime);
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private List<Journey> searchBucket(IntObjectMap<Label> accessLabels, IntObjectMap<Label> egressLabels, long initialTime, Label walkLabel, long[] departureTimes, int from, int to) {
+        Search search = new Search(accessLabels, egressLabels, initialTime, walkLabel);
+        List<Journey> journeys = new ArrayList<>();
+        for (int i = from; i < Math.min(departureTimes.length, to); i++) {
+            journeys.addAll(search.run(departureTimes[i]));
+        }
+        return journeys;
+    }
+
+    private long[] departureTimes(IntObjectMap<Label> accessLabels, long initialTime, long maxProfileDuration) {
+        TreeSet<Long> departureTimes = new TreeSet<>(Comparator.reverseOrder());
+        // What is optimal at the end of the time window is part of the profile, even if it departs later.
+        departureTimes.add(initialTime + maxProfileDuration);
+        long[] departure = new long[1];
+        for (IntObjectCursor<Label> c : accessLabels) {
+            long accessTime = c.value.currentTime - initialTime;
+            int[] patternsAtPlatform = timetable.patternsAtPlatform[c.key];
+            for (int i = 0; i < patternsAtPlatform.length; i += 2) {
+                RaptorTimetable.Pattern pattern = timetable.patterns[patternsAtPlatform[i]];
+                int pos = patternsAtPlatform[i + 1];
+                if (pos == pattern.platforms.length - 1) {
+                    continue;
+                }
+                long time = c.value.currentTime;
+                while (findEarliestTrip(pattern, pos, time, departure) != null && departure[0] - accessTime <= initialTime + maxProfileDuration) {
+                    departureTimes.add(departure[0] - accessTime);
+                    time = departure[0] + 1;
+                }
+            }
+        }
+        return departureTimes.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * The labels of one RAPTOR search, by round. They can be reused for searches with earlier departure times.
+     */
+    private class Search {
+        private final IntObjectMap<Label> accessLabels;
+        private final IntObjectMap<Label> egressLabels;
+        private final long initialTime;
+        private final Label walkLabel;
+        // best reach of each platform with at most k rides
+        private final List<IntObjectHashMap<PlatformReach>> bestReach = new ArrayList<>();
+        // best arrival at each arrival timeline node with k rides
+        private final List<IntLongHashMap> bestArrival = new ArrayList<>();
+        // best arrival at the destination with at most k rides
+        private final long[] bestDestination;
+
+        Search(IntObjectMap<Label> accessLabels, IntObjectMap<Label> egressLabels, long initialTime, Label walkLabel) {
+            this.accessLabels = accessLabels;
+            this.egressLabels = egressLabels;
+            this.initialTime = initialTime;
+            this.walkLabel = walkLabel;
+            for (int k = 0; k <= maxRounds; k++) {
+                bestReach.add(new IntObjectHashMap<>());
+                bestArrival.add(new IntLongHashMap());
+            }
+            bestDestination = new long[maxRounds + 1];
+            Arrays.fill(bestDestination, Long.MAX_VALUE);
+        }
+
+        List<Journey> run(long departureTime) {
+            long shift = departureTime - initialTime;
+            IntHashSet markedPlatforms = new IntHashSet();
+            for (IntObjectCursor<Label> c : accessLabels) {
+                long time = c.value.currentTime + shift;
+                PlatformReach reach = bestReach.get(0).get(c.key);
+                if (reach == null || time < reach.time) {
+                    bestReach.get(0).put(c.key, new PlatformReach(time, c.value, null, -1));
+                    markedPlatforms.add(c.key);
+                }
+            }
+            if (walkLabel != null) {
+                bestDestination[0] = Math.min(bestDestination[0], walkLabel.currentTime + shift);
+            }
+            List<Journey> journeys = new ArrayList<>();
+            for (int round = 1; round <= maxRounds && !markedPlatforms.isEmpty(); round++) {
+                IntObjectHashMap<PlatformReach> previousReach = bestReach.get(round - 1);
+                IntObjectHashMap<PlatformReach> reachInRound = bestReach.get(round);
+                IntLongHashMap previousArrival = bestArrival.get(round - 1);
+                IntLongHashMap arrivalInRound = bestArrival.get(round);
+                bestDestination[round] = Math.min(bestDestination[round], bestDestination[round - 1]);
+
+                IntIntHashMap firstPositions = new IntIntHashMap();
+                for (IntCursor p : markedPlatforms) {
+                    PlatformReach reach = previousReach.get(p.value);
+                    PlatformReach current = reachInRound.get(p.value);
+                    if (current == null || reach.time < current.time) {
+                        reachInRound.put(p.value, reach);
+                    }
+                    int[] patternsAtPlatform = timetable.patternsAtPlatform[p.value];
+                    for (int i = 0; i < patternsAtPlatform.length; i += 2) {
+                        int index = firstPositions.indexOf(patternsAtPlatform[i]);
+                        if (!firstPositions.indexExists(index) || firstPositions.indexGet(index) > patternsAtPlatform[i + 1]) {
+                            firstPositions.put(patternsAtPlatform[i], patternsAtPlatform[i + 1]);
+                        }
+                    }
+                }
+                markedPlatforms.clear();
+
+                IntObjectHashMap<Ride> improvedArrivals = new IntObjectHashMap<>();
+                long[] departure = new long[1];
+                for (IntIntCursor c : firstPositions) {
+                    RaptorTimetable.Pattern pattern = timetable.patterns[c.key];
+                    RaptorTimetable.TripTimes trip = null;
+                    PlatformReach boardedFrom = null;
+                    int boardPosition = -1;
+                    long tripDeparture = 0;
+                    for (int pos = c.value; pos < pattern.platforms.length; pos++) {
+                        if (trip != null) {
+                            long arrivalTime = tripDeparture + (trip.arrivalOffsets[pos] - trip.departureOffsets[boardPosition]) * 1000L;
+                            int arrival = trip.arrivals[pos];
+                            if (arrivalTime < bestDestination[round] && arrivalTime < arrivalInRound.getOrDefault(arrival, Long.MAX_VALUE)
+                                    && arrivalTime < previousArrival.getOrDefault(arrival, Long.MAX_VALUE)) {
+                                arrivalInRound.put(arrival, arrivalTime);
+                                improvedArrivals.put(arrival, new Ride(boardedFrom, trip, boardPosition, tripDeparture, pos, arrivalTime));
+                            }
+                        }
+                        PlatformReach reach = previousReach.get(pattern.platforms[pos]);
+                        if (reach == null || pos == pattern.platforms.length - 1) {
+                            continue;
+                        }
+                        long currentDeparture = trip == null ? Long.MAX_VALUE : tripDeparture + (trip.departureOffsets[pos] - trip.departureOffsets[boardPosition]) * 1000L;
+                        if (reach.time <= currentDeparture) {
+                            RaptorTimetable.TripTimes earliestTrip = findEarliestTrip(pattern, pos, reach.time, departure);
+                            if (earliestTrip != null && departure[0] < currentDeparture) {
+                                trip = earliestTrip;
+                                boardedFrom = reach;
+                                boardPosition = pos;
+                                tripDeparture = departure[0];
+                            }
+                        }
+                    }
+                }
+
+                Journey bestJourneyInRound = null;
+                for (IntObjectCursor<Ride> c : improvedArrivals) {
+                    Label egressLabel = egressLabels.get(timetable.arrivalExitNodes[c.key]);
+                    if (egressLabel != null) {
+                        long arrivalAtDestination = c.value.arrivalTime + (initialTime - egressLabel.currentTime);
+                        if (arrivalAtDestination < bestDestination[round]) {
+                            bestDestination[round] = arrivalAtDestination;
+                            bestJourneyInRound = new Journey(c.value, egressLabel, departureFromOrigin(c.value), arrivalAtDestination, round);
+                        }
+                    }
+                }
+                if (bestJourneyInRound != null) {
+                    journeys.add(bestJourneyInRound);
+                }
+                for (IntObjectCursor<Ride> c : improvedArrivals) {
+                    for (int t = timetable.transferOffsets[c.key]; t < timetable.transferOffsets[c.key + 1]; t++) {
+                        long time = c.value.arrivalTime + timetable.transferTimes[t] * 1000L;
+                        int platform = timetable.transferPlatforms[t];
+                        PlatformReach reach = reachInRound.get(platform);
+                        if (time < bestDestination[round] && (reach == null || time < reach.time)) {
+                            reachInRound.put(platform, new PlatformReach(time, null, c.value, t));
+                            markedPlatforms.add(platform);
+                        }
+                    }
+                }
+            }
+            return journeys;
+        }
+
+        private long departureFromOrigin(Ride ride) {
+            Ride firstRide = ride;
+            while (firstRide.boardedFrom.ride != null) {
+                firstRide = firstRide.boardedFrom.ride;
+            }
+            return firstRide.departureTime - (firstRide.boardedFrom.accessLabel.currentTime - initialTime);
+        }
+    }
+
+    private RaptorTimetable.TripTimes findEarliestTrip(RaptorTimetable.Pattern pattern, int pos, long earliestDeparture, long[] departure) {
+        int[] tripsByDeparture = pattern.tripsByDeparture[pos];
+        int n = tripsByDeparture.length;
+        long millisOfDay = Instant.ofEpochMilli(earliestDeparture).atZone(pattern.zoneId).toLocalTime().toNanoOfDay() / 1000000L;
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pattern.trips[tripsByDeparture[mid]].departureTimeOfDay[pos] * 1000L < millisOfDay) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        // Today's departures from now on, then the following days', like WAIT and OVERNIGHT edges would.
+        for (int i = lo; i < lo + MAX_DAYS_AHEAD * n; i++) {
+            RaptorTimetable.TripTimes trip = pattern.trips[tripsByDeparture[i % n]];
+            long time = earliestDeparture + trip.departureTimeOfDay[pos] * 1000L - millisOfDay + (i / n) * DAY_MILLIS;
+            if (isValidOn(trip.validityIds[pos], time)) {
+                departure[0] = time;
+                return trip;
+            }
+        }
+        return null;
+    }
+
+    private boolean isValidOn(int validityId, long instant) {
+        GtfsStorage.Validity validity = timetable.validities[validityId];
+        int trafficDay = (int) ChronoUnit.DAYS.between(validity.start, Instant.ofEpochMilli(instant).atZone(validity.zoneId).toLocalDate());
+        return trafficDay >= 0 && validity.validity.get(trafficDay);
+    }
+
+    /**
+     * Creates the label chain of this journey along the graph edges, ending at the platform exit node where the
+     * egress walk begins.
+     */
+    Label toLabel(Journey journey) {
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(ptEncodedValues.getAccessEnc()));
+        Deque<Ride> rides = new ArrayDeque<>();
+        for (Ride ride = journey.lastRide; ride != null; ride = ride.boardedFrom.ride) {
+            rides.push(ride);
+        }
+        Label label = rides.peek().boardedFrom.accessLabel;
+        int nTransfers = label.nTransfers;
+        long walkTime = label.walkTime;
+        long firstDepartureTime = Label.NO_DEPARTURE_TIME;
+        int arrival = -1;
+        for (Ride ride : rides) {
+            RaptorTimetable.TripTimes trip = ride.trip;
+            int b = ride.boardPosition;
+            int boardTimelineNode = graph.getEdgeIteratorState(trip.boardEdges[b], Integer.MIN_VALUE).getBaseNode();
+            if (ride.boardedFrom.accessLabel != null) {
+                label = new Label(ride.departureTime, trip.enterEdges[b], boardTimelineNode, nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+            } else {
+                int t = ride.boardedFrom.transfer;
+                int startNode = timetable.transferTargetNodes[t];
+                label = new Label(label.currentTime + timetable.transferTimes[t] * 1000L, timetable.transferEdges[t], startNode, nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+                while (label.adjNode != boardTimelineNode) {
+                    EdgeIterator iter = outExplorer.setBaseNode(label.adjNode);
+                    EdgeIterator waitEdge = null;
+                    while (iter.next()) {
+                        GtfsStorage.EdgeType edgeType = iter.get(ptEncodedValues.getTypeEnc());
+                        if (edgeType == GtfsStorage.EdgeType.WAIT || edgeType == GtfsStorage.EdgeType.OVERNIGHT) {
+                            waitEdge = iter;
+                            break;
+                        }
+                    }
+                    if (waitEdge == null || waitEdge.getAdjNode() == startNode) {
+                        throw new IllegalStateException("Cannot reach departure " + boardTimelineNode + " from transfer at " + startNode);
+                    }
+                    label = new Label(label.currentTime + waitEdge.get(ptEncodedValues.getTimeEnc()) * 1000L, waitEdge.getEdge(), waitEdge.getAdjNode(), nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+                }
+            }
+            if (firstDepartureTime == Label.NO_DEPARTURE_TIME) {
+                firstDepartureTime = ride.departureTime;
+            }
+            nTransfers++;
+            label = new Label(ride.departureTime, trip.boardEdges[b], adjNode(trip.boardEdges[b]), nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+            for (int pos = b; pos < ride.alightPosition; pos++) {
+                long hopArrival = ride.departureTime + (trip.arrivalOffsets[pos + 1] - trip.departureOffsets[b]) * 1000L;
+                label = new Label(hopArrival, trip.hopEdges[pos], adjNode(trip.hopEdges[pos]), nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+                if (pos + 1 < ride.alightPosition) {
+                    long dwellDeparture = ride.departureTime + (trip.departureOffsets[pos + 1] - trip.departureOffsets[b]) * 1000L;
+                    label = new Label(dwellDeparture, trip.dwellEdges[pos + 1], adjNode(trip.dwellEdges[pos + 1]), nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+                }
+            }
+            int alightEdge = trip.alightEdges[ride.alightPosition];
+            label = new Label(ride.arrivalTime, alightEdge, adjNode(alightEdge), nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+            arrival = trip.arrivals[ride.alightPosition];
+        }
+        return new Label(label.currentTime, timetable.arrivalLeaveEdges[arrival], timetable.arrivalExitNodes[arrival], nTransfers, 0, firstDepartureTime, walkTime, 0, false, label);
+    }
+
+    private int adjNode(int edge) {
+        return graph.getEdgeIteratorState(edge, Integer.MIN_VALUE).getAdjNode();
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The timetable view of the PT graph which the {@link Raptor} router scans. It is derived from the graph and
+ * the GtfsStorage, so it is built once per graph and cached in {@link GtfsStorage#getRaptorTimetable}.
+ * <p>
+ * RAPTOR stops are the departure platforms (the nodes behind ENTER_PT edges), trips are grouped into patterns
+ * by their sequence of departure platforms, and footpaths are the TRANSFER edges which leave the arrival
+ * timeline nodes. Every number here refers back to a node or an edge of the graph, so that a RAPTOR journey
+ * can be turned into the same edge sequence the label setting router would produce.
+ */
+final class RaptorTimetable {
+
+    static final class TripTimes {
+        final int[] departureTimeOfDay;
+        final int[] departureOffsets;
+        final int[] arrivalOffsets;
+        final int[] validityIds;
+        final int[] enterEdges;
+        final int[] boardEdges;
+        final int[] hopEdges;
+        final int[] dwellEdges;
+        final int[] alightEdges;
+        final int[] arrivals;
+
+        private TripTimes(int n) {
+            departureTimeOfDay = new int[n];
+            departureOffsets = new int[n];
+            arrivalOffsets = new int[n];
+            validityIds = new int[n];
+            enterEdges = new int[n];
+            boardEdges = new int[n];
+            hopEdges = new int[n];
+            dwellEdges = new int[n];
+            alightEdges = new int[n];
+            arrivals = new int[n];
+        }
+    }
+
+    static final class Pattern {
+        final int[] platforms;
+        final ZoneId zoneId;
+        final TripTimes[] trips;
+        // per position, the trip indices sorted by departure time of day
+        final int[][] tripsByDeparture;
+
+        private Pattern(int[] platforms, ZoneId zoneId, List<TripTimes> trips) {
+            this.platforms = platforms;
+            this.zoneId = zoneId;
+            this.trips = trips.toArray(new TripTimes[0]);
+            this.tripsByDeparture = new int[platforms.length][];
+            for (int pos = 0; pos < platforms.length; pos++) {
+                final int p = pos;
+                tripsByDeparture[pos] = IntStream.range(0, this.trips.length).boxed()
+                        .sorted(Comparator.comparingInt(t -> this.trips[t].departureTimeOfDay[p]))
+                        .mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    final GtfsStorage.Validity[] validities;
+    final Pattern[] patterns;
+    final int[] platformNodes;
+    // pairs of (pattern, position) for each platform
+    final int[][] patternsAtPlatform;
+    final int[] arrivalNodes;
+    final int[] arrivalLeaveEdges;
+    final int[] arrivalExitNodes;
+    final int[] transferOffsets;
+    final int[] transferPlatforms;
+    final int[] transferTimes;
+    final int[] transferEdges;
+    final int[] transferTargetNodes;
+    private final IntIntHashMap platformIndexByNode;
+
+    RaptorTimetable(GraphHopperStorage graph, GtfsStorage gtfsStorage) {
+        PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(graph.getEncodingManager());
+        EdgeExplorer outExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(ptEncodedValues.getAccessEnc()));
+        EdgeExplorer inExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.inEdges(ptEncodedValues.getAccessEnc()));
+
+        validities = new GtfsStorage.Validity[gtfsStorage.getOperatingDayPatterns().size()];
+        gtfsStorage.getOperatingDayPatterns().forEach((validity, id) -> validities[id] = validity);
+
+        IntIntHashMap platformIndex = new IntIntHashMap();
+        IntArrayList platforms = new IntArrayList();
+        IntIntHashMap arrivalIndex = new IntIntHashMap();
+        IntArrayList arrivals = new IntArrayList();
+        IntArrayList leaveEdges = new IntArrayList();
+        IntArrayList exitNodes = new IntArrayList();
+        Map<IntArrayList, List<TripTimes>> tripsByPlatformSequence = new LinkedHashMap<>();
+        Map<IntArrayList, ZoneId> zoneIdByPlatformSequence = new HashMap<>();
+
+        for (Map.Entry<String, int[]> e : gtfsStorage.getBoardEdgesForTrip().entrySet()) {
+            int[] boardEdges = e.getValue();
+            int[] alightEdges = gtfsStorage.getAlightEdgesForTrip().get(e.getKey());
+            IntArrayList stopSequences = new IntArrayList();
+            for (int i = 0; i < boardEdges.length; i++) {
+                if (boardEdges[i] != -1) {
+                    stopSequences.add(i);
+                }
+            }
+            if (alightEdges == null || stopSequences.size() < 2) {
+                continue;
+            }
+            TripTimes trip = new TripTimes(stopSequences.size());
+            IntArrayList platformSequence = new IntArrayList(stopSequences.size());
+            ZoneId zoneId = null;
+            for (int pos = 0; pos < stopSequences.size(); pos++) {
+                int stopSequence = stopSequences.get(pos);
+                EdgeIteratorState boardEdge = graph.getEdgeIteratorState(boardEdges[stopSequence], Integer.MIN_VALUE);
+                trip.boardEdges[pos] = boardEdge.getEdge();
+                trip.validityIds[pos] = boardEdge.get(ptEncodedValues.getValidityIdEnc());
+                EdgeIterator enterEdge = requireEdge(inExplorer, boardEdge.getBaseNode(), GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK, ptEncodedValues);
+                trip.enterEdges[pos] = enterEdge.getEdge();
+                trip.departureTimeOfDay[pos] = enterEdge.get(ptEncodedValues.getTimeEnc());
+                zoneId = gtfsStorage.getTimeZones().get(enterEdge.get(ptEncodedValues.getValidityIdEnc())).zoneId;
+                int platformNode = enterEdge.getAdjNode();
+                if (!platformIndex.containsKey(platformNode)) {
+                    platformIndex.put(platformNode, platforms.size());
+                    platforms.add(platformNode);
+                }
+                platformSequence.add(platformIndex.get(platformNode));
+
+                EdgeIteratorState alightEdge = graph.getEdgeIteratorState(alightEdges[stopSequence], Integer.MIN_VALUE);
+                trip.alightEdges[pos] = alightEdge.getEdge();
+                int arrivalTimelineNode = alightEdge.getAdjNode();
+                if (!arrivalIndex.containsKey(arrivalTimelineNode)) {
+                    EdgeIterator leaveEdge = requireEdge(outExplorer, arrivalTimelineNode, GtfsStorage.EdgeType.LEAVE_TIME_EXPANDED_NETWORK, ptEncodedValues);
+                    arrivalIndex.put(arrivalTimelineNode, arrivals.size());
+                    arrivals.add(arrivalTimelineNode);
+                    leaveEdges.add(leaveEdge.getEdge());
+                    exitNodes.add(leaveEdge.getAdjNode());
+                }
+                trip.arrivals[pos] = arrivalIndex.get(arrivalTimelineNode);
+
+                EdgeIterator dwellEdge = requireEdge(outExplorer, alightEdge.getBaseNode(), GtfsStorage.EdgeType.DWELL, ptEncodedValues);
+                trip.dwellEdges[pos] = dwellEdge.getEdge();
+                int dwellTime = dwellEdge.get(ptEncodedValues.getTimeEnc());
+                if (pos > 0) {
+                    trip.arrivalOffsets[pos] = trip.departureOffsets[pos - 1] + graph.getEdgeIteratorState(trip.hopEdges[pos - 1], Integer.MIN_VALUE).get(ptEncodedValues.getTimeEnc());
+                    trip.departureOffsets[pos] = trip.arrivalOffsets[pos] + dwellTime;
+                }
+                if (pos < stopSequences.size() - 1) {
+                    trip.hopEdges[pos] = requireEdge(outExplorer, boardEdge.getAdjNode(), GtfsStorage.EdgeType.HOP, ptEncodedValues).getEdge();
+                } else {
+                    trip.hopEdges[pos] = -1;
+                }
+            }
+            tripsByPlatformSequence.computeIfAbsent(platformSequence, s -> new ArrayList<>()).add(trip);
+            zoneIdByPlatformSequence.put(platformSequence, zoneId);
+        }
+
+        patterns = new Pattern[tripsByPlatformSequence.size()];
+        List<IntArrayList> patternsAtPlatformList = new ArrayList<>();
+        for (int i = 0; i < platforms.size(); i++) {
+            patternsAtPlatformList.add(new IntArrayList());
+        }
+        int patternId = 0;
+        for (Map.Entry<IntArrayList, List<TripTimes>> e : tripsByPlatformSequence.entrySet()) {
+            int[] platformSequence = e.getKey().toArray();
+            patterns[patternId] = new Pattern(platformSequence, zoneIdByPlatformSequence.get(e.getKey()), e.getValue());
+            for (int pos = 0; pos < platformSequence.length; pos++) {
+                patternsAtPlatformList.get(platformSequence[pos]).add(patternId, pos);
+            }
+            patternId++;
+        }
+        patternsAtPlatform = new int[platforms.size()][];
+        for (int i = 0; i < platforms.size(); i++) {
+            patternsAtPlatform[i] = patternsAtPlatformList.get(i).toArray();
+        }
+        platformNodes = platforms.toArray();
+        platformIndexByNode = platformIndex;
+        arrivalNodes = arrivals.toArray();
+        arrivalLeaveEdges = leaveEdges.toArray();
+        arrivalExitNodes = exitNodes.toArray();
+
+        transferOffsets = new int[arrivalNodes.length + 1];
+        IntArrayList transferPlatformList = new IntArrayList();
+        IntArrayList transferTimeList = new IntArrayList();
+        IntArrayList transferEdgeList = new IntArrayList();
+        IntArrayList transferTargetNodeList = new IntArrayList();
+        for (int a = 0; a < arrivalNodes.length; a++) {
+            transferOffsets[a] = transferEdgeList.size();
+            EdgeIterator iter = outExplorer.setBaseNode(arrivalNodes[a]);
+            while (iter.next()) {
+                if (iter.get(ptEncodedValues.getTypeEnc()) != GtfsStorage.EdgeType.TRANSFER) {
+                    continue;
+                }
+                EdgeIterator enterEdge = findEdge(inExplorer, iter.getAdjNode(), GtfsStorage.EdgeType.ENTER_TIME_EXPANDED_NETWORK, ptEncodedValues);
+                int platform = enterEdge == null ? -1 : platformIndexByNode.getOrDefault(enterEdge.getAdjNode(), -1);
+                if (platform == -1) {
+                    continue;
+                }
+                transferPlatformList.add(platform);
+                transferTimeList.add(iter.get(ptEncodedValues.getTimeEnc()));
+                transferEdgeList.add(iter.getEdge());
+                transferTargetNodeList.add(iter.getAdjNode());
+            }
+        }
+        transferOffsets[arrivalNodes.length] = transferEdgeList.size();
+        transferPlatforms = transferPlatformList.toArray();
+        transferTimes = transferTimeList.toArray();
+        transferEdges = transferEdgeList.toArray();
+        transferTargetNodes = transferTargetNodeList.toArray();
+    }
+
+    private static EdgeIterator findEdge(EdgeExplorer explorer, int node, GtfsStorage.EdgeType edgeType, PtEncodedValues ptEncodedValues) {
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next()) {
+            if (iter.get(ptEncodedValues.getTypeEnc()) == edgeType) {
+                return iter;
+            }
+        }
+        return null;
+    }
+
+    private static EdgeIterator requireEdge(EdgeExplorer explorer, int node, GtfsStorage.EdgeType edgeType, PtEncodedValues ptEncodedValues) {
+        EdgeIterator iter = findEdge(explorer, node, edgeType, ptEncodedValues);
+        if (iter == null) {
+            throw new IllegalStateException("No " + edgeType + " edge at node " + node);
+        }
+        return iter;
+    }
+
+    /**
+     * @return the platform index of this departure platform node, or -1 if no trip departs there
+     */
+    int getPlatformIndex(int platformNode) {
+        return platformIndexByNode.getOrDefault(platformNode, -1);
+    }
+
+}
@@ -18,9 +18,11 @@
 
 package com.graphhopper.gtfs;
 
-import com.carrotsearch.hppc.IntHashSet;
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntIntHashMap;
 import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.carrotsearch.hppc.procedures.IntProcedure;
 import com.conveyal.gtfs.GTFSFeed;
 import com.conveyal.gtfs.model.Fare;
 import com.conveyal.gtfs.model.Frequency;
@@ -40,7 +42,6 @@ import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
-import org.mapdb.Fun;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,7 +52,6 @@ import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import static com.google.transit.realtime.GtfsRealtime.TripUpdate.StopTimeUpdate.ScheduleRelationship.NO_DATA;
@@ -60,355 +60,397 @@ import static java.time.temporal.ChronoUnit.DAYS;
 
 public class RealtimeFeed {
     private static final Logger logger = LoggerFactory.getLogger(RealtimeFeed.class);
-    private final IntHashSet blockedEdges;
+    // the number of trip updates which block the edge
+    private final IntIntHashMap blockedEdges;
     private final IntLongHashMap delaysForBoardEdges;
     private final IntLongHashMap delaysForAlightEdges;
     private final List<VirtualEdgeIteratorState> additionalEdges;
     public final Map<String, GtfsRealtime.FeedMessage> feedMessages;
+    private final Map<String, Map<String, TripUpdateOverlay>> overlays;
     private final GtfsStorage staticGtfs;
-    private final Map<Integer, byte[]> additionalTripDescriptors;
+    private final Map<Integer, GtfsRealtime.TripDescriptor> additionalTripDescriptors;
     private final Map<Integer, Integer> stopSequences;
+    private final Map<GtfsStorage.Validity, Integer> operatingDayPatterns;
     private final Map<Integer, GtfsStorage.Validity> validities;
-    private final Map<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge;
-
-    private RealtimeFeed(GtfsStorage staticGtfs, Map<String, GtfsRealtime.FeedMessage> feedMessages, IntHashSet blockedEdges,
-                         IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<VirtualEdgeIteratorState> additionalEdges, Map<Integer, byte[]> tripDescriptors, Map<Integer, Integer> stopSequences, Map<GtfsStorage.Validity, Integer> operatingDayPatterns, Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones, Map<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge) {
+    private final OverlayMap<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge;
+    // the ids of the next additional edge and node, or -1 before the first one
+    private final int nextEdge;
+    private final int nextNode;
+    private final long version;
+    private WrapperGraph graphWithAdditionalEdges;
+
+    private RealtimeFeed(long version, GtfsStorage staticGtfs, Map<String, GtfsRealtime.FeedMessage> feedMessages, Map<String, Map<String, TripUpdateOverlay>> overlays,
+                         IntIntHashMap blockedEdges, IntLongHashMap delaysForBoardEdges, IntLongHashMap delaysForAlightEdges, List<VirtualEdgeIteratorState> additionalEdges,
+                         Map<Integer, GtfsRealtime.TripDescriptor> tripDescriptors, Map<Integer, Integer> stopSequences, Map<GtfsStorage.Validity, Integer> operatingDayPatterns,
+                         OverlayMap<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge, int nextEdge, int nextNode) {
+        this.version = version;
         this.staticGtfs = staticGtfs;
-        this.feedMessages = feedMessages;
+        this.feedMessages = Collections.unmodifiableMap(feedMessages);
+        this.overlays = overlays;
         this.blockedEdges = blockedEdges;
         this.delaysForBoardEdges = delaysForBoardEdges;
         this.delaysForAlightEdges = delaysForAlightEdges;
-        this.additionalEdges = additionalEdges;
+        this.additionalEdges = Collections.unmodifiableList(additionalEdges);
         this.additionalTripDescriptors = tripDescriptors;
         this.stopSequences = stopSequences;
+        this.operatingDayPatterns = operatingDayPatterns;
         Map<Integer, GtfsStorage.Validity> reverseOperatingDayPatterns = new HashMap<>();
         for (Map.Entry<GtfsStorage.Validity, Integer> entry : operatingDayPatterns.entrySet()) {
             reverseOperatingDayPatterns.put(entry.getValue(), entry.getKey());
         }
         this.validities = Collections.unmodifiableMap(reverseOperatingDayPatterns);
         this.platformDescriptorByEdge = platformDescriptorByEdge;
+        this.nextEdge = nextEdge;
+        this.nextNode = nextNode;
+    }
+
+    // Shares the overlay of a snapshot whose updates did not change, only the feed headers are new.
+    private RealtimeFeed(RealtimeFeed overlay, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
+        this.version = overlay.version + 1;
+        this.staticGtfs = overlay.staticGtfs;
+        this.feedMessages = Collections.unmodifiableMap(feedMessages);
+        this.overlays = overlay.overlays;
+        this.blockedEdges = overlay.blockedEdges;
+        this.delaysForBoardEdges = overlay.delaysForBoardEdges;
+        this.delaysForAlightEdges = overlay.delaysForAlightEdges;
+        this.additionalEdges = overlay.additionalEdges;
+        this.additionalTripDescriptors = overlay.additionalTripDescriptors;
+        this.stopSequences = overlay.stopSequences;
+        this.operatingDayPatterns = overlay.operatingDayPatterns;
+        this.validities = overlay.validities;
+        this.platformDescriptorByEdge = overlay.platformDescriptorByEdge;
+        this.nextEdge = overlay.nextEdge;
+        this.nextNode = overlay.nextNode;
+        synchronized (overlay) {
+            this.graphWithAdditionalEdges = overlay.graphWithAdditionalEdges;
+        }
     }
 
     public static RealtimeFeed empty(GtfsStorage staticGtfs) {
-        return new RealtimeFeed(staticGtfs, Collections.emptyMap(), new IntHashSet(), new IntLongHashMap(), new IntLongHashMap(), Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), staticGtfs.getOperatingDayPatterns(), staticGtfs.getWritableTimeZones(), staticGtfs.getPlatformDescriptorByEdge());
+        return new RealtimeFeed(0, staticGtfs, Collections.emptyMap(), Collections.emptyMap(), new IntIntHashMap(), new IntLongHashMap(), new IntLongHashMap(),
+                Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), staticGtfs.getOperatingDayPatterns(),
+                new OverlayMap<>(staticGtfs.getPlatformDescriptorByEdge()), -1, -1);
     }
 
     public static RealtimeFeed fromProtobuf(GraphHopperStorage graphHopperStorage, GtfsStorage staticGtfs, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> feedMessages) {
-        final IntHashSet blockedEdges = new IntHashSet();
-        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
-        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
-        final LinkedList<VirtualEdgeIteratorState> additionalEdges = new LinkedList<>();
-        final Graph overlayGraph = new Graph() {
-            int firstEdge = graphHopperStorage.getEdges();
-            EncodingManager encodingManager = graphHopperStorage.getEncodingManager();
-            final NodeAccess nodeAccess = new NodeAccess() {
-                IntIntHashMap turnCostIndices = new IntIntHashMap();
-
-                @Override
-                public int getTurnCostIndex(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public void setTurnCostIndex(int nodeId, int additionalValue) {
-                    turnCostIndices.put(nodeId, additionalValue);
-                }
-
-                @Override
-                public boolean is3D() {
-                    return false;
-                }
-
-                @Override
-                public int getDimension() {
-                    return 0;
-                }
-
-                @Override
-                public void ensureNode(int nodeId) {
-
-                }
-
-                @Override
-                public void setNode(int nodeId, double lat, double lon) {
-
-                }
-
-                @Override
-                public void setNode(int nodeId, double lat, double lon, double ele) {
-
-                }
-
-                @Override
-                public double getLatitude(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLat(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLongitude(int nodeId) {
-                    return 0;
-                }
-
-                @Override
-                public double getLon(int nodeId) {
-                    return 0;
-                }
+        return empty(staticGtfs).update(graphHopperStorage, transfers, feedMessages);
+    }
 
-                @Override
-                public double getElevation(int nodeId) {
-                    return 0;
+    /**
+     * Applies a new round of GTFS-realtime messages to this snapshot and returns the resulting one.
+     * This snapshot is not modified, so requests which are still routing on it are not affected.
+     * <p>
+     * Messages with FULL_DATASET incrementality replace what we know about their feed. DIFFERENTIAL
+     * messages are merged into it by entity id, where deleted entities are removed. Feeds which are
+     * not mentioned keep their current state.
+     * <p>
+     * Every trip update contributes its own blocked edges, delays and additional edges. Only the
+     * contributions of trip updates which are new, changed or deleted are taken out of or put into the
+     * state of this snapshot, the others are shared with the new one. So polling a feed where little
+     * changed is cheap, and an unchanged feed costs nothing.
+     */
+    public RealtimeFeed update(GraphHopperStorage graphHopperStorage, Map<String, Transfers> transfers, Map<String, GtfsRealtime.FeedMessage> updates) {
+        Map<String, GtfsRealtime.FeedMessage> mergedFeedMessages = new HashMap<>(feedMessages);
+        Map<String, Map<String, TripUpdateOverlay>> newOverlays = new HashMap<>(overlays);
+        List<TripUpdateOverlay> removed = new ArrayList<>();
+        List<TripUpdateOverlay> added = new ArrayList<>();
+        boolean headersChanged = false;
+        // copied when the first trip update is applied
+        Map<GtfsStorage.Validity, Integer> newOperatingDayPatterns = null;
+        Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones = null;
+        int newNextEdge = Math.max(nextEdge, graphHopperStorage.getEdges());
+        int newNextNode = Math.max(nextNode, graphHopperStorage.getNodes());
+        for (Map.Entry<String, GtfsRealtime.FeedMessage> entry : updates.entrySet()) {
+            String feedKey = entry.getKey();
+            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
+            if (feed == null)
+                throw new IllegalArgumentException("Unknown GTFS feed " + feedKey + ", the feeds are " + staticGtfs.getGtfsFeeds().keySet());
+            GtfsRealtime.FeedMessage current = feedMessages.get(feedKey);
+            GtfsRealtime.FeedMessage merged = merge(current, entry.getValue());
+            mergedFeedMessages.put(feedKey, merged);
+            if (current != null && !current.getHeader().equals(merged.getHeader())) {
+                headersChanged = true;
+            }
+            LocalDate dateToChange = dateToChange(feed, merged);
+            Map<String, TripUpdateOverlay> currentOverlays = overlays.getOrDefault(feedKey, Collections.emptyMap());
+            Map<String, TripUpdateOverlay> mergedOverlays = new HashMap<>();
+            for (GtfsRealtime.FeedEntity entity : merged.getEntityList()) {
+                if (!entity.hasTripUpdate())
+                    continue;
+                TripUpdateOverlay overlay = currentOverlays.get(entity.getId());
+                // The day the updates apply to comes from the header timestamp, so they change with it
+                if (overlay == null || !overlay.entity.equals(entity) || !overlay.date.equals(dateToChange)) {
+                    if (newOperatingDayPatterns == null) {
+                        newOperatingDayPatterns = new HashMap<>(operatingDayPatterns);
+                        writableTimeZones = new HashMap<>(staticGtfs.getWritableTimeZones());
+                    }
+                    OverlayGraph overlayGraph = new OverlayGraph(graphHopperStorage, newNextEdge, newNextNode);
+                    overlay = applyTripUpdate(overlayGraph, graphHopperStorage, staticGtfs, feedKey, feed, transfers.get(feedKey), entity, dateToChange, newOperatingDayPatterns, writableTimeZones);
+                    newNextEdge = overlayGraph.getEdges();
+                    newNextNode = overlayGraph.getNodes();
+                    added.add(overlay);
                 }
-
-                @Override
-                public double getEle(int nodeId) {
-                    return 0;
+                mergedOverlays.put(entity.getId(), overlay);
+            }
+            for (TripUpdateOverlay overlay : currentOverlays.values()) {
+                if (mergedOverlays.get(overlay.entity.getId()) != overlay) {
+                    removed.add(overlay);
                 }
-            };
-
-            @Override
-            public Graph getBaseGraph() {
-                return graphHopperStorage;
             }
-
-            @Override
-            public int getNodes() {
-                return IntStream.concat(
-                        IntStream.of(graphHopperStorage.getNodes() - 1),
-                        additionalEdges.stream().flatMapToInt(edge -> IntStream.of(edge.getBaseNode(), edge.getAdjNode())))
-                        .max().getAsInt() + 1;
+            newOverlays.put(feedKey, mergedOverlays);
+        }
+        if (removed.isEmpty() && added.isEmpty()) {
+            if (headersChanged || !mergedFeedMessages.keySet().equals(feedMessages.keySet())) {
+                return new RealtimeFeed(this, mergedFeedMessages);
+            } else {
+                return this;
             }
+        }
 
-            @Override
-            public int getEdges() {
-                return getAllEdges().length();
+        IntIntHashMap newBlockedEdges = new IntIntHashMap(blockedEdges);
+        IntLongHashMap newDelaysForBoardEdges = new IntLongHashMap(delaysForBoardEdges);
+        IntLongHashMap newDelaysForAlightEdges = new IntLongHashMap(delaysForAlightEdges);
+        Set<VirtualEdgeIteratorState> removedEdges = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Integer, GtfsRealtime.TripDescriptor> newTripDescriptors = new HashMap<>(additionalTripDescriptors);
+        Map<Integer, Integer> newStopSequences = new HashMap<>(stopSequences);
+        OverlayMap<Integer, GtfsStorageI.PlatformDescriptor> newPlatformDescriptorByEdge = platformDescriptorByEdge.copy();
+        for (TripUpdateOverlay overlay : removed) {
+            for (IntCursor edge : overlay.blockedEdges) {
+                if (newBlockedEdges.addTo(edge.value, -1) == 0)
+                    newBlockedEdges.remove(edge.value);
+            }
+            overlay.delaysForBoardEdges.keys().forEach((IntProcedure) newDelaysForBoardEdges::remove);
+            overlay.delaysForAlightEdges.keys().forEach((IntProcedure) newDelaysForAlightEdges::remove);
+            removedEdges.addAll(overlay.additionalEdges);
+            overlay.tripDescriptors.keySet().forEach(newTripDescriptors::remove);
+            overlay.stopSequences.keySet().forEach(newStopSequences::remove);
+            overlay.platformDescriptors.keySet().forEach(newPlatformDescriptorByEdge::removeAddition);
+        }
+        List<VirtualEdgeIteratorState> newAdditionalEdges = new ArrayList<>(additionalEdges.size());
+        for (VirtualEdgeIteratorState edge : additionalEdges) {
+            if (!removedEdges.contains(edge))
+                newAdditionalEdges.add(edge);
+        }
+        for (TripUpdateOverlay overlay : added) {
+            for (IntCursor edge : overlay.blockedEdges) {
+                newBlockedEdges.addTo(edge.value, 1);
             }
+            newDelaysForBoardEdges.putAll(overlay.delaysForBoardEdges);
+            newDelaysForAlightEdges.putAll(overlay.delaysForAlightEdges);
+            newAdditionalEdges.addAll(overlay.additionalEdges);
+            newTripDescriptors.putAll(overlay.tripDescriptors);
+            newStopSequences.putAll(overlay.stopSequences);
+            newPlatformDescriptorByEdge.putAll(overlay.platformDescriptors);
+        }
+        return new RealtimeFeed(version + 1, staticGtfs, mergedFeedMessages, newOverlays, newBlockedEdges, newDelaysForBoardEdges, newDelaysForAlightEdges,
+                newAdditionalEdges, newTripDescriptors, newStopSequences, newOperatingDayPatterns != null ? newOperatingDayPatterns : operatingDayPatterns, newPlatformDescriptorByEdge, newNextEdge, newNextNode);
+    }
 
-            @Override
-            public NodeAccess getNodeAccess() {
-                return nodeAccess;
+    static GtfsRealtime.FeedMessage merge(GtfsRealtime.FeedMessage current, GtfsRealtime.FeedMessage update) {
+        if (current == null || update.getHeader().getIncrementality() == GtfsRealtime.FeedHeader.Incrementality.FULL_DATASET) {
+            return update;
+        }
+        Map<String, GtfsRealtime.FeedEntity> entities = new LinkedHashMap<>();
+        for (GtfsRealtime.FeedEntity entity : current.getEntityList()) {
+            entities.put(entity.getId(), entity);
+        }
+        for (GtfsRealtime.FeedEntity entity : update.getEntityList()) {
+            if (entity.getIsDeleted()) {
+                entities.remove(entity.getId());
+            } else {
+                entities.put(entity.getId(), entity);
             }
+        }
+        return GtfsRealtime.FeedMessage.newBuilder()
+                .setHeader(GtfsRealtime.FeedHeader.newBuilder(update.getHeader()).setIncrementality(GtfsRealtime.FeedHeader.Incrementality.FULL_DATASET))
+                .addAllEntity(entities.values())
+                .build();
+    }
 
+    /**
+     * The service day the trip updates of the message apply to, which is the day of its timestamp in the time zone
+     * of the feed. Trips of the previous service day which are still running after midnight are not covered.
+     */
+    private static LocalDate dateToChange(GTFSFeed feed, GtfsRealtime.FeedMessage feedMessage) {
+        ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+        Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
+        return timestamp.atZone(timezone).toLocalDate();
+    }
+
+    /**
+     * What one trip update contributes to the realtime state of its feed. It is immutable once built, so snapshots
+     * share it as long as the trip update does not change.
+     */
+    private static class TripUpdateOverlay {
+        final GtfsRealtime.FeedEntity entity;
+        final LocalDate date;
+        final IntArrayList blockedEdges = new IntArrayList();
+        final IntLongHashMap delaysForBoardEdges = new IntLongHashMap();
+        final IntLongHashMap delaysForAlightEdges = new IntLongHashMap();
+        final List<VirtualEdgeIteratorState> additionalEdges;
+        final Map<Integer, GtfsRealtime.TripDescriptor> tripDescriptors = new HashMap<>();
+        final Map<Integer, Integer> stopSequences = new HashMap<>();
+        final Map<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptors;
+
+        TripUpdateOverlay(GtfsRealtime.FeedEntity entity, LocalDate date, List<VirtualEdgeIteratorState> additionalEdges, Map<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptors) {
+            this.entity = entity;
+            this.date = date;
+            this.additionalEdges = additionalEdges;
+            this.platformDescriptors = platformDescriptors;
+        }
+    }
+
+    private static TripUpdateOverlay applyTripUpdate(OverlayGraph overlayGraph, GraphHopperStorage graphHopperStorage, GtfsStorage staticGtfs, String feedKey, GTFSFeed feed, Transfers transfers,
+                                                     GtfsRealtime.FeedEntity entity, LocalDate dateToChange, Map<GtfsStorage.Validity, Integer> operatingDayPatterns,
+                                                     Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones) {
+        ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
+        OverlayMap<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge = new OverlayMap<>(staticGtfs.getPlatformDescriptorByEdge());
+        TripUpdateOverlay overlay = new TripUpdateOverlay(entity, dateToChange, overlayGraph.additionalEdges, platformDescriptorByEdge.additions);
+        Map<String, int[]> boardEdgesForTrip = new HashMap<>();
+        Map<String, int[]> alightEdgesForTrip = new HashMap<>();
+        GtfsStorageI gtfsStorage = new GtfsStorageI() {
             @Override
-            public BBox getBounds() {
+            public Map<String, Fare> getFares() {
                 return null;
             }
 
             @Override
-            public EdgeIteratorState edge(int a, int b) {
-                int edge = firstEdge++;
-                final VirtualEdgeIteratorState newEdge = new VirtualEdgeIteratorState(-1,
-                        edge, a, b, 0.0, encodingManager.createEdgeFlags(), "", new PointList(), false);
-                final VirtualEdgeIteratorState reverseNewEdge = new VirtualEdgeIteratorState(-1,
-                        edge, b, a, 0.0, encodingManager.createEdgeFlags(), "", new PointList(), true);
-                newEdge.setReverseEdge(reverseNewEdge);
-                reverseNewEdge.setReverseEdge(newEdge);
-                additionalEdges.push(newEdge);
-                return newEdge;
+            public Map<GtfsStorage.Validity, Integer> getOperatingDayPatterns() {
+                return operatingDayPatterns;
             }
 
             @Override
-            public EdgeIteratorState edge(int a, int b, double distance, boolean bothDirections) {
-                return null;
+            public Map<GtfsStorage.FeedIdWithTimezone, Integer> getWritableTimeZones() {
+                return writableTimeZones;
             }
 
             @Override
-            public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
-                return null;
+            public Map<Integer, GtfsStorage.FeedIdWithTimezone> getTimeZones() {
+                return staticGtfs.getTimeZones();
             }
 
             @Override
-            public AllEdgesIterator getAllEdges() {
-                return null;
+            public Map<Integer, GtfsRealtime.TripDescriptor> getTripDescriptors() {
+                return overlay.tripDescriptors;
             }
 
             @Override
-            public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
-                return null;
+            public Map<Integer, Integer> getStopSequences() {
+                return overlay.stopSequences;
             }
 
             @Override
-            public Graph copyTo(Graph g) {
-                return null;
+            public Map<String, int[]> getBoardEdgesForTrip() {
+                return boardEdgesForTrip;
             }
 
             @Override
-            public TurnCostStorage getTurnCostStorage() {
-                throw new RuntimeException();
+            public Map<String, int[]> getAlightEdgesForTrip() {
+                return alightEdgesForTrip;
             }
 
             @Override
-            public Weighting wrapWeighting(Weighting weighting) {
-                throw new RuntimeException();
+            public Map<String, GTFSFeed> getGtfsFeeds() {
+                return Collections.singletonMap(feedKey, feed);
             }
 
             @Override
-            public int getOtherNode(int edge, int node) {
-                throw new UnsupportedOperationException();
+            public Map<GtfsStorage.FeedIdWithStopId, Integer> getStationNodes() {
+                return staticGtfs.getStationNodes();
             }
 
             @Override
-            public boolean isAdjacentToNode(int edge, int node) {
-                throw new UnsupportedOperationException();
+            public Map<Integer, PlatformDescriptor> getPlatformDescriptorByEdge() {
+                return platformDescriptorByEdge;
             }
         };
-
-        Map<GtfsStorage.Validity, Integer> operatingDayPatterns = new HashMap<>(staticGtfs.getOperatingDayPatterns());
-        Map<Integer, byte[]> tripDescriptors = new HashMap<>();
-        Map<Integer, Integer> stopSequences = new HashMap<>();
-        Map<String, int[]> boardEdgesForTrip = new HashMap<>();
-        Map<String, int[]> alightEdgesForTrip = new HashMap<>();
-        Map<GtfsStorage.FeedIdWithTimezone, Integer> writableTimeZones = new HashMap<>(staticGtfs.getWritableTimeZones());
-        Map<Integer, GtfsStorageI.PlatformDescriptor> platformDescriptorByEdge = new HashMap<>(staticGtfs.getPlatformDescriptorByEdge()); // FIXME: Too slow for production
-
-        feedMessages.forEach((feedKey, feedMessage) -> {
-            GTFSFeed feed = staticGtfs.getGtfsFeeds().get(feedKey);
-            ZoneId timezone = ZoneId.of(feed.agency.values().stream().findFirst().get().agency_timezone);
-            GtfsStorageI gtfsStorage = new GtfsStorageI() {
-                @Override
-                public Map<String, Fare> getFares() {
-                    return null;
-                }
-
-                @Override
-                public Map<GtfsStorage.Validity, Integer> getOperatingDayPatterns() {
-                    return operatingDayPatterns;
-                }
-
-                @Override
-                public Map<GtfsStorage.FeedIdWithTimezone, Integer> getWritableTimeZones() {
-                    return writableTimeZones;
-                }
-
-                @Override
-                public Map<Integer, GtfsStorage.FeedIdWithTimezone> getTimeZones() {
-                    return staticGtfs.getTimeZones();
-                }
-
-                @Override
-                public Map<Integer, byte[]> getTripDescriptors() {
-                    return tripDescriptors;
-                }
-
-                @Override
-                public Map<Integer, Integer> getStopSequences() {
-                    return stopSequences;
-                }
-
-                @Override
-                public Map<String, int[]> getBoardEdgesForTrip() {
-                    return boardEdgesForTrip;
-                }
-
-                @Override
-                public Map<String, int[]> getAlightEdgesForTrip() {
-                    return alightEdgesForTrip;
-                }
-
-                @Override
-                public Map<String, GTFSFeed> getGtfsFeeds() {
-                    HashMap<String, GTFSFeed> stringGTFSFeedHashMap = new HashMap<>();
-                    stringGTFSFeedHashMap.put(feedKey, feed);
-                    return stringGTFSFeedHashMap;
-                }
-
-                @Override
-                public Map<GtfsStorage.FeedIdWithStopId, Integer> getStationNodes() {
-                    return staticGtfs.getStationNodes();
+        final GtfsReader gtfsReader = new GtfsReader(feedKey, overlayGraph, graphHopperStorage.getEncodingManager(), gtfsStorage, null, transfers);
+        BitSet validOnDay = new BitSet();
+        LocalDate startDate = feed.getStartDate();
+        validOnDay.set((int) DAYS.between(startDate, dateToChange));
+        GtfsRealtime.TripUpdate tripUpdate = entity.getTripUpdate();
+        if (tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED) {
+            Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
+            int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
+            String key = GtfsStorage.tripKey(tripUpdate.getTrip(), !frequencies.isEmpty());
+            final int[] boardEdges = staticGtfs.getBoardEdgesForTrip().get(key);
+            final int[] leaveEdges = staticGtfs.getAlightEdgesForTrip().get(key);
+            if (boardEdges == null || leaveEdges == null) {
+                logger.warn("Trip not found: {}", tripUpdate.getTrip());
+                return overlay;
+            }
+            tripUpdate.getStopTimeUpdateList().stream()
+                    .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
+                    .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
+                    .forEach(skippedStopSequenceNumber -> {
+                        overlay.blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
+                        overlay.blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
+                    });
+            GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
+            tripWithStopTimes.stopTimes.forEach(stopTime -> {
+                if (stopTime.stop_sequence > leaveEdges.length - 1) {
+                    logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
+                    return;
                 }
-
-                @Override
-                public Map<Integer, PlatformDescriptor> getPlatformDescriptorByEdge() {
-                    return platformDescriptorByEdge;
+                final StopTime originalStopTime = feed.getStopTime(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence);
+                int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
+                overlay.delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
+                int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
+                if (departureDelay > 0) {
+                    int boardEdge = boardEdges[stopTime.stop_sequence];
+                    int departureNode = graphHopperStorage.getEdgeIteratorState(boardEdge, Integer.MIN_VALUE).getAdjNode();
+                    int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
+                    overlay.delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
                 }
-            };
-            final GtfsReader gtfsReader = new GtfsReader(feedKey, overlayGraph, graphHopperStorage.getEncodingManager(), gtfsStorage, null, transfers.get(feedKey));
-            Instant timestamp = Instant.ofEpochSecond(feedMessage.getHeader().getTimestamp());
-            LocalDate dateToChange = timestamp.atZone(timezone).toLocalDate(); //FIXME
-            BitSet validOnDay = new BitSet();
-            LocalDate startDate = feed.getStartDate();
-            validOnDay.set((int) DAYS.between(startDate, dateToChange));
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.SCHEDULED)
-                    .forEach(tripUpdate -> {
-                        Collection<Frequency> frequencies = feed.getFrequencies(tripUpdate.getTrip().getTripId());
-                        int timeOffset = (tripUpdate.getTrip().hasStartTime() && !frequencies.isEmpty()) ? LocalTime.parse(tripUpdate.getTrip().getStartTime()).toSecondOfDay() : 0;
-                        String key = GtfsStorage.tripKey(tripUpdate.getTrip(), !frequencies.isEmpty());
-                        final int[] boardEdges = staticGtfs.getBoardEdgesForTrip().get(key);
-                        final int[] leaveEdges = staticGtfs.getAlightEdgesForTrip().get(key);
-                        if (boardEdges == null || leaveEdges == null) {
-                            logger.warn("Trip not found: {}", tripUpdate.getTrip());
-                            return;
-                        }
-                        tripUpdate.getStopTimeUpdateList().stream()
-                                .filter(stopTimeUpdate -> stopTimeUpdate.getScheduleRelationship() == SKIPPED)
-                                .mapToInt(GtfsRealtime.TripUpdate.StopTimeUpdate::getStopSequence)
-                                .forEach(skippedStopSequenceNumber -> {
-                                    blockedEdges.add(boardEdges[skippedStopSequenceNumber]);
-                                    blockedEdges.add(leaveEdges[skippedStopSequenceNumber]);
-                                });
-                        GtfsReader.TripWithStopTimes tripWithStopTimes = toTripWithStopTimes(feed, tripUpdate);
-                        tripWithStopTimes.stopTimes.forEach(stopTime -> {
-                            if (stopTime.stop_sequence > leaveEdges.length - 1) {
-                                logger.warn("Stop sequence number too high {} vs {}", stopTime.stop_sequence, leaveEdges.length);
-                                return;
-                            }
-                            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTime.stop_sequence));
-                            int arrivalDelay = stopTime.arrival_time - originalStopTime.arrival_time;
-                            delaysForAlightEdges.put(leaveEdges[stopTime.stop_sequence], arrivalDelay * 1000);
-                            int departureDelay = stopTime.departure_time - originalStopTime.departure_time;
-                            if (departureDelay > 0) {
-                                int boardEdge = boardEdges[stopTime.stop_sequence];
-                                int departureNode = graphHopperStorage.getEdgeIteratorState(boardEdge, Integer.MIN_VALUE).getAdjNode();
-                                int delayedBoardEdge = gtfsReader.addDelayedBoardEdge(timezone, tripUpdate.getTrip(), stopTime.stop_sequence, stopTime.departure_time + timeOffset, departureNode, validOnDay);
-                                delaysForBoardEdges.put(delayedBoardEdge, departureDelay * 1000);
-                            }
-                        });
-                    });
-            feedMessage.getEntityList().stream()
-                    .filter(GtfsRealtime.FeedEntity::hasTripUpdate)
-                    .map(GtfsRealtime.FeedEntity::getTripUpdate)
-                    .filter(tripUpdate -> tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED)
-                    .forEach(tripUpdate -> {
-                        Trip trip = new Trip();
-                        trip.trip_id = tripUpdate.getTrip().getTripId();
-                        trip.route_id = tripUpdate.getTrip().getRouteId();
-                        final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
-                                .map(stopTimeUpdate -> {
-                                    final StopTime stopTime = new StopTime();
-                                    stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
-                                    stopTime.stop_id = stopTimeUpdate.getStopId();
-                                    stopTime.trip_id = trip.trip_id;
-                                    final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
-                                    stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
-                                    final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
-                                    stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
-                                    return stopTime;
-                                })
-                                .collect(Collectors.toList());
-                        GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
-                        gtfsReader.addTrip(timezone, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip(), false);
-                    });
-            gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
-        });
-
-        return new RealtimeFeed(staticGtfs, feedMessages, blockedEdges, delaysForBoardEdges, delaysForAlightEdges, additionalEdges, tripDescriptors, stopSequences, operatingDayPatterns, writableTimeZones, platformDescriptorByEdge);
+            });
+        } else if (tripUpdate.getTrip().getScheduleRelationship() == GtfsRealtime.TripDescriptor.ScheduleRelationship.ADDED) {
+            Trip trip = new Trip();
+            trip.trip_id = tripUpdate.getTrip().getTripId();
+            trip.route_id = tripUpdate.getTrip().getRouteId();
+            final List<StopTime> stopTimes = tripUpdate.getStopTimeUpdateList().stream()
+                    .map(stopTimeUpdate -> {
+                        final StopTime stopTime = new StopTime();
+                        stopTime.stop_sequence = stopTimeUpdate.getStopSequence();
+                        stopTime.stop_id = stopTimeUpdate.getStopId();
+                        stopTime.trip_id = trip.trip_id;
+                        final ZonedDateTime arrival_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
+                        stopTime.arrival_time = (int) Duration.between(arrival_time.truncatedTo(ChronoUnit.DAYS), arrival_time).getSeconds();
+                        final ZonedDateTime departure_time = Instant.ofEpochSecond(stopTimeUpdate.getArrival().getTime()).atZone(timezone);
+                        stopTime.departure_time = (int) Duration.between(departure_time.truncatedTo(ChronoUnit.DAYS), departure_time).getSeconds();
+                        return stopTime;
+                    })
+                    .collect(Collectors.toList());
+            GtfsReader.TripWithStopTimes tripWithStopTimes = new GtfsReader.TripWithStopTimes(trip, stopTimes, validOnDay, Collections.emptySet(), Collections.emptySet());
+            gtfsReader.addTrip(timezone, 0, new ArrayList<>(), tripWithStopTimes, tripUpdate.getTrip(), false);
+        }
+        gtfsReader.wireUpAdditionalDeparturesAndArrivals(timezone);
+        return overlay;
     }
 
     boolean isBlocked(int edgeId) {
-        return blockedEdges.contains(edgeId);
+        return blockedEdges.containsKey(edgeId);
     }
 
     List<VirtualEdgeIteratorState> getAdditionalEdges() {
         return additionalEdges;
     }
 
+    /**
+     * The base graph plus the additional edges of this snapshot. It is built on first use and then
+     * shared by all requests on this snapshot, so baseGraph must always be the graph the feed was
+     * built for.
+     */
+    synchronized Graph getGraphWithAdditionalEdges(Graph baseGraph) {
+        if (graphWithAdditionalEdges == null) {
+            graphWithAdditionalEdges = new WrapperGraph(baseGraph, additionalEdges);
+        }
+        return graphWithAdditionalEdges;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public Optional<GtfsReader.TripWithStopTimes> getTripUpdate(GTFSFeed staticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition boardEdge, Instant boardTime) {
         try {
             logger.trace("getTripUpdate {}", tripDescriptor);
@@ -470,7 +512,7 @@ public class RealtimeFeed {
         for (GtfsRealtime.TripUpdate.StopTimeUpdate stopTimeUpdate : stopTimeUpdateListWithSentinel) {
             int nextStopSequence = stopTimes.isEmpty() ? 1 : stopTimes.get(stopTimes.size() - 1).stop_sequence + 1;
             for (int i = nextStopSequence; i < stopTimeUpdate.getStopSequence(); i++) {
-                StopTime previousOriginalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), i));
+                StopTime previousOriginalStopTime = feed.getStopTime(tripUpdate.getTrip().getTripId(), i);
                 if (previousOriginalStopTime == null) {
                     continue; // This can and does happen. Stop sequence numbers can be left out.
                 }
@@ -485,7 +527,7 @@ public class RealtimeFeed {
                 logger.trace("Number of stop times: {}", stopTimes.size());
             }
 
-            final StopTime originalStopTime = feed.stop_times.get(new Fun.Tuple2(tripUpdate.getTrip().getTripId(), stopTimeUpdate.getStopSequence()));
+            final StopTime originalStopTime = feed.getStopTime(tripUpdate.getTrip().getTripId(), stopTimeUpdate.getStopSequence());
             if (originalStopTime != null) {
                 StopTime updatedStopTime = originalStopTime.clone();
                 if (stopTimeUpdate.getScheduleRelationship() == NO_DATA) {
@@ -568,7 +610,7 @@ public class RealtimeFeed {
         }).findFirst().orElse(Instant.now());
     }
 
-    public byte[] getTripDescriptor(int edge) {
+    public GtfsRealtime.TripDescriptor getTripDescriptor(int edge) {
         return staticGtfs.getTripDescriptors().getOrDefault(edge, additionalTripDescriptors.get(edge));
     }
 
@@ -577,7 +619,7 @@ public class RealtimeFeed {
     }
 
     public StopTime getStopTime(GTFSFeed staticFeed, GtfsRealtime.TripDescriptor tripDescriptor, Label.Transition t, Instant boardTime, int stopSequence) {
-        StopTime stopTime = staticFeed.stop_times.get(new Fun.Tuple2<>(tripDescriptor.getTripId(), stopSequence));
+        StopTime stopTime = staticFeed.getStopTime(tripDescriptor.getTripId(), stopSequence);
         if (stopTime == null) {
             return getTripUpdate(staticFeed, tripDescriptor, t, boardTime).get().stopTimes.get(stopSequence - 1);
         } else {
@@ -593,4 +635,223 @@ public class RealtimeFeed {
         return platformDescriptorByEdge;
     }
 
+    /**
+     * The graph a {@link GtfsReader} adds the edges of one trip update to. The edges are kept as virtual edges,
+     * numbered after the base graph and the edges of the trip updates which came before.
+     */
+    private static class OverlayGraph implements Graph {
+        private final GraphHopperStorage graphHopperStorage;
+        private final EncodingManager encodingManager;
+        private final LinkedList<VirtualEdgeIteratorState> additionalEdges = new LinkedList<>();
+        private final int firstNode;
+        private int nextEdge;
+        private final NodeAccess nodeAccess = new NodeAccess() {
+            @Override
+            public int getTurnCostIndex(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public void setTurnCostIndex(int nodeId, int additionalValue) {
+
+            }
+
+            @Override
+            public boolean is3D() {
+                return false;
+            }
+
+            @Override
+            public int getDimension() {
+                return 0;
+            }
+
+            @Override
+            public void ensureNode(int nodeId) {
+
+            }
+
+            @Override
+            public void setNode(int nodeId, double lat, double lon) {
+
+            }
+
+            @Override
+            public void setNode(int nodeId, double lat, double lon, double ele) {
+
+            }
+
+            @Override
+            public double getLatitude(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLat(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLongitude(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getLon(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getElevation(int nodeId) {
+                return 0;
+            }
+
+            @Override
+            public double getEle(int nodeId) {
+                return 0;
+            }
+        };
+
+        OverlayGraph(GraphHopperStorage graphHopperStorage, int firstEdge, int firstNode) {
+            this.graphHopperStorage = graphHopperStorage;
+            this.encodingManager = graphHopperStorage.getEncodingManager();
+            this.nextEdge = firstEdge;
+            this.firstNode = firstNode;
+        }
+
+        @Override
+        public Graph getBaseGraph() {
+            return graphHopperStorage;
+        }
+
+        @Override
+        public int getNodes() {
+            int nodes = firstNode;
+            for (VirtualEdgeIteratorState edge : additionalEdges) {
+                nodes = Math.max(nodes, Math.max(edge.getBaseNode(), edge.getAdjNode()) + 1);
+            }
+            return nodes;
+        }
+
+        @Override
+        public int getEdges() {
+            return nextEdge;
+        }
+
+        @Override
+        public NodeAccess getNodeAccess() {
+            return nodeAccess;
+        }
+
+        @Override
+        public BBox getBounds() {
+            return null;
+        }
+
+        @Override
+        public EdgeIteratorState edge(int a, int b) {
+            int edge = nextEdge++;
+            final VirtualEdgeIteratorState newEdge = new VirtualEdgeIteratorState(-1,
+                    edge, a, b, 0.0, encodingManager.createEdgeFlags(), "", new PointList(), false);
+            final VirtualEdgeIteratorState reverseNewEdge = new VirtualEdgeIteratorState(-1,
+                    edge, b, a, 0.0, encodingManager.createEdgeFlags(), "", new PointList(), true);
+            newEdge.setReverseEdge(reverseNewEdge);
+            reverseNewEdge.setReverseEdge(newEdge);
+            additionalEdges.push(newEdge);
+            return newEdge;
+        }
+
+        @Override
+        public EdgeIteratorState edge(int a, int b, double distance, boolean bothDirections) {
+            return null;
+        }
+
+        @Override
+        public EdgeIteratorState getEdgeIteratorState(int edgeId, int adjNode) {
+            return null;
+        }
+
+        @Override
+        public AllEdgesIterator getAllEdges() {
+            return null;
+        }
+
+        @Override
+        public EdgeExplorer createEdgeExplorer(EdgeFilter filter) {
+            return null;
+        }
+
+        @Override
+        public Graph copyTo(Graph g) {
+            return null;
+        }
+
+        @Override
+        public TurnCostStorage getTurnCostStorage() {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public Weighting wrapWeighting(Weighting weighting) {
+            throw new RuntimeException();
+        }
+
+        @Override
+        public int getOtherNode(int edge, int node) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isAdjacentToNode(int edge, int node) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Realtime additions on top of the (large) static map, so that we don't have to copy it per update.
+     */
+    private static class OverlayMap<K, V> extends AbstractMap<K, V> {
+        private final Map<K, V> base;
+        private final Map<K, V> additions = new HashMap<>();
+
+        OverlayMap(Map<K, V> base) {
+            this.base = base;
+        }
+
+        OverlayMap<K, V> copy() {
+            OverlayMap<K, V> copy = new OverlayMap<>(base);
+            copy.additions.putAll(additions);
+            return copy;
+        }
+
+        void removeAddition(K key) {
+            additions.remove(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            V value = additions.get(key);
+            return value != null ? value : base.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return additions.containsKey(key) || base.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            V previous = get(key);
+            additions.put(key, value);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            Map<K, V> all = new HashMap<>(base);
+            all.putAll(additions);
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+
 }
@@ -44,6 +44,8 @@ public class Request {
     private Duration limitStreetTime;
     private Duration maxProfileDuration = Duration.ofHours(1);
     private List<String> pathDetails = new ArrayList<>();
+    private boolean raptor;
+    private int profileBuckets = 1;
 
     public Request(List<GHLocation> points, Instant departureTime) {
         this.points = points;
@@ -169,4 +171,31 @@ public class Request {
     public void setPathDetails(List<String> pathDetails) {
         this.pathDetails = pathDetails;
     }
+
+    public boolean isRaptor() {
+        return raptor;
+    }
+
+    /**
+     * Use the round based RAPTOR router instead of the label setting router. Only departure time queries
+     * without realtime feed are supported, the others use the label setting router. Profile queries are
+     * answered with a range query over all departures within the max profile duration.
+     */
+    public void setRaptor(boolean raptor) {
+        this.raptor = raptor;
+    }
+
+    public int getProfileBuckets() {
+        return profileBuckets;
+    }
+
+    /**
+     * For RAPTOR profile queries: Split the departures into this many buckets which are searched in parallel.
+     * With 1, all departures are swept by one search which reuses its labels from one departure to the next.
+     */
+    public void setProfileBuckets(int profileBuckets) {
+        if (profileBuckets < 1)
+            throw new IllegalArgumentException("profileBuckets must be positive but was " + profileBuckets);
+        this.profileBuckets = profileBuckets;
+    }
 }
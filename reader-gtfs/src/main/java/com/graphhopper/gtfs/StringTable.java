@@ -0,0 +1,118 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.Arrays;
+
+/**
+ * Numbers distinct strings consecutively, so records can store an int instead of the string. Strings are decoded
+ * once and then kept on the heap, because there are far fewer of them than records referencing them.
+ */
+public class StringTable {
+
+    public static final int NO_STRING = -1;
+
+    private final BytesKeyMap<String, Integer> ids;
+    private final DataAccess refs;
+    private int count;
+    private volatile String[] pool = new String[0];
+
+    public StringTable(Directory dir, String name) {
+        this.ids = new BytesKeyMap<>(dir, name, Codecs.STRING, Codecs.INT);
+        this.refs = dir.find(name + "_refs");
+    }
+
+    public StringTable create(long initBytes) {
+        ids.create(initBytes);
+        refs.create(initBytes);
+        count = 0;
+        pool = new String[0];
+        return this;
+    }
+
+    public boolean loadExisting() {
+        if (!ids.loadExisting())
+            return false;
+        if (!refs.loadExisting())
+            throw new IllegalStateException("Cannot load " + refs.getName());
+        count = refs.getHeader(0);
+        pool = new String[count];
+        return true;
+    }
+
+    public void flush() {
+        ids.flush();
+        refs.setHeader(0, count);
+        refs.flush();
+    }
+
+    public void close() {
+        ids.close();
+        refs.close();
+    }
+
+    public boolean isClosed() {
+        return refs.isClosed();
+    }
+
+    /**
+     * @return the id of the string, which is {@link #NO_STRING} for null
+     */
+    public int add(String string) {
+        if (string == null)
+            return NO_STRING;
+        Integer existing = ids.get(string);
+        if (existing != null)
+            return existing;
+        int id = count++;
+        refs.ensureCapacity(4L * count);
+        refs.setInt(4L * id, ids.putRef(string, id));
+        return id;
+    }
+
+    public String get(int id) {
+        if (id == NO_STRING)
+            return null;
+        String[] pool = this.pool;
+        if (id >= pool.length) {
+            pool = growPool(id);
+        }
+        String string = pool[id];
+        if (string == null) {
+            // Strings are immutable, so it does not matter if two threads decode the same one.
+            string = ids.readKey(refs.getInt(4L * id));
+            pool[id] = string;
+        }
+        return string;
+    }
+
+    private synchronized String[] growPool(int id) {
+        if (id >= pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(count, id + 1));
+        }
+        return pool;
+    }
+
+    public int size() {
+        return count;
+    }
+}
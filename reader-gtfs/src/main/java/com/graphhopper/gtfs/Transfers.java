@@ -33,7 +33,7 @@ public class Transfers {
     public Transfers(GTFSFeed feed) {
         this.transfersToStop = feed.transfers.values().stream().collect(Collectors.groupingBy(t -> t.to_stop_id));
         this.transfersFromStop = feed.transfers.values().stream().collect(Collectors.groupingBy(t -> t.from_stop_id));
-        this.routesByStop = feed.stop_times.values().stream()
+        this.routesByStop = feed.stop_times.values().stream().flatMap(Arrays::stream)
                 .collect(Collectors.groupingBy(stopTime -> stopTime.stop_id,
                         Collectors.mapping(stopTime -> feed.trips.get(stopTime.trip_id).route_id, Collectors.toSet())));
     }
@@ -125,6 +125,10 @@ public class Transfers {
         return transfersBySpecificity.get(0);
     }
 
+    boolean hasTransferRules(String fromStopId, String toStopId) {
+        return transfersFromStop.getOrDefault(fromStopId, Collections.emptyList()).stream().anyMatch(transfer -> transfer.to_stop_id.equals(toStopId));
+    }
+
     public boolean hasNoRouteSpecificDepartureTransferRules(String stop_id) {
         return transfersToStop.getOrDefault(stop_id, Collections.emptyList()).stream().allMatch(transfer -> transfer.to_route_id == null);
     }
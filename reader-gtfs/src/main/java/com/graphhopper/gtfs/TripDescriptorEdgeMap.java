@@ -0,0 +1,173 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.*;
+
+/**
+ * A map from trip edge ids (board and alight edges) to trip descriptors, stored as a primitive table in DataAccesses.
+ * Each edge points to a record of trip id, route id and start time, which are ids into a pool of distinct strings.
+ * So all edges of a trip share one record, and e.g. a route id is stored only once.
+ * <p>
+ * Nothing is deserialized on load. Strings are decoded once on first access and then shared, and the
+ * GtfsRealtime.TripDescriptor is only built when it is asked for.
+ */
+class TripDescriptorEdgeMap extends AbstractMap<Integer, GtfsRealtime.TripDescriptor> {
+
+    private static final int RECORD_SIZE = 12;
+    private static final int TRIP_ID = 0, ROUTE_ID = 4, START_TIME = 8;
+
+    private final IntEdgeMap recordsByEdge;
+    private final DataAccess records;
+    private final StringTable strings;
+    // only filled while writing
+    private final Map<List<Integer>, Integer> recordIds = new HashMap<>();
+    private int recordCount;
+
+    TripDescriptorEdgeMap(Directory dir, String name) {
+        this.recordsByEdge = new IntEdgeMap(dir, name + "_edges");
+        this.records = dir.find(name);
+        this.strings = new StringTable(dir, name + "_strings");
+    }
+
+    TripDescriptorEdgeMap create(long initBytes) {
+        recordsByEdge.create(initBytes);
+        records.create(initBytes);
+        strings.create(initBytes);
+        recordCount = 0;
+        recordIds.clear();
+        return this;
+    }
+
+    boolean loadExisting() {
+        if (!recordsByEdge.loadExisting())
+            return false;
+        if (!records.loadExisting() || !strings.loadExisting())
+            throw new IllegalStateException("Cannot load " + records.getName());
+        recordCount = records.getHeader(0);
+        return true;
+    }
+
+    void flush() {
+        recordsByEdge.flush();
+        records.setHeader(0, recordCount);
+        records.flush();
+        strings.flush();
+    }
+
+    void close() {
+        recordsByEdge.close();
+        records.close();
+        strings.close();
+    }
+
+    boolean isClosed() {
+        return records.isClosed();
+    }
+
+    private int addRecord(GtfsRealtime.TripDescriptor tripDescriptor) {
+        if (tripDescriptor.hasStartDate() || tripDescriptor.hasScheduleRelationship())
+            throw new IllegalArgumentException("Only trip id, route id and start time can be stored: " + tripDescriptor);
+        int tripId = strings.add(tripDescriptor.hasTripId() ? tripDescriptor.getTripId() : null);
+        int routeId = strings.add(tripDescriptor.hasRouteId() ? tripDescriptor.getRouteId() : null);
+        int startTime = strings.add(tripDescriptor.hasStartTime() ? tripDescriptor.getStartTime() : null);
+        List<Integer> key = Arrays.asList(tripId, routeId, startTime);
+        Integer existing = recordIds.get(key);
+        if (existing != null)
+            return existing;
+        int record = recordCount++;
+        long pointer = (long) record * RECORD_SIZE;
+        records.ensureCapacity(pointer + RECORD_SIZE);
+        records.setInt(pointer + TRIP_ID, tripId);
+        records.setInt(pointer + ROUTE_ID, routeId);
+        records.setInt(pointer + START_TIME, startTime);
+        recordIds.put(key, record);
+        return record;
+    }
+
+    private GtfsRealtime.TripDescriptor read(int record) {
+        long pointer = (long) record * RECORD_SIZE;
+        GtfsRealtime.TripDescriptor.Builder builder = GtfsRealtime.TripDescriptor.newBuilder();
+        String tripId = strings.get(records.getInt(pointer + TRIP_ID));
+        if (tripId != null)
+            builder.setTripId(tripId);
+        String routeId = strings.get(records.getInt(pointer + ROUTE_ID));
+        if (routeId != null)
+            builder.setRouteId(routeId);
+        String startTime = strings.get(records.getInt(pointer + START_TIME));
+        if (startTime != null)
+            builder.setStartTime(startTime);
+        return builder.build();
+    }
+
+    @Override
+    public GtfsRealtime.TripDescriptor get(Object key) {
+        if (!(key instanceof Integer))
+            return null;
+        int record = recordsByEdge.getInt((Integer) key);
+        return record == Integer.MIN_VALUE ? null : read(record);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return recordsByEdge.containsKey(key);
+    }
+
+    @Override
+    public GtfsRealtime.TripDescriptor put(Integer key, GtfsRealtime.TripDescriptor value) {
+        int old = recordsByEdge.setInt(key, addRecord(value));
+        return old == Integer.MIN_VALUE ? null : read(old);
+    }
+
+    @Override
+    public int size() {
+        return recordsByEdge.size();
+    }
+
+    @Override
+    public Set<Entry<Integer, GtfsRealtime.TripDescriptor>> entrySet() {
+        return new AbstractSet<Entry<Integer, GtfsRealtime.TripDescriptor>>() {
+            @Override
+            public Iterator<Entry<Integer, GtfsRealtime.TripDescriptor>> iterator() {
+                Iterator<Entry<Integer, Integer>> iter = recordsByEdge.entrySet().iterator();
+                return new Iterator<Entry<Integer, GtfsRealtime.TripDescriptor>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, GtfsRealtime.TripDescriptor> next() {
+                        Entry<Integer, Integer> entry = iter.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), read(entry.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return recordsByEdge.size();
+            }
+        };
+    }
+}
@@ -356,6 +356,11 @@ public class WrapperGraph implements Graph {
                         return current.fetchWayGeometry(mode);
                     }
 
+                    @Override
+                    public void fetchWayGeometry(FetchMode mode, PointList pointList) {
+                        current.fetchWayGeometry(mode, pointList);
+                    }
+
                     @Override
                     public EdgeIteratorState setWayGeometry(PointList list) {
                         current.setWayGeometry(list);
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.fare;
+
+import com.conveyal.gtfs.model.Fare;
+import com.conveyal.gtfs.model.FareRule;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The fares of a feed, read once and indexed by the keys their rules can match: route, origin and destination
+ * zone, and the zones of contains-rules. The cheapest fare is remembered per sequence of trip segments, since
+ * the same legs come up again and again in the alternatives of a response and in later requests.
+ */
+public final class FareIndex {
+
+    private static final int MAX_CACHED_TRIPS = 10_000;
+
+    private final List<Fare> fares = new ArrayList<>();
+    private final List<List<SanitizedFareRule>> sanitizedFareRules = new ArrayList<>();
+    private final Map<String, Fare> faresById = new HashMap<>();
+    private final BitSet faresWithoutRules = new BitSet();
+    private final Map<String, BitSet> faresByRoute = new HashMap<>();
+    private final Map<List<String>, BitSet> faresByOriginDestination = new HashMap<>();
+    private final Map<String, BitSet> faresByContainedZone = new HashMap<>();
+    private final BitSet faresWithContainsRules = new BitSet();
+    private final Cache<List<Trip.Segment>, Optional<Amount>> cheapestFares = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TRIPS).build();
+
+    public FareIndex(Map<String, Fare> fares) {
+        for (Fare fare : fares.values()) {
+            int i = this.fares.size();
+            this.fares.add(fare);
+            this.sanitizedFareRules.add(Fares.sanitizeFareRules(fare.fare_rules));
+            this.faresById.put(fare.fare_id, fare);
+            if (fare.fare_rules.isEmpty()) {
+                faresWithoutRules.set(i);
+            }
+            for (FareRule rule : fare.fare_rules) {
+                if (rule.route_id != null) {
+                    faresByRoute.computeIfAbsent(rule.route_id, k -> new BitSet()).set(i);
+                }
+                if (rule.origin_id != null && rule.destination_id != null) {
+                    faresByOriginDestination.computeIfAbsent(Arrays.asList(rule.origin_id, rule.destination_id), k -> new BitSet()).set(i);
+                }
+                if (rule.contains_id != null) {
+                    faresByContainedZone.computeIfAbsent(rule.contains_id, k -> new BitSet()).set(i);
+                    faresWithContainsRules.set(i);
+                }
+            }
+        }
+    }
+
+    public Optional<Amount> cheapestFare(Trip trip) {
+        try {
+            return cheapestFares.get(new ArrayList<>(trip.segments), () -> Fares.cheapestFare(this, trip));
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The fares which apply to the segment, in the order of the map this index was built from.
+     */
+    Collection<Fare> possibleFares(Trip.Segment segment) {
+        BitSet candidates = (BitSet) faresWithoutRules.clone();
+        BitSet byRoute = faresByRoute.get(segment.getRoute());
+        if (byRoute != null) {
+            candidates.or(byRoute);
+        }
+        BitSet byOriginDestination = faresByOriginDestination.get(Arrays.asList(segment.getOriginId(), segment.getDestinationId()));
+        if (byOriginDestination != null) {
+            candidates.or(byOriginDestination);
+        }
+        // A contains-rule needs all zones of the segment, so any one of them is enough to find the candidates
+        Iterator<String> zones = segment.getZones().iterator();
+        if (!zones.hasNext()) {
+            candidates.or(faresWithContainsRules);
+        } else {
+            BitSet byZone = faresByContainedZone.get(zones.next());
+            if (byZone != null) {
+                candidates.or(byZone);
+            }
+        }
+        List<Fare> result = new ArrayList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (fares.get(i).fare_rules.isEmpty() || sanitizedFareRules.get(i).stream().anyMatch(rule -> rule.appliesTo(segment))) {
+                result.add(fares.get(i));
+            }
+        }
+        return result;
+    }
+
+    Fare getFare(String fareId) {
+        return faresById.get(fareId);
+    }
+
+}
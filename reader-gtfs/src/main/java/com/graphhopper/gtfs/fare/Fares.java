@@ -29,11 +29,20 @@ import java.util.stream.Stream;
 import static java.util.stream.Collectors.toList;
 
 public class Fares {
+    /**
+     * @deprecated indexes all fares again for every call, use {@link FareIndex#cheapestFare} on an index that is
+     * built once, like the one of the GtfsStorage, which also remembers the results.
+     */
+    @Deprecated
     public static Optional<Amount> cheapestFare(Map<String, Fare> fares, Trip trip) {
+        return cheapestFare(new FareIndex(fares), trip);
+    }
+
+    static Optional<Amount> cheapestFare(FareIndex fares, Trip trip) {
         return ticketsBruteForce(fares, trip)
                 .flatMap(tickets -> tickets.stream()
                         .map(ticket -> {
-                            Fare fare = fares.get(ticket.getFare().fare_id);
+                            Fare fare = fares.getFare(ticket.getFare().fare_id);
                             final BigDecimal priceOfOneTicket = BigDecimal.valueOf(fare.fare_attribute.price);
                             return new Amount(priceOfOneTicket, fare.fare_attribute.currency_type);
                         })
@@ -44,23 +53,31 @@ public class Fares {
                         .map(e -> new Amount(e.getValue(), e.getKey())));
     }
 
-    private static Optional<List<Ticket>> ticketsBruteForce(Map<String, Fare> fares, Trip trip) {
+    private static Optional<List<Ticket>> ticketsBruteForce(FareIndex fares, Trip trip) {
         // Recursively enumerate all packages of tickets with which the trip can be done.
-        // Take the cheapest.
+        // Take the cheapest, the first one if there are several.
         TicketPurchaseScoreCalculator ticketPurchaseScoreCalculator = new TicketPurchaseScoreCalculator();
-        return allShoppingCarts(fares, trip)
-                .max(Comparator.comparingDouble(ticketPurchaseScoreCalculator::calculateScore))
-                .map(TicketPurchase::getTickets);
+        List<Ticket> cheapestTickets = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (TicketPurchase ticketPurchase : (Iterable<TicketPurchase>) allShoppingCarts(fares, trip)::iterator) {
+            List<Ticket> tickets = ticketPurchase.getTickets();
+            double score = ticketPurchaseScoreCalculator.calculateScore(tickets, ticketPurchase.getNSchwarzfahrTrips());
+            if (cheapestTickets == null || score > bestScore) {
+                cheapestTickets = tickets;
+                bestScore = score;
+            }
+        }
+        return Optional.ofNullable(cheapestTickets);
     }
 
-    static Stream<TicketPurchase> allShoppingCarts(Map<String, Fare> fares, Trip trip) {
+    static Stream<TicketPurchase> allShoppingCarts(FareIndex fares, Trip trip) {
         // Recursively enumerate all packages of tickets with which the trip can be done.
         List<Trip.Segment> segments = trip.segments;
         List<List<FareAssignment>> result = allFareAssignments(fares, segments);
         return result.stream().map(TicketPurchase::new);
     }
 
-    private static List<List<FareAssignment>> allFareAssignments(Map<String, Fare> fares, List<Trip.Segment> segments) {
+    private static List<List<FareAssignment>> allFareAssignments(FareIndex fares, List<Trip.Segment> segments) {
         // Recursively enumerate all possible ways of assigning trip segments to fares.
         if (segments.isEmpty()) {
             ArrayList<List<FareAssignment>> emptyList = new ArrayList<>();
@@ -70,7 +87,7 @@ public class Fares {
             List<List<FareAssignment>> result = new ArrayList<>();
             Trip.Segment segment = segments.get(0);
             List<List<FareAssignment>> tail = allFareAssignments(fares, segments.subList(1, segments.size()));
-            Collection<Fare> possibleFares = Fares.possibleFares(fares, segment);
+            Collection<Fare> possibleFares = fares.possibleFares(segment);
             for (Fare fare : possibleFares) {
                 for (List<FareAssignment> tailFareAssignments : tail) {
                     ArrayList<FareAssignment> fairAssignments = new ArrayList<>(tailFareAssignments);
@@ -84,14 +101,6 @@ public class Fares {
         }
     }
 
-    static Collection<Fare> possibleFares(Map<String, Fare> fares, Trip.Segment segment) {
-        return fares.values().stream().filter(fare -> applies(fare, segment)).collect(toList());
-    }
-
-    private static boolean applies(Fare fare, Trip.Segment segment) {
-        return fare.fare_rules.isEmpty() || sanitizeFareRules(fare.fare_rules).stream().anyMatch(rule -> rule.appliesTo(segment));
-    }
-
     static List<SanitizedFareRule> sanitizeFareRules(List<FareRule> gtfsFareRules) {
         // Make proper fare rule objects from the CSV-like FareRule
         ArrayList<SanitizedFareRule> result = new ArrayList<>();
@@ -20,6 +20,8 @@ package com.graphhopper.gtfs.fare;
 
 import com.conveyal.gtfs.model.Fare;
 
+import java.util.List;
+
 class TicketPurchaseScoreCalculator {
 
     static class TempTicket {
@@ -30,10 +32,15 @@ class TicketPurchaseScoreCalculator {
     }
 
     double calculateScore(TicketPurchase ticketPurchase) {
+        return calculateScore(ticketPurchase.getTickets(), ticketPurchase.getNSchwarzfahrTrips());
+    }
+
+    double calculateScore(List<Ticket> tickets, int nSchwarzfahrTrips) {
         double cost = 0;
-        for (Ticket ticket : ticketPurchase.getTickets()) {
+        for (Ticket ticket : tickets) {
             cost -= ticket.getFare().fare_attribute.price;
         }
-        return cost - ticketPurchase.getNSchwarzfahrTrips() * 60.0;
+        return cost - nSchwarzfahrTrips * 60.0;
     }
+
 }
@@ -20,6 +20,7 @@ package com.graphhopper.gtfs.fare;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 public class Trip {
@@ -60,6 +61,23 @@ public class Trip {
             return zones;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Segment segment = (Segment) o;
+            return startTime == segment.startTime &&
+                    Objects.equals(route, segment.route) &&
+                    Objects.equals(originId, segment.originId) &&
+                    Objects.equals(destinationId, segment.destinationId) &&
+                    Objects.equals(zones, segment.zones);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(route, startTime, originId, destinationId, zones);
+        }
+
     }
 
     public final List<Segment> segments = new ArrayList<>();
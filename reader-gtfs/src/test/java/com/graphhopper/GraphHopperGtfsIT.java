@@ -86,6 +86,35 @@ public class GraphHopperGtfsIT {
         assertEquals("Expected travel time == scheduled arrival time", time(6, 49), route.getBest().getTime());
     }
 
+    @Test
+    public void testRoute1AfterLoadingFromDisk() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.flag_encoders", "car,foot");
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("gtfs.file", "files/sample-feed.zip");
+        GraphHopperGtfs loaded = new GraphHopperGtfs(ghConfig);
+        loaded.init(ghConfig);
+        loaded.importOrLoad();
+        try {
+            PtRouter loadedRouter = PtRouterImpl.createFactory(new TranslationMap().doImport(), loaded, loaded.getLocationIndex(), loaded.getGtfsStorage())
+                    .createWithoutRealtimeFeed();
+            Request ghRequest = new Request(
+                    36.914893, -116.76821, // NADAV stop
+                    36.914944, -116.761472 // NANAA stop
+            );
+            ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 0, 0, 0).atZone(zoneId).toInstant());
+            ghRequest.setIgnoreTransfers(true);
+            GHResponse route = loadedRouter.route(ghRequest);
+
+            assertFalse(route.hasErrors());
+            assertEquals(time(6, 49), route.getBest().getTime());
+            assertEquals(graphHopperGtfs.getGtfsStorage().getGtfsFeeds().get("gtfs_0").trips.size(),
+                    loaded.getGtfsStorage().getGtfsFeeds().get("gtfs_0").trips.size());
+        } finally {
+            loaded.close();
+        }
+    }
+
     @Test
     public void testRoute1DoesNotGoAt654() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
@@ -0,0 +1,192 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper;
+
+import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.gtfs.PtRouter;
+import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.Request;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.TranslationMap;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.graphhopper.gtfs.GtfsHelper.time;
+import static org.junit.Assert.*;
+
+public class RaptorIT {
+
+    private static final String GRAPH_LOC = "target/RaptorIT";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static final double[][] STOPS = {
+            {36.425288, -117.133162}, // FUR_CREEK_RES
+            {36.868446, -116.784582}, // BEATTY_AIRPORT
+            {36.88108, -116.81797}, // BULLFROG
+            {36.915682, -116.751677}, // STAGECOACH
+            {36.914893, -116.76821}, // NADAV
+            {36.914944, -116.761472}, // NANAA
+            {36.909489, -116.768242}, // DADAN
+            {36.905697, -116.76218}, // EMSI
+            {36.641496, -116.40094} // AMV
+    };
+    private static PtRouter ptRouter;
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeClass
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.flag_encoders", "car,foot");
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        ghConfig.putObject("gtfs.file", "files/sample-feed.zip");
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        ptRouter = PtRouterImpl.createFactory(new TranslationMap().doImport(), graphHopperGtfs, graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed();
+    }
+
+    @AfterClass
+    public static void close() {
+        graphHopperGtfs.close();
+    }
+
+    @Test
+    public void testSameEarliestArrivalAsLabelSetting() {
+        int routesFound = 0;
+        for (double[] from : STOPS) {
+            for (double[] to : STOPS) {
+                if (from == to) {
+                    continue;
+                }
+                for (LocalDateTime departureTime : new LocalDateTime[]{LocalDateTime.of(2007, 1, 1, 0, 0), LocalDateTime.of(2007, 1, 1, 7, 44), LocalDateTime.of(2007, 1, 1, 13, 0), LocalDateTime.of(2007, 1, 6, 0, 0)}) {
+                    GHResponse expected = ptRouter.route(request(from, to, departureTime, false));
+                    GHResponse actual = ptRouter.route(request(from, to, departureTime, true));
+                    // The label setting router can give up before finding trips several days ahead, RAPTOR doesn't.
+                    if (!expected.hasErrors()) {
+                        assertFalse(actual.hasErrors());
+                        routesFound++;
+                        assertEquals("Travel time from " + from[0] + "," + from[1] + " to " + to[0] + "," + to[1] + " at " + departureTime,
+                                expected.getBest().getTime(), actual.getBest().getTime());
+                    }
+                }
+            }
+        }
+        assertTrue(routesFound > 0);
+    }
+
+    @Test
+    public void testRoute5() {
+        Request request = request(STOPS[3], STOPS[2], LocalDateTime.of(2007, 1, 1, 0, 0), true);
+        GHResponse response = ptRouter.route(request);
+        assertFalse(response.hasErrors());
+        assertEquals(1, response.getAll().size());
+        ResponsePath best = response.getBest();
+        assertEquals(1, best.getNumChanges());
+        assertEquals("Using expected route", "STBA", ((Trip.PtLeg) best.getLegs().get(0)).trip_id);
+        assertEquals("Using expected route", "AB1", ((Trip.PtLeg) best.getLegs().get(1)).trip_id);
+        assertEquals("Expected travel time == scheduled travel time", time(8, 10), best.getTime());
+    }
+
+    @Test
+    public void testRoute1ProfileEarliestArrival() {
+        for (int buckets : new int[]{1, 3}) {
+            Request request = request(STOPS[4], STOPS[5], LocalDateTime.of(2007, 1, 1, 6, 0), true);
+            request.setProfileQuery(true);
+            request.setLimitSolutions(Integer.MAX_VALUE);
+            request.setMaxProfileDuration(Duration.ofHours(4));
+            request.setProfileBuckets(buckets);
+
+            GHResponse response = ptRouter.route(request);
+            List<LocalTime> expectedDepartureTimes = Stream.of(
+                    "06:44", "07:14", "07:44", "08:14", "08:44", "08:54", "09:04", "09:14", "09:24", "09:34", "09:44", "09:54", "10:04")
+                    .map(LocalTime::parse)
+                    .collect(Collectors.toList());
+            assertEquals(expectedDepartureTimes, departureTimes(response));
+        }
+    }
+
+    @Test
+    public void testRoute1ProfileOvernight() {
+        Request request = request(STOPS[4], STOPS[5], LocalDateTime.of(2007, 1, 1, 23, 0), true);
+        request.setProfileQuery(true);
+
+        GHResponse response = ptRouter.route(request);
+        assertEquals(Collections.singletonList(LocalTime.parse("06:44")), departureTimes(response));
+    }
+
+    @Test
+    public void testProfileSameAsLabelSetting() {
+        for (double[] from : STOPS) {
+            for (double[] to : STOPS) {
+                if (from == to) {
+                    continue;
+                }
+                Request expectedRequest = request(from, to, LocalDateTime.of(2007, 1, 1, 5, 0), false);
+                expectedRequest.setProfileQuery(true);
+                expectedRequest.setMaxProfileDuration(Duration.ofHours(3));
+                Request actualRequest = request(from, to, LocalDateTime.of(2007, 1, 1, 5, 0), true);
+                actualRequest.setProfileQuery(true);
+                actualRequest.setMaxProfileDuration(Duration.ofHours(3));
+                GHResponse expected = ptRouter.route(expectedRequest);
+                GHResponse actual = ptRouter.route(actualRequest);
+                if (!expected.hasErrors()) {
+                    assertFalse(actual.hasErrors());
+                    // The label setting router may stop before the end of the time window once it has found a
+                    // walking alternative, so it can have fewer solutions. And for the end of the time window, it
+                    // departs as late as possible while RAPTOR only finds the earliest arrival.
+                    assertTrue(arrivalTimes(actual).containsAll(arrivalTimes(expected)));
+                }
+            }
+        }
+    }
+
+    private static List<Instant> arrivalTimes(GHResponse response) {
+        return response.getAll().stream()
+                .map(path -> path.getLegs().get(path.getLegs().size() - 1).getArrivalTime().toInstant())
+                .collect(Collectors.toList());
+    }
+
+    private static List<LocalTime> departureTimes(GHResponse response) {
+        return response.getAll().stream()
+                .map(path -> LocalTime.from(path.getLegs().get(0).getDepartureTime().toInstant().atZone(zoneId)))
+                .collect(Collectors.toList());
+    }
+
+    private static Request request(double[] from, double[] to, LocalDateTime departureTime, boolean raptor) {
+        Request request = new Request(from[0], from[1], to[0], to[1]);
+        request.setEarliestDepartureTime(departureTime.atZone(zoneId).toInstant());
+        request.setIgnoreTransfers(true);
+        request.setRaptor(raptor);
+        return request;
+    }
+
+}
@@ -22,6 +22,7 @@ import com.google.transit.realtime.GtfsRealtime;
 import com.graphhopper.gtfs.GraphHopperGtfs;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.RealtimeFeed;
 import com.graphhopper.gtfs.Request;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.TranslationMap;
@@ -105,6 +106,90 @@ public class RealtimeIT {
         assertTrue(((Trip.PtLeg) impossibleAlternative.getLegs().get(0)).stops.get(0).departureCancelled);
     }
 
+    @Test
+    public void testDifferentialUpdate() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007,1,1,6,44).atZone(zoneId).toInstant());
+        GHResponse responseWithoutRealtimeUpdate = graphHopperFactory.createWithoutRealtimeFeed().route(ghRequest);
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(header());
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(3)
+                .setScheduleRelationship(SKIPPED);
+        RealtimeFeed skipped = graphHopperFactory.updateRealtimeFeed(RealtimeFeed.empty(graphHopperGtfs.getGtfsStorage()), feedMessageBuilder.build());
+        assertEquals(1, skipped.getVersion());
+        assertSame("Same messages again, nothing to do", skipped, graphHopperFactory.updateRealtimeFeed(skipped, feedMessageBuilder.build()));
+
+        final GtfsRealtime.FeedMessage.Builder diffBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        diffBuilder.setHeader(header().setIncrementality(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL));
+        diffBuilder.addEntityBuilder()
+                .setId("1")
+                .setIsDeleted(true);
+        RealtimeFeed unskipped = graphHopperFactory.updateRealtimeFeed(skipped, diffBuilder.build());
+        assertEquals(2, unskipped.getVersion());
+
+        GHResponse response = graphHopperFactory.createWith(unskipped).route(ghRequest);
+        assertTrue(response.getAll().stream().noneMatch(ResponsePath::isImpossible));
+        assertEquals(responseWithoutRealtimeUpdate.getBest().getTime(), response.getBest().getTime());
+
+        GHResponse responseOnOldSnapshot = graphHopperFactory.createWith(skipped).route(ghRequest);
+        assertTrue("Old snapshot is unaffected", responseOnOldSnapshot.getAll().stream().anyMatch(ResponsePath::isImpossible));
+    }
+
+    @Test
+    public void testDifferentialUpdateKeepsOtherTripUpdates() {
+        final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
+        final double TO_LAT = 36.914944, TO_LON = -116.761472; // NANAA stop
+        Request ghRequest = new Request(
+                FROM_LAT, FROM_LON,
+                TO_LAT, TO_LON
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007,1,1,6,46).atZone(zoneId).toInstant());
+
+        final GtfsRealtime.FeedMessage.Builder feedMessageBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        feedMessageBuilder.setHeader(header());
+        feedMessageBuilder.addEntityBuilder()
+                .setId("1")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("CITY2").setStartTime("06:00:00"))
+                .addStopTimeUpdateBuilder()
+                .setScheduleRelationship(SCHEDULED)
+                .setStopSequence(3)
+                .setArrival(GtfsRealtime.TripUpdate.StopTimeEvent.newBuilder().setDelay(120).build());
+        feedMessageBuilder.addEntityBuilder()
+                .setId("2")
+                .getTripUpdateBuilder()
+                .setTrip(GtfsRealtime.TripDescriptor.newBuilder().setTripId("AB1"))
+                .addStopTimeUpdateBuilder()
+                .setStopSequence(2)
+                .setScheduleRelationship(SKIPPED);
+        RealtimeFeed both = graphHopperFactory.updateRealtimeFeed(RealtimeFeed.empty(graphHopperGtfs.getGtfsStorage()), feedMessageBuilder.build());
+
+        final GtfsRealtime.FeedMessage.Builder diffBuilder = GtfsRealtime.FeedMessage.newBuilder();
+        diffBuilder.setHeader(header().setIncrementality(GtfsRealtime.FeedHeader.Incrementality.DIFFERENTIAL));
+        diffBuilder.addEntityBuilder()
+                .setId("2")
+                .setIsDeleted(true);
+        RealtimeFeed delayed = graphHopperFactory.updateRealtimeFeed(both, diffBuilder.build());
+        assertEquals(2, delayed.getVersion());
+        assertEquals("The delay of the other trip update is still there", time(0, 5), graphHopperFactory.createWith(delayed).route(ghRequest).getBest().getTime(), 0.1);
+
+        diffBuilder.setEntity(0, GtfsRealtime.FeedEntity.newBuilder().setId("1").setIsDeleted(true));
+        RealtimeFeed none = graphHopperFactory.updateRealtimeFeed(delayed, diffBuilder.build());
+        assertEquals(3, none.getVersion());
+        assertEquals(graphHopperFactory.createWithoutRealtimeFeed().route(ghRequest).getBest().getTime(), graphHopperFactory.createWith(none).route(ghRequest).getBest().getTime());
+    }
+
     @Test
     public void testHeavyDelayWhereWeShouldTakeOtherTripInstead() {
         final double FROM_LAT = 36.914893, FROM_LON = -116.76821; // NADAV stop
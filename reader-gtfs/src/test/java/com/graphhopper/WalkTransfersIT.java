@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.gtfs.GraphHopperGtfs;
+import com.graphhopper.gtfs.GtfsStorage;
+import com.graphhopper.gtfs.PtEncodedValues;
+import com.graphhopper.gtfs.PtRouterImpl;
+import com.graphhopper.gtfs.Request;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.TranslationMap;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WalkTransfersIT {
+
+    private static final String GRAPH_LOC = "target/WalkTransfersIT";
+    private static final ZoneId zoneId = ZoneId.of("America/Los_Angeles");
+    private static GraphHopperGtfs graphHopperWithoutWalkTransfers;
+    private static GraphHopperGtfs graphHopperWithWalkTransfers;
+
+    @BeforeClass
+    public static void init() {
+        graphHopperWithoutWalkTransfers = importGraph(GRAPH_LOC + "/without", 0);
+        graphHopperWithWalkTransfers = importGraph(GRAPH_LOC + "/with", 900);
+    }
+
+    private static GraphHopperGtfs importGraph(String location, int maxTransferWalkSeconds) {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.flag_encoders", "car,foot");
+        ghConfig.putObject("datareader.file", "files/beatty.osm");
+        ghConfig.putObject("gtfs.file", "files/sample-feed.zip");
+        ghConfig.putObject("gtfs.max_transfer_walk_seconds", maxTransferWalkSeconds);
+        ghConfig.putObject("graph.location", location);
+        Helper.removeDir(new File(location));
+        GraphHopperGtfs graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+        return graphHopperGtfs;
+    }
+
+    @AfterClass
+    public static void close() {
+        graphHopperWithoutWalkTransfers.close();
+        graphHopperWithWalkTransfers.close();
+    }
+
+    @Test
+    public void testWalkTransfersAreAdded() {
+        int transfersWithout = countTransferEdges(graphHopperWithoutWalkTransfers.getGraphHopperStorage());
+        int transfersWith = countTransferEdges(graphHopperWithWalkTransfers.getGraphHopperStorage());
+        assertTrue("Walking between nearby stops in Beatty adds transfer edges", transfersWith > transfersWithout);
+    }
+
+    @Test
+    public void testNotSlowerThanWithoutWalkTransfers() {
+        Request ghRequest = new Request(
+                36.91311729030539, -116.76769495010377,
+                36.91260259593356, -116.76149368286134
+        );
+        ghRequest.setEarliestDepartureTime(LocalDateTime.of(2007, 1, 1, 6, 40, 0).atZone(zoneId).toInstant());
+
+        GHResponse responseWithout = route(graphHopperWithoutWalkTransfers, ghRequest);
+        GHResponse responseWith = route(graphHopperWithWalkTransfers, ghRequest);
+        assertFalse(responseWithout.hasErrors());
+        assertFalse(responseWith.hasErrors());
+        assertTrue(responseWith.getBest().getTime() <= responseWithout.getBest().getTime());
+    }
+
+    private static GHResponse route(GraphHopperGtfs graphHopperGtfs, Request request) {
+        return PtRouterImpl.createFactory(new TranslationMap().doImport(), graphHopperGtfs, graphHopperGtfs.getLocationIndex(), graphHopperGtfs.getGtfsStorage())
+                .createWithoutRealtimeFeed()
+                .route(request);
+    }
+
+    private static int countTransferEdges(GraphHopperStorage graph) {
+        PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(graph.getEncodingManager());
+        int transferEdges = 0;
+        AllEdgesIterator allEdges = graph.getAllEdges();
+        while (allEdges.next()) {
+            if (allEdges.get(ptEncodedValues.getTypeEnc()) == GtfsStorage.EdgeType.TRANSFER) {
+                transferEdges++;
+            }
+        }
+        return transferEdges;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.google.transit.realtime.GtfsRealtime;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BytesEdgeMapTest {
+
+    private final String location = "./target/tmp/edge-maps";
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        IntEdgeMap stopSequences = new IntEdgeMap(dir, "stop_sequences").create(100);
+        BytesEdgeMap<GtfsStorageI.PlatformDescriptor> platforms = new BytesEdgeMap<>(dir, "platforms", GtfsStorage.PLATFORM_DESCRIPTOR_CODEC).create(100);
+        assertNull(stopSequences.put(3, 0));
+        assertNull(stopSequences.put(10_000, 7));
+        assertEquals(Integer.valueOf(7), stopSequences.put(10_000, 8));
+        assertNull(stopSequences.get(4));
+        assertNull(stopSequences.get(20_000));
+
+        GtfsStorageI.PlatformDescriptor route = GtfsStorageI.PlatformDescriptor.route("gtfs_0", "stop", "route");
+        GtfsStorageI.PlatformDescriptor routeType = GtfsStorageI.PlatformDescriptor.routeType("gtfs_0", "stop", 3);
+        platforms.put(1, route);
+        platforms.put(2, routeType);
+        platforms.put(5, route);
+        stopSequences.flush();
+        platforms.flush();
+        stopSequences.close();
+        platforms.close();
+
+        dir = new RAMDirectory(location, true);
+        stopSequences = new IntEdgeMap(dir, "stop_sequences");
+        platforms = new BytesEdgeMap<>(dir, "platforms", GtfsStorage.PLATFORM_DESCRIPTOR_CODEC);
+        assertTrue(stopSequences.loadExisting());
+        assertTrue(platforms.loadExisting());
+
+        Map<Integer, Integer> expectedStopSequences = new HashMap<>();
+        expectedStopSequences.put(3, 0);
+        expectedStopSequences.put(10_000, 8);
+        assertEquals(expectedStopSequences, stopSequences);
+        assertEquals(2, stopSequences.size());
+
+        Map<Integer, GtfsStorageI.PlatformDescriptor> expectedPlatforms = new HashMap<>();
+        expectedPlatforms.put(1, route);
+        expectedPlatforms.put(2, routeType);
+        expectedPlatforms.put(5, route);
+        assertEquals(expectedPlatforms, new HashMap<>(platforms));
+        assertEquals(routeType, platforms.get(2));
+        assertNull(platforms.get(3));
+    }
+
+    @Test
+    public void testTripDescriptors() {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        TripDescriptorEdgeMap tripDescriptors = new TripDescriptorEdgeMap(dir, "trips").create(100);
+        GtfsRealtime.TripDescriptor trip = GtfsRealtime.TripDescriptor.newBuilder().setTripId("AB1").setRouteId("AB").build();
+        GtfsRealtime.TripDescriptor frequencyTrip = GtfsRealtime.TripDescriptor.newBuilder().setTripId("AB1").setRouteId("AB").setStartTime("08:30:00").build();
+        assertNull(tripDescriptors.put(3, trip));
+        assertNull(tripDescriptors.put(4, trip));
+        assertNull(tripDescriptors.put(10_000, frequencyTrip));
+        assertEquals(trip, tripDescriptors.get(4));
+        tripDescriptors.flush();
+        tripDescriptors.close();
+
+        dir = new RAMDirectory(location, true);
+        tripDescriptors = new TripDescriptorEdgeMap(dir, "trips");
+        assertTrue(tripDescriptors.loadExisting());
+        Map<Integer, GtfsRealtime.TripDescriptor> expected = new HashMap<>();
+        expected.put(3, trip);
+        expected.put(4, trip);
+        expected.put(10_000, frequencyTrip);
+        assertEquals(expected, new HashMap<>(tripDescriptors));
+        assertFalse(tripDescriptors.get(3).hasStartTime());
+        assertEquals("08:30:00", tripDescriptors.get(10_000).getStartTime());
+        assertNull(tripDescriptors.get(5));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs;
+
+import com.conveyal.gtfs.GTFSFeed;
+import com.conveyal.gtfs.model.StopTime;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class BytesKeyMapTest {
+
+    private final String location = "./target/tmp/key-maps";
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        // small segments, so values span several of them and the length of a value is at the end of one
+        dir.find("edges").setSegmentSize(128);
+        BytesKeyMap<String, int[]> map = new BytesKeyMap<>(dir, "edges", Codecs.STRING, Codecs.INT_ARRAY).create(100);
+        Map<String, int[]> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            int[] value = new int[i % 70];
+            Arrays.fill(value, i);
+            assertNull(map.put("trip" + i, value));
+            expected.put("trip" + i, value);
+        }
+        int[] replacement = {1, 2, 3};
+        assertArrayEquals(expected.get("trip7"), map.put("trip7", replacement));
+        expected.remove("trip7");
+        expected.put("trip7", replacement);
+        assertEquals(1000, map.size());
+        map.flush();
+        map.close();
+
+        dir = new RAMDirectory(location, true);
+        map = new BytesKeyMap<>(dir, "edges", Codecs.STRING, Codecs.INT_ARRAY);
+        assertTrue(map.loadExisting());
+        assertEquals(1000, map.size());
+        assertArrayEquals(replacement, map.get("trip7"));
+        assertArrayEquals(expected.get("trip999"), map.get("trip999"));
+        assertNull(map.get("trip1000"));
+        assertNull(map.get(7));
+        assertFalse(map.containsKey("trip1000"));
+        // entries come in the order in which they were put
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : map.entrySet()) {
+            keys.add(entry.getKey());
+            assertArrayEquals(expected.get(entry.getKey()), entry.getValue());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+    }
+
+    @Test
+    public void testValueCache() {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        AtomicInteger decoded = new AtomicInteger();
+        BytesKeyMap.Codec<String> countingCodec = new BytesKeyMap.Codec<String>() {
+            @Override
+            public byte[] encode(String value) {
+                return Codecs.STRING.encode(value);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                decoded.incrementAndGet();
+                return Codecs.STRING.decode(bytes);
+            }
+        };
+        BytesKeyMap<String, String> map = new BytesKeyMap<>(dir, "stops", Codecs.STRING, countingCodec).create(100);
+        for (int i = 0; i < 100; i++) {
+            map.put("stop" + i, "Stop " + i);
+        }
+
+        // without the cache every lookup decodes the value
+        decoded.set(0);
+        for (int run = 0; run < 10; run++) {
+            assertEquals("Stop 42", map.get("stop42"));
+        }
+        assertEquals(10, decoded.get());
+
+        map.setValueCacheSize(64);
+        decoded.set(0);
+        String value = map.get("stop42");
+        for (int run = 0; run < 10; run++) {
+            assertSame(value, map.get("stop42"));
+        }
+        assertEquals(1, decoded.get());
+        assertNull(map.get("stop100"));
+        assertFalse(map.containsKey("stop100"));
+
+        // more keys than slots still give the right values
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Stop " + i, map.get("stop" + i));
+        }
+        // a put replaces the cached value
+        map.put("stop42", "Renamed");
+        assertEquals("Renamed", map.get("stop42"));
+        assertEquals("Renamed", map.get("stop42"));
+    }
+
+    @Test
+    public void testStringTable() {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        StringTable strings = new StringTable(dir, "strings").create(100);
+        assertEquals(0, strings.add("a"));
+        assertEquals(1, strings.add("b"));
+        assertEquals(0, strings.add("a"));
+        assertEquals(StringTable.NO_STRING, strings.add(null));
+        strings.flush();
+        strings.close();
+
+        dir = new RAMDirectory(location, true);
+        strings = new StringTable(dir, "strings");
+        assertTrue(strings.loadExisting());
+        assertEquals(2, strings.size());
+        assertEquals("b", strings.get(1));
+        assertEquals("a", strings.get(0));
+        assertNull(strings.get(StringTable.NO_STRING));
+        assertEquals(2, strings.add("c"));
+    }
+
+    @Test
+    public void testGtfsFeed() throws Exception {
+        RAMDirectory dir = new RAMDirectory(location, true);
+        dir.create();
+        GTFSFeed feed = new GTFSFeed(dir, "gtfs_0").create();
+        feed.loadFromFile(new ZipFile("files/sample-feed.zip"), null);
+        List<Integer> expectedSequences = Arrays.stream(feed.stop_times.get("STBA")).map(st -> st.stop_sequence).collect(Collectors.toList());
+        int trips = feed.trips.size();
+        long checksum = feed.checksum;
+        feed.flush();
+        feed.close();
+
+        dir = new RAMDirectory(location, true);
+        feed = new GTFSFeed(dir, "gtfs_0");
+        assertTrue(feed.loadExisting());
+        assertEquals("sample-feed", feed.feedId);
+        assertEquals(checksum, feed.checksum);
+        assertEquals(trips, feed.trips.size());
+        assertEquals(Arrays.asList(1, 2, 3), expectedSequences);
+        List<StopTime> stopTimes = new ArrayList<>();
+        feed.getOrderedStopTimesForTrip("STBA").forEach(stopTimes::add);
+        assertEquals(expectedSequences, stopTimes.stream().map(st -> st.stop_sequence).collect(Collectors.toList()));
+        assertEquals("BEATTY_AIRPORT", feed.getStopTime("STBA", 2).stop_id);
+        assertEquals(20 * 60, feed.getStopTime("STBA", 2).arrival_time);
+        assertNull(feed.getStopTime("STBA", 4));
+        assertEquals(1, feed.getFrequencies("STBA").size());
+        assertEquals(1800, feed.getFrequencies("STBA").iterator().next().headway_secs);
+        assertTrue(feed.getFrequencies("AB1").isEmpty());
+        assertNotNull(feed.services.get("FULLW").calendar);
+        assertFalse(new GTFSFeed(dir, "gtfs_1").loadExisting());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.gtfs;
+
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.Helper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the settled labels of {@link MultiCriteriaLabelSetting} with the ones of the object based
+ * {@link ReferenceMultiCriteriaLabelSetting}.
+ */
+public class MultiCriteriaLabelSettingTest {
+
+    private static final String GRAPH_LOC = "target/MultiCriteriaLabelSettingTest";
+    // walking on the streets of the whole area takes long, but the interesting part comes first
+    private static final int MAX_VISITED_NODES = 5_000;
+    private static GraphHopperGtfs graphHopperGtfs;
+
+    @BeforeClass
+    public static void init() {
+        GraphHopperConfig ghConfig = new GraphHopperConfig();
+        ghConfig.putObject("graph.flag_encoders", "foot");
+        ghConfig.putObject("datareader.file", "files/beatty.osm");
+        ghConfig.putObject("gtfs.file", "files/sample-feed.zip");
+        ghConfig.putObject("graph.location", GRAPH_LOC);
+        Helper.removeDir(new File(GRAPH_LOC));
+        graphHopperGtfs = new GraphHopperGtfs(ghConfig);
+        graphHopperGtfs.init(ghConfig);
+        graphHopperGtfs.importOrLoad();
+    }
+
+    @AfterClass
+    public static void close() {
+        graphHopperGtfs.close();
+        Helper.removeDir(new File(GRAPH_LOC));
+    }
+
+    @Test
+    public void testSameLabelsAsReference() {
+        List<Integer> stations = new ArrayList<>(new TreeSet<>(graphHopperGtfs.getGtfsStorage().getStationNodes().values()));
+        Instant morning = LocalDateTime.of(2007, 1, 1, 8, 0).atZone(ZoneId.of("America/Los_Angeles")).toInstant();
+        Instant evening = LocalDateTime.of(2007, 1, 6, 18, 30).atZone(ZoneId.of("America/Los_Angeles")).toInstant();
+        int comparedLabels = 0;
+        for (int i = 0; i < stations.size(); i++) {
+            // the destination is only used to add solutions, which then dominate further labels
+            int from = stations.get(i);
+            int to = stations.get((i + 3) % stations.size());
+            for (Instant startTime : new Instant[]{morning, evening}) {
+                for (boolean reverse : new boolean[]{false, true}) {
+                    for (boolean mindTransfers : new boolean[]{false, true}) {
+                        for (boolean profileQuery : new boolean[]{false, true}) {
+                            List<String> expected = referenceLabels(from, to, startTime, reverse, mindTransfers, profileQuery);
+                            List<String> actual = labels(from, to, startTime, reverse, mindTransfers, profileQuery);
+                            assertEquals("from " + from + " at " + startTime + " reverse " + reverse + " transfers " + mindTransfers + " profile " + profileQuery, expected, actual);
+                            comparedLabels += actual.size();
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue(comparedLabels > 1000);
+    }
+
+    private List<String> labels(int from, int to, Instant startTime, boolean reverse, boolean mindTransfers, boolean profileQuery) {
+        List<Label> solutions = new ArrayList<>();
+        MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(explorer(reverse), encodedValues(), reverse, false, mindTransfers, profileQuery, MAX_VISITED_NODES, solutions);
+        router.setBetaTransfers(60_000);
+        router.setLimitStreetTime(30 * 60 * 1000);
+        return router.calcLabels(from, startTime, 0)
+                .peek(label -> {
+                    if (label.adjNode == to)
+                        solutions.add(label);
+                })
+                .map(MultiCriteriaLabelSettingTest::toString)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> referenceLabels(int from, int to, Instant startTime, boolean reverse, boolean mindTransfers, boolean profileQuery) {
+        List<Label> solutions = new ArrayList<>();
+        ReferenceMultiCriteriaLabelSetting router = new ReferenceMultiCriteriaLabelSetting(explorer(reverse), encodedValues(), reverse, false, mindTransfers, profileQuery, MAX_VISITED_NODES, solutions);
+        router.setBetaTransfers(60_000);
+        router.setLimitStreetTime(30 * 60 * 1000);
+        return router.calcLabels(from, startTime, 0)
+                .peek(label -> {
+                    if (label.adjNode == to)
+                        solutions.add(label);
+                })
+                .map(MultiCriteriaLabelSettingTest::toString)
+                .collect(Collectors.toList());
+    }
+
+    private static GraphExplorer explorer(boolean reverse) {
+        GraphHopperStorage graph = graphHopperGtfs.getGraphHopperStorage();
+        Weighting weighting = new FastestWeighting(graph.getEncodingManager().getEncoder("foot"));
+        GtfsStorage gtfsStorage = graphHopperGtfs.getGtfsStorage();
+        return new GraphExplorer(graph, weighting, encodedValues(), gtfsStorage, RealtimeFeed.empty(gtfsStorage), reverse, false, 5.0, false);
+    }
+
+    private static PtEncodedValues encodedValues() {
+        return PtEncodedValues.fromEncodingManager(graphHopperGtfs.getGraphHopperStorage().getEncodingManager());
+    }
+
+    private static String toString(Label label) {
+        return label.adjNode + " " + label.edge + " " + label.currentTime + " " + label.nTransfers + " " + label.walkTime + " "
+                + label.walkDistanceOnCurrentLeg + " " + label.departureTime + " " + label.residualDelay + " " + label.impossible
+                + " " + (label.parent == null ? "-" : label.parent.adjNode + "@" + label.parent.currentTime);
+    }
+}
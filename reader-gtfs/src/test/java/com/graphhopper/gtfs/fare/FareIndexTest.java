@@ -0,0 +1,169 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.gtfs.fare;
+
+import com.conveyal.gtfs.model.Fare;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class FareIndexTest {
+
+    // route, origin-destination and contains-rules, combinations of them and a fare without rules
+    private static final Map<String, Fare> fares = FareTest.parseFares(
+            "any,5.00,USD,0\n" +
+                    "local,1.75,USD,0,0\n" +
+                    "express,3.00,USD,0,1,3600\n" +
+                    "S1_to_S2,1.50,USD,0\n" +
+                    "S2_to_S1,1.60,USD,0,,5400\n" +
+                    "zone_1,2.00,USD,0\n" +
+                    "zones_1_2,2.50,USD,0,,5400\n" +
+                    "route_3_or_zone_3,1.25,USD,0,0\n" +
+                    "S1_to_S3_or_zones_1_3,2.75,USD,0,2,7200\n",
+            "local,Route_1\n" +
+                    "express,Route_2\n" +
+                    "express,Route_3\n" +
+                    "S1_to_S2,,S1,S2\n" +
+                    "S2_to_S1,,S2,S1\n" +
+                    "zone_1,,,,1\n" +
+                    "zones_1_2,,,,1\n" +
+                    "zones_1_2,,,,2\n" +
+                    "route_3_or_zone_3,Route_3\n" +
+                    "route_3_or_zone_3,,,,3\n" +
+                    "S1_to_S3_or_zones_1_3,,S1,S3\n" +
+                    "S1_to_S3_or_zones_1_3,,,,1\n" +
+                    "S1_to_S3_or_zones_1_3,,,,3\n");
+
+    @Test
+    public void testPossibleFaresSameAsBruteForce() {
+        FareIndex fareIndex = new FareIndex(fares);
+        List<Trip.Segment> segments = allSegments(0);
+        for (Trip.Segment segment : segments) {
+            assertEquals(fareIds(possibleFaresBruteForce(segment)), fareIds(fareIndex.possibleFares(segment)));
+        }
+        // every kind of rule is matched by some segment and missed by another one
+        for (String fareId : fares.keySet()) {
+            long matches = segments.stream().filter(segment -> fareIds(fareIndex.possibleFares(segment)).contains(fareId)).count();
+            if (fareId.equals("any")) {
+                assertEquals(segments.size(), matches);
+            } else {
+                assertTrue(fareId, matches > 0 && matches < segments.size());
+            }
+        }
+    }
+
+    @Test
+    public void testCheapestFareSameAsBruteForce() {
+        FareIndex fareIndex = new FareIndex(fares);
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            Trip trip = new Trip();
+            int legs = 1 + random.nextInt(3);
+            long startTime = 0;
+            for (int leg = 0; leg < legs; leg++) {
+                List<Trip.Segment> segments = allSegments(startTime);
+                trip.segments.add(segments.get(random.nextInt(segments.size())));
+                startTime += random.nextInt(4000);
+            }
+            Optional<Amount> expected = cheapestFareBruteForce(trip);
+            Optional<Amount> actual = fareIndex.cheapestFare(trip);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            assertEquals(0, expected.get().getAmount().compareTo(actual.get().getAmount()));
+            assertEquals(expected.get().getCurrencyType(), actual.get().getCurrencyType());
+        }
+    }
+
+    @Test
+    public void testCheapestFareIsCached() {
+        FareIndex fareIndex = new FareIndex(fares);
+        Trip trip = new Trip();
+        trip.segments.add(new Trip.Segment("Route_1", 0, "S1", "S2", new HashSet<>(Arrays.asList("1"))));
+        trip.segments.add(new Trip.Segment("Route_2", 3000, "S2", "S1", new HashSet<>(Arrays.asList("1", "2"))));
+        Optional<Amount> amount = fareIndex.cheapestFare(trip);
+        assertEquals(0, new BigDecimal("2.50").compareTo(amount.get().getAmount()));
+
+        // the same legs in another trip are answered from the cache
+        Trip sameLegs = new Trip();
+        sameLegs.segments.add(new Trip.Segment("Route_1", 0, "S1", "S2", new HashSet<>(Arrays.asList("1"))));
+        sameLegs.segments.add(new Trip.Segment("Route_2", 3000, "S2", "S1", new HashSet<>(Arrays.asList("1", "2"))));
+        assertSame(amount, fareIndex.cheapestFare(sameLegs));
+
+        // the key is a copy, so changing the trip afterwards does not change the cached fare
+        trip.segments.add(new Trip.Segment("Route_2", 9000, "S1", "S2", new HashSet<>(Arrays.asList("2"))));
+        assertNotSame(amount, fareIndex.cheapestFare(trip));
+        assertSame(amount, fareIndex.cheapestFare(sameLegs));
+    }
+
+    private static List<Trip.Segment> allSegments(long startTime) {
+        List<Trip.Segment> segments = new ArrayList<>();
+        List<List<String>> originDestinations = Arrays.asList(Arrays.asList("S1", "S2"), Arrays.asList("S2", "S1"), Arrays.asList("S1", "S3"));
+        List<List<String>> zones = Arrays.asList(Collections.emptyList(), Arrays.asList("1"), Arrays.asList("2"),
+                Arrays.asList("1", "2"), Arrays.asList("3"), Arrays.asList("1", "3"), Arrays.asList("1", "2", "3"));
+        for (String route : Arrays.asList("Route_1", "Route_2", "Route_3", "Route_4")) {
+            for (List<String> originDestination : originDestinations) {
+                for (List<String> zone : zones) {
+                    segments.add(new Trip.Segment(route, startTime, originDestination.get(0), originDestination.get(1), new HashSet<>(zone)));
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static List<String> fareIds(Collection<Fare> fares) {
+        return fares.stream().map(fare -> fare.fare_id).collect(Collectors.toList());
+    }
+
+    /**
+     * Checks every rule of every fare, like the fares were matched before there was an index.
+     */
+    private static List<Fare> possibleFaresBruteForce(Trip.Segment segment) {
+        return fares.values().stream()
+                .filter(fare -> fare.fare_rules.isEmpty() || Fares.sanitizeFareRules(fare.fare_rules).stream().anyMatch(rule -> rule.appliesTo(segment)))
+                .collect(Collectors.toList());
+    }
+
+    private static Optional<Amount> cheapestFareBruteForce(Trip trip) {
+        List<List<FareAssignment>> assignments = Collections.singletonList(Collections.emptyList());
+        for (Trip.Segment segment : trip.segments) {
+            List<List<FareAssignment>> next = new ArrayList<>();
+            for (List<FareAssignment> assignment : assignments) {
+                for (Fare fare : possibleFaresBruteForce(segment)) {
+                    List<FareAssignment> extended = new ArrayList<>(assignment);
+                    FareAssignment fareAssignment = new FareAssignment(segment);
+                    fareAssignment.setFare(fare);
+                    extended.add(fareAssignment);
+                    next.add(extended);
+                }
+            }
+            assignments = next;
+        }
+        TicketPurchaseScoreCalculator calculator = new TicketPurchaseScoreCalculator();
+        return assignments.stream()
+                .map(TicketPurchase::new)
+                .max(Comparator.comparingDouble(calculator::calculateScore))
+                .map(purchase -> new Amount(purchase.getTickets().stream()
+                        .map(ticket -> BigDecimal.valueOf(ticket.getFare().fare_attribute.price))
+                        .reduce(BigDecimal.ZERO, BigDecimal::add), "USD"));
+    }
+
+}
@@ -89,14 +89,15 @@ public class FareTest {
         Fare mostExpensiveFare = fares.values().stream().max(Comparator.comparingDouble(f -> f.fare_attribute.price)).get();
         HashMap<String, Fare> singleFare = new HashMap<>();
         singleFare.put(mostExpensiveFare.fare_id, mostExpensiveFare);
+        FareIndex singleFareIndex = new FareIndex(singleFare);
 
         // ..and that still works for our trip..
         assumeThat("There is at least one fare for each segment.",
-                trip.segments.stream().map(segment -> Fares.possibleFares(singleFare, segment)).collect(Collectors.toList()),
+                trip.segments.stream().map(segment -> singleFareIndex.possibleFares(segment)).collect(Collectors.toList()),
                 everyItem(is(not(empty()))));
-        double priceWithOneOption = Fares.cheapestFare(singleFare, trip).get().getAmount().doubleValue();
+        double priceWithOneOption = singleFareIndex.cheapestFare(trip).get().getAmount().doubleValue();
 
-        double priceWithAllOptions = Fares.cheapestFare(fares, trip).get().getAmount().doubleValue();
+        double priceWithAllOptions = new FareIndex(fares).cheapestFare(trip).get().getAmount().doubleValue();
 
 
         assertThat("...it shouldn't get more expensive when we put the cheaper options back.", priceWithAllOptions, lessThanOrEqualTo(priceWithOneOption));
@@ -104,23 +105,25 @@ public class FareTest {
 
     @Theory
     public void everySegmentHasAFare(Map<String, Fare> fares, Trip trip) {
+        FareIndex fareIndex = new FareIndex(fares);
         assumeThat("There are fares.", fares.entrySet(), not(empty()));
         assertThat("There is at least one fare for each segment.",
-                trip.segments.stream().map(segment -> Fares.possibleFares(fares, segment)).collect(Collectors.toList()),
+                trip.segments.stream().map(segment -> fareIndex.possibleFares(segment)).collect(Collectors.toList()),
                 everyItem(is(not(empty()))));
     }
 
     @Theory
     public void withNoTransfersAndNoAlternativesBuyOneTicketForEachSegment(Map<String, Fare> fares, Trip trip) throws IOException {
+        FareIndex fareIndex = new FareIndex(fares);
         fares.values().forEach(fare -> {
             assumeThat("No Transfers allowed.", fare.fare_attribute.transfers, equalTo(0));
         });
         trip.segments.stream()
-                .map(segment -> Fares.possibleFares(fares, segment))
+                .map(segment -> fareIndex.possibleFares(segment))
                 .forEach(candidateFares -> assertThat("Only one fare candidate per segment.", candidateFares.size(), equalTo(1)));
         assertThat("Total fare is the sum of all individual fares.",
-                Fares.cheapestFare(fares, trip).get().getAmount().doubleValue(),
-                equalTo(trip.segments.stream().flatMap(segment -> Fares.possibleFares(fares, segment).stream()).mapToDouble(fare -> fare.fare_attribute.price).sum()));
+                fareIndex.cheapestFare(trip).get().getAmount().doubleValue(),
+                equalTo(trip.segments.stream().flatMap(segment -> fareIndex.possibleFares(segment).stream()).mapToDouble(fare -> fare.fare_attribute.price).sum()));
     }
 
     @Theory
@@ -131,7 +134,7 @@ public class FareTest {
                 .filter(fare -> fare.fare_attribute.transfer_duration >= trip.segments.get(trip.segments.size() - 1).getStartTime() - trip.segments.get(0).getStartTime())
                 .min(Comparator.comparingDouble(fare -> fare.fare_attribute.price));
         assumeTrue("There is an obviously cheapest fare.", obviouslyCheapestFare.isPresent());
-        Amount amount = Fares.cheapestFare(fares, trip).get();
+        Amount amount = new FareIndex(fares).cheapestFare(trip).get();
         Assert.assertEquals("The fare calculator agrees", BigDecimal.valueOf(obviouslyCheapestFare.get().fare_attribute.price), amount.getAmount());
     }
 
@@ -143,25 +146,26 @@ public class FareTest {
         assumeThat("Fare allows the number of transfers we need for our trip.", onlyFare.fare_attribute.transfers, greaterThanOrEqualTo(trip.segments.size()));
         assumeThat("Fare does not allow the time we need for our trip.", (long) onlyFare.fare_attribute.transfer_duration, lessThan(trip.segments.get(trip.segments.size()-1).getStartTime() - trip.segments.get(0).getStartTime()));
 
-        Amount amount = Fares.cheapestFare(fares, trip).get();
+        Amount amount = new FareIndex(fares).cheapestFare(trip).get();
         assertThat(amount.getAmount().doubleValue(), greaterThan(onlyFare.fare_attribute.price));
     }
 
     @Theory
     public void ifAllLegsPassThroughAllZonesOfTheTripItCantGetCheaper(Map<String, Fare> fares, Trip trip) {
-        double cheapestFare = Fares.cheapestFare(fares, trip).get().getAmount().doubleValue();
+        FareIndex fareIndex = new FareIndex(fares);
+        double cheapestFare = fareIndex.cheapestFare(trip).get().getAmount().doubleValue();
         Set<String> allZones = trip.segments.stream().flatMap(seg -> seg.getZones().stream()).collect(Collectors.toSet());
         Trip otherTrip = new Trip();
         for (Trip.Segment segment : trip.segments) {
             otherTrip.segments.add(new Trip.Segment(segment.getRoute(), segment.getStartTime(), segment.getOriginId(), segment.getDestinationId(), allZones));
         }
-        double cheapestFareWhereEveryLegGoesThroughAllZones = Fares.cheapestFare(fares, otherTrip).get().getAmount().doubleValue();
+        double cheapestFareWhereEveryLegGoesThroughAllZones = fareIndex.cheapestFare(otherTrip).get().getAmount().doubleValue();
         assertThat(cheapestFareWhereEveryLegGoesThroughAllZones, not(lessThan(cheapestFare)));
     }
 
     @Theory
     public void ifIOnlyHaveOneTicketAndItIsZoneBasedItMustBeGoodForAllZonesOnMyTrip(Map<String, Fare> fares, Trip trip) {
-        Fares.allShoppingCarts(fares, trip)
+        Fares.allShoppingCarts(new FareIndex(fares), trip)
                 .filter(purchase -> purchase.getTickets().size() == 1)
                 .filter(purchase -> purchase.getTickets().get(0).getFare().fare_rules.stream().anyMatch(rule -> rule.contains_id != null))
                 .forEach(purchase -> {
@@ -171,7 +175,7 @@ public class FareTest {
                 });
     }
 
-    private static Map<String, Fare> parseFares(String fareAttributes, String fareRules) {
+    static Map<String, Fare> parseFares(String fareAttributes, String fareRules) {
         GTFSFeed feed = new GTFSFeed();
         HashMap<String, Fare> fares = new HashMap<>();
         new FareAttribute.Loader(feed, fares) {
@@ -661,6 +661,52 @@ public class GraphHopperTest {
         assertEquals(Instruction.FINISH, res.getInstructions().get(1).getSign());
     }
 
+    @Test
+    public void testMonacoViaLegThreads() {
+        final String profile = "profile";
+        final String vehicle = "foot";
+        final String weighting = "shortest";
+        GraphHopper hopper = createGraphHopper(vehicle).
+                setOSMFile(MONACO).
+                setProfiles(new Profile(profile).setVehicle(vehicle).setWeighting(weighting)).
+                setStoreOnFlush(true).
+                importOrLoad();
+        GHRequest request = new GHRequest().
+                addPoint(new GHPoint(43.727687, 7.418737)).
+                addPoint(new GHPoint(43.74958, 7.436566)).
+                addPoint(new GHPoint(43.73536, 7.421403)).
+                addPoint(new GHPoint(43.727687, 7.418737)).
+                addPoint(new GHPoint(43.740174, 7.424383)).
+                addPoint(new GHPoint(43.744445, 7.429483)).
+                setPathDetails(Arrays.asList("street_name", "average_speed", "distance")).
+                setProfile(profile);
+        ResponsePath expected = hopper.route(request).getBest();
+        hopper.close();
+
+        hopper = createGraphHopper(vehicle).
+                setOSMFile(MONACO).
+                setProfiles(new Profile(profile).setVehicle(vehicle).setWeighting(weighting)).
+                setStoreOnFlush(true);
+        hopper.getRouterConfig().setViaLegThreads(4);
+        hopper.importOrLoad();
+        for (int i = 0; i < 5; i++) {
+            ResponsePath res = hopper.route(request).getBest();
+            assertFalse(res.hasErrors(), res.getErrors().toString());
+            assertEquals(expected.getDistance(), res.getDistance(), 1.e-6);
+            assertEquals(expected.getTime(), res.getTime());
+            assertEquals(expected.getPoints(), res.getPoints());
+            assertEquals(expected.getInstructions().size(), res.getInstructions().size());
+            for (int j = 0; j < res.getInstructions().size(); j++) {
+                assertEquals(expected.getInstructions().get(j).toString(), res.getInstructions().get(j).toString());
+            }
+            assertEquals(expected.getPathDetails().keySet(), res.getPathDetails().keySet());
+            for (String key : res.getPathDetails().keySet()) {
+                assertEquals(expected.getPathDetails().get(key).toString(), res.getPathDetails().get(key).toString());
+            }
+        }
+        hopper.close();
+    }
+
     @Test
     public void testMonacoPathDetails() {
         final String profile = "profile";
@@ -38,6 +38,7 @@ import com.graphhopper.routing.util.spatialrules.AbstractSpatialRule;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookup;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupBuilder;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupBuilder.SpatialRuleFactory;
+import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupGrid;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.storage.*;
@@ -123,6 +124,8 @@ public class Measurement {
         seed = args.getLong("measurement.seed", 123);
         put("measurement.gitinfo", args.getString("measurement.gitinfo", ""));
         int count = args.getInt("measurement.count", 5000);
+        // runs some of the routing measurements a second time, distributed over the specified number of threads
+        final int threads = args.getInt("measurement.threads", 1);
         put("measurement.name", args.getString("measurement.name", "no_name"));
         put("measurement.map", args.getString("datareader.file", "unknown"));
         String blockAreaStr = args.getString("measurement.block_area", "");
@@ -238,6 +241,9 @@ public class Measurement {
                 if (!blockAreaStr.isEmpty())
                     printTimeOfRouteQuery(hopper, new QuerySettings("routingLM" + activeLMCount + "_block_area", count / 4, isCH, isLM).
                             withInstructions().activeLandmarks(activeLMCount).blockArea(blockAreaStr));
+                if (threads > 1)
+                    printTimeOfRouteQuery(hopper, new QuerySettings("routingLM" + activeLMCount + "_parallel", count / 4, isCH, isLM).
+                            withInstructions().activeLandmarks(activeLMCount).threads(threads));
             }
 
             if (hopper.getCHPreparationHandler().isEnabled()) {
@@ -268,6 +274,9 @@ public class Measurement {
                             withPoints(100).sod());
                     printTimeOfRouteQuery(hopper, new QuerySettings("routingCH_via_100_full", count / 100, isCH, isLM).
                             withPoints(100).sod().withInstructions().simplify().pathDetails());
+                    if (threads > 1)
+                        printTimeOfRouteQuery(hopper, new QuerySettings("routingCH_parallel", count, isCH, isLM).
+                                withInstructions().sod().threads(threads));
                 }
                 if (!hopper.getCHPreparationHandler().getEdgeBasedCHConfigs().isEmpty()) {
                     printTimeOfRouteQuery(hopper, new QuerySettings("routingCH_edge", count, isCH, isLM).
@@ -283,6 +292,9 @@ public class Measurement {
                             withPoints(100).edgeBased().sod());
                     printTimeOfRouteQuery(hopper, new QuerySettings("routingCH_edge_via_100_full", count / 100, isCH, isLM).
                             withPoints(100).edgeBased().sod().withInstructions().simplify().pathDetails());
+                    if (threads > 1)
+                        printTimeOfRouteQuery(hopper, new QuerySettings("routingCH_edge_parallel", count, isCH, isLM).
+                                edgeBased().withInstructions().threads(threads));
                 }
             }
             if (!isEmpty(countryBordersDirectory)) {
@@ -370,6 +382,7 @@ public class Measurement {
         boolean withInstructions, withPointHints, sod, edgeBased, simplify, pathDetails, alternative;
         String blockArea;
         int points = 2;
+        int threads = 1;
 
         QuerySettings(String prefix, int count, boolean isCH, boolean isLM) {
             this.prefix = prefix;
@@ -427,6 +440,11 @@ public class Measurement {
             blockArea = str;
             return this;
         }
+
+        QuerySettings threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
     }
 
     void fillAllowedEdges(AllEdgesIterator iter, GHBitSet bs) {
@@ -635,6 +653,17 @@ public class Measurement {
         }.setIterations(count).start();
 
         print("spatialrulelookup", lookupPerfTest);
+
+        final SpatialRuleLookup gridLookup = new SpatialRuleLookupGrid(spatialRuleLookup.getRules(), spatialRuleLookup.getBounds(), 10);
+        MiniPerfTest gridLookupPerfTest = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                GHPoint point = randomPoints.get(run);
+                return gridLookup.lookupRules(point.lat, point.lon).getRules().size();
+            }
+        }.setIterations(count).start();
+
+        print("spatialrulelookup_grid", gridLookupPerfTest);
     }
 
     private void compareRouting(final GraphHopper hopper, int count) {
@@ -736,7 +765,8 @@ public class Measurement {
         final DistanceCalc distCalc = new DistanceCalcEarth();
 
         final EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(hopper.getEncodingManager().getEncoder(vehicle));
-        final EdgeExplorer edgeExplorer = g.createEdgeExplorer(edgeFilter);
+        // edge explorers are not thread-safe
+        final ThreadLocal<EdgeExplorer> edgeExplorers = ThreadLocal.withInitial(() -> g.createEdgeExplorer(edgeFilter));
         final AtomicLong visitedNodesSum = new AtomicLong(0);
         final AtomicLong maxVisitedNodes = new AtomicLong(0);
 //        final AtomicLong extractTimeSum = new AtomicLong(0);
@@ -749,6 +779,7 @@ public class Measurement {
         MiniPerfTest miniPerf = new MiniPerfTest() {
             @Override
             public int doCalc(boolean warmup, int run) {
+                EdgeExplorer edgeExplorer = edgeExplorers.get();
                 GHRequest req = new GHRequest(querySettings.points);
                 IntArrayList nodes = new IntArrayList(querySettings.points);
                 // we try a few times to find points that do not lie within our blocked area
@@ -830,9 +861,7 @@ public class Measurement {
                 if (!warmup) {
                     long visitedNodes = rsp.getHints().getLong("visited_nodes.sum", 0);
                     visitedNodesSum.addAndGet(visitedNodes);
-                    if (visitedNodes > maxVisitedNodes.get()) {
-                        maxVisitedNodes.set(visitedNodes);
-                    }
+                    maxVisitedNodes.accumulateAndGet(visitedNodes, Math::max);
 
                     long dist = (long) responsePath.getDistance();
                     distSum.addAndGet(dist);
@@ -843,11 +872,8 @@ public class Measurement {
                         prev = point;
                     }
 
-                    if (dist > maxDistance.get())
-                        maxDistance.set(dist);
-
-                    if (dist < minDistance.get())
-                        minDistance.set(dist);
+                    maxDistance.accumulateAndGet(dist, Math::max);
+                    minDistance.accumulateAndGet(dist, Math::min);
 
                     if (querySettings.alternative)
                         altCount.addAndGet(rsp.getAll().size());
@@ -855,7 +881,7 @@ public class Measurement {
 
                 return responsePath.getPoints().getSize();
             }
-        }.setIterations(querySettings.count).start();
+        }.setIterations(querySettings.count).setThreads(querySettings.threads).setMeasureResources(true).start();
 
         int count = querySettings.count - failedCount.get();
         if (count == 0)
@@ -877,16 +903,44 @@ public class Measurement {
         put(prefix + ".visited_nodes_max", (float) maxVisitedNodes.get());
         put(prefix + ".alternative_rate", (float) altCount.get() / count);
         print(prefix, miniPerf);
+        printPercentiles(prefix, miniPerf);
+        if (querySettings.threads > 1) {
+            put(prefix + ".threads", querySettings.threads);
+            put(prefix + ".throughput", miniPerf.getThroughput());
+        }
     }
 
     void print(String prefix, MiniPerfTest perf) {
         logger.info(prefix + ": " + perf.getReport());
         put(prefix + ".sum", perf.getSum());
         put(prefix + ".min", perf.getMin());
-        put(prefix + ".mean", perf.getMean());
+        // with several threads the calls overlap and the mean is only the wall time per call, which must not be
+        // compared with the mean of a sequential run
+        put(prefix + (perf.getThreads() > 1 ? ".wall_time_per_call" : ".mean"), perf.getMean());
         put(prefix + ".max", perf.getMax());
     }
 
+    /**
+     * Stores the percentiles of the time, the CPU time and the allocated kilobytes per call, if they were recorded.
+     */
+    void printPercentiles(String prefix, MiniPerfTest perf) {
+        for (int percentile : new int[]{50, 90, 99}) {
+            put(prefix + ".p" + percentile, perf.getPercentile(percentile));
+        }
+        if (perf.isCpuTimeMeasured()) {
+            put(prefix + ".cpu_mean", perf.getCpuTimeMean());
+            for (int percentile : new int[]{50, 90, 99}) {
+                put(prefix + ".cpu_p" + percentile, perf.getCpuTimePercentile(percentile));
+            }
+        }
+        if (perf.isAllocationMeasured()) {
+            put(prefix + ".allocated_kb_mean", perf.getAllocatedBytesMean() / 1024);
+            for (int percentile : new int[]{50, 90, 99}) {
+                put(prefix + ".allocated_kb_p" + percentile, perf.getAllocatedBytesPercentile(percentile) / 1024f);
+            }
+        }
+    }
+
     void put(String key, Object val) {
         properties.put(key, val);
     }
@@ -0,0 +1,819 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.locationtech.jts.geom.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Writes and reads the binary application/x-protobuf representation of the route, isochrone and shortest path tree
+ * responses, as described in graphhopper_response.proto. The messages are encoded by hand with the protobuf runtime
+ * instead of generated classes, so that no intermediate message objects are created and the string table can be
+ * filled while the response is written.
+ */
+public final class ProtobufResponse {
+
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+
+    private static final double COORDINATE_FACTOR = 1e6;
+    private static final double ELEVATION_FACTOR = 1e2;
+
+    // field numbers, see graphhopper_response.proto
+    private static final int INFO_COPYRIGHTS = 1, INFO_TOOK = 2;
+    private static final int VALUE_KEY = 1, VALUE_LONG = 2, VALUE_DOUBLE = 3, VALUE_BOOL = 4, VALUE_STRING = 5;
+    private static final int POINTS_COORDINATES = 1, POINTS_HAS_ELEVATION = 2;
+    private static final int INSTRUCTION_TEXT = 1, INSTRUCTION_STREET_NAME = 2, INSTRUCTION_DISTANCE = 3,
+            INSTRUCTION_TIME = 4, INSTRUCTION_SIGN = 5, INSTRUCTION_FIRST = 6, INSTRUCTION_LAST = 7,
+            INSTRUCTION_ANNOTATION_TEXT = 8, INSTRUCTION_ANNOTATION_IMPORTANCE = 9, INSTRUCTION_EXTRA_INFO = 10;
+    private static final int DETAILS_NAME = 1, DETAILS_INTERVALS = 2, DETAILS_VALUES = 3;
+    private static final int PATH_DISTANCE = 1, PATH_WEIGHT = 2, PATH_TIME = 3, PATH_TRANSFERS = 4,
+            PATH_DESCRIPTION = 5, PATH_POINTS = 6, PATH_INSTRUCTIONS = 7, PATH_DETAILS = 8, PATH_ASCEND = 9,
+            PATH_DESCEND = 10, PATH_SNAPPED_WAYPOINTS = 11;
+    private static final int ROUTE_STRINGS = 1, ROUTE_HINTS = 2, ROUTE_INFO = 3, ROUTE_PATHS = 4;
+    private static final int POLYGON_EXTERIOR = 1, POLYGON_HOLES = 2;
+    private static final int ISOCHRONE_BUCKET = 1, ISOCHRONE_POLYGONS = 2;
+    private static final int ISOCHRONES_INFO = 1, ISOCHRONES_ISOCHRONES = 2;
+    private static final int SPT_ROW_VALUES = 1;
+    private static final int SPT_STRINGS = 1, SPT_COLUMNS = 2, SPT_ROWS = 3;
+
+    private static final Set<String> SPT_COORDINATE_COLUMNS = new HashSet<>(Arrays.asList("longitude", "latitude", "prev_longitude", "prev_latitude"));
+
+    private ProtobufResponse() {
+    }
+
+    /**
+     * Writes the same information as {@link WebHelper#jsonObject}, except legs and fare which are only used for
+     * public transit. The points are always encoded as described in the schema, so there is no points_encoded flag.
+     */
+    public static void writeRoute(OutputStream output, GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, float took) throws IOException {
+        // the string table comes first, so the rest is buffered until all strings are known
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(body);
+        for (Map.Entry<String, Object> hint : ghRsp.getHints().toMap().entrySet()) {
+            writeValue(out, ROUTE_HINTS, strings.indexOf(hint.getKey()), hint.getValue(), strings);
+        }
+        writeInfo(out, ROUTE_INFO, took);
+        for (ResponsePath path : ghRsp.getAll()) {
+            out.writeByteArray(ROUTE_PATHS, message(o -> writePath(o, path, enableInstructions, calcPoints, enableElevation, strings)));
+        }
+        out.flush();
+
+        CodedOutputStream head = CodedOutputStream.newInstance(output);
+        strings.writeNewStrings(head, ROUTE_STRINGS);
+        head.flush();
+        body.writeTo(output);
+    }
+
+    private static void writePath(CodedOutputStream out, ResponsePath path, boolean enableInstructions, boolean calcPoints, boolean enableElevation, StringTable strings) throws IOException {
+        out.writeDouble(PATH_DISTANCE, path.getDistance());
+        out.writeDouble(PATH_WEIGHT, path.getRouteWeight());
+        out.writeInt64(PATH_TIME, path.getTime());
+        out.writeInt32(PATH_TRANSFERS, path.getNumChanges());
+        if (!path.getDescription().isEmpty()) {
+            int[] description = new int[path.getDescription().size()];
+            for (int i = 0; i < description.length; i++) {
+                description[i] = strings.indexOf(path.getDescription().get(i));
+            }
+            writePackedUInt32(out, PATH_DESCRIPTION, description, description.length);
+        }
+        if (calcPoints) {
+            writePointList(out, PATH_POINTS, path.getPoints(), enableElevation);
+            if (enableInstructions) {
+                InstructionList instructions = path.getInstructions();
+                int pointsIndex = 0;
+                for (Instruction instruction : instructions) {
+                    int first = pointsIndex;
+                    pointsIndex += instruction.getLength();
+                    int last = pointsIndex;
+                    out.writeByteArray(PATH_INSTRUCTIONS, message(o -> writeInstruction(o, instruction, instructions.getTr(), first, last, strings)));
+                }
+            }
+            for (Map.Entry<String, List<PathDetail>> details : path.getPathDetails().entrySet()) {
+                out.writeByteArray(PATH_DETAILS, message(o -> writePathDetails(o, details.getKey(), details.getValue(), strings)));
+            }
+            out.writeDouble(PATH_ASCEND, path.getAscend());
+            out.writeDouble(PATH_DESCEND, path.getDescend());
+        }
+        writePointList(out, PATH_SNAPPED_WAYPOINTS, path.getWaypoints(), enableElevation);
+    }
+
+    private static void writeInstruction(CodedOutputStream out, Instruction instruction, Translation tr, int first, int last, StringTable strings) throws IOException {
+        // same text as in InstructionListSerializer
+        InstructionAnnotation ia = instruction.getAnnotation();
+        String text = instruction.getTurnDescription(tr);
+        if (Helper.isEmpty(text))
+            text = ia.getMessage();
+        out.writeUInt32(INSTRUCTION_TEXT, strings.indexOf(Helper.firstBig(text)));
+        out.writeUInt32(INSTRUCTION_STREET_NAME, strings.indexOf(instruction.getName()));
+        out.writeDouble(INSTRUCTION_DISTANCE, instruction.getDistance());
+        out.writeInt64(INSTRUCTION_TIME, instruction.getTime());
+        out.writeSInt32(INSTRUCTION_SIGN, instruction.getSign());
+        out.writeUInt32(INSTRUCTION_FIRST, first);
+        out.writeUInt32(INSTRUCTION_LAST, last);
+        if (!ia.isEmpty()) {
+            out.writeUInt32(INSTRUCTION_ANNOTATION_TEXT, strings.indexOf(ia.getMessage()));
+            out.writeInt32(INSTRUCTION_ANNOTATION_IMPORTANCE, ia.getImportance());
+        }
+        for (Map.Entry<String, Object> extraInfo : instruction.getExtraInfoJSON().entrySet()) {
+            writeValue(out, INSTRUCTION_EXTRA_INFO, strings.indexOf(extraInfo.getKey()), extraInfo.getValue(), strings);
+        }
+    }
+
+    private static void writePathDetails(CodedOutputStream out, String name, List<PathDetail> details, StringTable strings) throws IOException {
+        out.writeUInt32(DETAILS_NAME, strings.indexOf(name));
+        int[] intervals = new int[2 * details.size()];
+        for (int i = 0; i < details.size(); i++) {
+            intervals[2 * i] = details.get(i).getFirst();
+            intervals[2 * i + 1] = details.get(i).getLast();
+        }
+        writePackedUInt32(out, DETAILS_INTERVALS, intervals, intervals.length);
+        for (PathDetail detail : details) {
+            writeValue(out, DETAILS_VALUES, 0, detail.getValue(), strings);
+        }
+    }
+
+    private static void writeInfo(CodedOutputStream out, int field, float took) throws IOException {
+        out.writeByteArray(field, message(o -> {
+            for (String copyright : WebHelper.COPYRIGHTS) {
+                o.writeString(INFO_COPYRIGHTS, copyright);
+            }
+            o.writeInt64(INFO_TOOK, Math.round(took));
+        }));
+    }
+
+    /**
+     * Writes one message per isochrone, in the order of the buckets. Every geometry has to be a Polygon or a
+     * MultiPolygon.
+     */
+    public static void writeIsochrones(OutputStream output, List<Geometry> isochrones, float took) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(output);
+        writeInfo(out, ISOCHRONES_INFO, took);
+        for (int bucket = 0; bucket < isochrones.size(); bucket++) {
+            Geometry isochrone = isochrones.get(bucket);
+            int tmpBucket = bucket;
+            out.writeByteArray(ISOCHRONES_ISOCHRONES, message(o -> {
+                o.writeUInt32(ISOCHRONE_BUCKET, tmpBucket);
+                for (int i = 0; i < isochrone.getNumGeometries(); i++) {
+                    Polygon polygon = (Polygon) isochrone.getGeometryN(i);
+                    o.writeByteArray(ISOCHRONE_POLYGONS, message(p -> {
+                        writePointList(p, POLYGON_EXTERIOR, toPointList(polygon.getExteriorRing()), false);
+                        for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                            writePointList(p, POLYGON_HOLES, toPointList(polygon.getInteriorRingN(j)), false);
+                        }
+                    }));
+                }
+            }));
+        }
+        out.flush();
+    }
+
+    private static PointList toPointList(LineString ring) {
+        PointList pointList = new PointList(ring.getNumPoints(), false);
+        for (Coordinate coordinate : ring.getCoordinates()) {
+            pointList.add(coordinate.y, coordinate.x);
+        }
+        return pointList;
+    }
+
+    /**
+     * Writes the rows of a shortest path tree one by one. The values of a row are written in the order of the
+     * columns and can be of type Number, Boolean or String, or null. Longitudes and latitudes have to be given as
+     * Double in degrees.
+     */
+    public static final class SptWriter {
+        private final CodedOutputStream out;
+        private final StringTable strings = new StringTable();
+        private final boolean[] coordinateColumns;
+        private final long[] previousCoordinates;
+        private final Object[] encodedValues;
+
+        public SptWriter(OutputStream output, List<String> columns) throws IOException {
+            out = CodedOutputStream.newInstance(output);
+            coordinateColumns = new boolean[columns.size()];
+            previousCoordinates = new long[columns.size()];
+            encodedValues = new Object[columns.size()];
+            for (int i = 0; i < columns.size(); i++) {
+                coordinateColumns[i] = SPT_COORDINATE_COLUMNS.contains(columns.get(i));
+                out.writeString(SPT_COLUMNS, columns.get(i));
+            }
+        }
+
+        public void writeRow(Object[] values) throws IOException {
+            int size = 0;
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (coordinateColumns[i] && value != null) {
+                    long coordinate = Math.round(((Number) value).doubleValue() * COORDINATE_FACTOR);
+                    value = coordinate - previousCoordinates[i];
+                    previousCoordinates[i] = coordinate;
+                }
+                encodedValues[i] = value;
+                int valueSize = computeValueSize(0, value, strings);
+                size += CodedOutputStream.computeTagSize(SPT_ROW_VALUES) + CodedOutputStream.computeUInt32SizeNoTag(valueSize) + valueSize;
+            }
+            // new strings of this row have to be written before the row
+            strings.writeNewStrings(out, SPT_STRINGS);
+            out.writeTag(SPT_ROWS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(size);
+            for (Object value : encodedValues) {
+                writeValue(out, SPT_ROW_VALUES, 0, value, strings);
+            }
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a response written by {@link #writeRoute} into the same objects as the JSON deserialization does.
+     *
+     * @param turnDescription if false, the text of the instructions is the street name
+     */
+    public static GHResponse readRoute(InputStream input, boolean turnDescription) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(input);
+        List<String> strings = new ArrayList<>();
+        GHResponse ghRsp = new GHResponse();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case ROUTE_STRINGS:
+                    strings.add(in.readString());
+                    break;
+                case ROUTE_HINTS:
+                    KeyValue hint = readValue(in, strings);
+                    ghRsp.getHints().putObject(hint.key, hint.value);
+                    break;
+                case ROUTE_PATHS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    ghRsp.add(readPath(in, strings, turnDescription));
+                    in.popLimit(limit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        return ghRsp;
+    }
+
+    private static ResponsePath readPath(CodedInputStream in, List<String> strings, boolean turnDescription) throws IOException {
+        ResponsePath path = new ResponsePath();
+        List<byte[]> instructions = new ArrayList<>();
+        List<String> description = new ArrayList<>();
+        Map<String, List<PathDetail>> pathDetails = new HashMap<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case PATH_DISTANCE:
+                    path.setDistance(in.readDouble());
+                    break;
+                case PATH_WEIGHT:
+                    path.setRouteWeight(in.readDouble());
+                    break;
+                case PATH_TIME:
+                    path.setTime(in.readInt64());
+                    break;
+                case PATH_TRANSFERS:
+                    path.setNumChanges(in.readInt32());
+                    break;
+                case PATH_DESCRIPTION:
+                    for (int index : readPackedUInt32(in, tag)) {
+                        description.add(strings.get(index));
+                    }
+                    break;
+                case PATH_POINTS:
+                    path.setPoints(readPointList(in));
+                    break;
+                case PATH_INSTRUCTIONS:
+                    // the instructions need the points, which could also come later
+                    instructions.add(in.readByteArray());
+                    break;
+                case PATH_DETAILS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    readPathDetails(in, strings, pathDetails);
+                    in.popLimit(limit);
+                    break;
+                case PATH_ASCEND:
+                    path.setAscend(in.readDouble());
+                    break;
+                case PATH_DESCEND:
+                    path.setDescend(in.readDouble());
+                    break;
+                case PATH_SNAPPED_WAYPOINTS:
+                    path.setWaypoints(readPointList(in));
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        if (!description.isEmpty())
+            path.setDescription(description);
+        if (!instructions.isEmpty()) {
+            InstructionList il = new InstructionList(null);
+            int viaCount = 1;
+            for (byte[] instruction : instructions) {
+                Instruction instr = readInstruction(CodedInputStream.newInstance(instruction), path.getPoints(), strings, turnDescription);
+                if (instr instanceof ViaInstruction) {
+                    ((ViaInstruction) instr).setViaCount(viaCount);
+                    viaCount++;
+                }
+                il.add(instr);
+            }
+            path.setInstructions(il);
+        }
+        if (!pathDetails.isEmpty())
+            path.addPathDetails(pathDetails);
+        List<Integer> pointsOrder = new ArrayList<>(path.getWaypoints().size());
+        for (int i = 0; i < path.getWaypoints().size(); i++) {
+            pointsOrder.add(i);
+        }
+        path.setPointsOrder(pointsOrder);
+        return path;
+    }
+
+    private static Instruction readInstruction(CodedInputStream in, PointList points, List<String> strings, boolean turnDescription) throws IOException {
+        String text = "", streetName = "", annotationText = null;
+        double distance = 0;
+        long time = 0;
+        int sign = 0, first = 0, last = 0, annotationImportance = 0;
+        List<KeyValue> extraInfo = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case INSTRUCTION_TEXT:
+                    text = strings.get(in.readUInt32());
+                    break;
+                case INSTRUCTION_STREET_NAME:
+                    streetName = strings.get(in.readUInt32());
+                    break;
+                case INSTRUCTION_DISTANCE:
+                    distance = in.readDouble();
+                    break;
+                case INSTRUCTION_TIME:
+                    time = in.readInt64();
+                    break;
+                case INSTRUCTION_SIGN:
+                    sign = in.readSInt32();
+                    break;
+                case INSTRUCTION_FIRST:
+                    first = in.readUInt32();
+                    break;
+                case INSTRUCTION_LAST:
+                    last = in.readUInt32();
+                    break;
+                case INSTRUCTION_ANNOTATION_TEXT:
+                    annotationText = strings.get(in.readUInt32());
+                    break;
+                case INSTRUCTION_ANNOTATION_IMPORTANCE:
+                    annotationImportance = in.readInt32();
+                    break;
+                case INSTRUCTION_EXTRA_INFO:
+                    extraInfo.add(readValue(in, strings));
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+
+        // the interval of an instruction ends where the next one starts, and via and finish instructions have
+        // a single point but no length
+        int end = Math.min(Math.max(last, first + 1), points.size());
+        PointList instPL = new PointList(end - first, points.is3D());
+        for (int j = first; j < end; j++) {
+            instPL.add(points, j);
+        }
+        InstructionAnnotation ia = annotationText == null ? InstructionAnnotation.EMPTY : new InstructionAnnotation(annotationImportance, annotationText);
+        if (!turnDescription)
+            text = streetName;
+
+        Instruction instr;
+        if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT) {
+            RoundaboutInstruction ri = new RoundaboutInstruction(sign, text, ia, instPL);
+            for (KeyValue kv : extraInfo) {
+                if ("exit_number".equals(kv.key)) {
+                    ri.setExitNumber(((Number) kv.value).intValue());
+                } else if ("exited".equals(kv.key)) {
+                    if ((Boolean) kv.value)
+                        ri.setExited();
+                } else if ("turn_angle".equals(kv.key)) {
+                    double angle = ((Number) kv.value).doubleValue();
+                    ri.setDirOfRotation(angle);
+                    ri.setRadian((angle < 0 ? -Math.PI : Math.PI) - angle);
+                }
+            }
+            instr = ri;
+        } else {
+            if (sign == Instruction.REACHED_VIA) {
+                instr = new ViaInstruction(text, ia, instPL);
+            } else if (sign == Instruction.FINISH) {
+                instr = new FinishInstruction(text, instPL, 0);
+            } else {
+                instr = new Instruction(sign, text, ia, instPL);
+            }
+            for (KeyValue kv : extraInfo) {
+                instr.setExtraInfo(kv.key, kv.value);
+            }
+        }
+        // the text was already translated on the server, see ResponsePathDeserializer
+        if (turnDescription)
+            instr.setUseRawName();
+        instr.setDistance(distance).setTime(time);
+        return instr;
+    }
+
+    private static void readPathDetails(CodedInputStream in, List<String> strings, Map<String, List<PathDetail>> pathDetails) throws IOException {
+        String name = "";
+        int[] intervals = new int[0];
+        List<PathDetail> details = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case DETAILS_NAME:
+                    name = strings.get(in.readUInt32());
+                    break;
+                case DETAILS_INTERVALS:
+                    intervals = readPackedUInt32(in, tag);
+                    break;
+                case DETAILS_VALUES:
+                    Object value = readValue(in, strings).value;
+                    if (value instanceof Boolean)
+                        details.add(new PathDetail((Boolean) value));
+                    else if (value instanceof Long)
+                        details.add(new PathDetail((Long) value));
+                    else if (value instanceof Double)
+                        details.add(new PathDetail((Double) value));
+                    else
+                        details.add(new PathDetail((String) value));
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        if (intervals.length != 2 * details.size())
+            throw new IllegalStateException("Path details " + name + " have " + details.size() + " values but " + intervals.length + " interval indices");
+        for (int i = 0; i < details.size(); i++) {
+            details.get(i).setFirst(intervals[2 * i]);
+            details.get(i).setLast(intervals[2 * i + 1]);
+        }
+        pathDetails.put(name, details);
+    }
+
+    /**
+     * Reads the isochrones written by {@link #writeIsochrones}, as Polygon or MultiPolygon with the same number of
+     * polygons as written.
+     */
+    public static List<Geometry> readIsochrones(InputStream input) throws IOException {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        CodedInputStream in = CodedInputStream.newInstance(input);
+        List<Geometry> isochrones = new ArrayList<>();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) != ISOCHRONES_ISOCHRONES) {
+                in.skipField(tag);
+                continue;
+            }
+            int limit = in.pushLimit(in.readRawVarint32());
+            List<Polygon> polygons = new ArrayList<>();
+            while ((tag = in.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) != ISOCHRONE_POLYGONS) {
+                    in.skipField(tag);
+                    continue;
+                }
+                int polygonLimit = in.pushLimit(in.readRawVarint32());
+                LinearRing exterior = null;
+                List<LinearRing> holes = new ArrayList<>();
+                while ((tag = in.readTag()) != 0) {
+                    if (WireFormat.getTagFieldNumber(tag) == POLYGON_EXTERIOR)
+                        exterior = toLinearRing(geometryFactory, readPointList(in));
+                    else if (WireFormat.getTagFieldNumber(tag) == POLYGON_HOLES)
+                        holes.add(toLinearRing(geometryFactory, readPointList(in)));
+                    else
+                        in.skipField(tag);
+                }
+                polygons.add(geometryFactory.createPolygon(exterior, holes.toArray(new LinearRing[0])));
+                in.popLimit(polygonLimit);
+            }
+            isochrones.add(polygons.size() == 1 ? polygons.get(0) : geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[0])));
+            in.popLimit(limit);
+        }
+        return isochrones;
+    }
+
+    private static LinearRing toLinearRing(GeometryFactory geometryFactory, PointList pointList) {
+        Coordinate[] coordinates = new Coordinate[pointList.size()];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(pointList.getLon(i), pointList.getLat(i));
+        }
+        return geometryFactory.createLinearRing(coordinates);
+    }
+
+    /**
+     * Reads a shortest path tree written by the {@link SptWriter}. The columns are added to the given list before
+     * the first row is passed to the consumer. Longitudes and latitudes are converted back to Double in degrees.
+     */
+    public static void readSpt(InputStream input, List<String> columns, Consumer<Object[]> rowConsumer) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(input);
+        List<String> strings = new ArrayList<>();
+        long[] previousCoordinates = null;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case SPT_STRINGS:
+                    strings.add(in.readString());
+                    break;
+                case SPT_COLUMNS:
+                    columns.add(in.readString());
+                    break;
+                case SPT_ROWS:
+                    if (previousCoordinates == null)
+                        previousCoordinates = new long[columns.size()];
+                    Object[] row = new Object[columns.size()];
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    int column = 0;
+                    while ((tag = in.readTag()) != 0) {
+                        if (WireFormat.getTagFieldNumber(tag) != SPT_ROW_VALUES) {
+                            in.skipField(tag);
+                            continue;
+                        }
+                        Object value = readValue(in, strings).value;
+                        if (SPT_COORDINATE_COLUMNS.contains(columns.get(column)) && value != null) {
+                            previousCoordinates[column] += (Long) value;
+                            value = previousCoordinates[column] / COORDINATE_FACTOR;
+                        }
+                        row[column++] = value;
+                    }
+                    in.popLimit(limit);
+                    rowConsumer.accept(row);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+    }
+
+    private interface MessageWriter {
+        void write(CodedOutputStream out) throws IOException;
+    }
+
+    /**
+     * Encodes a nested message, whose length has to be known before it can be written.
+     */
+    private static byte[] message(MessageWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        writer.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writePointList(CodedOutputStream out, int field, PointList points, boolean includeElevation) throws IOException {
+        includeElevation = includeElevation && points.is3D();
+        // the coordinates are computed twice instead of buffering them, once for the size and once for writing
+        int coordinatesSize = 0;
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < points.size(); i++) {
+            int lat = toInt(points.getLat(i), COORDINATE_FACTOR), lon = toInt(points.getLon(i), COORDINATE_FACTOR);
+            coordinatesSize += CodedOutputStream.computeSInt32SizeNoTag(lat - prevLat) + CodedOutputStream.computeSInt32SizeNoTag(lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (includeElevation) {
+                int ele = toInt(points.getEle(i), ELEVATION_FACTOR);
+                coordinatesSize += CodedOutputStream.computeSInt32SizeNoTag(ele - prevEle);
+                prevEle = ele;
+            }
+        }
+        int size = includeElevation ? CodedOutputStream.computeBoolSize(POINTS_HAS_ELEVATION, true) : 0;
+        if (coordinatesSize > 0)
+            size += CodedOutputStream.computeTagSize(POINTS_COORDINATES) + CodedOutputStream.computeUInt32SizeNoTag(coordinatesSize) + coordinatesSize;
+
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+        if (coordinatesSize > 0) {
+            out.writeTag(POINTS_COORDINATES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(coordinatesSize);
+            prevLat = prevLon = prevEle = 0;
+            for (int i = 0; i < points.size(); i++) {
+                int lat = toInt(points.getLat(i), COORDINATE_FACTOR), lon = toInt(points.getLon(i), COORDINATE_FACTOR);
+                out.writeSInt32NoTag(lat - prevLat);
+                out.writeSInt32NoTag(lon - prevLon);
+                prevLat = lat;
+                prevLon = lon;
+                if (includeElevation) {
+                    int ele = toInt(points.getEle(i), ELEVATION_FACTOR);
+                    out.writeSInt32NoTag(ele - prevEle);
+                    prevEle = ele;
+                }
+            }
+        }
+        if (includeElevation)
+            out.writeBool(POINTS_HAS_ELEVATION, true);
+    }
+
+    private static int toInt(double value, double factor) {
+        return Double.isNaN(value) ? 0 : (int) Math.round(value * factor);
+    }
+
+    private static PointList readPointList(CodedInputStream in) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        int[] coordinates = new int[0];
+        boolean hasElevation = false;
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case POINTS_COORDINATES:
+                    coordinates = readPackedSInt32(in, tag);
+                    break;
+                case POINTS_HAS_ELEVATION:
+                    hasElevation = in.readBool();
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+
+        int dimension = hasElevation ? 3 : 2;
+        PointList points = new PointList(coordinates.length / dimension, hasElevation);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i + dimension <= coordinates.length; i += dimension) {
+            lat += coordinates[i];
+            lon += coordinates[i + 1];
+            if (hasElevation) {
+                ele += coordinates[i + 2];
+                points.add(lat / COORDINATE_FACTOR, lon / COORDINATE_FACTOR, ele / ELEVATION_FACTOR);
+            } else {
+                points.add(lat / COORDINATE_FACTOR, lon / COORDINATE_FACTOR);
+            }
+        }
+        return points;
+    }
+
+    private static void writePackedUInt32(CodedOutputStream out, int field, int[] values, int length) throws IOException {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            size += CodedOutputStream.computeUInt32SizeNoTag(values[i]);
+        }
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+        for (int i = 0; i < length; i++) {
+            out.writeUInt32NoTag(values[i]);
+        }
+    }
+
+    private static int[] readPackedUInt32(CodedInputStream in, int tag) throws IOException {
+        if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED)
+            return new int[]{in.readUInt32()};
+        int limit = in.pushLimit(in.readRawVarint32());
+        int[] values = new int[8];
+        int size = 0;
+        while (in.getBytesUntilLimit() > 0) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = in.readUInt32();
+        }
+        in.popLimit(limit);
+        return Arrays.copyOf(values, size);
+    }
+
+    private static int[] readPackedSInt32(CodedInputStream in, int tag) throws IOException {
+        if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED)
+            return new int[]{in.readSInt32()};
+        int limit = in.pushLimit(in.readRawVarint32());
+        int[] values = new int[64];
+        int size = 0;
+        while (in.getBytesUntilLimit() > 0) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = in.readSInt32();
+        }
+        in.popLimit(limit);
+        return Arrays.copyOf(values, size);
+    }
+
+    private static int computeValueSize(int key, Object value, StringTable strings) {
+        int size = key == 0 ? 0 : CodedOutputStream.computeUInt32Size(VALUE_KEY, key);
+        if (value == null)
+            return size;
+        if (value instanceof Boolean)
+            return size + CodedOutputStream.computeBoolSize(VALUE_BOOL, (Boolean) value);
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return size + CodedOutputStream.computeSInt64Size(VALUE_LONG, ((Number) value).longValue());
+        if (value instanceof Number)
+            return size + CodedOutputStream.computeDoubleSize(VALUE_DOUBLE, ((Number) value).doubleValue());
+        return size + CodedOutputStream.computeUInt32Size(VALUE_STRING, strings.indexOf(value.toString()));
+    }
+
+    private static void writeValue(CodedOutputStream out, int field, int key, Object value, StringTable strings) throws IOException {
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(computeValueSize(key, value, strings));
+        if (key != 0)
+            out.writeUInt32(VALUE_KEY, key);
+        if (value == null)
+            return;
+        if (value instanceof Boolean)
+            out.writeBool(VALUE_BOOL, (Boolean) value);
+        else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            out.writeSInt64(VALUE_LONG, ((Number) value).longValue());
+        else if (value instanceof Number)
+            out.writeDouble(VALUE_DOUBLE, ((Number) value).doubleValue());
+        else
+            out.writeUInt32(VALUE_STRING, strings.indexOf(value.toString()));
+    }
+
+    private static class KeyValue {
+        String key = "";
+        Object value;
+    }
+
+    private static KeyValue readValue(CodedInputStream in, List<String> strings) throws IOException {
+        int limit = in.pushLimit(in.readRawVarint32());
+        KeyValue kv = new KeyValue();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case VALUE_KEY:
+                    kv.key = strings.get(in.readUInt32());
+                    break;
+                case VALUE_LONG:
+                    kv.value = in.readSInt64();
+                    break;
+                case VALUE_DOUBLE:
+                    kv.value = in.readDouble();
+                    break;
+                case VALUE_BOOL:
+                    kv.value = in.readBool();
+                    break;
+                case VALUE_STRING:
+                    kv.value = strings.get(in.readUInt32());
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        in.popLimit(limit);
+        return kv;
+    }
+
+    /**
+     * Assigns every distinct string an index, starting with the empty string at 0, and remembers which strings
+     * were not yet written.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private int written;
+
+        StringTable() {
+            indices.put("", 0);
+            strings.add("");
+        }
+
+        int indexOf(String string) {
+            if (string == null)
+                return 0;
+            Integer index = indices.get(string);
+            if (index == null) {
+                index = strings.size();
+                indices.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+
+        void writeNewStrings(CodedOutputStream out, int field) throws IOException {
+            for (; written < strings.size(); written++) {
+                out.writeString(field, strings.get(written));
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -25,6 +26,7 @@ import com.graphhopper.ResponsePath;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.NumberFormat;
@@ -129,6 +131,78 @@ public class WebHelper {
         return sb.toString();
     }
 
+    /**
+     * Writes the encoded polyline as a JSON string without creating an intermediate String. The buffer is grown if
+     * necessary and returned, so it can be passed in again for the next polyline.
+     */
+    public static char[] writeEncodedPolyline(JsonGenerator gen, PointList poly, boolean includeElevation, double precision, char[] buffer) throws IOException {
+        int size = poly.getSize();
+        // at most 7 characters per 32 bit number
+        int maxLength = size * (includeElevation ? 3 : 2) * 7;
+        if (buffer == null || buffer.length < maxLength)
+            buffer = new char[Math.max(64, maxLength)];
+        int length = 0;
+        int prevLat = 0;
+        int prevLon = 0;
+        int prevEle = 0;
+        for (int i = 0; i < size; i++) {
+            int num = (int) Math.floor(poly.getLatitude(i) * precision);
+            length = encodeNumber(buffer, length, num - prevLat);
+            prevLat = num;
+            num = (int) Math.floor(poly.getLongitude(i) * precision);
+            length = encodeNumber(buffer, length, num - prevLon);
+            prevLon = num;
+            if (includeElevation) {
+                num = (int) Math.floor(poly.getElevation(i) * 100);
+                length = encodeNumber(buffer, length, num - prevEle);
+                prevEle = num;
+            }
+        }
+        gen.writeString(buffer, 0, length);
+        return buffer;
+    }
+
+    private static int encodeNumber(char[] buffer, int length, int num) {
+        num = num << 1;
+        if (num < 0) {
+            num = ~num;
+        }
+        while (num >= 0x20) {
+            buffer[length++] = (char) ((0x20 | (num & 0x1f)) + 63);
+            num >>= 5;
+        }
+        buffer[length++] = (char) (num + 63);
+        return length;
+    }
+
+    /**
+     * Writes the points as a GeoJSON LineString, like the JTS serializer does for {@link PointList#toLineString},
+     * but without creating the geometry first.
+     */
+    public static void writeLineString(JsonGenerator gen, PointList poly, boolean includeElevation) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", "LineString");
+        gen.writeArrayFieldStart("coordinates");
+        int size = poly.getSize();
+        for (int i = 0; i < size; i++) {
+            writeCoordinate(gen, poly, i, includeElevation);
+        }
+        // special case as just 1 point is not supported in the specification #1412
+        if (size == 1)
+            writeCoordinate(gen, poly, 0, includeElevation);
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static void writeCoordinate(JsonGenerator gen, PointList poly, int index, boolean includeElevation) throws IOException {
+        gen.writeStartArray();
+        gen.writeNumber(Helper.round6(poly.getLongitude(index)));
+        gen.writeNumber(Helper.round6(poly.getLatitude(index)));
+        if (includeElevation)
+            gen.writeNumber(Helper.round2(poly.getElevation(index)));
+        gen.writeEndArray();
+    }
+
     private static void encodeNumber(StringBuilder sb, int num) {
         num = num << 1;
         if (num < 0) {
@@ -193,4 +267,62 @@ public class WebHelper {
         return json;
     }
 
+    /**
+     * Writes the same JSON as {@link #jsonObject} directly to the generator, without building a tree first. The
+     * generator has to be created from the ObjectMapper of the application, because instructions, path details and
+     * legs are written with its serializers.
+     */
+    public static void writeJson(JsonGenerator gen, GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) throws IOException {
+        gen.writeStartObject();
+        gen.writeObjectField("hints", ghRsp.getHints().toMap());
+        gen.writeObjectFieldStart("info");
+        gen.writeObjectField("copyrights", COPYRIGHTS);
+        gen.writeNumberField("took", Math.round(took));
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("paths");
+        char[] polylineBuffer = null;
+        for (ResponsePath p : ghRsp.getAll()) {
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(p.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(p.getRouteWeight()));
+            gen.writeNumberField("time", p.getTime());
+            gen.writeNumberField("transfers", p.getNumChanges());
+            if (!p.getDescription().isEmpty()) {
+                gen.writeObjectField("description", p.getDescription());
+            }
+            if (calcPoints) {
+                gen.writeBooleanField("points_encoded", pointsEncoded);
+                if (p.getPoints().getSize() >= 2) {
+                    gen.writeObjectField("bbox", p.calcBBox2D());
+                }
+                gen.writeFieldName("points");
+                polylineBuffer = writePoints(gen, p.getPoints(), enableElevation, pointsEncoded, polylineBuffer);
+                if (enableInstructions) {
+                    gen.writeObjectField("instructions", p.getInstructions());
+                }
+                gen.writeObjectField("legs", p.getLegs());
+                gen.writeObjectField("details", p.getPathDetails());
+                gen.writeNumberField("ascend", p.getAscend());
+                gen.writeNumberField("descend", p.getDescend());
+            }
+            gen.writeFieldName("snapped_waypoints");
+            polylineBuffer = writePoints(gen, p.getWaypoints(), enableElevation, pointsEncoded, polylineBuffer);
+            if (p.getFare() != null) {
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(p.getFare()));
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static char[] writePoints(JsonGenerator gen, PointList points, boolean enableElevation, boolean pointsEncoded, char[] polylineBuffer) throws IOException {
+        if (pointsEncoded) {
+            return writeEncodedPolyline(gen, points, enableElevation, 1e5, polylineBuffer);
+        } else {
+            writeLineString(gen, points, enableElevation);
+            return polylineBuffer;
+        }
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.Test;
+import org.locationtech.jts.geom.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ProtobufResponseTest {
+
+    @Test
+    public void testRouteLikeJson() throws Exception {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234.5, 40.8, -121.0, 1234, 43.252, -126.453, 1234));
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234));
+        path.setDistance(1234.5678).setTime(60_000).setRouteWeight(12.3456789).setAscend(1224.5).setDescend(0.5);
+        path.setDescription(Arrays.asList("Main Street", "Ring"));
+        InstructionList instructions = new InstructionList(null);
+        Instruction start = new Instruction(Instruction.CONTINUE_ON_STREET, "Main Street", InstructionAnnotation.EMPTY, Helper.createPointList3D(38.5, -120.2, 10));
+        start.setExtraInfo("heading", 12.5);
+        instructions.add(start.setDistance(100).setTime(10_000));
+        RoundaboutInstruction roundabout = new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "Ring", new InstructionAnnotation(1, "Toll"), Helper.createPointList3D(40.7, -120.95, 1234.5, 40.8, -121.0, 1234));
+        roundabout.setExitNumber(2).setExited().setDirOfRotation(-1);
+        roundabout.setRadian(-Math.PI / 2);
+        instructions.add(roundabout.setDistance(200).setTime(20_000));
+        instructions.add(new FinishInstruction("Main Street", 43.252, -126.453, 1234));
+        for (Instruction instruction : instructions) {
+            instruction.setUseRawName();
+        }
+        path.setInstructions(instructions);
+        Map<String, List<PathDetail>> details = new HashMap<>();
+        details.put("street_name", Arrays.asList(pathDetail("Main Street", 0, 1), pathDetail("Ring", 1, 3)));
+        details.put("max_speed", Collections.singletonList(pathDetail(50.5, 0, 3)));
+        details.put("edge_id", Arrays.asList(pathDetail(7L, 0, 2), pathDetail(8L, 2, 3)));
+        details.put("toll", Collections.singletonList(pathDetail(false, 0, 3)));
+        path.addPathDetails(details);
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+
+        for (boolean enableElevation : new boolean[]{true, false}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ProtobufResponse.writeRoute(bytes, rsp, true, true, enableElevation, 7);
+            GHResponse decoded = ProtobufResponse.readRoute(new ByteArrayInputStream(bytes.toByteArray()), true);
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, true, true, enableElevation, true, 7))),
+                    objectMapper.readTree(objectMapper.writeValueAsString(WebHelper.jsonObject(decoded, true, true, enableElevation, true, 7))));
+            assertEquals(enableElevation, decoded.getBest().getPoints().is3D());
+            assertEquals(Arrays.asList(0, 1), decoded.getBest().getPointsOrder());
+        }
+
+        // without turn descriptions the street names are used as text
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.writeRoute(bytes, rsp, true, true, false, 7);
+        GHResponse decoded = ProtobufResponse.readRoute(new ByteArrayInputStream(bytes.toByteArray()), false);
+        assertEquals("Ring", decoded.getBest().getInstructions().get(1).getName());
+        assertEquals(2, ((RoundaboutInstruction) decoded.getBest().getInstructions().get(1)).getExitNumber());
+    }
+
+    @Test
+    public void testRouteWithoutPoints() throws Exception {
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setWaypoints(Helper.createPointList(38.5, -120.2, 43.252, -126.453));
+        path.setDistance(1234.5).setTime(60_000);
+        rsp.add(path);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.writeRoute(bytes, rsp, false, false, false, 7);
+        GHResponse decoded = ProtobufResponse.readRoute(new ByteArrayInputStream(bytes.toByteArray()), true);
+        assertEquals(1, decoded.getAll().size());
+        assertEquals(1234.5, decoded.getBest().getDistance(), 0);
+        assertTrue(decoded.getBest().getPoints().isEmpty());
+        assertEquals(path.getWaypoints(), decoded.getBest().getWaypoints());
+    }
+
+    @Test
+    public void testIsochrones() throws Exception {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        Polygon small = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(13.1, 52.1), new Coordinate(13.2, 52.1), new Coordinate(13.2, 52.2), new Coordinate(13.1, 52.1)});
+        Polygon withHole = geometryFactory.createPolygon(
+                geometryFactory.createLinearRing(new Coordinate[]{
+                        new Coordinate(13.0, 52.0), new Coordinate(14.0, 52.0), new Coordinate(14.0, 53.0), new Coordinate(13.0, 53.0), new Coordinate(13.0, 52.0)}),
+                new LinearRing[]{geometryFactory.createLinearRing(new Coordinate[]{
+                        new Coordinate(13.5, 52.5), new Coordinate(13.6, 52.5), new Coordinate(13.6, 52.6), new Coordinate(13.5, 52.5)})});
+        MultiPolygon multiPolygon = geometryFactory.createMultiPolygon(new Polygon[]{withHole, small});
+        List<Geometry> isochrones = Arrays.asList(small, multiPolygon);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.writeIsochrones(bytes, isochrones, 7);
+        List<Geometry> decoded = ProtobufResponse.readIsochrones(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(2, decoded.size());
+        assertTrue(decoded.get(0).equalsExact(small));
+        assertTrue(decoded.get(1).equalsExact(multiPolygon));
+    }
+
+    @Test
+    public void testSpt() throws Exception {
+        List<String> columns = Arrays.asList("longitude", "latitude", "time", "street_name", "prev_longitude", "max_speed");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.SptWriter writer = new ProtobufResponse.SptWriter(bytes, columns);
+        writer.writeRow(new Object[]{13.1, 52.1, 0, "", null, null});
+        writer.writeRow(new Object[]{13.123456, 52.2, 1000, "Main Street", 13.1, 50.0});
+        writer.writeRow(new Object[]{13.0, 52.15, 2000, "Main Street", 13.123456, 30.0});
+        writer.flush();
+
+        List<String> decodedColumns = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        ProtobufResponse.readSpt(new ByteArrayInputStream(bytes.toByteArray()), decodedColumns, rows::add);
+        assertEquals(columns, decodedColumns);
+        assertEquals(3, rows.size());
+        assertArrayEquals(new Object[]{13.1, 52.1, 0L, "", null, null}, rows.get(0));
+        assertArrayEquals(new Object[]{13.123456, 52.2, 1000L, "Main Street", 13.1, 50.0}, rows.get(1));
+        assertArrayEquals(new Object[]{13.0, 52.15, 2000L, "Main Street", 13.123456, 30.0}, rows.get(2));
+    }
+
+    private static PathDetail pathDetail(Object value, int first, int last) {
+        PathDetail pathDetail;
+        if (value instanceof String)
+            pathDetail = new PathDetail((String) value);
+        else if (value instanceof Long)
+            pathDetail = new PathDetail((Long) value);
+        else if (value instanceof Double)
+            pathDetail = new PathDetail((Double) value);
+        else
+            pathDetail = new PathDetail((Boolean) value);
+        pathDetail.setFirst(first);
+        pathDetail.setLast(last);
+        return pathDetail;
+    }
+}
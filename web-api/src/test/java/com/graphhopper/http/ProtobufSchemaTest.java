@@ -0,0 +1,304 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.google.protobuf.DescriptorProtos.*;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.util.*;
+import com.graphhopper.util.details.PathDetail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses what {@link ProtobufResponse} writes with the message types of graphhopper_response.proto, so that the
+ * hand written encoding and the schema which clients generate their code from cannot drift apart.
+ */
+public class ProtobufSchemaTest {
+
+    private static Descriptors.FileDescriptor schema;
+
+    @BeforeClass
+    public static void readSchema() throws Exception {
+        String proto = new String(Files.readAllBytes(Paths.get("src/main/proto/graphhopper_response.proto")), StandardCharsets.UTF_8);
+        schema = Descriptors.FileDescriptor.buildFrom(parse(proto), new Descriptors.FileDescriptor[0]);
+    }
+
+    @Test
+    public void testRoute() throws Exception {
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234.5, 43.252, -126.453, 1234));
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234));
+        path.setDistance(1234.5).setTime(60_000).setRouteWeight(12.5).setAscend(1224.5);
+        InstructionList instructions = new InstructionList(null);
+        Instruction start = new Instruction(Instruction.CONTINUE_ON_STREET, "Main Street", InstructionAnnotation.EMPTY, Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234.5));
+        start.setExtraInfo("heading", 12.5);
+        instructions.add(start.setDistance(100).setTime(10_000));
+        instructions.add(new FinishInstruction("Main Street", 43.252, -126.453, 1234));
+        for (Instruction instruction : instructions) {
+            instruction.setUseRawName();
+        }
+        path.setInstructions(instructions);
+        PathDetail maxSpeed = new PathDetail(50.5);
+        maxSpeed.setFirst(0);
+        maxSpeed.setLast(2);
+        path.addPathDetails(Collections.singletonMap("max_speed", Collections.singletonList(maxSpeed)));
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.writeRoute(bytes, rsp, true, true, true, 7);
+        DynamicMessage response = DynamicMessage.parseFrom(schema.findMessageTypeByName("RouteResponse"), bytes.toByteArray());
+        assertNoUnknownFields(response);
+
+        List<?> strings = (List<?>) get(response, "strings");
+        assertEquals("", strings.get(0));
+        Message hint = (Message) ((List<?>) get(response, "hints")).get(0);
+        assertEquals("visited_nodes.sum", strings.get((Integer) get(hint, "key")));
+        assertEquals(42L, get(hint, "long_value"));
+        assertEquals(7L, get((Message) get(response, "info"), "took"));
+
+        Message decodedPath = (Message) ((List<?>) get(response, "paths")).get(0);
+        assertEquals(1234.5, (Double) get(decodedPath, "distance"), 0);
+        assertEquals(60_000L, get(decodedPath, "time"));
+        assertEquals(1224.5, (Double) get(decodedPath, "ascend"), 0);
+        assertEquals(path.getPoints(), toPointList((Message) get(decodedPath, "points")));
+        assertEquals(path.getWaypoints(), toPointList((Message) get(decodedPath, "snapped_waypoints")));
+
+        List<?> decodedInstructions = (List<?>) get(decodedPath, "instructions");
+        assertEquals(2, decodedInstructions.size());
+        Message first = (Message) decodedInstructions.get(0);
+        assertEquals("Main Street", strings.get((Integer) get(first, "street_name")));
+        assertEquals(0, get(first, "first"));
+        assertEquals(2, get(first, "last"));
+        Message heading = (Message) ((List<?>) get(first, "extra_info")).get(0);
+        assertEquals("heading", strings.get((Integer) get(heading, "key")));
+        assertEquals(12.5, (Double) get(heading, "double_value"), 0);
+        assertEquals(Instruction.FINISH, get((Message) decodedInstructions.get(1), "sign"));
+
+        Message details = (Message) ((List<?>) get(decodedPath, "details")).get(0);
+        assertEquals("max_speed", strings.get((Integer) get(details, "name")));
+        assertEquals(Arrays.asList(0, 2), get(details, "intervals"));
+        assertEquals(50.5, (Double) get((Message) ((List<?>) get(details, "values")).get(0), "double_value"), 0);
+    }
+
+    @Test
+    public void testIsochrones() throws Exception {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        Geometry triangle = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(13.1, 52.1), new Coordinate(13.2, 52.1), new Coordinate(13.2, 52.2), new Coordinate(13.1, 52.1)});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.writeIsochrones(bytes, Arrays.asList(triangle, triangle), 7);
+        DynamicMessage response = DynamicMessage.parseFrom(schema.findMessageTypeByName("IsochroneResponse"), bytes.toByteArray());
+        assertNoUnknownFields(response);
+
+        List<?> isochrones = (List<?>) get(response, "isochrones");
+        assertEquals(2, isochrones.size());
+        Message second = (Message) isochrones.get(1);
+        assertEquals(1, get(second, "bucket"));
+        Message polygon = (Message) ((List<?>) get(second, "polygons")).get(0);
+        assertEquals(Helper.createPointList(52.1, 13.1, 52.1, 13.2, 52.2, 13.2, 52.1, 13.1), toPointList((Message) get(polygon, "exterior")));
+    }
+
+    @Test
+    public void testSpt() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ProtobufResponse.SptWriter writer = new ProtobufResponse.SptWriter(bytes, Arrays.asList("longitude", "latitude", "time", "street_name"));
+        writer.writeRow(new Object[]{13.1, 52.1, 0, ""});
+        writer.writeRow(new Object[]{13.2, 52.15, 1000, "Main Street"});
+        writer.flush();
+        DynamicMessage response = DynamicMessage.parseFrom(schema.findMessageTypeByName("SptResponse"), bytes.toByteArray());
+        assertNoUnknownFields(response);
+
+        assertEquals(Arrays.asList("longitude", "latitude", "time", "street_name"), get(response, "columns"));
+        List<?> strings = (List<?>) get(response, "strings");
+        List<?> rows = (List<?>) get(response, "rows");
+        assertEquals(2, rows.size());
+        List<?> values = (List<?>) get((Message) rows.get(1), "values");
+        assertEquals(100_000L, get((Message) values.get(0), "long_value"));
+        assertEquals(50_000L, get((Message) values.get(1), "long_value"));
+        assertEquals(1000L, get((Message) values.get(2), "long_value"));
+        assertEquals("Main Street", strings.get((Integer) get((Message) values.get(3), "string_value")));
+    }
+
+    private static Object get(Message message, String field) {
+        Descriptors.FieldDescriptor descriptor = message.getDescriptorForType().findFieldByName(field);
+        assertNotNull("no field " + field + " in " + message.getDescriptorForType().getName(), descriptor);
+        return message.getField(descriptor);
+    }
+
+    private static void assertNoUnknownFields(Message message) {
+        assertTrue("unknown fields in " + message.getDescriptorForType().getName() + ": " + message.getUnknownFields(),
+                message.getUnknownFields().asMap().isEmpty());
+        for (Map.Entry<Descriptors.FieldDescriptor, Object> field : message.getAllFields().entrySet()) {
+            if (field.getKey().getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE)
+                continue;
+            if (field.getKey().isRepeated()) {
+                for (Object value : (List<?>) field.getValue()) {
+                    assertNoUnknownFields((Message) value);
+                }
+            } else {
+                assertNoUnknownFields((Message) field.getValue());
+            }
+        }
+    }
+
+    private static PointList toPointList(Message pointList) {
+        boolean is3D = (Boolean) get(pointList, "has_elevation");
+        int dim = is3D ? 3 : 2;
+        List<?> coordinates = (List<?>) get(pointList, "coordinates");
+        PointList result = new PointList(coordinates.size() / dim, is3D);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < coordinates.size(); i += dim) {
+            lat += (Integer) coordinates.get(i);
+            lon += (Integer) coordinates.get(i + 1);
+            if (is3D) {
+                ele += (Integer) coordinates.get(i + 2);
+                result.add(lat / 1e6, lon / 1e6, ele / 1e2);
+            } else {
+                result.add(lat / 1e6, lon / 1e6);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Turns the schema into a FileDescriptorProto. There is no protoc in the build, so this understands just what
+     * graphhopper_response.proto uses: top level messages with scalar and message fields, repeated fields, oneofs and
+     * field options.
+     */
+    private static FileDescriptorProto parse(String proto) {
+        Deque<String> tokens = new ArrayDeque<>();
+        for (String line : proto.split("\n")) {
+            int comment = line.indexOf("//");
+            String code = comment >= 0 ? line.substring(0, comment) : line;
+            for (String token : code.replaceAll("([{};=\\[\\]])", " $1 ").trim().split("\\s+")) {
+                if (!token.isEmpty())
+                    tokens.add(token);
+            }
+        }
+        FileDescriptorProto.Builder file = FileDescriptorProto.newBuilder().setName("graphhopper_response.proto");
+        while (!tokens.isEmpty()) {
+            String token = tokens.poll();
+            if (token.equals("syntax")) {
+                expect(tokens, "=");
+                file.setSyntax(tokens.poll().replace("\"", ""));
+                expect(tokens, ";");
+            } else if (token.equals("package")) {
+                file.setPackage(tokens.poll());
+                expect(tokens, ";");
+            } else if (token.equals("option")) {
+                while (!tokens.poll().equals(";")) ;
+            } else if (token.equals("message")) {
+                file.addMessageType(parseMessage(tokens, file.getPackage()));
+            } else {
+                throw new IllegalStateException("unexpected " + token);
+            }
+        }
+        return file.build();
+    }
+
+    private static DescriptorProto parseMessage(Deque<String> tokens, String pkg) {
+        DescriptorProto.Builder message = DescriptorProto.newBuilder().setName(tokens.poll());
+        expect(tokens, "{");
+        while (!tokens.peek().equals("}")) {
+            if (tokens.peek().equals("oneof")) {
+                tokens.poll();
+                int oneofIndex = message.getOneofDeclCount();
+                message.addOneofDecl(OneofDescriptorProto.newBuilder().setName(tokens.poll()));
+                expect(tokens, "{");
+                while (!tokens.peek().equals("}")) {
+                    message.addField(parseField(tokens, pkg).setOneofIndex(oneofIndex));
+                }
+                expect(tokens, "}");
+            } else {
+                message.addField(parseField(tokens, pkg));
+            }
+        }
+        expect(tokens, "}");
+        return message.build();
+    }
+
+    private static FieldDescriptorProto.Builder parseField(Deque<String> tokens, String pkg) {
+        FieldDescriptorProto.Builder field = FieldDescriptorProto.newBuilder().setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+        String type = tokens.poll();
+        if (type.equals("repeated")) {
+            field.setLabel(FieldDescriptorProto.Label.LABEL_REPEATED);
+            type = tokens.poll();
+        }
+        FieldDescriptorProto.Type scalarType = SCALAR_TYPES.get(type);
+        if (scalarType != null) {
+            field.setType(scalarType);
+        } else {
+            field.setType(FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("." + pkg + "." + type);
+        }
+        field.setName(tokens.poll());
+        expect(tokens, "=");
+        field.setNumber(Integer.parseInt(tokens.poll()));
+        if (tokens.peek().equals("[")) {
+            tokens.poll();
+            String option = tokens.poll();
+            expect(tokens, "=");
+            String value = tokens.poll();
+            if (!option.equals("packed"))
+                throw new IllegalStateException("unexpected option " + option);
+            field.setOptions(FieldOptions.newBuilder().setPacked(Boolean.parseBoolean(value)));
+            expect(tokens, "]");
+        }
+        expect(tokens, ";");
+        return field;
+    }
+
+    private static void expect(Deque<String> tokens, String expected) {
+        String token = tokens.poll();
+        if (!expected.equals(token))
+            throw new IllegalStateException("expected " + expected + " but was " + token);
+    }
+
+    private static final Map<String, FieldDescriptorProto.Type> SCALAR_TYPES = new HashMap<>();
+
+    static {
+        SCALAR_TYPES.put("double", FieldDescriptorProto.Type.TYPE_DOUBLE);
+        SCALAR_TYPES.put("float", FieldDescriptorProto.Type.TYPE_FLOAT);
+        SCALAR_TYPES.put("int32", FieldDescriptorProto.Type.TYPE_INT32);
+        SCALAR_TYPES.put("int64", FieldDescriptorProto.Type.TYPE_INT64);
+        SCALAR_TYPES.put("uint32", FieldDescriptorProto.Type.TYPE_UINT32);
+        SCALAR_TYPES.put("uint64", FieldDescriptorProto.Type.TYPE_UINT64);
+        SCALAR_TYPES.put("sint32", FieldDescriptorProto.Type.TYPE_SINT32);
+        SCALAR_TYPES.put("sint64", FieldDescriptorProto.Type.TYPE_SINT64);
+        SCALAR_TYPES.put("bool", FieldDescriptorProto.Type.TYPE_BOOL);
+        SCALAR_TYPES.put("string", FieldDescriptorProto.Type.TYPE_STRING);
+        SCALAR_TYPES.put("bytes", FieldDescriptorProto.Type.TYPE_BYTES);
+    }
+}
@@ -17,11 +17,23 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.ResponsePath;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.util.FinishInstruction;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.details.PathDetail;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.Collections;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -79,4 +91,33 @@ public class WebHelperTest {
     public void testEncode1e6() throws Exception {
         assertEquals("ohdfzAgt}bVoEL", WebHelper.encodePolyline(Helper.createPointList(47.827608, 12.123476, 47.827712, 12.123469), false, 1e6));
     }
+
+    @Test
+    public void testWriteJsonLikeJsonObject() throws Exception {
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        GHResponse rsp = new GHResponse();
+        ResponsePath path = new ResponsePath();
+        path.setPoints(Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234));
+        path.setWaypoints(Helper.createPointList3D(38.5, -120.2, 10, 43.252, -126.453, 1234));
+        path.setDistance(1234.5678).setTime(60_000).setRouteWeight(12.3456789);
+        InstructionList instructions = new InstructionList(null);
+        FinishInstruction finish = new FinishInstruction("Main Street", 43.252, -126.453, 1234);
+        finish.setUseRawName();
+        instructions.add(finish);
+        path.setInstructions(instructions);
+        path.addPathDetails(Collections.singletonMap("street_name", Collections.singletonList(new PathDetail("Main Street"))));
+        rsp.add(path);
+        rsp.getHints().putObject("visited_nodes.sum", 42);
+
+        for (boolean pointsEncoded : new boolean[]{true, false}) {
+            for (boolean enableElevation : new boolean[]{true, false}) {
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                    WebHelper.writeJson(generator, rsp, true, true, enableElevation, pointsEncoded, 7);
+                }
+                JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, true, true, enableElevation, pointsEncoded, 7)));
+                assertEquals(expected, objectMapper.readTree(writer.toString()));
+            }
+        }
+    }
 }
@@ -19,6 +19,7 @@
 package com.graphhopper.http;
 
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.graphhopper.GraphHopper;
@@ -47,9 +48,38 @@ import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.ContainerRequestContext;
+import java.util.concurrent.ExecutorService;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
 
+    static class GraphHopperFactory implements Factory<GraphHopper> {
+
+        @Inject
+        GraphHopperManaged graphHopperManaged;
+
+        @Inject
+        Provider<ContainerRequestContext> requestContext;
+
+        @Override
+        public GraphHopper provide() {
+            // use the instance that was pinned when the request started, it might have been swapped in the meantime
+            GraphHopperManaged.Generation generation = (GraphHopperManaged.Generation) requestContext.get().getProperty(GraphHopperGenerationListener.GENERATION_PROPERTY);
+            if (generation != null)
+                return generation.getGraphHopper();
+            if (graphHopperManaged.isStopped())
+                throw new ServiceUnavailableException("GraphHopper is shutting down");
+            return graphHopperManaged.getGraphHopper();
+        }
+
+        @Override
+        public void dispose(GraphHopper instance) {
+
+        }
+    }
+
     static class TranslationMapFactory implements Factory<TranslationMap> {
 
         @Inject
@@ -234,13 +264,19 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
 
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration.getGraphHopperConfiguration(), environment.getObjectMapper());
         environment.lifecycle().manage(graphHopperManaged);
+        environment.jersey().register(new GraphHopperGenerationListener(graphHopperManaged));
+        environment.admin().addTask(new GraphHopperReloadTask(graphHopperManaged));
         final GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        final RequestExecutors requestExecutors = new RequestExecutors(configuration.getRequestExecutors());
+        environment.lifecycle().manage(requestExecutors);
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration.getGraphHopperConfiguration()).to(GraphHopperConfig.class);
-                bind(graphHopper).to(GraphHopper.class);
-                bind(graphHopper).to(GraphHopperAPI.class);
+                bind(environment.getObjectMapper()).to(ObjectMapper.class);
+                bind(graphHopperManaged).to(GraphHopperManaged.class);
+                bind(requestExecutors).to(RequestExecutors.class);
+                bindFactory(GraphHopperFactory.class).to(GraphHopper.class).to(GraphHopperAPI.class);
 
                 bind(new JTSTriangulator(graphHopper.getRouterConfig())).to(Triangulator.class);
                 bindFactory(PathDetailsBuilderFactoryFactory.class).to(PathDetailsBuilderFactory.class);
@@ -266,6 +302,8 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
             environment.jersey().register(new AbstractBinder() {
                 @Override
                 protected void configure() {
+                    bind((GraphHopperGtfs) graphHopper).to(GraphHopperGtfs.class);
+                    bind(((GraphHopperGtfs) graphHopper).getProfileBucketExecutor()).named("profileBuckets").to(ExecutorService.class);
                     bind(PtRouterImpl.class).to(PtRouter.class);
                 }
             });
@@ -276,6 +314,6 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         environment.jersey().register(SPTResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
-        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopper));
+        environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged));
     }
 }
@@ -20,8 +20,19 @@ package com.graphhopper.http;
 
 import com.graphhopper.GraphHopperConfig;
 
+import java.util.Collections;
+import java.util.Map;
+
 public interface GraphHopperBundleConfiguration {
 
     GraphHopperConfig getGraphHopperConfiguration();
 
+    /**
+     * The executors of the endpoints route, route_flexible (routes with ch.disable=true and custom routes, route is
+     * used if missing), isochrone, spt and route_pt. Requests for endpoints without executor run on the request threads.
+     */
+    default Map<String, RequestExecutorConfiguration> getRequestExecutors() {
+        return Collections.emptyMap();
+    }
+
 }
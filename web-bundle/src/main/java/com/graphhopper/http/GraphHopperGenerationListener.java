@@ -0,0 +1,62 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Pins the GraphHopper instance that is current when a request starts for the whole duration of this request.
+ * This way the instance cannot be closed by {@link GraphHopperManaged#reload(String)} while the request is
+ * still running on it.
+ */
+public class GraphHopperGenerationListener implements ApplicationEventListener {
+
+    static final String GENERATION_PROPERTY = GraphHopperManaged.Generation.class.getName();
+
+    private final GraphHopperManaged graphHopperManaged;
+
+    public GraphHopperGenerationListener(GraphHopperManaged graphHopperManaged) {
+        this.graphHopperManaged = graphHopperManaged;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return new RequestEventListener() {
+            private GraphHopperManaged.Generation generation;
+
+            @Override
+            public void onEvent(RequestEvent event) {
+                if (event.getType() == RequestEvent.Type.START) {
+                    generation = graphHopperManaged.acquire();
+                    event.getContainerRequest().setProperty(GENERATION_PROPERTY, generation);
+                } else if (event.getType() == RequestEvent.Type.FINISHED && generation != null) {
+                    generation.release();
+                    generation = null;
+                }
+            }
+        };
+    }
+
+}
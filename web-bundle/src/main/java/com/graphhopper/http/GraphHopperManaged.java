@@ -21,6 +21,7 @@ package com.graphhopper.http;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.Profile;
@@ -34,7 +35,9 @@ import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupHelper;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
 import com.graphhopper.routing.weighting.custom.CustomWeighting;
 import com.graphhopper.util.Parameters;
+import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
 import io.dropwizard.lifecycle.Managed;
 import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
@@ -48,13 +51,30 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.graphhopper.util.Helper.UTF_CS;
 
 public class GraphHopperManaged implements Managed {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final GraphHopper graphHopper;
+    private final GraphHopperConfig configuration;
+    private final JsonFeatureCollection landmarkSplittingFeatureCollection;
+    private final List<JsonFeatureCollection> spatialRuleFeatureCollections;
+    private final Envelope spatialRuleMaxBounds;
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "graphhopper-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public GraphHopperManaged(GraphHopperConfig configuration, ObjectMapper objectMapper) {
         ObjectMapper localObjectMapper = objectMapper.copy();
@@ -67,11 +87,7 @@ public class GraphHopperManaged implements Managed {
             logger.error("Problem while reading border map GeoJSON. Skipping this.", e1);
             landmarkSplittingFeatureCollection = null;
         }
-        if (configuration.has("gtfs.file")) {
-            graphHopper = new GraphHopperGtfs(configuration);
-        } else {
-            graphHopper = new GraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
-        }
+        this.landmarkSplittingFeatureCollection = landmarkSplittingFeatureCollection;
         if (!configuration.getString("spatial_rules.location", "").isEmpty()) {
             throw new RuntimeException("spatial_rules.location has been deprecated. Please use spatial_rules.borders_directory instead.");
         }
@@ -90,8 +106,11 @@ public class GraphHopperManaged implements Managed {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-            SpatialRuleLookupHelper.buildAndInjectCountrySpatialRules(graphHopper,
-                    new Envelope(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat), jsonFeatureCollections);
+            spatialRuleFeatureCollections = jsonFeatureCollections;
+            spatialRuleMaxBounds = new Envelope(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
+        } else {
+            spatialRuleFeatureCollections = null;
+            spatialRuleMaxBounds = null;
         }
 
         ObjectMapper yamlOM = Jackson.initObjectMapper(new ObjectMapper(new YAMLFactory()));
@@ -116,12 +135,29 @@ public class GraphHopperManaged implements Managed {
                 }
         }
         configuration.setProfiles(newProfiles);
+        this.configuration = configuration;
+
+        current.set(new Generation(createGraphHopper(configuration)));
+    }
+
+    private GraphHopper createGraphHopper(GraphHopperConfig configuration) {
+        GraphHopper graphHopper;
+        if (configuration.has("gtfs.file")) {
+            graphHopper = new GraphHopperGtfs(configuration);
+        } else {
+            graphHopper = new GraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
+        }
+        if (spatialRuleFeatureCollections != null)
+            SpatialRuleLookupHelper.buildAndInjectCountrySpatialRules(graphHopper, spatialRuleMaxBounds, spatialRuleFeatureCollections,
+                    configuration.getInt("spatial_rules.grid_cells_per_degree", 0));
 
         graphHopper.init(configuration);
+        return graphHopper;
     }
 
     @Override
     public void start() {
+        GraphHopper graphHopper = getGraphHopper();
         graphHopper.importOrLoad();
         logger.info("loaded graph at:{}, data_reader_file:{}, encoded values:{}, {}",
                 graphHopper.getGraphHopperLocation(), graphHopper.getDataReaderFile(),
@@ -129,14 +165,166 @@ public class GraphHopperManaged implements Managed {
                 graphHopper.getGraphHopperStorage().toDetailsString());
     }
 
+    /**
+     * @return the GraphHopper instance that currently serves requests. This instance can be replaced via
+     * {@link #reload(String)} at any time, so code that keeps using it beyond a single call should
+     * {@link #acquire()} it instead.
+     */
     public GraphHopper getGraphHopper() {
-        return graphHopper;
+        Generation generation = current.get();
+        if (generation == null)
+            throw new IllegalStateException("GraphHopper was already stopped");
+        return generation.graphHopper;
+    }
+
+    /**
+     * @return true after {@link #stop()} was called, then no GraphHopper instance is available anymore
+     */
+    public boolean isStopped() {
+        return current.get() == null;
+    }
+
+    /**
+     * Returns the current generation and makes sure it won't be closed until {@link Generation#release()} is called.
+     *
+     * @return the current generation or null if this instance was already stopped
+     */
+    public Generation acquire() {
+        while (true) {
+            Generation generation = current.get();
+            if (generation == null)
+                return null;
+            if (generation.tryRetain())
+                return generation;
+            // the generation was swapped out and closed in the meantime, try again with the new one
+        }
+    }
+
+    /**
+     * Loads the already imported graph in the specified folder in the background, warms it up and then
+     * atomically replaces the current GraphHopper instance. Requests that are still running on the old
+     * instance finish normally, afterwards the old instance is closed to release its memory and mapped files.
+     *
+     * @return a future that completes with the new instance once it serves requests
+     */
+    public CompletableFuture<GraphHopper> reload(String graphLocation) {
+        if (configuration.has("gtfs.file"))
+            throw new IllegalStateException("Reloading the graph is not supported for public transit");
+        if (!reloading.compareAndSet(false, true))
+            throw new IllegalStateException("Another reload is already in progress");
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return swap(graphLocation);
+                } finally {
+                    reloading.set(false);
+                }
+            }, reloadExecutor);
+        } catch (RuntimeException ex) {
+            reloading.set(false);
+            throw ex;
+        }
+    }
+
+    private GraphHopper swap(String graphLocation) {
+        StopWatch sw = new StopWatch().start();
+        GraphHopperConfig newConfiguration = new GraphHopperConfig(configuration);
+        newConfiguration.putObject("graph.location", graphLocation);
+        GraphHopper newGraphHopper = createGraphHopper(newConfiguration);
+        try {
+            if (!newGraphHopper.load(graphLocation))
+                throw new IllegalArgumentException("Cannot load graph from " + graphLocation + ", import it first");
+            warmUp(newGraphHopper, configuration.getInt("graph.reload.warmup_queries", 100));
+        } catch (RuntimeException ex) {
+            newGraphHopper.close();
+            throw ex;
+        }
+
+        Generation newGeneration = new Generation(newGraphHopper);
+        Generation old;
+        do {
+            old = current.get();
+            if (old == null) {
+                newGraphHopper.close();
+                throw new IllegalStateException("GraphHopper was stopped while reloading " + graphLocation);
+            }
+        } while (!current.compareAndSet(old, newGeneration));
+        logger.info("swapped graph from {} to {}, took: {}s, {}", old.graphHopper.getGraphHopperLocation(),
+                graphLocation, sw.stop().getSeconds(), newGraphHopper.getGraphHopperStorage().toDetailsString());
+        // drop the reference held by 'current', the last running request on the old instance will close it
+        old.release();
+        return newGraphHopper;
+    }
+
+    /**
+     * Runs some random queries for every profile so that the mapped files are read and the JIT has seen
+     * the new instance before it gets real traffic.
+     */
+    private void warmUp(GraphHopper graphHopper, int queries) {
+        BBox bounds = graphHopper.getGraphHopperStorage().getBounds();
+        if (queries <= 0 || !bounds.isValid())
+            return;
+
+        StopWatch sw = new StopWatch().start();
+        Random rand = new Random(0);
+        int errors = 0;
+        for (Profile profile : graphHopper.getProfiles()) {
+            for (int i = 0; i < queries; i++) {
+                GHRequest request = new GHRequest(
+                        new GHPoint(bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat), bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon)),
+                        new GHPoint(bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat), bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon))).
+                        setProfile(profile.getName());
+                try {
+                    if (graphHopper.route(request).hasErrors())
+                        errors++;
+                } catch (RuntimeException ex) {
+                    errors++;
+                }
+            }
+        }
+        logger.info("warmed up {} with {} queries per profile, errors: {}, took: {}s", graphHopper.getGraphHopperLocation(),
+                queries, errors, sw.stop().getSeconds());
     }
 
     @Override
     public void stop() {
-        graphHopper.close();
+        reloadExecutor.shutdownNow();
+        // new requests won't get an instance anymore, the last running request closes the current one
+        Generation generation = current.getAndSet(null);
+        if (generation != null)
+            generation.release();
     }
 
+    /**
+     * A GraphHopper instance together with the number of its users. The instance is closed as soon as it is
+     * neither the current instance anymore nor used by any request.
+     */
+    public static final class Generation {
+        private final GraphHopper graphHopper;
+        // starts with the reference of GraphHopperManaged.current
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Generation(GraphHopper graphHopper) {
+            this.graphHopper = graphHopper;
+        }
 
+        private boolean tryRetain() {
+            while (true) {
+                int count = references.get();
+                if (count <= 0)
+                    return false;
+                if (references.compareAndSet(count, count + 1))
+                    return true;
+            }
+        }
+
+        public GraphHopper getGraphHopper() {
+            return graphHopper;
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0)
+                graphHopper.close();
+        }
+    }
 }
@@ -74,12 +74,13 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 .refreshAfterWrite(1, TimeUnit.MINUTES)
                 .build(new CacheLoader<String, RealtimeFeed>() {
                     public RealtimeFeed load(String key) {
-                        return fetchFeedsAndCreateGraph();
+                        return RealtimeFeed.empty(gtfsStorage).update(graphHopperStorage, transfers, fetchFeeds());
                     }
 
                     @Override
                     public ListenableFuture<RealtimeFeed> reload(String key, RealtimeFeed oldValue) {
-                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> fetchFeedsAndCreateGraph());
+                        // Only the new messages are applied to the current snapshot, requests keep using the old one meanwhile
+                        ListenableFutureTask<RealtimeFeed> task = ListenableFutureTask.create(() -> oldValue.update(graphHopperStorage, transfers, fetchFeeds()));
                         executor.execute(task);
                         return task;
                     }
@@ -105,7 +106,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
     public void stop() {
     }
 
-    private RealtimeFeed fetchFeedsAndCreateGraph() {
+    private Map<String, GtfsRealtime.FeedMessage> fetchFeeds() {
         Map<String, GtfsRealtime.FeedMessage> feedMessageMap = new HashMap<>();
         for (FeedConfiguration configuration : bundleConfiguration.gtfsrealtime().getFeeds()) {
             try {
@@ -115,7 +116,7 @@ public class RealtimeFeedLoadingCache implements Factory<RealtimeFeed>, Managed
                 throw new RuntimeException(e);
             }
         }
-        return RealtimeFeed.fromProtobuf(graphHopperStorage, gtfsStorage, this.transfers, feedMessageMap);
+        return feedMessageMap;
     }
 
 }
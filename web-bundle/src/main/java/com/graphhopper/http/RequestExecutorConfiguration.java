@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits for the requests of one endpoint: at most 'threads' requests are calculated at the same time and at most
+ * 'queue_size' further requests wait for a thread. All other requests are rejected with 503. Profiles can have their
+ * own executor, e.g. to keep a slow profile from delaying the requests of the others.
+ */
+public class RequestExecutorConfiguration {
+
+    @Min(1)
+    @JsonProperty
+    private int threads = 1;
+
+    @Min(0)
+    @JsonProperty
+    private int queueSize = 0;
+
+    @Valid
+    @JsonProperty
+    private Map<String, RequestExecutorConfiguration> profiles = new HashMap<>();
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public RequestExecutorConfiguration setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public RequestExecutorConfiguration setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    public Map<String, RequestExecutorConfiguration> getProfiles() {
+        return profiles;
+    }
+}
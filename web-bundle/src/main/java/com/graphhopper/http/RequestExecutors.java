@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.graphhopper.http.api.JsonErrorEntity;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the requests of the expensive endpoints on bounded executors, one per endpoint and optionally per profile, see
+ * {@link RequestExecutorConfiguration}. This way a burst of e.g. isochrone or flexible route requests occupies only
+ * their own threads and cannot starve the other endpoints. If the threads and the queue of an executor are full a
+ * request fails fast with 503 instead of waiting. Requests for endpoints without an executor run directly on the
+ * request thread.
+ */
+public class RequestExecutors implements Managed {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutors.class);
+
+    private final Map<String, ThreadPoolExecutor> executors = new HashMap<>();
+
+    public RequestExecutors(Map<String, RequestExecutorConfiguration> configuration) {
+        for (Map.Entry<String, RequestExecutorConfiguration> endpoint : configuration.entrySet()) {
+            executors.put(endpoint.getKey(), createExecutor(endpoint.getKey(), endpoint.getValue()));
+            for (Map.Entry<String, RequestExecutorConfiguration> profile : endpoint.getValue().getProfiles().entrySet()) {
+                String key = key(endpoint.getKey(), profile.getKey());
+                executors.put(key, createExecutor(key, profile.getValue()));
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(String name, RequestExecutorConfiguration configuration) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(runnable, "gh-" + name + "-" + counter.incrementAndGet());
+        // without a queue a request is only accepted if a thread is free
+        BlockingQueue<Runnable> queue = configuration.getQueueSize() > 0 ? new ArrayBlockingQueue<>(configuration.getQueueSize()) : new SynchronousQueue<>();
+        return new ThreadPoolExecutor(configuration.getThreads(), configuration.getThreads(), 0, TimeUnit.MILLISECONDS, queue, threadFactory);
+    }
+
+    private static String key(String endpoint, String profile) {
+        return endpoint + "/" + profile;
+    }
+
+    public boolean has(String endpoint) {
+        return executors.containsKey(endpoint);
+    }
+
+    /**
+     * Calculates the response on the executor of the profile or of the endpoint and resumes the suspended request
+     * with it, or with the exception thrown by the task. The task must not use request scoped objects. The profile can
+     * be null for endpoints without profiles.
+     */
+    public void execute(AsyncResponse asyncResponse, String endpoint, String profile, Supplier<?> task) {
+        ThreadPoolExecutor executor = profile == null ? null : executors.get(key(endpoint, profile));
+        if (executor == null)
+            executor = executors.get(endpoint);
+        if (executor == null) {
+            run(asyncResponse, task);
+            return;
+        }
+        try {
+            executor.execute(() -> run(asyncResponse, task));
+        } catch (RejectedExecutionException ex) {
+            logger.warn("rejected request for " + endpoint + ", profile: " + profile + ", active: " + executor.getActiveCount() + ", queued: " + executor.getQueue().size());
+            asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).
+                    header("Retry-After", "1").
+                    type(MediaType.APPLICATION_JSON).
+                    entity(new JsonErrorEntity(Collections.singletonList("Too many requests for " + endpoint + ", please try again later"))).
+                    build());
+        }
+    }
+
+    private static void run(AsyncResponse asyncResponse, Supplier<?> task) {
+        try {
+            asyncResponse.resume(task.get());
+        } catch (Throwable t) {
+            // the exception mappers create the error response
+            asyncResponse.resume(t);
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a route response as JSON straight to the response stream, see {@link WebHelper#writeJson}. Compared to
+ * returning the tree from {@link WebHelper#jsonObject} this avoids building the tree and the encoded polylines as
+ * Strings, which matters for long routes with many path details.
+ */
+public class RouteJsonOutput implements StreamingOutput {
+
+    private final ObjectMapper objectMapper;
+    private final GHResponse ghResponse;
+    private final boolean enableInstructions;
+    private final boolean calcPoints;
+    private final boolean enableElevation;
+    private final boolean pointsEncoded;
+    private final float took;
+
+    public RouteJsonOutput(ObjectMapper objectMapper, GHResponse ghResponse, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) {
+        this.objectMapper = objectMapper;
+        this.ghResponse = ghResponse;
+        this.enableInstructions = enableInstructions;
+        this.calcPoints = calcPoints;
+        this.enableElevation = enableElevation;
+        this.pointsEncoded = pointsEncoded;
+        this.took = took;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            // the container closes the stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            WebHelper.writeJson(generator, ghResponse, enableInstructions, calcPoints, enableElevation, pointsEncoded, took);
+        }
+    }
+}
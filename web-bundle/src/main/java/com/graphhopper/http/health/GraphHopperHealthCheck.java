@@ -19,20 +19,21 @@
 package com.graphhopper.http.health;
 
 import com.codahale.metrics.health.HealthCheck;
-import com.graphhopper.GraphHopper;
-import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.http.GraphHopperManaged;
 
 public class GraphHopperHealthCheck extends HealthCheck {
 
-    private final GraphHopper graphHopper;
+    private final GraphHopperManaged graphHopperManaged;
 
-    public GraphHopperHealthCheck(GraphHopper graphHopper) {
-        this.graphHopper = graphHopper;
+    public GraphHopperHealthCheck(GraphHopperManaged graphHopperManaged) {
+        this.graphHopperManaged = graphHopperManaged;
     }
 
     @Override
     protected Result check() {
-        boolean valid = graphHopper.getGraphHopperStorage().getBounds().isValid();
+        if (graphHopperManaged.isStopped())
+            return Result.unhealthy("GraphHopper was stopped.");
+        boolean valid = graphHopperManaged.getGraphHopper().getGraphHopperStorage().getBounds().isValid();
         if (valid) {
             return Result.healthy();
         } else {
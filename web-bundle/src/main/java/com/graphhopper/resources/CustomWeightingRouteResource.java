@@ -17,11 +17,13 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.MultiException;
 import com.graphhopper.config.Profile;
-import com.graphhopper.http.WebHelper;
+import com.graphhopper.http.RequestExecutors;
+import com.graphhopper.http.RouteJsonOutput;
 import com.graphhopper.jackson.CustomRequest;
 import com.graphhopper.routing.util.CustomModel;
 import com.graphhopper.routing.weighting.custom.CustomProfile;
@@ -38,6 +40,8 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -59,16 +63,20 @@ public class CustomWeightingRouteResource {
     private static final Logger logger = LoggerFactory.getLogger(CustomWeightingRouteResource.class);
 
     private final GraphHopper graphHopper;
+    private final ObjectMapper objectMapper;
+    private final RequestExecutors requestExecutors;
 
     @Inject
-    public CustomWeightingRouteResource(GraphHopper graphHopper) {
+    public CustomWeightingRouteResource(GraphHopper graphHopper, ObjectMapper objectMapper, RequestExecutors requestExecutors) {
         this.graphHopper = graphHopper;
+        this.objectMapper = objectMapper;
+        this.requestExecutors = requestExecutors;
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull CustomRequest request, @Context HttpServletRequest httpReq) {
+    public void doPost(@Suspended AsyncResponse asyncResponse, @NotNull CustomRequest request, @Context HttpServletRequest httpReq) {
         StopWatch sw = new StopWatch().start();
         CustomModel model = request.getModel();
         if (model == null)
@@ -88,33 +96,39 @@ public class CustomWeightingRouteResource {
 
         request.putHint(Parameters.CH.DISABLE, true);
         request.putHint(CustomModel.KEY, model);
-        GHResponse ghResponse = graphHopper.route(request);
-
         boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
         boolean enableElevation = request.getHints().getBool("elevation", false);
         boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
         boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
 
-        long took = sw.stop().getNanos() / 1_000_000;
+        // the request scoped objects are not available on the executor thread
         String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
         String queryString = httpReq.getQueryString() == null ? "" : (httpReq.getQueryString() + " ");
-        String logStr = queryString + infoStr + " " + request.getPoints().size() + ", took: "
-                + String.format("%.1f", (double) took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
-                + ", custom_model=" + model;
+        // custom requests are always flexible
+        String executorName = requestExecutors.has("route_flexible") ? "route_flexible" : "route";
+        requestExecutors.execute(asyncResponse, executorName, request.getProfile(), () -> {
+            GHResponse ghResponse = graphHopper.route(request);
+
+            long took = sw.stop().getNanos() / 1_000_000;
+            String logStr = queryString + infoStr + " " + request.getPoints().size() + ", took: "
+                    + String.format("%.1f", (double) took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
+                    + ", custom_model=" + model;
 
-        if (ghResponse.hasErrors()) {
-            logger.error(logStr + ", errors:" + ghResponse.getErrors());
-            throw new MultiException(ghResponse.getErrors());
-        } else {
-            logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
-                    + ", distance0: " + ghResponse.getBest().getDistance()
-                    + ", weight0: " + ghResponse.getBest().getRouteWeight()
-                    + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
-                    + ", points0: " + ghResponse.getBest().getPoints().getSize()
-                    + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
-                    header("X-GH-Took", "" + Math.round(took)).
-                    build();
-        }
+            if (ghResponse.hasErrors()) {
+                logger.error(logStr + ", errors:" + ghResponse.getErrors());
+                throw new MultiException(ghResponse.getErrors());
+            } else {
+                logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                        + ", distance0: " + ghResponse.getBest().getDistance()
+                        + ", weight0: " + ghResponse.getBest().getRouteWeight()
+                        + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                        + ", points0: " + ghResponse.getBest().getPoints().getSize()
+                        + ", debugInfo: " + ghResponse.getDebugInfo());
+                return Response.ok(new RouteJsonOutput(objectMapper, ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
+                        header("X-GH-Took", "" + Math.round(took)).
+                        type(MediaType.APPLICATION_JSON).
+                        build();
+            }
+        });
     }
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
+import com.graphhopper.http.ProtobufResponse;
+import com.graphhopper.http.RequestExecutors;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.isochrone.algorithm.ContourBuilder;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
@@ -33,9 +35,13 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -57,22 +63,26 @@ public class IsochroneResource {
     private final Triangulator triangulator;
     private final ProfileResolver profileResolver;
     private final EncodingManager encodingManager;
+    private final RequestExecutors requestExecutors;
     private final GeometryFactory geometryFactory = new GeometryFactory();
 
     @Inject
-    public IsochroneResource(GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver, EncodingManager encodingManager) {
+    public IsochroneResource(GraphHopper graphHopper, Triangulator triangulator, ProfileResolver profileResolver, EncodingManager encodingManager, RequestExecutors requestExecutors) {
         this.graphHopper = graphHopper;
         this.triangulator = triangulator;
         this.profileResolver = profileResolver;
         this.encodingManager = encodingManager;
+        this.requestExecutors = requestExecutors;
     }
 
     public enum ResponseType {json, geojson}
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response doGet(
+    @Produces({MediaType.APPLICATION_JSON, ProtobufResponse.MEDIA_TYPE})
+    public void doGet(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
             @QueryParam("profile") String profileName,
             @QueryParam("buckets") @Range(min = 1, max = 20) @DefaultValue("1") IntParam nBuckets,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
@@ -113,76 +123,89 @@ public class IsochroneResource {
             weighting = new BlockAreaWeighting(weighting, GraphEdgeIdFinder.createBlockArea(graph, locationIndex,
                     Collections.singletonList(point.get()), hintsMap, DefaultEdgeFilter.allEdges(encoder)));
         TraversalMode traversalMode = profile.isTurnCosts() ? EDGE_BASED : NODE_BASED;
-        ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, weighting, reverseFlow, traversalMode);
-
-        double limit;
-        if (weightLimit.get() > 0) {
-            limit = weightLimit.get();
-            shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 2_000));
-        } else if (distanceLimitInMeter.get() > 0) {
-            limit = distanceLimitInMeter.get();
-            shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
-        } else {
-            limit = timeLimitInSeconds.get() * 1000;
-            shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
-        }
-        ArrayList<Double> zs = new ArrayList<>();
-        double delta = limit / nBuckets.get();
-        for (int i = 0; i < nBuckets.get(); i++) {
-            zs.add((i + 1) * delta);
-        }
-
-        ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
-        if (weightLimit.get() > 0) {
-            fz = l -> l.weight;
-        } else if (distanceLimitInMeter.get() > 0) {
-            fz = l -> l.distance;
-        } else {
-            fz = l -> l.time;
-        }
-
-        Triangulator.Result result = triangulator.triangulate(qr, queryGraph, shortestPathTree, fz);
+        Weighting finalWeighting = weighting;
+        boolean protobuf = RouteResource.prefersProtobuf(headers);
+        requestExecutors.execute(asyncResponse, "isochrone", profile.getName(), () -> {
+            ShortestPathTree shortestPathTree = new ShortestPathTree(queryGraph, finalWeighting, reverseFlow, traversalMode);
+
+            double limit;
+            if (weightLimit.get() > 0) {
+                limit = weightLimit.get();
+                shortestPathTree.setWeightLimit(limit + Math.max(limit * 0.14, 2_000));
+            } else if (distanceLimitInMeter.get() > 0) {
+                limit = distanceLimitInMeter.get();
+                shortestPathTree.setDistanceLimit(limit + Math.max(limit * 0.14, 2_000));
+            } else {
+                limit = timeLimitInSeconds.get() * 1000;
+                shortestPathTree.setTimeLimit(limit + Math.max(limit * 0.14, 200_000));
+            }
+            ArrayList<Double> zs = new ArrayList<>();
+            double delta = limit / nBuckets.get();
+            for (int i = 0; i < nBuckets.get(); i++) {
+                zs.add((i + 1) * delta);
+            }
 
-        ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
-        ArrayList<Geometry> isochrones = new ArrayList<>();
-        for (Double z : zs) {
-            logger.info("Building contour z={}", z);
-            MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
-            if (fullGeometry) {
-                isochrones.add(isochrone);
+            ToDoubleFunction<ShortestPathTree.IsoLabel> fz;
+            if (weightLimit.get() > 0) {
+                fz = l -> l.weight;
+            } else if (distanceLimitInMeter.get() > 0) {
+                fz = l -> l.distance;
             } else {
-                Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, geometryFactory.createPoint(new Coordinate(point.get().lon, point.get().lat)));
-                isochrones.add(geometryFactory.createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                fz = l -> l.time;
             }
-        }
-        ArrayList<JsonFeature> features = new ArrayList<>();
-        for (Geometry isochrone : isochrones) {
-            JsonFeature feature = new JsonFeature();
-            HashMap<String, Object> properties = new HashMap<>();
-            properties.put("bucket", features.size());
+
+            Triangulator.Result result = triangulator.triangulate(qr, queryGraph, shortestPathTree, fz);
+
+            ContourBuilder contourBuilder = new ContourBuilder(result.triangulation);
+            ArrayList<Geometry> isochrones = new ArrayList<>();
+            for (Double z : zs) {
+                logger.info("Building contour z={}", z);
+                MultiPolygon isochrone = contourBuilder.computeIsoline(z, result.seedEdges);
+                if (fullGeometry) {
+                    isochrones.add(isochrone);
+                } else {
+                    Polygon maxPolygon = heuristicallyFindMainConnectedComponent(isochrone, geometryFactory.createPoint(new Coordinate(point.get().lon, point.get().lat)));
+                    isochrones.add(geometryFactory.createPolygon(((LinearRing) maxPolygon.getExteriorRing())));
+                }
+            }
+            if (protobuf) {
+                sw.stop();
+                logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
+                float took = sw.getMillis();
+                return Response.ok((StreamingOutput) output -> ProtobufResponse.writeIsochrones(output, isochrones, took)).
+                        header("X-GH-Took", "" + sw.getSeconds() * 1000).
+                        type(ProtobufResponse.MEDIA_TYPE).
+                        build();
+            }
+            ArrayList<JsonFeature> features = new ArrayList<>();
+            for (Geometry isochrone : isochrones) {
+                JsonFeature feature = new JsonFeature();
+                HashMap<String, Object> properties = new HashMap<>();
+                properties.put("bucket", features.size());
+                if (respType == geojson) {
+                    properties.put("copyrights", WebHelper.COPYRIGHTS);
+                }
+                feature.setProperties(properties);
+                feature.setGeometry(isochrone);
+                features.add(feature);
+            }
+            ObjectNode json = JsonNodeFactory.instance.objectNode();
+
+            ObjectNode finalJson = null;
             if (respType == geojson) {
-                properties.put("copyrights", WebHelper.COPYRIGHTS);
+                json.put("type", "FeatureCollection");
+                json.putPOJO("features", features);
+                finalJson = json;
+            } else {
+                json.putPOJO("polygons", features);
+                finalJson = WebHelper.jsonResponsePutInfo(json, sw.getMillis());
             }
-            feature.setProperties(properties);
-            feature.setGeometry(isochrone);
-            features.add(feature);
-        }
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-
-        ObjectNode finalJson = null;
-        if (respType == geojson) {
-            json.put("type", "FeatureCollection");
-            json.putPOJO("features", features);
-            finalJson = json;
-        } else {
-            json.putPOJO("polygons", features);
-            finalJson = WebHelper.jsonResponsePutInfo(json, sw.getMillis());
-        }
 
-        sw.stop();
-        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
-        return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
-                build();
+            sw.stop();
+            logger.info("took: " + sw.getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes());
+            return Response.ok(finalJson).header("X-GH-Took", "" + sw.getSeconds() * 1000).
+                    build();
+        });
     }
 
     private Polygon heuristicallyFindMainConnectedComponent(MultiPolygon multiPolygon, Point point) {
@@ -92,6 +92,7 @@ public class MVTResource {
         // otherwise the decoding won't be successful and "undefined":"undefined" instead of "speed": 30 is the result
         final MvtLayerProps layerProps = new MvtLayerProps();
         final VectorTile.Tile.Layer.Builder layerBuilder = MvtLayerBuild.newLayerBuilder("roads", layerParams);
+        final PointList pl = new PointList(10, false);
 
         locationIndex.query(bbox, new LocationIndexTree.EdgeVisitor(edgeExplorer) {
             @Override
@@ -99,7 +100,8 @@ public class MVTResource {
                 LineString lineString;
                 RoadClass rc = edge.get(roadClassEnc);
                 if (zInfo >= 14) {
-                    PointList pl = edge.fetchWayGeometry(FetchMode.ALL);
+                    pl.clear();
+                    edge.fetchWayGeometry(FetchMode.ALL, pl);
                     lineString = pl.toLineString(false);
                 } else if (rc == RoadClass.MOTORWAY
                         || zInfo > 10 && (rc == RoadClass.PRIMARY || rc == RoadClass.TRUNK)
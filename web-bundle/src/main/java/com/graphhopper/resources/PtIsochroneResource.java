@@ -47,26 +47,27 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
 
 @Path("isochrone-pt")
 public class PtIsochroneResource {
 
     private static final double JTS_TOLERANCE = 0.00001;
+    private static final int MAX_BUCKETS = 20;
+    private static final int MAX_VISITED_NODES = 1_000_000;
 
     private GtfsStorage gtfsStorage;
     private EncodingManager encodingManager;
     private GraphHopperStorage graphHopperStorage;
     private LocationIndex locationIndex;
-
-    private final Function<Label, Double> z = label -> (double) label.currentTime;
+    private EarliestArrivalSearch.Pool searches;
 
     @Inject
-    public PtIsochroneResource(GtfsStorage gtfsStorage, EncodingManager encodingManager, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex) {
+    public PtIsochroneResource(GraphHopperGtfs graphHopper, GtfsStorage gtfsStorage, EncodingManager encodingManager, GraphHopperStorage graphHopperStorage, LocationIndex locationIndex) {
         this.gtfsStorage = gtfsStorage;
         this.encodingManager = encodingManager;
         this.graphHopperStorage = graphHopperStorage;
         this.locationIndex = locationIndex;
+        this.searches = graphHopper.getEarliestArrivalSearchPool();
     }
 
     public static class Response {
@@ -83,6 +84,7 @@ public class PtIsochroneResource {
     public Response doGet(
             @QueryParam("point") GHPoint source,
             @QueryParam("time_limit") @DefaultValue("600") long seconds,
+            @QueryParam("buckets") @DefaultValue("1") int nBuckets,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
             @QueryParam("pt.earliest_departure_time") String departureTimeString,
             @QueryParam("pt.blocked_route_types") @DefaultValue("0") int blockedRouteTypes,
@@ -93,8 +95,16 @@ public class PtIsochroneResource {
         } catch (Exception e) {
             throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for required parameter %s: [%s]", "pt.earliest_departure_time", departureTimeString));
         }
+        if (nBuckets < 1 || nBuckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT, "Illegal value for parameter %s: [%d], must be between 1 and %d", "buckets", nBuckets, MAX_BUCKETS));
+        }
 
-        double targetZ = initialTime.toEpochMilli() + seconds * 1000;
+        // z is the travel time in millis, in both directions, so that all buckets come out of one search
+        long limit = seconds * 1000;
+        double[] zs = new double[nBuckets];
+        for (int i = 0; i < nBuckets; i++) {
+            zs[i] = (double) limit * (i + 1) / nBuckets;
+        }
 
         GeometryFactory geometryFactory = new GeometryFactory();
         final EdgeFilter filter = DefaultEdgeFilter.allEdges(graphHopperStorage.getEncodingManager().getEncoder("foot"));
@@ -106,22 +116,32 @@ public class PtIsochroneResource {
 
         PtEncodedValues ptEncodedValues = PtEncodedValues.fromEncodingManager(encodingManager);
         GraphExplorer graphExplorer = new GraphExplorer(queryGraph, new FastestWeighting(encodingManager.getEncoder("foot")), ptEncodedValues, gtfsStorage, RealtimeFeed.empty(gtfsStorage), reverseFlow, false, 5.0, reverseFlow);
-        MultiCriteriaLabelSetting router = new MultiCriteriaLabelSetting(graphExplorer, ptEncodedValues, reverseFlow, false, false, false, 1000000, Collections.emptyList());
 
         Map<Coordinate, Double> z1 = new HashMap<>();
         NodeAccess nodeAccess = queryGraph.getNodeAccess();
 
-        MultiCriteriaLabelSetting.SPTVisitor sptVisitor = nodeLabel -> {
-            Coordinate nodeCoordinate = new Coordinate(nodeAccess.getLongitude(nodeLabel.adjNode), nodeAccess.getLatitude(nodeLabel.adjNode));
-            z1.merge(nodeCoordinate, this.z.apply(nodeLabel), Math::min);
+        EarliestArrivalSearch.NodeVisitor visitor = (node, time) -> {
+            Coordinate nodeCoordinate = new Coordinate(nodeAccess.getLongitude(node), nodeAccess.getLatitude(node));
+            z1.merge(nodeCoordinate, (double) Math.abs(time - initialTime.toEpochMilli()), Math::min);
         };
 
+        EarliestArrivalSearch search = searches.acquire();
+        try {
+            search.calcArrivalTimes(graphExplorer, queryGraph.getNodes(), reverseFlow, queryResult.getClosestNode(), initialTime, blockedRouteTypes, limit, MAX_VISITED_NODES, visitor);
+        } finally {
+            searches.release(search);
+        }
+
         if (format.equals("multipoint")) {
-            router.calcLabels(queryResult.getClosestNode(), initialTime, blockedRouteTypes, sptVisitor, label -> label.currentTime <= targetZ);
-            MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
+            List<Geometry> exploredPoints = new ArrayList<>();
+            for (double z : zs) {
+                exploredPoints.add(geometryFactory.createMultiPointFromCoords(z1.entrySet().stream()
+                        .filter(e -> e.getValue() <= z)
+                        .map(Map.Entry::getKey)
+                        .toArray(Coordinate[]::new)));
+            }
             return wrap(exploredPoints);
         } else {
-            router.calcLabels(queryResult.getClosestNode(), initialTime, blockedRouteTypes, sptVisitor, label -> label.currentTime <= targetZ);
             MultiPoint exploredPoints = geometryFactory.createMultiPointFromCoords(z1.keySet().toArray(new Coordinate[0]));
 
             // Get at least all nodes within our bounding box (I think convex hull would be enough.)
@@ -163,7 +183,10 @@ public class PtIsochroneResource {
 
             ReadableTriangulation triangulation = ReadableTriangulation.wrap(tin);
             ContourBuilder contourBuilder = new ContourBuilder(triangulation);
-            MultiPolygon isoline = contourBuilder.computeIsoline(targetZ, triangulation.getEdges());
+            List<Geometry> isolines = new ArrayList<>();
+            for (double z : zs) {
+                isolines.add(contourBuilder.computeIsoline(z, triangulation.getEdges()));
+            }
 
             // debugging tool
             if (format.equals("triangulation")) {
@@ -183,30 +206,34 @@ public class PtIsochroneResource {
                     feature.setProperties(properties);
                     response.polygons.add(feature);
                 }
-                JsonFeature feature = new JsonFeature();
-                feature.setGeometry(isoline);
-                HashMap<String, Object> properties = new HashMap<>();
-                properties.put("z", targetZ);
-                feature.setProperties(properties);
-                response.polygons.add(feature);
+                for (int i = 0; i < zs.length; i++) {
+                    JsonFeature feature = new JsonFeature();
+                    feature.setGeometry(isolines.get(i));
+                    HashMap<String, Object> properties = new HashMap<>();
+                    properties.put("z", zs[i]);
+                    properties.put("bucket", i);
+                    feature.setProperties(properties);
+                    response.polygons.add(feature);
+                }
                 response.info.copyrights.addAll(WebHelper.COPYRIGHTS);
                 return response;
             } else {
-                return wrap(isoline);
+                return wrap(isolines);
             }
         }
 
     }
 
-    private Response wrap(Geometry isoline) {
-        JsonFeature feature = new JsonFeature();
-        feature.setGeometry(isoline);
-        HashMap<String, Object> properties = new HashMap<>();
-        properties.put("bucket", 0);
-        feature.setProperties(properties);
-
+    private Response wrap(List<Geometry> isolines) {
         Response response = new Response();
-        response.polygons.add(feature);
+        for (Geometry isoline : isolines) {
+            JsonFeature feature = new JsonFeature();
+            feature.setGeometry(isoline);
+            HashMap<String, Object> properties = new HashMap<>();
+            properties.put("bucket", response.polygons.size());
+            feature.setProperties(properties);
+            response.polygons.add(feature);
+        }
         response.info.copyrights.addAll(WebHelper.COPYRIGHTS);
         return response;
     }
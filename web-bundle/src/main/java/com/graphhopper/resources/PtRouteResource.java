@@ -18,13 +18,14 @@
 
 package com.graphhopper.resources;
 
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.graphhopper.GHResponse;
 import com.graphhopper.gtfs.GHLocation;
+import com.graphhopper.gtfs.GraphHopperGtfs;
 import com.graphhopper.gtfs.PtRouter;
 import com.graphhopper.gtfs.Request;
 import com.graphhopper.http.DurationParam;
 import com.graphhopper.http.GHLocationParam;
+import com.graphhopper.http.RequestExecutors;
 import com.graphhopper.http.WebHelper;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.StopWatch;
@@ -35,6 +36,8 @@ import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import java.time.Instant;
 import java.util.List;
@@ -46,23 +49,30 @@ import static java.util.stream.Collectors.toList;
 public class PtRouteResource {
 
     private final PtRouter ptRouter;
+    private final RequestExecutors requestExecutors;
+    private final int maxProfileBuckets;
 
     @Inject
-    public PtRouteResource(PtRouter ptRouter) {
+    public PtRouteResource(PtRouter ptRouter, RequestExecutors requestExecutors, GraphHopperGtfs graphHopperGtfs) {
         this.ptRouter = ptRouter;
+        this.requestExecutors = requestExecutors;
+        this.maxProfileBuckets = graphHopperGtfs.getMaxProfileBuckets();
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public ObjectNode route(@QueryParam("point") @Size(min=2,max=2) List<GHLocationParam> requestPoints,
-                            @QueryParam("pt.earliest_departure_time") @NotNull InstantParam departureTimeParam,
-                            @QueryParam("pt.profile_duration") DurationParam profileDuration,
-                            @QueryParam("pt.arrive_by") @DefaultValue("false") boolean arriveBy,
-                            @QueryParam("locale") String localeStr,
-                            @QueryParam("pt.ignore_transfers") Boolean ignoreTransfers,
-                            @QueryParam("pt.profile") Boolean profileQuery,
-                            @QueryParam("pt.limit_solutions") Integer limitSolutions,
-                            @QueryParam("pt.limit_street_time") DurationParam limitStreetTime) {
+    public void route(@Suspended AsyncResponse asyncResponse,
+                      @QueryParam("point") @Size(min=2,max=2) List<GHLocationParam> requestPoints,
+                      @QueryParam("pt.earliest_departure_time") @NotNull InstantParam departureTimeParam,
+                      @QueryParam("pt.profile_duration") DurationParam profileDuration,
+                      @QueryParam("pt.arrive_by") @DefaultValue("false") boolean arriveBy,
+                      @QueryParam("locale") String localeStr,
+                      @QueryParam("pt.ignore_transfers") Boolean ignoreTransfers,
+                      @QueryParam("pt.profile") Boolean profileQuery,
+                      @QueryParam("pt.limit_solutions") Integer limitSolutions,
+                      @QueryParam("pt.limit_street_time") DurationParam limitStreetTime,
+                      @QueryParam("pt.raptor") @DefaultValue("false") boolean raptor,
+                      @QueryParam("pt.profile_buckets") @DefaultValue("1") int profileBuckets) {
         StopWatch stopWatch = new StopWatch().start();
         List<GHLocation> points = requestPoints.stream().map(AbstractParam::get).collect(toList());
         Instant departureTime = departureTimeParam.get();
@@ -75,9 +85,16 @@ public class PtRouteResource {
         Optional.ofNullable(localeStr).ifPresent(s -> request.setLocale(Helper.getLocale(s)));
         Optional.ofNullable(limitSolutions).ifPresent(request::setLimitSolutions);
         Optional.ofNullable(limitStreetTime.get()).ifPresent(request::setLimitStreetTime);
+        request.setRaptor(raptor);
+        // the buckets of all requests share one executor, so don't let a single request ask for more than it has threads
+        if (profileBuckets > maxProfileBuckets)
+            throw new IllegalArgumentException("pt.profile_buckets must not be greater than " + maxProfileBuckets + " but was " + profileBuckets);
+        request.setProfileBuckets(profileBuckets);
 
-        GHResponse route = ptRouter.route(request);
-        return WebHelper.jsonObject(route, true, true, false, false, stopWatch.stop().getMillis());
+        requestExecutors.execute(asyncResponse, "route_pt", null, () -> {
+            GHResponse route = ptRouter.route(request);
+            return WebHelper.jsonObject(route, true, true, false, false, stopWatch.stop().getMillis());
+        });
     }
 
 }
@@ -17,12 +17,15 @@
  */
 package com.graphhopper.resources;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.MultiException;
 import com.graphhopper.http.GHPointParam;
-import com.graphhopper.http.WebHelper;
+import com.graphhopper.http.ProtobufResponse;
+import com.graphhopper.http.RequestExecutors;
+import com.graphhopper.http.RouteJsonOutput;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.util.*;
 import com.graphhopper.util.gpx.GpxFromInstructions;
@@ -36,6 +39,8 @@ import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
 import java.util.List;
 import java.util.Map;
@@ -59,18 +64,24 @@ public class RouteResource {
     private final GraphHopperAPI graphHopper;
     private final ProfileResolver profileResolver;
     private final Boolean hasElevation;
+    private final ObjectMapper objectMapper;
+    private final RequestExecutors requestExecutors;
 
     @Inject
-    public RouteResource(GraphHopperAPI graphHopper, ProfileResolver profileResolver, @Named("hasElevation") Boolean hasElevation) {
+    public RouteResource(GraphHopperAPI graphHopper, ProfileResolver profileResolver, @Named("hasElevation") Boolean hasElevation, ObjectMapper objectMapper, RequestExecutors requestExecutors) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.hasElevation = hasElevation;
+        this.objectMapper = objectMapper;
+        this.requestExecutors = requestExecutors;
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml"})
-    public Response doGet(
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, "application/gpx+xml", ProtobufResponse.MEDIA_TYPE})
+    public void doGet(
+            @Suspended AsyncResponse asyncResponse,
             @Context HttpServletRequest httpReq,
+            @Context HttpHeaders headers,
             @Context UriInfo uriInfo,
             @QueryParam(WAY_POINT_MAX_DISTANCE) @DefaultValue("1") double minPathPrecision,
             @QueryParam(ELEVATION_WAY_POINT_MAX_DISTANCE) Double minPathElevationPrecision,
@@ -127,39 +138,50 @@ public class RouteResource {
             request.getHints().putObject(ELEVATION_WAY_POINT_MAX_DISTANCE, minPathElevationPrecision);
         }
 
-        GHResponse ghResponse = graphHopper.route(request);
+        // the request scoped objects are not available on the executor thread
+        String logPrefix = httpReq.getQueryString() + " " + httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        boolean protobuf = prefersProtobuf(headers);
+        boolean enableInstructions = instructions;
+        String profile = profileName;
+        requestExecutors.execute(asyncResponse, executorName(request), profile, () -> {
+            GHResponse ghResponse = graphHopper.route(request);
 
-        long took = sw.stop().getNanos() / 1_000_000;
-        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
-        String logStr = httpReq.getQueryString() + " " + infoStr + " " + points + ", took: "
-                + String.format("%.1f", (double) took) + "ms, algo: " + algoStr + ", profile: " + profileName + ", " + weightingVehicleLogStr;
+            long took = sw.stop().getNanos() / 1_000_000;
+            String logStr = logPrefix + " " + points + ", took: "
+                    + String.format("%.1f", (double) took) + "ms, algo: " + algoStr + ", profile: " + profile + ", " + weightingVehicleLogStr;
 
-        if (ghResponse.hasErrors()) {
-            logger.error(logStr + ", errors:" + ghResponse.getErrors());
-            throw new MultiException(ghResponse.getErrors());
-        } else {
-            logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
-                    + ", distance0: " + ghResponse.getBest().getDistance()
-                    + ", weight0: " + ghResponse.getBest().getRouteWeight()
-                    + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
-                    + ", points0: " + ghResponse.getBest().getPoints().getSize()
-                    + ", debugInfo: " + ghResponse.getDebugInfo());
-            return writeGPX ?
-                    gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
-                            header("X-GH-Took", "" + Math.round(took)).
-                            build()
-                    :
-                    Response.ok(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
+            if (ghResponse.hasErrors()) {
+                logger.error(logStr + ", errors:" + ghResponse.getErrors());
+                throw new MultiException(ghResponse.getErrors());
+            } else {
+                logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                        + ", distance0: " + ghResponse.getBest().getDistance()
+                        + ", weight0: " + ghResponse.getBest().getRouteWeight()
+                        + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                        + ", points0: " + ghResponse.getBest().getPoints().getSize()
+                        + ", debugInfo: " + ghResponse.getDebugInfo());
+                if (writeGPX)
+                    return gpxSuccessResponseBuilder(ghResponse, timeString, trackName, enableElevation, withRoute, withTrack, withWayPoints, Constants.VERSION).
                             header("X-GH-Took", "" + Math.round(took)).
-                            type(MediaType.APPLICATION_JSON).
                             build();
-        }
+                return protobuf ?
+                        Response.ok((StreamingOutput) output -> ProtobufResponse.writeRoute(output, ghResponse, enableInstructions, calcPoints, enableElevation, took)).
+                                header("X-GH-Took", "" + Math.round(took)).
+                                type(ProtobufResponse.MEDIA_TYPE).
+                                build()
+                        :
+                        Response.ok(new RouteJsonOutput(objectMapper, ghResponse, enableInstructions, calcPoints, enableElevation, pointsEncoded, took)).
+                                header("X-GH-Took", "" + Math.round(took)).
+                                type(MediaType.APPLICATION_JSON).
+                                build();
+            }
+        });
     }
 
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    @Produces(MediaType.APPLICATION_JSON)
-    public Response doPost(@NotNull GHRequest request, @Context HttpServletRequest httpReq) {
+    @Produces({MediaType.APPLICATION_JSON, ProtobufResponse.MEDIA_TYPE})
+    public void doPost(@Suspended AsyncResponse asyncResponse, @NotNull GHRequest request, @Context HttpServletRequest httpReq, @Context HttpHeaders headers) {
         StopWatch sw = new StopWatch().start();
         String weightingVehicleLogStr = "weighting: " + request.getHints().getString("weighting", "")
                 + ", vehicle: " + request.getHints().getString("vehicle", "");
@@ -169,34 +191,64 @@ public class RouteResource {
             removeLegacyParameters(request.getHints());
         }
         errorIfLegacyParameters(request.getHints());
-        GHResponse ghResponse = graphHopper.route(request);
         boolean instructions = request.getHints().getBool(INSTRUCTIONS, true);
         boolean enableElevation = request.getHints().getBool("elevation", false);
         boolean calcPoints = request.getHints().getBool(CALC_POINTS, true);
         boolean pointsEncoded = request.getHints().getBool("points_encoded", true);
 
-        long took = sw.stop().getNanos() / 1_000_000;
+        // the request scoped objects are not available on the executor thread
         String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
         String queryString = httpReq.getQueryString() == null ? "" : (httpReq.getQueryString() + " ");
-        String logStr = queryString + infoStr + " " + request.getPoints().size() + ", took: "
-                + String.format("%.1f", (double) took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
-                + ", " + weightingVehicleLogStr;
+        boolean protobuf = prefersProtobuf(headers);
+        requestExecutors.execute(asyncResponse, executorName(request), request.getProfile(), () -> {
+            GHResponse ghResponse = graphHopper.route(request);
 
-        if (ghResponse.hasErrors()) {
-            logger.error(logStr + ", errors:" + ghResponse.getErrors());
-            throw new MultiException(ghResponse.getErrors());
-        } else {
-            logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
-                    + ", distance0: " + ghResponse.getBest().getDistance()
-                    + ", weight0: " + ghResponse.getBest().getRouteWeight()
-                    + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
-                    + ", points0: " + ghResponse.getBest().getPoints().getSize()
-                    + ", debugInfo: " + ghResponse.getDebugInfo());
-            return Response.ok(WebHelper.jsonObject(ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
-                    header("X-GH-Took", "" + Math.round(took)).
-                    type(MediaType.APPLICATION_JSON).
-                    build();
-        }
+            long took = sw.stop().getNanos() / 1_000_000;
+            String logStr = queryString + infoStr + " " + request.getPoints().size() + ", took: "
+                    + String.format("%.1f", (double) took) + " ms, algo: " + request.getAlgorithm() + ", profile: " + request.getProfile()
+                    + ", " + weightingVehicleLogStr;
+
+            if (ghResponse.hasErrors()) {
+                logger.error(logStr + ", errors:" + ghResponse.getErrors());
+                throw new MultiException(ghResponse.getErrors());
+            } else {
+                logger.info(logStr + ", alternatives: " + ghResponse.getAll().size()
+                        + ", distance0: " + ghResponse.getBest().getDistance()
+                        + ", weight0: " + ghResponse.getBest().getRouteWeight()
+                        + ", time0: " + Math.round(ghResponse.getBest().getTime() / 60000f) + "min"
+                        + ", points0: " + ghResponse.getBest().getPoints().getSize()
+                        + ", debugInfo: " + ghResponse.getDebugInfo());
+                if (protobuf)
+                    return Response.ok((StreamingOutput) output -> ProtobufResponse.writeRoute(output, ghResponse, instructions, calcPoints, enableElevation, took)).
+                            header("X-GH-Took", "" + Math.round(took)).
+                            type(ProtobufResponse.MEDIA_TYPE).
+                            build();
+                return Response.ok(new RouteJsonOutput(objectMapper, ghResponse, instructions, calcPoints, enableElevation, pointsEncoded, took)).
+                        header("X-GH-Took", "" + Math.round(took)).
+                        type(MediaType.APPLICATION_JSON).
+                        build();
+            }
+        });
+    }
+
+    /**
+     * Flexible requests are a lot slower than CH requests, so they can get their own executor.
+     */
+    private String executorName(GHRequest request) {
+        boolean flexible = request.getHints().getBool(Parameters.CH.DISABLE, false);
+        return flexible && requestExecutors.has("route_flexible") ? "route_flexible" : "route";
+    }
+
+    /**
+     * Returns true if the client prefers the binary protobuf format over JSON (or CSV), i.e. if it is the first entry
+     * of the Accept header. Clients which accept anything get the default.
+     */
+    static boolean prefersProtobuf(HttpHeaders headers) {
+        List<MediaType> acceptableMediaTypes = headers.getAcceptableMediaTypes();
+        if (acceptableMediaTypes.isEmpty())
+            return false;
+        MediaType preferred = acceptableMediaTypes.get(0);
+        return !preferred.isWildcardType() && !preferred.isWildcardSubtype() && MediaType.valueOf(ProtobufResponse.MEDIA_TYPE).isCompatible(preferred);
     }
 
     private void enableEdgeBasedIfThereAreCurbsides(List<String> curbsides, GHRequest request) {
@@ -3,6 +3,8 @@ package com.graphhopper.resources;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GHPointParam;
+import com.graphhopper.http.ProtobufResponse;
+import com.graphhopper.http.RequestExecutors;
 import com.graphhopper.isochrone.algorithm.ShortestPathTree;
 import com.graphhopper.routing.ProfileResolver;
 import com.graphhopper.routing.ev.*;
@@ -24,7 +26,11 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
@@ -57,20 +63,24 @@ public class SPTResource {
     private final GraphHopper graphHopper;
     private final ProfileResolver profileResolver;
     private final EncodingManager encodingManager;
+    private final RequestExecutors requestExecutors;
 
     @Inject
-    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager) {
+    public SPTResource(GraphHopper graphHopper, ProfileResolver profileResolver, EncodingManager encodingManager, RequestExecutors requestExecutors) {
         this.graphHopper = graphHopper;
         this.profileResolver = profileResolver;
         this.encodingManager = encodingManager;
+        this.requestExecutors = requestExecutors;
     }
 
     // Annotating this as application/json because errors come out as json, and
     // IllegalArgumentExceptions are not mapped to a fixed mediatype, because in RouteRessource, it could be GPX.
     @GET
-    @Produces({"text/csv", "application/json"})
-    public Response doGet(
+    @Produces({"text/csv", "application/json", ProtobufResponse.MEDIA_TYPE})
+    public void doGet(
+            @Suspended AsyncResponse asyncResponse,
             @Context UriInfo uriInfo,
+            @Context HttpHeaders headers,
             @QueryParam("profile") String profileName,
             @QueryParam("reverse_flow") @DefaultValue("false") boolean reverseFlow,
             @QueryParam("point") @NotNull GHPointParam point,
@@ -133,6 +143,30 @@ public class SPTResource {
                 pathDetails.put(col, encodingManager.getEncodedValue(col, EncodedValue.class));
         }
 
+        // the response is written on the executor thread, where the request scoped objects are not available
+        MultivaluedMap<String, String> queryParameters = uriInfo.getQueryParameters();
+        if (RouteResource.prefersProtobuf(headers)) {
+            StreamingOutput out = output -> {
+                ProtobufResponse.SptWriter writer = new ProtobufResponse.SptWriter(output, columns);
+                Object[] row = new Object[columns.size()];
+                shortestPathTree.search(qr.getClosestNode(), l -> {
+                    IsoLabelWithCoordinates label = isoLabelWithCoordinates(nodeAccess, l);
+                    for (int colIndex = 0; colIndex < columns.size(); colIndex++) {
+                        row[colIndex] = columnValue(columns.get(colIndex), label, queryGraph, pathDetails, reverseFlow);
+                    }
+                    try {
+                        writer.writeRow(row);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+                writer.flush();
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + queryParameters);
+            };
+            requestExecutors.execute(asyncResponse, "spt", profile.getName(), () -> Response.ok(out).type(ProtobufResponse.MEDIA_TYPE).build());
+            return;
+        }
+
         StreamingOutput out = output -> {
             try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, Helper.UTF_CS))) {
                 StringBuilder sb = new StringBuilder();
@@ -151,73 +185,14 @@ public class SPTResource {
                         if (colIndex > 0)
                             sb.append(COL_SEP);
 
-                        switch (col) {
-                            case "node_id":
-                                sb.append(label.nodeId);
-                                continue;
-                            case "prev_node_id":
-                                sb.append(label.prevNodeId);
-                                continue;
-                            case "edge_id":
-                                sb.append(label.edgeId);
-                                continue;
-                            case "prev_edge_id":
-                                sb.append(label.prevEdgeId);
-                                continue;
-                            case "distance":
-                                sb.append(label.distance);
-                                continue;
-                            case "prev_distance":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevDistance);
-                                continue;
-                            case "time":
-                                sb.append(label.timeMillis);
-                                continue;
-                            case "prev_time":
-                                sb.append(label.prevCoordinate == null ? 0 : label.prevTimeMillis);
-                                continue;
-                            case "longitude":
-                                sb.append(label.coordinate.lon);
-                                continue;
-                            case "prev_longitude":
-                                sb.append(label.prevCoordinate == null ? null : label.prevCoordinate.lon);
-                                continue;
-                            case "latitude":
-                                sb.append(label.coordinate.lat);
-                                continue;
-                            case "prev_latitude":
-                                sb.append(label.prevCoordinate == null ? null : label.prevCoordinate.lat);
-                                continue;
-                        }
-
-                        if (!EdgeIterator.Edge.isValid(label.edgeId))
-                            continue;
-
-                        EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId);
-                        if (edge == null)
-                            continue;
-
-                        if (col.equals(Parameters.Details.STREET_NAME)) {
-                            sb.append(edge.getName().replaceAll(",", ""));
-                            continue;
-                        }
-
-                        EncodedValue ev = pathDetails.get(col);
-                        if (ev instanceof DecimalEncodedValue) {
-                            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(dev) : edge.get(dev));
-                        } else if (ev instanceof EnumEncodedValue) {
-                            EnumEncodedValue eev = (EnumEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof BooleanEncodedValue) {
-                            BooleanEncodedValue eev = (BooleanEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else if (ev instanceof IntEncodedValue) {
-                            IntEncodedValue eev = (IntEncodedValue) ev;
-                            sb.append(reverseFlow ? edge.getReverse(eev) : edge.get(eev));
-                        } else {
-                            throw new IllegalArgumentException("Unknown property " + col);
-                        }
+                        Object value = columnValue(col, label, queryGraph, pathDetails, reverseFlow);
+                        if (value instanceof String)
+                            sb.append(((String) value).replaceAll(",", ""));
+                        else if (value != null)
+                            sb.append(value);
+                        else if (col.equals("prev_longitude") || col.equals("prev_latitude"))
+                            // the root of the tree has no previous coordinate, the other columns stay empty without an edge
+                            sb.append("null");
                     }
                     sb.append(LINE_SEP);
                     try {
@@ -227,13 +202,72 @@ public class SPTResource {
                     }
                 });
 
-                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+                logger.info("took: " + sw.stop().getSeconds() + ", visited nodes:" + shortestPathTree.getVisitedNodes() + ", " + queryParameters);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         };
         // Give media type explicitly since we are annotating CSV and JSON, because error messages are JSON.
-        return Response.ok(out).type("text/csv").build();
+        requestExecutors.execute(asyncResponse, "spt", profile.getName(), () -> Response.ok(out).type("text/csv").build());
+    }
+
+    /**
+     * Returns the value of the column for the label, or null if there is none.
+     */
+    private static Object columnValue(String col, IsoLabelWithCoordinates label, QueryGraph queryGraph, Map<String, EncodedValue> pathDetails, boolean reverseFlow) {
+        switch (col) {
+            case "node_id":
+                return label.nodeId;
+            case "prev_node_id":
+                return label.prevNodeId;
+            case "edge_id":
+                return label.edgeId;
+            case "prev_edge_id":
+                return label.prevEdgeId;
+            case "distance":
+                return label.distance;
+            case "prev_distance":
+                return label.prevCoordinate == null ? 0 : label.prevDistance;
+            case "time":
+                return label.timeMillis;
+            case "prev_time":
+                return label.prevCoordinate == null ? 0 : label.prevTimeMillis;
+            case "longitude":
+                return label.coordinate.lon;
+            case "prev_longitude":
+                return label.prevCoordinate == null ? null : label.prevCoordinate.lon;
+            case "latitude":
+                return label.coordinate.lat;
+            case "prev_latitude":
+                return label.prevCoordinate == null ? null : label.prevCoordinate.lat;
+        }
+
+        if (!EdgeIterator.Edge.isValid(label.edgeId))
+            return null;
+
+        EdgeIteratorState edge = queryGraph.getEdgeIteratorState(label.edgeId, label.nodeId);
+        if (edge == null)
+            return null;
+
+        if (col.equals(Parameters.Details.STREET_NAME))
+            return edge.getName();
+
+        EncodedValue ev = pathDetails.get(col);
+        if (ev instanceof DecimalEncodedValue) {
+            DecimalEncodedValue dev = (DecimalEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(dev) : edge.get(dev);
+        } else if (ev instanceof EnumEncodedValue) {
+            EnumEncodedValue eev = (EnumEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else if (ev instanceof BooleanEncodedValue) {
+            BooleanEncodedValue eev = (BooleanEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else if (ev instanceof IntEncodedValue) {
+            IntEncodedValue eev = (IntEncodedValue) ev;
+            return reverseFlow ? edge.getReverse(eev) : edge.get(eev);
+        } else {
+            throw new IllegalArgumentException("Unknown property " + col);
+        }
     }
 
     private IsoLabelWithCoordinates isoLabelWithCoordinates(NodeAccess na, ShortestPathTree.IsoLabel label) {
@@ -25,6 +25,8 @@ import io.dropwizard.bundles.assets.AssetsConfiguration;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
 
 public class GraphHopperServerConfiguration extends Configuration implements GraphHopperBundleConfiguration, RealtimeBundleConfiguration, AssetsBundleConfiguration {
 
@@ -39,6 +41,10 @@ public class GraphHopperServerConfiguration extends Configuration implements Gra
     @JsonProperty
     private final RealtimeConfiguration gtfsRealtime = new RealtimeConfiguration();
 
+    @Valid
+    @JsonProperty
+    private final Map<String, RequestExecutorConfiguration> requestExecutors = new HashMap<>();
+
     public GraphHopperServerConfiguration() {
     }
 
@@ -56,4 +62,9 @@ public class GraphHopperServerConfiguration extends Configuration implements Gra
     public RealtimeConfiguration gtfsrealtime() {
         return gtfsRealtime;
     }
+
+    @Override
+    public Map<String, RequestExecutorConfiguration> getRequestExecutors() {
+        return requestExecutors;
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
+import com.graphhopper.config.Profile;
+import com.graphhopper.jackson.Jackson;
+import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.util.Helper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphHopperManagedTest {
+    private static final String dir = "./target/andorra-managed-gh/";
+    private static final String newDir = "./target/andorra-managed-new-gh/";
+
+    private static GraphHopperConfig createConfig(String location) {
+        return new GraphHopperConfig().
+                putObject("graph.flag_encoders", "car").
+                putObject("datareader.file", "../core/files/andorra.osm.pbf").
+                putObject("graph.location", location).
+                putObject("graph.reload.warmup_queries", 10).
+                setProfiles(Collections.singletonList(new Profile("car").setVehicle("car").setWeighting("fastest")));
+    }
+
+    @BeforeEach
+    @AfterEach
+    public void cleanUp() {
+        Helper.removeDir(new File(dir));
+        Helper.removeDir(new File(newDir));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        GraphHopperManaged managed = new GraphHopperManaged(createConfig(dir), Jackson.newObjectMapper());
+        managed.start();
+        GraphHopper oldHopper = managed.getGraphHopper();
+
+        GraphHopper importer = new GraphHopperOSM().init(createConfig(newDir));
+        importer.importAndClose();
+
+        // a request that is still running on the old instance
+        GraphHopperManaged.Generation generation = managed.acquire();
+        assertSame(oldHopper, generation.getGraphHopper());
+
+        GraphHopper newHopper = managed.reload(newDir).get();
+        assertSame(newHopper, managed.getGraphHopper());
+        assertNotSame(oldHopper, newHopper);
+        assertFalse(oldHopper.getGraphHopperStorage().isClosed());
+        assertFalse(oldHopper.route(new GHRequest(42.554851, 1.536198, 42.510071, 1.548128).setProfile("car")).hasErrors());
+
+        generation.release();
+        assertTrue(oldHopper.getGraphHopperStorage().isClosed());
+        assertFalse(newHopper.route(new GHRequest(42.554851, 1.536198, 42.510071, 1.548128).setProfile("car")).hasErrors());
+
+        managed.stop();
+        assertTrue(newHopper.getGraphHopperStorage().isClosed());
+    }
+
+    @Test
+    public void testAcquireAfterStop() {
+        GraphHopperManaged managed = new GraphHopperManaged(createConfig(dir), Jackson.newObjectMapper());
+        managed.start();
+        GraphHopper hopper = managed.getGraphHopper();
+        // a request that is still running during shutdown
+        GraphHopperManaged.Generation generation = managed.acquire();
+        managed.stop();
+        assertTrue(managed.isStopped());
+        assertFalse(hopper.getGraphHopperStorage().isClosed());
+        // requests arriving after stop don't get an instance, they must not wait for one
+        assertNull(managed.acquire());
+        assertThrows(IllegalStateException.class, managed::getGraphHopper);
+        generation.release();
+        assertTrue(hopper.getGraphHopperStorage().isClosed());
+    }
+
+    @Test
+    public void testReloadMissingGraph() {
+        GraphHopperManaged managed = new GraphHopperManaged(createConfig(dir), Jackson.newObjectMapper());
+        managed.start();
+        GraphHopper oldHopper = managed.getGraphHopper();
+        Exception ex = assertThrows(Exception.class, () -> managed.reload(newDir).get());
+        assertTrue(ex.getMessage().contains("Cannot load graph from"), ex.getMessage());
+        assertSame(oldHopper, managed.getGraphHopper());
+        assertFalse(oldHopper.getGraphHopperStorage().isClosed());
+        managed.stop();
+    }
+}
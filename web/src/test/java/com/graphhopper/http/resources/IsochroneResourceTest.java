@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GraphHopperApplication;
 import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.ProtobufResponse;
 import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
 import com.graphhopper.json.geo.JsonFeatureCollection;
 import com.graphhopper.util.Helper;
@@ -39,7 +40,10 @@ import org.locationtech.jts.geom.Polygon;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.List;
 
 import static com.graphhopper.http.util.TestUtils.clientTarget;
 import static com.graphhopper.util.Parameters.Routing.BLOCK_AREA;
@@ -94,6 +98,25 @@ public class IsochroneResourceTest {
         assertFalse(polygon1.contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
     }
 
+    @Test
+    public void requestProtobuf() throws IOException {
+        Response rsp = clientTarget(app, "/isochrone")
+                .queryParam("profile", "fast_car")
+                .queryParam("point", "42.531073,1.573792")
+                .queryParam("time_limit", 5 * 60)
+                .queryParam("buckets", 2)
+                .request(ProtobufResponse.MEDIA_TYPE).buildGet().invoke();
+        assertEquals(ProtobufResponse.MEDIA_TYPE, rsp.getMediaType().toString());
+        List<Geometry> isochrones = ProtobufResponse.readIsochrones(rsp.readEntity(InputStream.class));
+
+        assertEquals(2, isochrones.size());
+        assertTrue(isochrones.get(0).contains(geometryFactory.createPoint(new Coordinate(1.587224, 42.5386))));
+        assertFalse(isochrones.get(0).contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+
+        assertTrue(isochrones.get(1).contains(geometryFactory.createPoint(new Coordinate(1.589756, 42.558012))));
+        assertFalse(isochrones.get(1).contains(geometryFactory.createPoint(new Coordinate(1.635246, 42.53841))));
+    }
+
     @Test
     public void requestByTimeLimitNoTurnRestrictions() {
         Response rsp = clientTarget(app, "/isochrone")
@@ -42,6 +42,7 @@ import java.time.ZoneId;
 import java.util.Collections;
 
 import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -92,6 +93,24 @@ public class PtIsochroneTest {
         assertFalse(isoline.covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.751677, 36.915682)))));
     }
 
+    @Test
+    public void testBuckets() {
+        WebTarget webTarget = clientTarget(app, "/isochrone")
+                .queryParam("vehicle", "pt")
+                .queryParam("point", "36.914893,-116.76821") // NADAV
+                .queryParam("pt.earliest_departure_time", LocalDateTime.of(2007, 1, 1, 0, 0, 0).atZone(zoneId).toInstant())
+                .queryParam("time_limit", 2 * (6 * 60 * 60 + 49 * 60))
+                .queryParam("buckets", 2);
+        Invocation.Builder request = webTarget.request();
+        PtIsochroneResource.Response isochroneResponse = request.get(PtIsochroneResource.Response.class);
+        assertEquals(2, isochroneResponse.polygons.size());
+        // The first bucket is the same isoline as in testIsoline
+        Geometry isoline = isochroneResponse.polygons.get(0).getGeometry();
+        assertTrue(isoline.covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.761472, 36.914944)))));
+        assertFalse(isoline.covers(geometryFactory.createPoint(makePrecise(new Coordinate(-116.751677, 36.915682)))));
+        assertTrue(isochroneResponse.polygons.get(1).getGeometry().covers(isoline));
+    }
+
     // Snap coordinate to GraphHopper's implicit grid of allowable points.
     // Otherwise, we can't reliably use coordinates from input data in tests.
     private Coordinate makePrecise(Coordinate coordinate) {
@@ -55,6 +55,7 @@ public class PtRouteResourceTest {
                 putObject("datareader.file", "../reader-gtfs/files/beatty.osm").
                 putObject("gtfs.file", "../reader-gtfs/files/sample-feed.zip").
                 putObject("graph.location", DIR).
+                putObject("gtfs.max_profile_buckets", 2).
                 setProfiles(Collections.singletonList(new Profile("foot").setVehicle("foot").setWeighting("fastest")));
         return config;
     }
@@ -160,6 +161,34 @@ public class PtRouteResourceTest {
         assertEquals("query param pt.earliest_departure_time must be in a ISO-8601 format.", json.get("message").asText());
     }
 
+    @Test
+    public void testProfileBuckets() {
+        final Response response = clientTarget(app, "/route")
+                .queryParam("point", "Stop(NADAV)")
+                .queryParam("point", "Stop(NANAA)")
+                .queryParam("vehicle", "pt")
+                .queryParam("pt.earliest_departure_time", "2007-01-01T08:00:00Z")
+                .queryParam("pt.profile", true)
+                .queryParam("pt.raptor", true)
+                .queryParam("pt.profile_buckets", 2)
+                .request().buildGet().invoke();
+        assertEquals(200, response.getStatus());
+        assertFalse(response.readEntity(GHResponse.class).hasErrors());
+
+        final Response tooMany = clientTarget(app, "/route")
+                .queryParam("point", "Stop(NADAV)")
+                .queryParam("point", "Stop(NANAA)")
+                .queryParam("vehicle", "pt")
+                .queryParam("pt.earliest_departure_time", "2007-01-01T08:00:00Z")
+                .queryParam("pt.profile", true)
+                .queryParam("pt.raptor", true)
+                .queryParam("pt.profile_buckets", 3)
+                .request().buildGet().invoke();
+        assertEquals(400, tooMany.getStatus());
+        JsonNode json = tooMany.readEntity(JsonNode.class);
+        assertEquals("pt.profile_buckets must not be greater than 2 but was 3", json.get("message").asText());
+    }
+
     @Test
     public void testInfo() {
         final Response response = clientTarget(app, "/info")
@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.graphhopper.http.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.Profile;
+import com.graphhopper.http.GraphHopperApplication;
+import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.RequestExecutorConfiguration;
+import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
+import com.graphhopper.routing.util.CustomModel;
+import com.graphhopper.routing.weighting.custom.CustomProfile;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit5.DropwizardAppExtension;
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.graphhopper.http.util.TestUtils.clientTarget;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+public class RequestExecutorsTest {
+    private static final String DIR = "./target/request-executors-gh/";
+    private static final DropwizardAppExtension<GraphHopperServerConfiguration> app = new DropwizardAppExtension<>(GraphHopperApplication.class, createConfig());
+
+    private static GraphHopperServerConfiguration createConfig() {
+        GraphHopperServerConfiguration config = new GraphHopperServerTestConfiguration();
+        config.getGraphHopperConfiguration().
+                putObject("graph.flag_encoders", "car").
+                putObject("routing.ch.disabling_allowed", true).
+                putObject("prepare.min_network_size", 0).
+                putObject("datareader.file", "../core/files/monaco.osm.gz").
+                putObject("graph.location", DIR).
+                setProfiles(Arrays.asList(
+                        new Profile("car").setVehicle("car").setWeighting("fastest"),
+                        new CustomProfile("car_custom").setCustomModel(new CustomModel()).setVehicle("car"))).
+                setCHProfiles(Collections.singletonList(new CHProfile("car")));
+        config.getRequestExecutors().put("route", new RequestExecutorConfiguration().setThreads(2).setQueueSize(10));
+        config.getRequestExecutors().put("route_flexible", new RequestExecutorConfiguration().setThreads(1).setQueueSize(10));
+        // no queue, so concurrent requests are rejected as long as the only thread is busy
+        config.getRequestExecutors().put("isochrone", new RequestExecutorConfiguration().setThreads(1).setQueueSize(0));
+        return config;
+    }
+
+    @BeforeAll
+    @AfterAll
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testRoute() {
+        for (String params : new String[]{"", "&ch.disable=true"}) {
+            JsonNode json = clientTarget(app, "/route?profile=car&point=43.727879,7.409678&point=43.745987,7.429848" + params).request().get(JsonNode.class);
+            assertEquals(3563, json.get("paths").get(0).get("distance").asDouble(), 5);
+        }
+
+        String body = "{\"profile\": \"car\", \"points\": [[7.409678, 43.727879], [7.429848, 43.745987]]}";
+        JsonNode json = clientTarget(app, "/route").request().post(Entity.json(body), JsonNode.class);
+        assertEquals(3563, json.get("paths").get(0).get("distance").asDouble(), 5);
+    }
+
+    @Test
+    public void testCustomRoute() {
+        // custom requests are flexible and run on the route_flexible executor
+        String body = "{\"profile\": \"car_custom\", \"points\": [[7.409678, 43.727879], [7.429848, 43.745987]], \"model\": {}}";
+        JsonNode json = clientTarget(app, "/route-custom").request().post(Entity.json(body), JsonNode.class);
+        assertEquals(3298, json.get("paths").get(0).get("distance").asDouble(), 5);
+
+        Response response = clientTarget(app, "/route-custom").request().post(Entity.json("{\"profile\": \"car\", \"points\": [[7.409678, 43.727879], [7.429848, 43.745987]], \"model\": {}}"));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("cannot be used for a custom request"));
+    }
+
+    @Test
+    public void testErrorsOfTheExecutorThread() {
+        // the route is calculated on the executor thread and its errors are mapped as usual
+        Response response = clientTarget(app, "/route?profile=car&point=43.727879,7.409678&point=42.0,7.429848").request().get();
+        assertEquals(400, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertTrue(json.get("message").asText().startsWith("Point 1 is out of bounds"), json.toString());
+    }
+
+    @Test
+    public void testLoadShedding() throws ExecutionException, InterruptedException {
+        List<Future<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(clientTarget(app, "/isochrone?profile=car&point=43.731206,7.419766&time_limit=1200&buckets=3").request().async().get());
+        }
+        int ok = 0, rejected = 0;
+        for (Future<Response> future : futures) {
+            Response response = future.get();
+            if (response.getStatus() == 200) {
+                ok++;
+            } else {
+                assertEquals(503, response.getStatus());
+                assertEquals("1", response.getHeaderString("Retry-After"));
+                JsonNode json = response.readEntity(JsonNode.class);
+                assertEquals("Too many requests for isochrone, please try again later", json.get("message").asText());
+                rejected++;
+            }
+            response.close();
+        }
+        assertTrue(ok > 0, "ok: " + ok);
+        assertTrue(rejected > 0, "rejected: " + rejected);
+    }
+}
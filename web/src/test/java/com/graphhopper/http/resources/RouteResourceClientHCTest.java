@@ -78,21 +78,25 @@ public class RouteResourceClientHCTest {
     // dropwizard extension does not work with @RunWith(Parameterized.class), but we can use an @EnumSource or similar
     // and on each test method. see https://github.com/graphhopper/graphhopper/pull/2003
     private enum TestParam {
-        GET(false, -1),
-        POST_MAX_UNZIPPED_0(true, 0),
-        POST_MAX_UNZIPPED_1000(true, 1000);
+        GET(false, -1, false),
+        POST_MAX_UNZIPPED_0(true, 0, false),
+        POST_MAX_UNZIPPED_1000(true, 1000, false),
+        GET_PROTOBUF(false, -1, true),
+        POST_PROTOBUF(true, 1000, true);
 
         public boolean usePost;
         public int maxUnzippedLength;
+        public boolean protobuf;
 
-        TestParam(boolean usePost, int maxUnzippedLength) {
+        TestParam(boolean usePost, int maxUnzippedLength, boolean protobuf) {
             this.usePost = usePost;
             this.maxUnzippedLength = maxUnzippedLength;
+            this.protobuf = protobuf;
         }
     }
 
     private GraphHopperWeb createGH(TestParam p) {
-        return new GraphHopperWeb(TestUtils.clientUrl(app, "/route")).setPostRequest(p.usePost).setMaxUnzippedLength(p.maxUnzippedLength);
+        return new GraphHopperWeb(TestUtils.clientUrl(app, "/route")).setPostRequest(p.usePost).setMaxUnzippedLength(p.maxUnzippedLength).setProtobuf(p.protobuf);
     }
 
     @BeforeAll
@@ -27,6 +27,7 @@ import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GraphHopperApplication;
 import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.ProtobufResponse;
 import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
 import com.graphhopper.routing.ev.RoadClass;
 import com.graphhopper.routing.ev.RoadEnvironment;
@@ -50,6 +51,8 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 import static com.graphhopper.http.util.TestUtils.clientTarget;
@@ -111,6 +114,25 @@ public class RouteResourceTest {
         assertTrue(distance < 9500, "distance wasn't correct:" + distance);
     }
 
+    @Test
+    public void testProtobufQuery() throws IOException {
+        Response response = clientTarget(app, "/route?profile=my_car&point=42.554851,1.536198&point=42.510071,1.548128&details=street_name").
+                request(ProtobufResponse.MEDIA_TYPE).buildGet().invoke();
+        assertEquals(200, response.getStatus());
+        assertEquals(ProtobufResponse.MEDIA_TYPE, response.getMediaType().toString());
+        ResponsePath path = ProtobufResponse.readRoute(response.readEntity(InputStream.class), true).getBest();
+        assertTrue(path.getDistance() > 9000, "distance wasn't correct:" + path.getDistance());
+        assertTrue(path.getDistance() < 9500, "distance wasn't correct:" + path.getDistance());
+        assertEquals(path.getPoints().size() - 1, path.getPathDetails().get("street_name").get(path.getPathDetails().get("street_name").size() - 1).getLast());
+        assertEquals("Continue onto la Callisa", path.getInstructions().get(0).getTurnDescription(null));
+
+        // errors are still returned as JSON
+        response = clientTarget(app, "/route?profile=my_car&point=42.554851,1.536198").
+                request().accept(ProtobufResponse.MEDIA_TYPE, "application/json;q=0.5").buildGet().invoke();
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("At least 2 points"));
+    }
+
     @Test
     public void testBasicPostQuery() {
         String jsonStr = "{ \"profile\": \"my_car\", \"points\": [[1.536198,42.554851], [1.548128, 42.510071]] }";
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.graphhopper.config.Profile;
 import com.graphhopper.http.GraphHopperApplication;
 import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.http.ProtobufResponse;
 import com.graphhopper.http.util.GraphHopperServerTestConfiguration;
 import com.graphhopper.util.Helper;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
@@ -33,8 +34,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.graphhopper.http.util.TestUtils.clientTarget;
 import static org.junit.jupiter.api.Assertions.*;
@@ -101,6 +106,21 @@ public class SPTResourceTest {
         assertEquals("1944,2272,263,13496,262", lines[3]);
     }
 
+    @Test
+    public void requestSPTProtobuf() throws IOException {
+        String query = "/spt?profile=car_with_turncosts&point=42.531073,1.573792&time_limit=300&columns=prev_node_id,edge_id,node_id,time,distance,street_name";
+        String[] lines = clientTarget(app, query).request().buildGet().invoke().readEntity(String.class).split("\n");
+
+        Response rsp = clientTarget(app, query).request(ProtobufResponse.MEDIA_TYPE).buildGet().invoke();
+        assertEquals(ProtobufResponse.MEDIA_TYPE, rsp.getMediaType().toString());
+        List<String> columns = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        ProtobufResponse.readSpt(rsp.readEntity(InputStream.class), columns, row -> rows.add(Arrays.stream(row).
+                map(value -> value == null ? "" : value.toString().replaceAll(",", "")).collect(Collectors.joining(","))));
+        assertEquals(lines[0], String.join(",", columns));
+        assertEquals(Arrays.asList(lines).subList(1, lines.length), rows);
+    }
+
     @Test
     public void requestDetails() {
         Response rsp = clientTarget(app, "/spt?profile=car_without_turncosts&point=42.531073,1.573792&time_limit=300&columns=street_name,road_class,max_speed").request().buildGet().invoke();